@@ -69,6 +69,17 @@ CREATE TABLE annotation (
 );
 
 
+--
+-- Name: array_index_allocator; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE array_index_allocator (
+    target text NOT NULL,
+    annot_ver text NOT NULL,
+    next_index integer NOT NULL
+);
+
+
 --
 -- Name: dashboard_config; Type: TABLE; Schema: public; Owner: -
 --
@@ -105,6 +116,42 @@ CREATE TABLE dept (
 );
 
 
+--
+-- Name: email_outbox; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE email_outbox (
+    msg_id integer NOT NULL,
+    recipients text NOT NULL,
+    bcc text,
+    subject text NOT NULL,
+    body text NOT NULL,
+    queue_time timestamp without time zone NOT NULL,
+    attempts integer DEFAULT 0 NOT NULL,
+    next_attempt timestamp without time zone NOT NULL,
+    last_error text
+);
+
+
+--
+-- Name: email_outbox_msg_id_seq; Type: SEQUENCE; Schema: public; Owner: -
+--
+
+CREATE SEQUENCE email_outbox_msg_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+--
+-- Name: email_outbox_msg_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: -
+--
+
+ALTER SEQUENCE email_outbox_msg_id_seq OWNED BY email_outbox.msg_id;
+
+
 --
 -- Name: feature; Type: TABLE; Schema: public; Owner: -
 --
@@ -227,6 +274,33 @@ CREATE VIEW inst_dept_grp AS
              JOIN dept USING (inst_id))) id USING (dept_id));
 
 
+--
+-- Name: job_queue; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE job_queue (
+    job_id integer NOT NULL,
+    priority integer NOT NULL,
+    config_file text NOT NULL,
+    log_file text NOT NULL,
+    queue_time timestamp without time zone NOT NULL
+);
+
+
+--
+-- Name: job_process; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE job_process (
+    job_id integer NOT NULL,
+    pid integer NOT NULL,
+    start_ticks bigint NOT NULL,
+    log_file text NOT NULL,
+    cpu_time bigint DEFAULT 0 NOT NULL,
+    peak_rss bigint DEFAULT 0 NOT NULL
+);
+
+
 --
 -- Name: job_status; Type: TABLE; Schema: public; Owner: -
 --
@@ -307,7 +381,10 @@ CREATE TABLE pipeline (
     tid character varying(20),
     command text NOT NULL,
     parameter text,
-    editable boolean DEFAULT false
+    editable boolean DEFAULT false,
+    cpu_slots integer DEFAULT 1 NOT NULL,
+    memory_mb integer DEFAULT 0 NOT NULL,
+    priority integer DEFAULT 5 NOT NULL
 );
 
 
@@ -655,6 +732,13 @@ CREATE VIEW visual_profile_detail AS
 ALTER TABLE ONLY activity_log ALTER COLUMN sn SET DEFAULT nextval('activity_log_sn_seq'::regclass);
 
 
+--
+-- Name: msg_id; Type: DEFAULT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY email_outbox ALTER COLUMN msg_id SET DEFAULT nextval('email_outbox_msg_id_seq'::regclass);
+
+
 --
 -- Name: status_id; Type: DEFAULT; Schema: public; Owner: -
 --
@@ -699,6 +783,14 @@ ALTER TABLE ONLY annotation
     ADD CONSTRAINT annotation_pkey PRIMARY KEY (annot_ver);
 
 
+--
+-- Name: array_index_allocator_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY array_index_allocator
+    ADD CONSTRAINT array_index_allocator_pkey PRIMARY KEY (target, annot_ver);
+
+
 --
 -- Name: dashboard_config_pkey; Type: CONSTRAINT; Schema: public; Owner: -
 --
@@ -723,6 +815,14 @@ ALTER TABLE ONLY dept
     ADD CONSTRAINT dept_pkey PRIMARY KEY (dept_id);
 
 
+--
+-- Name: email_outbox_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY email_outbox
+    ADD CONSTRAINT email_outbox_pkey PRIMARY KEY (msg_id);
+
+
 --
 -- Name: feature_pkey; Type: CONSTRAINT; Schema: public; Owner: -
 --
@@ -779,6 +879,22 @@ ALTER TABLE ONLY inst
     ADD CONSTRAINT inst_pkey PRIMARY KEY (inst_id);
 
 
+--
+-- Name: job_queue_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY job_queue
+    ADD CONSTRAINT job_queue_pkey PRIMARY KEY (job_id);
+
+
+--
+-- Name: job_process_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY job_process
+    ADD CONSTRAINT job_process_pkey PRIMARY KEY (job_id);
+
+
 --
 -- Name: job_status_pkey; Type: CONSTRAINT; Schema: public; Owner: -
 --
@@ -939,6 +1055,27 @@ ALTER TABLE ONLY visual_profile
     ADD CONSTRAINT visual_profile_pkey PRIMARY KEY (vpid);
 
 
+--
+-- Name: activity_log_activity_time_ind; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX activity_log_activity_time_ind ON activity_log USING btree (activity, "time", sn);
+
+
+--
+-- Name: activity_log_time_ind; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX activity_log_time_ind ON activity_log USING btree ("time", sn);
+
+
+--
+-- Name: activity_log_user_time_ind; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX activity_log_user_time_ind ON activity_log USING btree (user_id, "time", sn);
+
+
 --
 -- Name: deposit_annot_ind; Type: INDEX; Schema: public; Owner: -
 --
@@ -946,6 +1083,13 @@ ALTER TABLE ONLY visual_profile
 CREATE INDEX deposit_annot_ind ON data_depository USING btree (annot_ver);
 
 
+--
+-- Name: finalized_void_ind; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX finalized_void_ind ON finalized_record USING btree (annot_ver, array_index) WHERE (job_id = 0);
+
+
 --
 -- Name: vault_annot_ind; Type: INDEX; Schema: public; Owner: -
 --
@@ -953,6 +1097,14 @@ CREATE INDEX deposit_annot_ind ON data_depository USING btree (annot_ver);
 CREATE INDEX vault_annot_ind ON vault_data USING btree (annot_ver);
 
 
+--
+-- Name: array_index_allocator_annot_ver_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY array_index_allocator
+    ADD CONSTRAINT array_index_allocator_annot_ver_fkey FOREIGN KEY (annot_ver) REFERENCES annotation(annot_ver);
+
+
 --
 -- Name: data_depository_annot_ver_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
 --
@@ -1025,6 +1177,22 @@ ALTER TABLE ONLY input_data
     ADD CONSTRAINT input_data_pipeline_name_fkey FOREIGN KEY (pipeline_name) REFERENCES pipeline(name) ON UPDATE CASCADE ON DELETE RESTRICT;
 
 
+--
+-- Name: job_queue_job_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY job_queue
+    ADD CONSTRAINT job_queue_job_id_fkey FOREIGN KEY (job_id) REFERENCES submitted_job(job_id) ON DELETE CASCADE;
+
+
+--
+-- Name: job_process_job_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY job_process
+    ADD CONSTRAINT job_process_job_id_fkey FOREIGN KEY (job_id) REFERENCES submitted_job(job_id) ON DELETE CASCADE;
+
+
 --
 -- Name: input_data_study_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
 --
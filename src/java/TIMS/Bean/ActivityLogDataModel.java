@@ -0,0 +1,119 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Bean;
+
+import TIMS.Database.ActivityLog;
+import TIMS.Database.ActivityLogDB;
+import TIMS.Database.ActivityLogFilter;
+// Libraries for Java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+// Libraries for PrimeFaces
+import org.primefaces.model.LazyDataModel;
+import org.primefaces.model.SortOrder;
+
+// ActivityLogDataModel load the activity log one page at a time. Moving to
+// the next or previous page continue from the rows at the edge of the 
+// current page (keyset pagination), so the page load doesn't slow down as 
+// the activity log grows; jumping to other page fall back to offset. The 
+// number of rows is an estimate from the database statistics, adjusted as 
+// the pages are read.
+public class ActivityLogDataModel extends LazyDataModel<ActivityLog> {
+    // The xls export cannot hold more rows than this.
+    private final static int MAX_PAGE_SIZE = 65535;
+    private final ActivityLogFilter filter;
+    private final long estimate;
+    // The page currently loaded, and how it is loaded.
+    private List<ActivityLog> page = new ArrayList<>();
+    private int pageFirst = -1, pageSize;
+    private String pageSortField;
+    private SortOrder pageSortOrder;
+    
+    public ActivityLogDataModel(ActivityLogFilter filter) {
+        this.filter = filter;
+        estimate = ActivityLogDB.estimateActivityCount(filter);
+        setRowCount((int) Math.min(Integer.MAX_VALUE, estimate));
+    }
+    
+    @Override
+    public List<ActivityLog> load(int first, int size, String sortField, 
+            SortOrder sortOrder, Map<String, Object> filters) {
+        size = Math.min(size, MAX_PAGE_SIZE);
+        String sortCol = ActivityLogDB.getSortColumn(sortField);
+        boolean desc = (sortCol == null) || (sortOrder != SortOrder.ASCENDING);
+        ActivityLog key = null;
+        boolean backward = false;
+        
+        // Continue from the current page if the order is unchanged.
+        if (!page.isEmpty() && size == pageSize && 
+            Objects.equals(sortField, pageSortField) && 
+            sortOrder == pageSortOrder) {
+            if (first == pageFirst + size) {
+                key = page.get(page.size() - 1);
+            }
+            else if (first == pageFirst - size) {
+                key = page.get(0);
+                backward = true;
+            }
+        }
+        // Read one more row to find out whether there is a next page.
+        List<ActivityLog> rows = ActivityLogDB.retrieveActivityPage(filter, 
+                sortCol, desc, key, backward, first, size + 1);
+        boolean more = backward || rows.size() > size;
+        
+        if (rows.size() > size) {
+            rows = backward ? rows.subList(rows.size() - size, rows.size()) 
+                            : rows.subList(0, size);
+        }
+        page = new ArrayList<>(rows);
+        pageFirst = first;
+        pageSize = size;
+        pageSortField = sortField;
+        pageSortOrder = sortOrder;
+        
+        long count = more ? Math.max(estimate, first + page.size() + 1) 
+                          : first + page.size();
+        setRowCount((int) Math.min(Integer.MAX_VALUE, count));
+        
+        return page;
+    }
+    
+    @Override
+    public Object getRowKey(ActivityLog log) {
+        return log.getSn();
+    }
+    
+    @Override
+    public ActivityLog getRowData(String rowKey) {
+        for (ActivityLog log : page) {
+            if (String.valueOf(log.getSn()).equals(rowKey)) {
+                return log;
+            }
+        }
+        
+        return null;
+    }
+}
@@ -23,17 +23,14 @@
 //
 package TIMS.Bean;
 
-import TIMS.Database.ActivityLog;
 import TIMS.Database.ActivityLogDB;
+import TIMS.Database.ActivityLogFilter;
 import TIMS.Database.UserAccountDB;
 // Libraries for Java
 import java.io.Serializable;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.sql.Timestamp;
 import java.util.Date;
 import java.util.LinkedHashMap;
-import java.util.List;
 // Libraries for Java Extension
 import javax.faces.context.FacesContext;
 import javax.inject.Named;
@@ -49,7 +46,7 @@ public class ActivityTrackingBean implements Serializable {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(ActivityTrackingBean.class.getName());
-    private List<ActivityLog> activityLog;
+    private ActivityLogDataModel activityLog;
     private final LinkedHashMap<String,String> userIDHash;
     private LinkedHashMap<String,String> activityList;
     private String trackUser, trackActi;
@@ -78,57 +75,23 @@ public class ActivityTrackingBean implements Serializable {
         logger.info(userName + ": access Activity Tracking page.");
     }
 
-    // Proceed to retrieve the activity log based on user selection.
+    // Proceed to retrieve the activity log based on user selection; the 
+    // activity log will be loaded one page at a time.
     public void retrieveActivity() {
-        List<String> para = new ArrayList<>();
-        DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-        String fromStr = null;
-        String toStr = null;
-
-        if (trackUser != null) {
-            para.add("user_id = \'" + trackUser + "\'");
-        }
-        else {
-            // Director is only allowed to see the activities from the users
-            // coming from his/her institution.
-            if (UserAccountDB.isDirector(userName)) {
-                para.add("user_id IN (" + 
-                    getInstUserIDQuery(UserAccountDB.getUnitID(userName)) + ")");
-            }
-        }
-        if (trackActi != null) {
-            para.add("activity = \'" + trackActi + "\'");
-        }
-        if (from != null) {
-            fromStr = df.format(from);
-            para.add("time >= \'" + fromStr + "\'");
-        }
-        if (to != null) {
-            toStr = df.format(to);
-            para.add("time <= \'" + toStr + "\'");
-        }
-
-        activityLog = activityDB.retrieveActivityLog(para);
+        // Director is only allowed to see the activities from the users
+        // coming from his/her institution.
+        String instID = UserAccountDB.isDirector(userName) ? 
+                        UserAccountDB.getUnitID(userName) : null;
+        
+        activityLog = new ActivityLogDataModel(new ActivityLogFilter(
+                emptyToNull(trackUser), emptyToNull(trackActi), 
+                (from == null) ? null : new Timestamp(from.getTime()), 
+                (to == null) ? null : new Timestamp(to.getTime()), instID));
     }
     
-    // Return the query that can be used to retrieve the list of users that 
-    // belong to this institution.
-    private String getInstUserIDQuery(String instID) {
-//        String query 
-//            = "SELECT user_id FROM user_account WHERE unit_id IN ("
-//            + "(SELECT inst_id AS unit_id FROM inst_dept_grp WHERE inst_id = \'" + instID + "\') UNION "
-//            + "(SELECT dept_id AS unit_id FROM inst_dept_grp WHERE inst_id = \'" + instID + "\') UNION "
-//            + "(SELECT grp_id AS unit_id FROM inst_dept_grp WHERE inst_id = \'" + instID + "\'))";
-        StringBuilder query = new 
-            StringBuilder("SELECT user_id FROM user_account WHERE unit_id IN (").
-                append("(SELECT inst_id AS unit_id FROM inst_dept_grp WHERE inst_id = \'").
-                append(instID).append("\') UNION ").
-                append("(SELECT dept_id AS unit_id FROM inst_dept_grp WHERE inst_id = \'").
-                append(instID).append("\') UNION ").
-                append("(SELECT grp_id AS unit_id FROM inst_dept_grp WHERE inst_id = \'").
-                append(instID).append("\'))");
-        
-        return query.toString();
+    // The "All" selection is submitted as empty string.
+    private String emptyToNull(String value) {
+        return (value == null || value.isEmpty()) ? null : value;
     }
     
     // Return the list of activity currently available in the database.
@@ -152,7 +115,7 @@ public class ActivityTrackingBean implements Serializable {
     public void setTrackActi(String trackActi) {
         this.trackActi = trackActi;
     }
-    public List<ActivityLog> getActivityLog() {
+    public ActivityLogDataModel getActivityLog() {
         return activityLog;
     }
     public Date getFrom() {
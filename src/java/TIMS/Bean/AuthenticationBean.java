@@ -34,6 +34,8 @@ import TIMS.Database.UserAccount;
 import TIMS.Database.UserAccountDB;
 import TIMS.Database.UserRoleDB;
 import TIMS.General.Constants;
+import TIMS.General.JobScheduler;
+import TIMS.General.MailDispatcher;
 // Libraries for Java
 import java.io.File;
 import java.io.Serializable;
@@ -117,6 +119,10 @@ public class AuthenticationBean implements Serializable {
         SystemParametersDB.loadSystemParameters();
         // Retrieve the job status definition from database.
         JobStatusDB.buildJobStatusDef();
+        // Start the job scheduler; pick up the jobs left in the job queue.
+        JobScheduler.start();
+        // Start the mail dispatcher; send the emails left in the outbox.
+        MailDispatcher.start();
         // Build the role list.
         UserRoleDB.getRoleNameHash();
         // Build the ICD10 Code HashMap.
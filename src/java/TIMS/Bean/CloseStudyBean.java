@@ -28,16 +28,15 @@ import TIMS.Database.Study;
 import TIMS.Database.StudyDB;
 import TIMS.Database.VaultKeeper;
 import TIMS.General.Constants;
+import TIMS.General.TaskExecutor;
 // Libraries for Java
 import java.io.Serializable;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 // Libraries for Java Extension
 import javax.annotation.PostConstruct;
 import javax.faces.context.FacesContext;
 import javax.inject.Named;
-import javax.naming.NamingException;
 // Libraries for Log4j
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -74,18 +73,14 @@ public class CloseStudyBean implements Serializable {
         ActivityLogDB.recordUserActivity(userName, Constants.EXE_CLSTUDY, 
                                          study_id);
         
-        try {
-            VaultKeeper clStudyThread = new VaultKeeper(userName, study_id);
-            logger.debug(userName + " begin the closure process for " + study_id);
-            // Update study status to closed.
-            StudyDB.updateStudyClosedStatus(study_id, true);
-            // Start the closure of the study.
-            clStudyThread.start();
-        }
-        catch (SQLException|NamingException e) {
-            logger.error("FAIL to close study " + study_id);
-            logger.error(e.getMessage());
-        }
+        VaultKeeper clStudyTask = new VaultKeeper(userName, study_id);
+        logger.debug(userName + " begin the closure process for " + study_id);
+        // Update study status to closed.
+        StudyDB.updateStudyClosedStatus(study_id, true);
+        // Queue the closure of the study.
+        TaskExecutor.submit(TaskExecutor.Queue.FINALIZATION, 
+                "Close " + study_id, userName, TaskExecutor.PRIORITY_NORMAL, 
+                clStudyTask.getTaskKey(), clStudyTask);
 
         return Constants.MAIN_PAGE;
     }
@@ -26,18 +26,17 @@ package TIMS.Bean;
 import TIMS.Database.ActivityLogDB;
 import TIMS.Database.InputData;
 import TIMS.Database.InputDataDB;
-import TIMS.Database.Pipeline;
 import TIMS.Database.PipelineDB;
+import TIMS.Database.QueuedJob;
 import TIMS.Database.StudyDB;
 import TIMS.Database.SubmittedJob;
 import TIMS.Database.SubmittedJobDB;
 import TIMS.Database.UserAccountDB;
 import TIMS.Database.UserRoleDB;
 import TIMS.General.Constants;
-import TIMS.General.ExitListener;
 import TIMS.General.FileHelper;
+import TIMS.General.JobScheduler;
 import TIMS.General.Postman;
-import TIMS.General.ProcessExitDetector;
 import TIMS.General.ResourceRetriever;
 // Libraries for Java
 import java.io.BufferedReader;
@@ -232,7 +231,7 @@ public abstract class ConfigBean implements Serializable {
     // called. A series of operations will then occur:
     // 1. Insert the new job request into the database
     // 2. Create the Config file
-    // 3. Start the pipeline execution
+    // 3. Queue the job for pipeline execution
     public String submitJob() {
         logger.info(userName + ": started " + pipelineName);
 
@@ -258,24 +257,15 @@ public abstract class ConfigBean implements Serializable {
         // Step to follow for pipeline execution:
         // 1. Create Config file
         // 2. Insert new job request into database
-        // 3. Update job status to in-progress, save sample file detail and 
-        // rename sample annotation file.
-        // 4. Execute the pipeline
-        //      4.1 Create the process to run the pipeline using the 
-        //      ProcessBuilder.
-        //      4.2 Start the process, and spawn a thread to detect the
-        //      completion of execution at the background.
-        //      4.3 Once execution is completed, listener thread will update
-        //      the job status of the job according to the return status from
-        //      the process.
+        // 3. Save sample file detail and rename sample annotation file.
+        // 4. Queue the job; the job scheduler will start the pipeline once
+        // there is enough resources on the server, and a listener will 
+        // update the job status according to the return status from the 
+        // process.
         
         // 1. Create the config file; to be use by the pipeline during execution.
         // 2. Insert this new job request into the submitted_job table
         if (createConfigFile() && insertJob()) {
-            // 3. Update job status to in-progress
-            SubmittedJobDB.updateJobStatusToInprogress(job_id);
-            logger.debug("Pipeline run and job status updated to in-progress. ID: " 
-                        + job_id);
             if (haveNewData) {
                 // Save the Sample File detail into database
                 saveSampleFileDetail();
@@ -288,8 +278,8 @@ public abstract class ConfigBean implements Serializable {
                 ActivityLogDB.recordUserActivity(userName, Constants.UPL_RD, 
                                                  studyID + " - " + pipelineName + " - " + input_sn);
             }
-            // 4. Pipeline is ready to be run now
-            result = executePipeline(logFilePath);
+            // 4. Pipeline is ready to be queued now
+            result = queuePipeline(logFilePath);
             // Create dummy pipeline files for user to download.
 //            createDummyFile(pipelineOutput);
 //            createDummyFile(detailOutput);
@@ -330,68 +320,26 @@ public abstract class ConfigBean implements Serializable {
         submitTimeInDB = new Timestamp(now.getTime());
     }
     
-    // Execute the pipeline together with the config file, the log generated 
+    // Queue the pipeline job together with the config file, the log generated 
     // by the pipeline will be directed to the pipelineLog file.
-    private String executePipeline(String pipelineLog) {
-        String result = Constants.MAIN_PAGE;
-        // Build the pipeline command
-        List<String> command = new ArrayList<>();
-        PipelineDB plDB = new PipelineDB(pipelineName);
-        Pipeline cmd;
+    private String queuePipeline(String pipelineLog) {
+        int priority;
         
         try {
-            // Retrieve the pipeline command and it's parameter from database.
-            cmd = plDB.getPipeline();
+            // Retrieve the priority of this pipeline from database.
+            priority = new PipelineDB(pipelineName).getPipeline().getPriority();
         }
         catch (SQLException|NamingException e) {
-            logger.error("FAIL to retrieve pipeline command " +
-                    pipelineName);
+            logger.error("FAIL to retrieve pipeline " + pipelineName);
             logger.error(e.getMessage());
             // Something is wrong, shouldn't let the user continue.
             return Constants.ERROR;
         }
         
-        command.add(cmd.getCommand());
-        command.add(cmd.getParameter());
-        command.add(pipelineConfig);
-        logger.info("Full pipeline command: " + command.toString());
-        
-        ProcessBuilder pb = new ProcessBuilder(command);
-        // The execution log from the pipeline will be written to the 
-        // pipelineLog file.
-        File output = new File(pipelineLog);
-        // Merge the standard error and output stream, and always sent to
-        // the same destination
-        pb.redirectErrorStream(true);
-        pb.redirectOutput(ProcessBuilder.Redirect.to(output));
-        Process process = null;
+        QueuedJob job = new QueuedJob(job_id, studyID, userName, pipelineName,
+                                      priority, pipelineConfig, pipelineLog);
         
-        try {
-            // Start the pipeline
-            process = pb.start();
-        } 
-        catch (IOException ioe) {
-            logger.error("FAIL to start pipeline process!");
-            logger.error(ioe.getMessage());
-            result = Constants.ERROR;
-        }
-
-        if (process != null) {
-            // Start a listener thread to detect the complete status of 
-            // the process
-            try {
-                ProcessExitDetector exitDetector = new ProcessExitDetector(
-                                    job_id, studyID, process, new ExitListener());
-                // If the pipeline has completed, an IllegalArgumentException
-                // will be thrown and the exit detector will not get to run.
-                exitDetector.start();
-            }
-            catch (IllegalArgumentException e) {
-                logger.error("Pipeline completed before detector is create!");
-            }
-        }
-        
-        return result;
+        return JobScheduler.submit(job) ? Constants.MAIN_PAGE : Constants.ERROR;
     }
 
     // Create the config file that will be used during pipeline execution.
@@ -27,14 +27,14 @@ import TIMS.Database.ActivityLogDB;
 import TIMS.Database.DataDepositor;
 import TIMS.Database.FinalizingJobEntry;
 import TIMS.Database.PipelineDB;
+import TIMS.Database.PipelineOutputReader;
 import TIMS.Database.StudyDB;
-import TIMS.Database.SubjectRecordDB;
+import TIMS.Database.SubjectRegistry;
 import TIMS.Database.SubmittedJobDB;
 import TIMS.General.Constants;
 import TIMS.General.ResourceRetriever;
+import TIMS.General.TaskExecutor;
 // Libraries for Java
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Serializable;
 import java.sql.SQLException;
@@ -42,7 +42,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 // Libraries for Java Extension
 import javax.annotation.PostConstruct;
 import javax.faces.context.FacesContext;
@@ -120,9 +122,9 @@ public class FinalizeStudyBean implements Serializable {
         }
         else {
             // At least one job has been selected, continue.
-            // String to store the subject ID that have and doesn't have meta data.
-            StringBuilder subMetaDataNotFound = new StringBuilder();
-            StringBuilder subMetaDataFound = new StringBuilder();
+            // Store the unique subject ID that have and doesn't have meta data.
+            Set<String> subMetaDataNotFound = new LinkedHashSet<>();
+            Set<String> subMetaDataFound = new LinkedHashSet<>();
             selectedJobs.add(0, selectedJob0);
             selectedJobs.add(1, selectedJob1);
             selectedJobs.add(2, selectedJob2);
@@ -149,7 +151,7 @@ public class FinalizeStudyBean implements Serializable {
 
             // Need to handle the case whereby none of the subject meta data is
             // available.
-            if (subMetaDataFound.toString().isEmpty()) {
+            if (subMetaDataFound.isEmpty()) {
                 // None of the subject meta data is available, display error 
                 // message and return to the same page.
                 allowToProceed = false;
@@ -159,7 +161,7 @@ public class FinalizeStudyBean implements Serializable {
                 logger.debug("None of the subject meta data is found in this study.");
             }
             else {
-                if (subMetaDataNotFound.toString().isEmpty()) {
+                if (subMetaDataNotFound.isEmpty()) {
                     subMDAvailableStatus = 
                         "All the subject's meta data are found in this study.\n" +
                         "\nPlease proceed with the finalization of this Study.\n";
@@ -168,7 +170,7 @@ public class FinalizeStudyBean implements Serializable {
                 else {
                     subMDAvailableStatus = 
                         "The following subject's meta data are not found in this study: " +
-                        subMetaDataNotFound +
+                        String.join(" ", subMetaDataNotFound) +
                         "\n\nPlease upload the subject's meta data to this study" + 
                         "\nbefore proceeding with the finalization of this Study.\n";
                     logger.debug("Subject meta data not found: " + subMetaDataNotFound);
@@ -189,65 +191,47 @@ public class FinalizeStudyBean implements Serializable {
         // Record this finalization of study into database.
         ActivityLogDB.recordUserActivity(userName, Constants.EXE_FIN, study_id);
         
-        try {
-            // Start a new thread to insert the finalized pipeline output into 
-            // database.
-            DataDepositor depositThread = new DataDepositor
-                (userName, study_id, selectedJobs);
-            // Update job status to finalizing
-            for (FinalizingJobEntry job : selectedJobs) {
-                SubmittedJobDB.updateJobStatusToFinalizing(job.getJob_id());
-            }
-            // Setup the filepath of the Astar and Bii logo.
-            DataDepositor.setupLogo(
-                    getServletContext().getRealPath("/resources/images/Astar.jpg"), 
-                    getServletContext().getRealPath("/resources/images/BII.jpg"));
-            // Start the finalization thread.
-            depositThread.start();
-            // Update study to finalized.
-            StudyDB.updateStudyFinalizedStatus(study_id, true);
-        }
-        catch (SQLException|NamingException e) {
-            nextpage = Constants.ERROR;
-            logger.error("FAIL to process with the finalization process!");
-            logger.error(e.getMessage());
+        // Create the task to insert the finalized pipeline output into 
+        // database.
+        DataDepositor depositTask = new DataDepositor
+            (userName, study_id, selectedJobs);
+        // Update job status to finalizing
+        for (FinalizingJobEntry job : selectedJobs) {
+            SubmittedJobDB.updateJobStatusToFinalizing(job.getJob_id());
         }
+        // Setup the filepath of the Astar and Bii logo.
+        DataDepositor.setupLogo(
+                getServletContext().getRealPath("/resources/images/Astar.jpg"), 
+                getServletContext().getRealPath("/resources/images/BII.jpg"));
+        // Queue the finalization task; studies using the same annotation 
+        // version will be finalized one at a time.
+        TaskExecutor.submit(TaskExecutor.Queue.FINALIZATION, 
+                "Finalize " + study_id, userName, TaskExecutor.PRIORITY_NORMAL, 
+                depositTask.getTaskKey(), depositTask);
+        // Update study to finalized.
+        StudyDB.updateStudyFinalizedStatus(study_id, true);
         
         return nextpage;
     }
     
-    // Check the database for subject meta data. Construct a string with all
-    // those subject ID having no meta data in the database.
+    // Check the subject registry of the study for subject meta data. Sort 
+    // the subject IDs into those having and not having meta data in the 
+    // database.
     private void checkSubMDAvailability(int jobID, 
-            StringBuilder metaDataNotFound, StringBuilder metaDataFound) 
+            Set<String> metaDataNotFound, Set<String> metaDataFound) 
             throws SQLException, IOException, NamingException {
-        BufferedReader br = new BufferedReader(new FileReader
-                            (SubmittedJobDB.unzipOutputFile(jobID)));
-        String subjectLine = br.readLine();
-        
-        // To handle the case whereby the output file is empty. Throw an
-        // IOException if the input file is empty.
-        if (subjectLine != null) {
-            String[] subjectID = subjectLine.split("\t");
-            // Ignore the first 2 strings (i.e. geneID and EntrezID); start at ndex 2.
-            for (int i = 2; i < subjectID.length; i++) {
-                // Check is subject record found in the database.
-                if (!SubjectRecordDB.isSRExist(subjectID[i], study_id)) {
-                    // Only want to store the unqiue subject ID that doesn't
-                    // have meta data in the database.
-                    if (!metaDataNotFound.toString().contains(subjectID[i])) {
-                        metaDataNotFound.append(subjectID[i]).append(" ");                        
-                    }
-                }
-                else {
-                    if (!metaDataFound.toString().contains(subjectID[i])) {
-                        metaDataFound.append(subjectID[i]).append(" ");                        
-                    }                    
-                }
+        // The subject IDs with meta data are retrieved in one query, and 
+        // shared with the finalization that follow.
+        Set<String> registry = SubjectRegistry.getSubjects(study_id);
+        // The subject IDs are read from the header of the output (without
+        // unzipping it); an IOException will be thrown if the output is empty.
+        for (String subjectID : PipelineOutputReader.getSubjectList(jobID)) {
+            if (registry.contains(subjectID)) {
+                metaDataFound.add(subjectID);
+            }
+            else {
+                metaDataNotFound.add(subjectID);
             }
-        }
-        else {
-            throw new IOException("The output file is empty!");
         }
     }
 
@@ -33,6 +33,7 @@ import TIMS.Database.VisualProfileDB;
 import TIMS.General.Constants;
 import TIMS.General.QueryStringGenerator;
 import TIMS.General.ResourceRetriever;
+import TIMS.General.TaskExecutor;
 import TIMS.Visualizers.cBioVisualizer;
 // Libraries for Java
 import java.io.Serializable;
@@ -147,8 +148,10 @@ public class JobSelection4vBean implements Serializable {
         ActivityLogDB.recordUserActivity(userName, Constants.EXP_DAT, study_id);
         // Reset the cBioPortal URL to null in the database.
         StudyDB.resetStudyCbioUrl(study_id);
-        // Start the exporting of pipeline data to cBioPortal.
-        cbio.start();
+        // Queue the exporting of pipeline data to cBioPortal.
+        TaskExecutor.submit(TaskExecutor.Queue.EXPORT, 
+                "Export " + study_id + " to cBioPortal", userName, 
+                TaskExecutor.PRIORITY_NORMAL, cbio.getTaskKey(), cbio);
         
         return nextpage;
     }
@@ -23,11 +23,10 @@
 //
 package TIMS.Bean;
 
-import TIMS.Database.ActivityLogDB;
+import TIMS.Database.JobProcess;
 import TIMS.Database.SubmittedJob;
 import TIMS.Database.SubmittedJobDB;
-import TIMS.General.Constants;
-import TIMS.General.FileHelper;
+import TIMS.General.ProcessSupervisor;
 // Libraries for Java
 import java.io.Serializable;
 import java.util.List;
@@ -49,6 +48,8 @@ public class JobStatusBean implements Serializable {
             getLogger(JobStatusBean.class.getName());
     private List<SubmittedJob> jobSubmission;
     private SubmittedJob selectedJob;
+    // The process detail and resource usage of the selected job.
+    private JobProcess selectedProcess;
     // Store the user ID of the current user.
     private final String userName;
     // Indicator for retrieving and displaying the list of jobs for single 
@@ -76,27 +77,6 @@ public class JobStatusBean implements Serializable {
         }
     }
     
-    // Download the pipeline output for user.
-    public void downloadOutput(SubmittedJob job) {
-        String detail = "Output " + job.getOutput_file();
-        ActivityLogDB.recordUserActivity(userName, Constants.DWL_FIL, detail);
-        FileHelper.download(job.getOutput_file());
-    }
-    
-    // Download the pipeline detail output for user.
-    public void downloadDetailOutput(SubmittedJob job) {
-        String detail = "Detail Output " + job.getOutput_file();
-        ActivityLogDB.recordUserActivity(userName, Constants.DWL_FIL, detail);
-        FileHelper.download(job.getDetail_output());
-    }
-    
-    // Download the pipeline report for user.
-    public void downloadReport(SubmittedJob job) {
-        String detail = "Report " + job.getReport();
-        ActivityLogDB.recordUserActivity(userName, Constants.DWL_FIL, detail);
-        FileHelper.download(job.getReport());
-    }
-    
     // Return the list of SubmittedJob objects that belong to the current user.
     // NOTE: This function will get called multiple times, hence should'nt
     // include any business logic into it (i.e. performance issue). The 
@@ -112,6 +92,11 @@ public class JobStatusBean implements Serializable {
     }
     public void setSelectedJob(SubmittedJob selectedJob) {
         this.selectedJob = selectedJob;
+        selectedProcess = (selectedJob == null) ? null : 
+                ProcessSupervisor.getUsage(selectedJob.getJob_id());
+    }
+    public JobProcess getSelectedProcess() {
+        return selectedProcess;
     }
     public boolean isSingleUser() {
         return singleUser;
@@ -32,6 +32,7 @@ import TIMS.Database.StudySpecificFieldDB;
 import TIMS.Database.SubjectRecordDB;
 import TIMS.Database.SubjectDB;
 import TIMS.Database.SubjectDetail;
+import TIMS.Database.SystemParametersDB;
 import TIMS.General.Constants;
 import TIMS.General.ExcelHelper;
 import TIMS.General.FileHelper;
@@ -42,9 +43,8 @@ import static TIMS.General.MetaRecordStatusTracker.RecordStatusEnum.MISSING_DATA
 import static TIMS.General.MetaRecordStatusTracker.RecordStatusEnum.MISSING_VISIT;
 import TIMS.General.MetaRecordTester;
 import TIMS.General.MetaRecordTesterThread;
+import TIMS.General.TaskExecutor;
 // Libraries for Java
-import java.io.File;
-import java.io.IOException;
 import java.io.Serializable;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -55,6 +55,8 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.Map;
 import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 // Libraries for Java Extension
 import javax.annotation.PostConstruct;
 import javax.faces.application.FacesMessage;
@@ -67,12 +69,6 @@ import org.apache.logging.log4j.LogManager;
 import org.primefaces.event.FileUploadEvent;
 import org.primefaces.model.UploadedFile;
 import org.primefaces.context.RequestContext;
-// Libraries for Apache POI
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-// Library for stream reader
-import com.monitorjbl.xlsx.StreamingReader;
 // Library for omniface
 import org.omnifaces.cdi.ViewScoped;
 // Library for Trove
@@ -94,7 +90,6 @@ public class MetaDataManagementBean implements Serializable {
     // Tracker for data quality status during data upload.
     private MetaRecordStatusTracker statsTracker;
     private String missingVisits;
-    private ExcelHelper exHelper;
     // Booleans used during records uploading through excel sheet.
     private boolean FIRST_UPLOAD, SKIP_CONSISTENCY_CHECK, quality_report;
     // The set of records that user are uploading through excel sheet.
@@ -163,78 +158,77 @@ public class MetaDataManagementBean implements Serializable {
         subtDetailList = subjects.getSubtDetailList();
     }
 
-    // Create the hashmap of meta data records using the values found in the
-    // uploaded excel sheet.
-    private void createMetaRecordsFromExcel(String xlsxFile) {
+    // Create the meta records using the rows found in the uploaded excel 
+    // sheet. The rows are read in a single pass, and each chunk of rows is 
+    // converted and validated in parallel; only one chunk of rows is held in
+    // memory at any time.
+    private void createMetaRecordsFromExcel(ExcelHelper exHelper) {
         // Load all the patient records into a LinkedHashSet.
         recordsLHS = new TLinkedHashSet<>();
-        // Store the record's value into a TreeMap to get it sorted.
-        TreeMap<String, String> recordTM = new TreeMap<>();
-
-        try (Workbook wb = StreamingReader.builder()
-                .rowCacheSize(100)
-                .bufferSize(4096)
-                .open(new File(xlsxFile))) 
-        {
-            Sheet dataSheet = wb.getSheet("Data");
-            int row = 0;
-            // Retrieve the column value from the second row of Excel sheet.
-            for (Row values : dataSheet) {
-                row++;
-                // Skip the column name row (i.e. 1st row).
-                if (row == 1)
-                    continue;
-                List<String> colDataL = ExcelHelper.convertRowToStrList(values);
-                // Join the column name and column data into a TreeMap, so
-                // that we could extract the data of interests more efficiently.
-                Iterator<String> colDataItr = colDataL.iterator();
-                for (int i = 0; i < unsortedColNameL.size(); i++) {
-                    // Because the excel sheet might have empty value for some
-                    // of the columns, hence need to handle them here.
-                    if (colDataItr.hasNext()) {
-                        String prev = (String) recordTM.put(unsortedColNameL.get(i), colDataItr.next());
-                        if (prev != null) {
-                            // Duplicated column name detected.
-                            throw new java.lang.RuntimeException
-                                ("Duplicated column name detected: " + unsortedColNameL.get(i));
-                        }
-                    }
-                    else {
-                        // This column has empty value; need to put in ""
-                        recordTM.put(unsortedColNameL.get(i), "");
-                    }
-                }
-                
-                // Construct the Meta record for this subject.
-                // For now, we will hard-code the mapping for the data of interests.
-                MetaRecord record = new MetaRecord(
-                        recordTM.get(core_data_tag.get("SubjectID")),
-                        recordTM.get(core_data_tag.get("Race")),
-                        recordTM.get(core_data_tag.get("CaseControl")),
-                        recordTM.get(core_data_tag.get("Height")),
-                        recordTM.get(core_data_tag.get("Weight")),
-                        recordTM.get(core_data_tag.get("RecordDate")),
-                        recordTM.get(core_data_tag.get("DateOfBirth")),
-                        recordTM.get(core_data_tag.get("Gender")),
-                        recordTM.get(core_data_tag.get("AgeAtBaseline")),
-                        // Set the colum data value as null first.
-                        null,
-                        row);
-                // Update the column data after removing the core data.
-                record.setDat(new ArrayList<>(removeCoreData(recordTM).values()));
-                recordsLHS.add(record);
-                // Clear the current record value before reading in the next record.
-                recordTM.clear();
+        int chunkSize = SystemParametersDB.getMetaUploadChunkSize();
+        List<List<String>> chunk = new ArrayList<>(chunkSize);
+        // Row number (in the excel sheet) of the first row in the chunk.
+        int firstRow = exHelper.getRowNumber() + 1;
+        List<String> colDataL = exHelper.readNextRow();
+        
+        while (colDataL != null) {
+            chunk.add(colDataL);
+            if (chunk.size() == chunkSize) {
+                addMetaRecords(chunk, firstRow);
+                chunk.clear();
+                firstRow = exHelper.getRowNumber() + 1;
             }
-        } catch (IOException ioe) {
-            logger.error(ioe.getMessage());
-            // Fail to process Excel file, terminate the upload and display
-            // error message.
-            throw new java.lang.RuntimeException("Fail to create meta records from Excel File!");
+            colDataL = exHelper.readNextRow();
         }
+        addMetaRecords(chunk, firstRow);
         logger.debug("Total records uploaded: " + recordsLHS.size());
     }
     
+    // Create the meta records for this chunk of rows in parallel, and add 
+    // them to the records set following the order in the excel sheet.
+    private void addMetaRecords(List<List<String>> chunk, int firstRow) {
+        List<MetaRecord> records = IntStream.range(0, chunk.size()).parallel().
+                mapToObj(i -> createMetaRecord(chunk.get(i), firstRow + i)).
+                collect(Collectors.toList());
+        
+        recordsLHS.addAll(records);
+    }
+    
+    // Create the meta record using the column data of this row.
+    private MetaRecord createMetaRecord(List<String> colDataL, int row) {
+        // Store the record's value into a TreeMap to get it sorted.
+        TreeMap<String, String> recordTM = new TreeMap<>();
+        // Join the column name and column data into a TreeMap, so that we 
+        // could extract the data of interests more efficiently.
+        Iterator<String> colDataItr = colDataL.iterator();
+        
+        for (String colName : unsortedColNameL) {
+            // Because the excel sheet might have empty value for some of the
+            // columns, hence need to handle them here.
+            recordTM.put(colName, colDataItr.hasNext() ? colDataItr.next() : "");
+        }
+        
+        // Construct the Meta record for this subject.
+        // For now, we will hard-code the mapping for the data of interests.
+        MetaRecord record = new MetaRecord(
+                recordTM.get(core_data_tag.get("SubjectID")),
+                recordTM.get(core_data_tag.get("Race")),
+                recordTM.get(core_data_tag.get("CaseControl")),
+                recordTM.get(core_data_tag.get("Height")),
+                recordTM.get(core_data_tag.get("Weight")),
+                recordTM.get(core_data_tag.get("RecordDate")),
+                recordTM.get(core_data_tag.get("DateOfBirth")),
+                recordTM.get(core_data_tag.get("Gender")),
+                recordTM.get(core_data_tag.get("AgeAtBaseline")),
+                // Set the colum data value as null first.
+                null,
+                row);
+        // Update the column data after removing the core data.
+        record.setDat(new ArrayList<>(removeCoreData(recordTM).values()));
+        
+        return record;
+    }
+    
     // Core data will be stored and display separately; remove them from the 
     // record.
     private TreeMap<String, String> removeCoreData(TreeMap<String, String> rec) {
@@ -281,15 +275,16 @@ public class MetaDataManagementBean implements Serializable {
                 throw new java.lang.RuntimeException("Fail to copy Excel File!");
             }
             
-            exHelper = new ExcelHelper(localDir.toString(), "Data");
-            // Read in the first row of field data [CATEGORY|FIELD]
-            List<String> field = exHelper.readNextRow();
-            while (field != null) {
-                if (field.size() >= 2) {
-                    // Store the core data and it's column ID tag.
-                    core_data_tag.put(field.get(0), field.get(1));
+            try (ExcelHelper exHelper = new ExcelHelper(localDir.toString(), "Data")) {
+                // Read in the first row of field data [CATEGORY|FIELD]
+                List<String> field = exHelper.readNextRow();
+                while (field != null) {
+                    if (field.size() >= 2) {
+                        // Store the core data and it's column ID tag.
+                        core_data_tag.put(field.get(0), field.get(1));
+                    }
+                    field = exHelper.readNextRow();
                 }
-                field = exHelper.readNextRow();
             }
             
             for (Map.Entry data : core_data_tag.entrySet()) {
@@ -332,30 +327,32 @@ public class MetaDataManagementBean implements Serializable {
                 throw new java.lang.RuntimeException("Fail to copy Excel File!");
             }
             
-            exHelper = new ExcelHelper(localDir.toString(), "Data");
-            // Read in the first row of field data [CATEGORY|FIELD]
-            List<String> field = exHelper.readNextRow();
-            while (field != null) {
-                if (field.size() >= 2) {
-                    // Group the fields under each category.
-                    if (ssFields_hashmap.get(field.get(0)) == null) {
-                        // New category.
-                        List<String> tmp = new ArrayList<>();
-                        tmp.add(field.get(1));
-                        ssFields_hashmap.put(field.get(0), tmp);
-                    }
-                    else {
-                    // Existing category, add the field to the existing list of 
-                    // string.
-                    ssFields_hashmap.get(field.get(0)).add(field.get(1));
+            try (ExcelHelper exHelper = new ExcelHelper(localDir.toString(), "Data")) {
+                // Read in the first row of field data [CATEGORY|FIELD]
+                List<String> field = exHelper.readNextRow();
+                while (field != null) {
+                    if (field.size() >= 2) {
+                        // Group the fields under each category.
+                        if (ssFields_hashmap.get(field.get(0)) == null) {
+                            // New category.
+                            List<String> tmp = new ArrayList<>();
+                            tmp.add(field.get(1));
+                            ssFields_hashmap.put(field.get(0), tmp);
+                        }
+                        else {
+                        // Existing category, add the field to the existing list 
+                        // of string.
+                        ssFields_hashmap.get(field.get(0)).add(field.get(1));
+                        }
                     }
+                    field = exHelper.readNextRow();
                 }
-                field = exHelper.readNextRow();
             }
             
-            for (Map.Entry data : ssFields_hashmap.entrySet()) {
-                ss_fields.updateSSField((String) data.getKey(), 
-                        FileHelper.convertObjectToByteArray(data.getValue()));
+            for (Map.Entry<String, List<String>> data : 
+                    ssFields_hashmap.entrySet()) {
+                ss_fields.updateSSField(data.getKey(), 
+                        FileHelper.convertListToByteArray(data.getValue()));
             }
             // Delete the temporary Excel file after use.
             FileHelper.delete(localDir.toString());
@@ -394,22 +391,32 @@ public class MetaDataManagementBean implements Serializable {
                 throw new java.lang.RuntimeException("Fail to copy Excel File!");
             }
             
-            exHelper = new ExcelHelper(localDir.toString(), "Data");
-            // 2. Get the column name from the first row of Excel sheet. The 
-            // column will be used in the drop-down list for user to map the 
-            // data of interests.
-            unsortedColNameL = exHelper.readNextRow();
-            // Check to make sure that there is no empty column.
-            if (unsortedColNameL.contains("")) {
-                throw new java.lang.RuntimeException("Corrupted data file; Empty column detected!");
-            }
-            // Check to make sure all the core data columns are available.
-            if (!unsortedColNameL.containsAll(core_data_tag.values())) {
-                throw new java.lang.RuntimeException("Missing core data columns!");
+            // The Excel sheet is read in a single pass for step 2 and 3.
+            try (ExcelHelper exHelper = new ExcelHelper(localDir.toString(), "Data")) {
+                // 2. Get the column name from the first row of Excel sheet. 
+                // The column will be used in the drop-down list for user to 
+                // map the data of interests.
+                unsortedColNameL = exHelper.readNextRow();
+                // Check to make sure that there is no empty column.
+                if (unsortedColNameL.contains("")) {
+                    throw new java.lang.RuntimeException("Corrupted data file; Empty column detected!");
+                }
+                // Check to make sure that there is no duplicated column name.
+                THashSet<String> colNameHS = new THashSet<>(unsortedColNameL.size());
+                for (String colName : unsortedColNameL) {
+                    if (!colNameHS.add(colName)) {
+                        throw new java.lang.RuntimeException
+                            ("Duplicated column name detected: " + colName);
+                    }
+                }
+                // Check to make sure all the core data columns are available.
+                if (!unsortedColNameL.containsAll(core_data_tag.values())) {
+                    throw new java.lang.RuntimeException("Missing core data columns!");
+                }
+
+                // 3. Create the Meta Records using data from the Excel sheet.
+                createMetaRecordsFromExcel(exHelper);
             }
-            
-            // 3. Create the Meta Records using data from the Excel sheet.
-            createMetaRecordsFromExcel(localDir.toString());
             // Remove core data column ID from the list.
             cleanupColNameL();
             // AFTER HERE, UNSORTEDCOLNAMEL IS NO LONGER IN USE!
@@ -538,11 +545,12 @@ public class MetaDataManagementBean implements Serializable {
             Collections.sort(sortedColNameL);
         }
         
-        MetaRecordTesterThread testerThread = new MetaRecordTesterThread
+        MetaRecordTesterThread testerTask = new MetaRecordTesterThread
             (study_id, userName, missingVisits, sortedColNameL, recordsLHS, SKIP_CONSISTENCY_CHECK);
         
-        // Begin to check for data consistency for the existing and valid records.
-        testerThread.start();
+        // Queue the check for data consistency for the existing and valid records.
+        TaskExecutor.submit(TaskExecutor.Queue.METADATA, 
+                "Update meta data of " + study_id, userName, testerTask);
         // Record user activity.
         String detail = SKIP_CONSISTENCY_CHECK?
                 "Skip Consistency Check":"Proceed with Consistency Check";
@@ -612,13 +620,6 @@ public class MetaDataManagementBean implements Serializable {
         }
     }
     
-    // Allow user to download the data quality report for the last upload.
-    public void downloadDataQualityReport() {
-        ActivityLogDB.recordUserActivity(userName, Constants.DWL_FIL, 
-                                    "Data Quality Report of " + study_id);
-        FileHelper.download(StudyDB.getMetaQualityReportPath(study_id));
-    }
-    
     // Used by admin to delete all the subjects and subject records belonging
     // to the study, and to update the column data name to null.
     public void deleteAllSubjectMetaData() {
@@ -753,4 +754,7 @@ public class MetaDataManagementBean implements Serializable {
     public boolean isQuality_report() {
         return quality_report;
     }
+    public String getStudy_id() {
+        return study_id;
+    }
 }
@@ -23,13 +23,10 @@
 //
 package TIMS.Bean;
 
-import TIMS.Database.ActivityLogDB;
 import TIMS.Database.Study;
 import TIMS.Database.StudyDB;
 import TIMS.Database.UserAccount;
 import TIMS.Database.UserAccountDB;
-import TIMS.General.Constants;
-import TIMS.General.FileHelper;
 import TIMS.General.QueryStringGenerator;
 // Libraries for Java
 import java.io.Serializable;
@@ -88,25 +85,6 @@ public class StudiesReviewBean implements Serializable {
         }
     }
     
-    // Download the consolidated output for this study.
-    public void downloadFinalizedOP(Study study) {
-        String detail = "Finalized output " + study.getFinalized_output();
-        ActivityLogDB.recordUserActivity(userName, Constants.DWL_FIL, detail);
-        FileHelper.download(study.getFinalized_output());
-    }
-    // Download the detail output for this study.
-    public void downloadDetailOutput(Study study) {
-        String detail = "Detail output " + study.getDetail_files();
-        ActivityLogDB.recordUserActivity(userName, Constants.DWL_FIL, detail);
-        FileHelper.download(study.getDetail_files());
-    }
-    // Download the finalized summary report for this study.
-    public void downloadSummary(Study study) {
-        String detail = "Summary report " + study.getSummary();
-        ActivityLogDB.recordUserActivity(userName, Constants.DWL_FIL, detail);
-        FileHelper.download(study.getSummary());
-    }
-    
     // Machine generated getters.
     public List<Study> getFinalizedStudies() {
         return finalizedStudies;
@@ -0,0 +1,159 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Bean;
+
+import TIMS.Database.ActivityLogStatus;
+import TIMS.Database.ActivityLogWriter;
+import TIMS.Database.ArrayIndexDB;
+import TIMS.Database.CompactionReport;
+import TIMS.Database.ConnectionPoolStatus;
+import TIMS.Database.DBHelper;
+import TIMS.Database.DataCompactor;
+import TIMS.Database.LegacyDatMigrator;
+import TIMS.Database.QueuedJob;
+import TIMS.Database.SlotUsage;
+import TIMS.Database.UserIdentityCache;
+import TIMS.Database.UserIdentityCacheStatus;
+import TIMS.General.CompressionStats;
+import TIMS.General.JobScheduler;
+import TIMS.General.ParallelZipper;
+import TIMS.General.TaskExecutor;
+import TIMS.General.TaskInfo;
+import TIMS.General.TaskQueueStatus;
+// Libraries for Java
+import java.io.Serializable;
+import java.util.List;
+// Libraries for Java Extension
+import javax.annotation.PostConstruct;
+import javax.faces.context.FacesContext;
+import javax.inject.Named;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+// Library for omnifaces
+import org.omnifaces.cdi.ViewScoped;
+
+@Named("sysMonBean")
+@ViewScoped
+public class SystemMonitorBean implements Serializable {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(SystemMonitorBean.class.getName());
+    private List<TaskQueueStatus> queueStatus;
+    private List<TaskInfo> taskList;
+    private List<QueuedJob> runningJobs;
+    private List<QueuedJob> waitingJobs;
+    private ConnectionPoolStatus poolStatus;
+    private UserIdentityCacheStatus identityStatus;
+    private ActivityLogStatus activityStatus;
+    private List<CompressionStats> compressionList;
+    private List<SlotUsage> slotUsageList;
+    private List<CompactionReport> compactionList;
+    // Store the user ID of the current user.
+    private final String userName;
+    
+    public SystemMonitorBean() {
+        userName = (String) FacesContext.getCurrentInstance().
+                getExternalContext().getSessionMap().get("User");
+        logger.info(userName + ": access System Monitor page.");
+    }
+    
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+    
+    // Retrieve the latest status of the task queues, tasks, pipeline jobs, 
+    // database connection pool, user identity cache, activity log writer, 
+    // job output compression and data depository slot usage.
+    public void refresh() {
+        queueStatus = TaskExecutor.getQueueStatus();
+        taskList = TaskExecutor.getTaskList();
+        runningJobs = JobScheduler.getRunningJobs();
+        waitingJobs = JobScheduler.getWaitingJobs();
+        poolStatus = DBHelper.getPoolStatus();
+        identityStatus = UserIdentityCache.getStatus();
+        activityStatus = ActivityLogWriter.getStatus();
+        compressionList = ParallelZipper.getHistory();
+        slotUsageList = ArrayIndexDB.getFinalizedSlotUsage();
+        compactionList = DataCompactor.getHistory();
+    }
+    
+    // Start the background migration of the list blobs that are still 
+    // stored using Java serialization into the compact format.
+    public void migrateLegacyBlobs() {
+        // Only one migration will be run at any time.
+        TaskExecutor.submit(TaskExecutor.Queue.METADATA, 
+                "Migrate legacy list blobs", userName, 
+                TaskExecutor.PRIORITY_LOW, "migrate|legacy", 
+                new LegacyDatMigrator(userName));
+        logger.info(userName + ": submitted migration of legacy list blobs.");
+        refresh();
+    }
+    
+    // Queue the compaction of the data arrays of this annotation version; it
+    // will wait for any finalization or unfinalization of the same 
+    // annotation version to complete.
+    public void compactDataDepository(String annot_ver) {
+        DataCompactor task = new DataCompactor(userName, annot_ver);
+        
+        TaskExecutor.submit(TaskExecutor.Queue.FINALIZATION, 
+                "Compact data depository " + annot_ver, userName, 
+                TaskExecutor.PRIORITY_LOW, task.getTaskKey(), task);
+        logger.info(userName + ": submitted compaction of " + annot_ver);
+        refresh();
+    }
+    
+    // Machine generated getters
+    public List<TaskQueueStatus> getQueueStatus() {
+        return queueStatus;
+    }
+    public List<TaskInfo> getTaskList() {
+        return taskList;
+    }
+    public List<QueuedJob> getRunningJobs() {
+        return runningJobs;
+    }
+    public List<QueuedJob> getWaitingJobs() {
+        return waitingJobs;
+    }
+    public ConnectionPoolStatus getPoolStatus() {
+        return poolStatus;
+    }
+    public UserIdentityCacheStatus getIdentityStatus() {
+        return identityStatus;
+    }
+    public ActivityLogStatus getActivityStatus() {
+        return activityStatus;
+    }
+    public List<CompressionStats> getCompressionList() {
+        return compressionList;
+    }
+    public List<SlotUsage> getSlotUsageList() {
+        return slotUsageList;
+    }
+    public List<CompactionReport> getCompactionList() {
+        return compactionList;
+    }
+}
@@ -30,16 +30,15 @@ import TIMS.Database.StudyDB;
 import TIMS.Database.SubmittedJobDB;
 import TIMS.Database.UserAccountDB;
 import TIMS.General.Constants;
+import TIMS.General.TaskExecutor;
 // Libraries for Java
 import java.io.Serializable;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 // Libraries for Java Extension
 import javax.annotation.PostConstruct;
 import javax.faces.context.FacesContext;
 import javax.inject.Named;
-import javax.naming.NamingException;
 // Libraries for Log4j
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -79,23 +78,22 @@ public class UnfinalizeStudyBean implements Serializable {
         ActivityLogDB.recordUserActivity(userName, Constants.EXE_UNFIN, 
                 selectedStudy.getStudy_id());
         
-        if (SubmittedJobDB.getFinalizedJobIDs(selectedStudy.getStudy_id()).size() == 0) {
+        List<Integer> jobIDs = SubmittedJobDB.getFinalizedJobIDs
+                                (selectedStudy.getStudy_id());
+        
+        if (jobIDs.isEmpty()) {
             // This is an ad-hoc study, exit without doing anything.
             logger.info(userName + " trying to unfinalize an ad-hoc study. Not allowed!");
         }
         else {
-            try {
-                DataVoid unfinThread = new DataVoid(userName, selectedStudy.getStudy_id());
-                logger.info(userName + " begin unfinalization process for " + 
-                            selectedStudy.getStudy_id());
-        
-                unfinThread.start();
-            }
-            catch (SQLException|NamingException e) {
-                logger.error("FAIL to begin unfinalization process for " + 
-                             selectedStudy.getStudy_id());
-                logger.error(e.getMessage());
-            }
+            DataVoid unfinTask = new DataVoid(userName, selectedStudy.getStudy_id());
+            logger.info(userName + " begin unfinalization process for " + 
+                        selectedStudy.getStudy_id());
+            
+            TaskExecutor.submit(TaskExecutor.Queue.FINALIZATION, 
+                    "Unfinalize " + selectedStudy.getStudy_id(), userName, 
+                    TaskExecutor.PRIORITY_NORMAL, unfinTask.getTaskKey(), 
+                    unfinTask);
         }
         
         return Constants.MAIN_PAGE;
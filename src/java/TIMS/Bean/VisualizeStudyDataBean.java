@@ -31,6 +31,7 @@ import TIMS.Database.UserAccount;
 import TIMS.Database.UserAccountDB;
 import TIMS.General.Constants;
 import TIMS.General.QueryStringGenerator;
+import TIMS.Visualizers.CbioReloadScheduler;
 // Libraries for Java
 import java.io.IOException;
 import java.io.Serializable;
@@ -80,6 +81,14 @@ public class VisualizeStudyDataBean implements Serializable {
         ec.redirect(SystemParametersDB.getcBioPortalUrl() + cbio);
     }
     
+    // Return the status of the import of this study into cBioPortal (e.g. 
+    // queue position); empty if the study is not being imported.
+    public String getImportStatus(Study study) {
+        String status = CbioReloadScheduler.getStatus(study.getStudy_id());
+        
+        return (status == null) ? "" : status;
+    }
+    
     // Machine generated getters and setters.
     public List<Study> getStudies() {
         return studies;
@@ -24,12 +24,15 @@
 package TIMS.Database;
 
 import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 
 public class ActivityLog implements Serializable {
     // activity_log table attributes
+    private int sn;
     private String user_id, activity, detail;
     private Timestamp now;
     private final static DateFormat df = 
@@ -42,6 +45,16 @@ public class ActivityLog implements Serializable {
         this.detail = detail;
         this.now = now;
     }
+    
+    // Construct the ActivityLog object directly using the result set 
+    // returned from the database query.
+    public ActivityLog(ResultSet rs) throws SQLException {
+        sn = rs.getInt("sn");
+        user_id = rs.getString("user_id");
+        activity = rs.getString("activity");
+        detail = rs.getString("detail");
+        now = rs.getTimestamp("time");
+    }
 
     // Return the timestamp in format "dd-MMM-yyyy hh:mmaa" for showing in 
     // the activity tracking page.
@@ -50,6 +63,9 @@ public class ActivityLog implements Serializable {
     }
     
     // Machine generated getters and setters.
+    public int getSn() {
+        return sn;
+    }
     public String getUser_id() {
         return user_id;
     }
@@ -31,8 +31,11 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 // Libraries for Java Extension
 import javax.naming.NamingException;
 // Libraries for Log4j
@@ -43,38 +46,21 @@ public class ActivityLogDB {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(ActivityLogDB.class.getName());
+    private final static Pattern ROWS_ESTIMATE = Pattern.compile(" rows=(\\d+)");
     
-    // Insert this activity into the database. There are 5 categories of 
+    // Record this activity into the database; the activity will be written
+    // by the ActivityLogWriter at the background. There are 5 categories of 
     // activity: Login, Execute, Create, Change and Download.
     public static void recordUserActivity(String user_id, String activity, 
             String detail)
     {
         // Do not record the activities of the "super" user.
         if (user_id.compareTo("super") != 0) {
-            Connection conn = null;
-            String query = "INSERT INTO activity_log(user_id, activity, "
-                         + "detail, time) VALUES(?,?,?,?)";
             Timestamp now = new Timestamp(Calendar.getInstance().
                                             getTime().getTime());
-        
-            try {
-                conn = DBHelper.getDSConn();
-                PreparedStatement stm = conn.prepareStatement(query);
             
-                stm.setString(1, user_id);
-                stm.setString(2, activity);
-                stm.setString(3, detail);
-                stm.setTimestamp(4, now);
-                stm.executeUpdate();
-                stm.close();
-            }
-            catch (SQLException|NamingException e) {
-                logger.error("FAIL to record user activity!");
-                logger.error(e.getMessage());
-            }
-            finally {
-                DBHelper.closeDSConn(conn);
-            }
+            ActivityLogWriter.record(new ActivityLog(user_id, activity, 
+                                                     detail, now));
         }
     }
 
@@ -105,22 +91,86 @@ public class ActivityLogDB {
         return activityList;
     }
     
-    // Build and return the activity log based on the query passed in.
-    private List<ActivityLog> buildActivityLog(String query) {
+    // Return the column to sort the activity log on, for the field sorted
+    // in the activity tracking page; null for the default order i.e. latest
+    // first.
+    public static String getSortColumn(String sortField) {
+        if (sortField == null) {
+            return null;
+        }
+        switch (sortField) {
+            case "now":
+                return "time";
+            case "user_id":
+            case "activity":
+                return sortField;
+            default:
+                return null;
+        }
+    }
+    
+    // Return one page of the activity log matching the filter, sorted on the
+    // sortCol, or on time if sortCol is null (the sn will be used to break 
+    // the ties). If key is not null, 
+    // the page is those rows right after the key row (or right before it if
+    // backward is true); this allow the next/previous page to be read off 
+    // the indexes without skipping through the rows before it. Otherwise, 
+    // the page start at offset.
+    public static List<ActivityLog> retrieveActivityPage(ActivityLogFilter filter,
+            String sortCol, boolean desc, ActivityLog key, boolean backward, 
+            int offset, int limit) {
         Connection conn = null;
         List<ActivityLog> logs = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        List<String> conds = filter.getConditions(params);
+        List<String> cols = new ArrayList<>();
+        // Read in the reverse order when reading backward.
+        boolean descending = desc ^ backward;
+        
+        // The sort columns match the indexes i.e. (time, sn), 
+        // (user_id, time, sn) and (activity, time, sn).
+        cols.add(sortCol == null ? "time" : sortCol);
+        if (sortCol != null && !sortCol.equals("time")) {
+            cols.add("time");
+        }
+        cols.add("sn");
+        
+        if (key != null) {
+            String[] marks = new String[cols.size()];
+            
+            for (int i = 0; i < cols.size(); i++) {
+                marks[i] = "?";
+                params.add(getKeyValue(key, cols.get(i)));
+            }
+            conds.add("(" + String.join(",", cols) + ") " + 
+                      (descending ? "<" : ">") + " (" + 
+                      String.join(",", marks) + ")");
+        }
+        
+        StringBuilder query = new StringBuilder("SELECT * FROM activity_log");
+        
+        if (!conds.isEmpty()) {
+            query.append(" WHERE ").append(String.join(" AND ", conds));
+        }
+        query.append(" ORDER BY ");
+        for (int i = 0; i < cols.size(); i++) {
+            query.append(i == 0 ? "" : ", ").append(cols.get(i)).
+                  append(descending ? " DESC" : " ASC");
+        }
+        query.append(" LIMIT ").append(limit);
+        if (key == null && offset > 0) {
+            query.append(" OFFSET ").append(offset);
+        }
+        logger.debug("Query activity log table: " + query);
         
         try {
             conn = DBHelper.getDSConn();
-            PreparedStatement stm = conn.prepareStatement(query);
+            PreparedStatement stm = conn.prepareStatement(query.toString());
+            setParams(stm, params);
             ResultSet rs = stm.executeQuery();
             
             while (rs.next()) {
-                ActivityLog tmp = new ActivityLog(rs.getString("user_id"),
-                                                  rs.getString("activity"),
-                                                  rs.getString("detail"),
-                                                  rs.getTimestamp("time"));
-                logs.add(tmp);
+                logs.add(new ActivityLog(rs));
             }
             stm.close();
         }
@@ -131,34 +181,79 @@ public class ActivityLogDB {
         finally {
             DBHelper.closeDSConn(conn);
         }
-
+        
+        if (backward) {
+            Collections.reverse(logs);
+        }
+        
         return logs;
     }
     
-    // Build the query string based on the parameters selected by the user.
-    public List<ActivityLog> retrieveActivityLog(List<String> paraList) {
-//        String query = "SELECT * FROM activity_log";
-        StringBuilder query = new StringBuilder("SELECT * FROM activity_log");
+    // Return the estimated number of rows in the activity log matching the 
+    // filter; taken from the table statistics and the query planner, instead
+    // of counting through the rows.
+    public static long estimateActivityCount(ActivityLogFilter filter) {
+        Connection conn = null;
+        long count = 0;
+        List<Object> params = new ArrayList<>();
+        List<String> conds = filter.getConditions(params);
+        String query = conds.isEmpty() ? 
+                "SELECT reltuples::bigint AS estimate FROM pg_class "
+              + "WHERE relname = 'activity_log'" :
+                "EXPLAIN SELECT sn FROM activity_log WHERE " 
+              + String.join(" AND ", conds);
         
-        for (int ind = 0; ind < paraList.size(); ind++) {
-            // Check that this is the first parameter.
-            if (ind == 0) {
-//                query += " WHERE ";
-                query.append(" WHERE ");
-            }
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            setParams(stm, params);
+            ResultSet rs = stm.executeQuery();
             
-//            query += paraList.get(ind);
-            query.append(paraList.get(ind));
-            // Check that this is not the last parameter.
-            if (ind < paraList.size()-1) {
-//                query += " AND ";
-                query.append(" AND ");
+            if (rs.next()) {
+                if (conds.isEmpty()) {
+                    // reltuples is -1 if the table has never been analysed.
+                    count = Math.max(0, rs.getLong("estimate"));
+                }
+                else {
+                    // The top plan line end with (cost=... rows=N width=...)
+                    Matcher m = ROWS_ESTIMATE.matcher(rs.getString(1));
+                    if (m.find()) {
+                        count = Long.parseLong(m.group(1));
+                    }
+                }
             }
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to estimate activity log size!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
         }
-//        query += " ORDER BY sn DESC";
-        query.append(" ORDER BY sn DESC");
-        logger.info("Query activity log table: " + query);
         
-        return buildActivityLog(query.toString());
+        return count;
+    }
+    
+    // Return the value of the column in the key row.
+    private static Object getKeyValue(ActivityLog key, String col) {
+        switch (col) {
+            case "time":
+                return key.getNow();
+            case "user_id":
+                return key.getUser_id();
+            case "activity":
+                return key.getActivity();
+            default:
+                return key.getSn();
+        }
+    }
+    
+    // Bind the values to the statement parameters.
+    private static void setParams(PreparedStatement stm, List<Object> params) 
+            throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            stm.setObject(i + 1, params.get(i));
+        }
     }
 }
@@ -0,0 +1,90 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+// ActivityLogFilter hold the criteria selected by the user for retrieving
+// the activity log; null criteria are not applied.
+public class ActivityLogFilter implements Serializable {
+    private final String user_id, activity, instID;
+    private final Timestamp from, to;
+    
+    // instID is set when the activities are limited to the users from this
+    // institution.
+    public ActivityLogFilter(String user_id, String activity, Timestamp from,
+            Timestamp to, String instID) {
+        this.user_id = user_id;
+        this.activity = activity;
+        this.from = from;
+        this.to = to;
+        this.instID = instID;
+    }
+    
+    // Return true if no criteria is applied.
+    public boolean isEmpty() {
+        return user_id == null && activity == null && from == null && 
+               to == null && instID == null;
+    }
+    
+    // Return the conditions of the WHERE clause, and add the values to be 
+    // bound into params (in the same order).
+    public List<String> getConditions(List<Object> params) {
+        List<String> conds = new ArrayList<>();
+        
+        if (user_id != null) {
+            conds.add("user_id = ?");
+            params.add(user_id);
+        }
+        else if (instID != null) {
+            // The users under this institution, department or group.
+            conds.add("user_id IN (SELECT user_id FROM user_account WHERE "
+                    + "unit_id IN (SELECT inst_id FROM inst_dept_grp WHERE "
+                    + "inst_id = ? UNION SELECT dept_id FROM inst_dept_grp "
+                    + "WHERE inst_id = ? UNION SELECT grp_id FROM "
+                    + "inst_dept_grp WHERE inst_id = ?))");
+            params.add(instID);
+            params.add(instID);
+            params.add(instID);
+        }
+        if (activity != null) {
+            conds.add("activity = ?");
+            params.add(activity);
+        }
+        if (from != null) {
+            conds.add("time >= ?");
+            params.add(from);
+        }
+        if (to != null) {
+            conds.add("time <= ?");
+            params.add(to);
+        }
+        
+        return conds;
+    }
+}
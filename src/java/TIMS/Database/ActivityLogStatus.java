@@ -0,0 +1,82 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+// ActivityLogStatus hold the snapshot of the activity log writer metrics, 
+// to be displayed in the system monitor page.
+public class ActivityLogStatus {
+    private final int backlog, capacity;
+    private final long recorded, written, dropped, failed, flushes, lastFlush;
+    private final String overflow;
+    
+    public ActivityLogStatus(int backlog, int capacity, String overflow, 
+            long recorded, long written, long dropped, long failed, 
+            long flushes, long lastFlush) {
+        this.backlog = backlog;
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.recorded = recorded;
+        this.written = written;
+        this.dropped = dropped;
+        this.failed = failed;
+        this.flushes = flushes;
+        this.lastFlush = lastFlush;
+    }
+    
+    // Return the time of the last flush in string format.
+    public String getLastFlushString() {
+        return (lastFlush == 0) ? "-" : 
+                new SimpleDateFormat("hh:mm:ss a").format(new Date(lastFlush));
+    }
+    
+    // Machine generated getters
+    public int getBacklog() {
+        return backlog;
+    }
+    public int getCapacity() {
+        return capacity;
+    }
+    public String getOverflow() {
+        return overflow;
+    }
+    public long getRecorded() {
+        return recorded;
+    }
+    public long getWritten() {
+        return written;
+    }
+    public long getDropped() {
+        return dropped;
+    }
+    public long getFailed() {
+        return failed;
+    }
+    public long getFlushes() {
+        return flushes;
+    }
+}
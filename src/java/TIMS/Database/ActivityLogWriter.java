@@ -0,0 +1,244 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+// Libraries for Java Extension
+import javax.naming.NamingException;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+// Libraries for PostgreSQL
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+// ActivityLogWriter keep the user activities in a bounded buffer, and write
+// them into the activity_log table at the background using COPY; every
+// ACTIVITY_LOG_FLUSH_MS, or once ACTIVITY_LOG_FLUSH_EVENTS 
+// activities are waiting. When the buffer (ACTIVITY_LOG_CAPACITY) is full,
+// ACTIVITY_LOG_OVERFLOW decide whether the new activity is dropped 
+// (DROP_NEWEST), the oldest activity is dropped (DROP_OLDEST), or the new
+// activity is written by the caller (SYNC).
+public abstract class ActivityLogWriter {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(ActivityLogWriter.class.getName());
+    public enum Overflow { DROP_NEWEST, DROP_OLDEST, SYNC }
+    // The maximum number of activities written in one COPY.
+    private final static int MAX_ROWS_PER_COPY = 500;
+    private final static Queue<ActivityLog> buffer = new ConcurrentLinkedQueue<>();
+    private final static AtomicInteger backlog = new AtomicInteger();
+    private final static AtomicLong recorded = new AtomicLong();
+    private final static AtomicLong written = new AtomicLong();
+    private final static AtomicLong dropped = new AtomicLong();
+    private final static AtomicLong failed = new AtomicLong();
+    private final static AtomicLong flushes = new AtomicLong();
+    private static volatile long lastFlush;
+    private static volatile int capacity, flushEvents;
+    private static volatile long flushInterval;
+    private static volatile Overflow overflow = Overflow.DROP_NEWEST;
+    private static volatile Thread worker;
+    private static volatile boolean stopped;
+    
+    // Record the activity; it will be written into the database at the 
+    // background.
+    public static void record(ActivityLog activity) {
+        recorded.incrementAndGet();
+        if (stopped) {
+            // The writer has been shutdown, write it directly.
+            write(Collections.singletonList(activity));
+            return;
+        }
+        if (worker == null) {
+            start();
+        }
+        
+        
+        if (backlog.incrementAndGet() > capacity) {
+            switch (overflow) {
+                case DROP_OLDEST:
+                    if (buffer.poll() != null) {
+                        backlog.decrementAndGet();
+                        dropped.incrementAndGet();
+                    }
+                    break;
+                case SYNC:
+                    backlog.decrementAndGet();
+                    write(Collections.singletonList(activity));
+                    return;
+                default:
+                    backlog.decrementAndGet();
+                    dropped.incrementAndGet();
+                    return;
+            }
+        }
+        buffer.add(activity);
+        
+        if (backlog.get() >= flushEvents) {
+            LockSupport.unpark(worker);
+        }
+    }
+    
+    // Return the snapshot of the writer metrics.
+    public static ActivityLogStatus getStatus() {
+        return new ActivityLogStatus(backlog.get(), capacity, overflow.name(),
+                recorded.get(), written.get(), dropped.get(), failed.get(), 
+                flushes.get(), lastFlush);
+    }
+    
+    // Stop the writer, and write the activities still in the buffer into 
+    // the database.
+    public static void shutdown() {
+        Thread t;
+        
+        synchronized (ActivityLogWriter.class) {
+            stopped = true;
+            t = worker;
+            worker = null;
+        }
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join(5000);
+            }
+            catch (InterruptedException e) {
+                logger.debug("Interrupted while waiting for activity log writer.");
+            }
+        }
+        flush();
+        logger.info("Activity log writer stopped.");
+    }
+    
+    // Start the writer using the setting in the system parameters.
+    private static synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        capacity = SystemParametersDB.getActivityLogCapacity();
+        flushEvents = SystemParametersDB.getActivityLogFlushEvents();
+        flushInterval = SystemParametersDB.getActivityLogFlushInterval();
+        overflow = SystemParametersDB.getActivityLogOverflow();
+        stopped = false;
+        
+        Thread t = new Thread(ActivityLogWriter::runLoop, "activity-log-writer");
+        t.setDaemon(true);
+        worker = t;
+        t.start();
+        logger.info("Activity log writer started; buffer " + capacity + 
+                    ", overflow " + overflow + ".");
+    }
+    
+    private static void runLoop() {
+        while (!stopped) {
+            if (backlog.get() < flushEvents) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushInterval));
+            }
+            try {
+                flush();
+            }
+            catch (RuntimeException e) {
+                logger.error("FAIL to flush activity log!");
+                logger.error(e.getMessage());
+            }
+        }
+    }
+    
+    // Write all the activities in the buffer into the database.
+    private static void flush() {
+        List<ActivityLog> batch = new ArrayList<>();
+        ActivityLog activity;
+        
+        while ((activity = buffer.poll()) != null) {
+            backlog.decrementAndGet();
+            batch.add(activity);
+            if (batch.size() == MAX_ROWS_PER_COPY) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+    
+    // Write the activities into the database using one COPY.
+    private static void write(List<ActivityLog> batch) {
+        Connection conn = null;
+        String copyStr = "COPY activity_log(user_id, activity, detail, time) "
+                       + "FROM STDIN";
+        StringBuilder buffer = new StringBuilder();
+        
+        for (ActivityLog activity : batch) {
+            DBHelper.appendCopyText(buffer, activity.getUser_id());
+            buffer.append('\t');
+            DBHelper.appendCopyText(buffer, activity.getActivity());
+            buffer.append('\t');
+            DBHelper.appendCopyText(buffer, activity.getDetail());
+            buffer.append('\t');
+            DBHelper.appendCopyText(buffer, activity.getNow() == null ? 
+                    null : activity.getNow().toString());
+            buffer.append('\n');
+        }
+        byte[] data = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        
+        try {
+            conn = DBHelper.getDSConn();
+            CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI().
+                            copyIn(copyStr);
+            
+            try {
+                copyIn.writeToCopy(data, 0, data.length);
+                copyIn.endCopy();
+            }
+            finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            written.addAndGet(batch.size());
+            flushes.incrementAndGet();
+            lastFlush = System.currentTimeMillis();
+        }
+        catch (SQLException|NamingException e) {
+            failed.addAndGet(batch.size());
+            logger.error("FAIL to record " + batch.size() + " user activities!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+import TIMS.General.Constants;
+// Libraries for Java
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+// Libraries for Java Extension
+import javax.naming.NamingException;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// ArrayIndexDB hand out the array index (i.e. the slot in the data array) 
+// to be used by the finalized and vault records of each annotation version.
+// The next free index of each annotation version is kept in the 
+// array_index_allocator table, and a contiguous block of indexes is reserved
+// in one call. The reservation is done using the connection passed in, hence 
+// it will be rollback together with the rest of the transaction.
+//
+// The finalized records voided during unfinalization (i.e. job_id 0) form 
+// the free-list of each annotation version; their array indexes will be 
+// reused by the next finalization before any new index is reserved.
+public abstract class ArrayIndexDB {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(ArrayIndexDB.class.getName());
+    // The target table which the array indexes are allocated for.
+    private final static String FINALIZED = "finalized_record";
+    private final static String VAULT = "vault_record";
+    
+    // Reserve a block of noOfIndex array indexes for the finalized records
+    // of this annotation version. Return the first index of the block.
+    public static int reserveFinalizedIndexes(Connection conn, 
+            String annot_ver, int noOfIndex) throws SQLException 
+    {
+        return reserveIndexes(conn, FINALIZED, annot_ver, noOfIndex);
+    }
+    // Claim up to maxIndex voided array indexes of this annotation version 
+    // for reuse. The voided finalized records are deleted, so that the new
+    // finalized records could be inserted using the same indexes. Return
+    // the claimed indexes in ascending order.
+    public static List<Integer> claimVoidFinalizedIndexes(Connection conn, 
+            String annot_ver, int maxIndex) throws SQLException 
+    {
+        List<Integer> indexList = new ArrayList<>();
+        String query = "DELETE FROM finalized_record WHERE annot_ver = ? AND "
+                     + "array_index IN (SELECT array_index FROM "
+                     + "finalized_record WHERE annot_ver = ? AND job_id = 0 "
+                     + "ORDER BY array_index LIMIT ? FOR UPDATE) "
+                     + "RETURNING array_index";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, annot_ver);
+            stm.setString(2, annot_ver);
+            stm.setInt(3, maxIndex);
+            ResultSet rs = stm.executeQuery();
+            
+            while (rs.next()) {
+                indexList.add(rs.getInt(1));
+            }
+        }
+        indexList.sort(null);
+        
+        if (!indexList.isEmpty()) {
+            logger.debug(indexList.size() + " voided array index reused for " 
+                       + FINALIZED + " - " + annot_ver);
+        }
+        
+        return indexList;
+    }
+    
+    // Set the next index of the finalized records of this annotation version
+    // after the array indexes have been compacted.
+    public static void resetFinalizedIndexes(Connection conn, 
+            String annot_ver, int nextIndex) throws SQLException 
+    {
+        String query = "UPDATE array_index_allocator SET next_index = ? "
+                     + "WHERE target = ? AND annot_ver = ?";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setInt(1, nextIndex);
+            stm.setString(2, FINALIZED);
+            stm.setString(3, annot_ver);
+            stm.executeUpdate();
+        }
+        logger.debug("Next array index of " + FINALIZED + " - " + annot_ver 
+                   + " reset to " + nextIndex);
+    }
+    
+    // Return the array index usage of the finalized records for every 
+    // annotation version.
+    public static List<SlotUsage> getFinalizedSlotUsage() {
+        Connection conn = null;
+        List<SlotUsage> usageList = new ArrayList<>();
+        String query = "SELECT annot_ver, "
+                     + "SUM(CASE WHEN job_id = 0 THEN 0 ELSE 1 END) AS live, "
+                     + "SUM(CASE WHEN job_id = 0 THEN 1 ELSE 0 END) AS void, "
+                     + "MAX(array_index) AS max_index FROM finalized_record "
+                     + "GROUP BY annot_ver ORDER BY annot_ver";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            ResultSet rs = stm.executeQuery();
+            
+            while (rs.next()) {
+                usageList.add(new SlotUsage(rs.getString("annot_ver"), 
+                        rs.getInt("live"), rs.getInt("void"), 
+                        rs.getInt("max_index")));
+            }
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to retrieve array index usage!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return usageList;
+    }
+    
+    // Reserve a block of noOfIndex array indexes for the vault records of 
+    // this annotation version. Return the first index of the block.
+    public static int reserveVaultIndexes(Connection conn, String annot_ver, 
+            int noOfIndex) throws SQLException 
+    {
+        return reserveIndexes(conn, VAULT, annot_ver, noOfIndex);
+    }
+    
+    // Helper function to reserve a block of array indexes for the target 
+    // table. The allocator entry will be created (using the largest index 
+    // currently stored in the target table) if it is not found.
+    private static int reserveIndexes(Connection conn, String target, 
+            String annot_ver, int noOfIndex) throws SQLException 
+    {
+        int first = updateAllocator(conn, target, annot_ver, noOfIndex);
+        
+        if (first == Constants.DATABASE_INVALID_ID) {
+            createAllocator(conn, target, annot_ver);
+            first = updateAllocator(conn, target, annot_ver, noOfIndex);
+        }
+        if (first == Constants.DATABASE_INVALID_ID) {
+            throw new SQLException("FAIL to reserve array index for " + 
+                                   target + " - " + annot_ver);
+        }
+        logger.debug("Array index " + first + " to " + (first+noOfIndex-1) + 
+                     " reserved for " + target + " - " + annot_ver);
+        
+        return first;
+    }
+    
+    // Advance the next index of the allocator entry by noOfIndex, and return
+    // the first index reserved. Return DATABASE_INVALID_ID if the allocator
+    // entry is not found.
+    private static int updateAllocator(Connection conn, String target, 
+            String annot_ver, int noOfIndex) throws SQLException 
+    {
+        int first = Constants.DATABASE_INVALID_ID;
+        String query = "UPDATE array_index_allocator SET next_index = "
+                     + "next_index + ? WHERE target = ? AND annot_ver = ? "
+                     + "RETURNING next_index - ?";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setInt(1, noOfIndex);
+            stm.setString(2, target);
+            stm.setString(3, annot_ver);
+            stm.setInt(4, noOfIndex);
+            ResultSet rs = stm.executeQuery();
+            
+            if (rs.next()) {
+                first = rs.getInt(1);
+            }
+        }
+        
+        return first;
+    }
+    
+    // Create the allocator entry for the target table of this annotation 
+    // version. Another thread might have created the same entry in the mean
+    // time; ignore the duplicate key error if that happen.
+    private static void createAllocator(Connection conn, String target, 
+            String annot_ver) throws SQLException 
+    {
+        String query = "INSERT INTO array_index_allocator(target,annot_ver,"
+                     + "next_index) SELECT ?, ?, COALESCE(MAX(array_index),0)+1"
+                     + " FROM " + target + " WHERE annot_ver = ?";
+        Savepoint sp = conn.getAutoCommit() ? null : conn.setSavepoint();
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, target);
+            stm.setString(2, annot_ver);
+            stm.setString(3, annot_ver);
+            stm.executeUpdate();
+            
+            if (sp != null) {
+                conn.releaseSavepoint(sp);
+            }
+            logger.debug("Array index allocator created for " + target + 
+                         " - " + annot_ver);
+        }
+        catch (SQLException e) {
+            // 23505 - unique_violation i.e. the entry has been created.
+            if ("23505".equals(e.getSQLState())) {
+                if (sp != null) {
+                    conn.rollback(sp);
+                }
+                logger.debug("Array index allocator for " + target + " - " + 
+                             annot_ver + " already created.");
+            }
+            else {
+                throw e;
+            }
+        }
+    }
+}
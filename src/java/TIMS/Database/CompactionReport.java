@@ -0,0 +1,98 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+// CompactionReport record the outcome of compacting the data arrays of one
+// annotation version; to be logged and displayed in the system monitor page.
+public class CompactionReport {
+    private final String annot_ver;
+    private final int slotsBefore, slotsAfter, genes;
+    private final long bytesBefore, bytesAfter, elapsedTime, doneTime;
+    private final boolean status;
+    
+    public CompactionReport(String annot_ver, int slotsBefore, int slotsAfter, 
+            int genes, long bytesBefore, long bytesAfter, long elapsedTime, 
+            boolean status) {
+        this.annot_ver = annot_ver;
+        this.slotsBefore = slotsBefore;
+        this.slotsAfter = slotsAfter;
+        this.genes = genes;
+        this.bytesBefore = bytesBefore;
+        this.bytesAfter = bytesAfter;
+        this.elapsedTime = elapsedTime;
+        this.status = status;
+        doneTime = System.currentTimeMillis();
+    }
+    
+    // Return the number of bytes recovered from the data arrays.
+    public long getBytesRecovered() {
+        return Math.max(bytesBefore - bytesAfter, 0);
+    }
+    
+    // Return the time taken (in seconds) to compact the data arrays.
+    public double getElapsedSec() {
+        return elapsedTime / 1000000000.0;
+    }
+    
+    // Return the time at which the compaction completed.
+    public String getDoneTimeString() {
+        return new SimpleDateFormat("dd-MMM-yyyy hh:mm:ss a").
+                format(new Date(doneTime));
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s: %d -> %d slots over %d genes, %d -> %d "
+                + "bytes (%d recovered) in %.1f sec", annot_ver, slotsBefore, 
+                slotsAfter, genes, bytesBefore, bytesAfter, 
+                getBytesRecovered(), getElapsedSec());
+    }
+    
+    // Machine generated getters
+    public String getAnnot_ver() {
+        return annot_ver;
+    }
+    public int getSlotsBefore() {
+        return slotsBefore;
+    }
+    public int getSlotsAfter() {
+        return slotsAfter;
+    }
+    public int getGenes() {
+        return genes;
+    }
+    public long getBytesBefore() {
+        return bytesBefore;
+    }
+    public long getBytesAfter() {
+        return bytesAfter;
+    }
+    public boolean isStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,337 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+// Libraries for Java Extension
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// ConnectionPool keep a bounded pool of physical database connections, 
+// obtained from the ConnectionPoolDataSource. The connection returned by
+// getConnection is a logical handle; closing it return the physical 
+// connection to the pool. A connection held longer than the leak threshold
+// is treated as leaked; its physical connection is closed and its slot in
+// the pool is released.
+public class ConnectionPool implements ConnectionEventListener {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(ConnectionPool.class.getName());
+    // Run the maintenance (i.e. eviction, top up and leak recovery) at this
+    // interval (in seconds).
+    private final static int MAINTENANCE_INTERVAL = 30;
+    // Validate the idle connection if it has been idle longer than this 
+    // period (in milliseconds).
+    private final static long VALIDATION_INTERVAL = 30000;
+    private final ConnectionPoolDataSource ds;
+    private final int minSize, maxSize;
+    private final long maxWait, idleTimeout, leakThreshold;
+    // The permits bound the number of physical connections in the pool.
+    private final Semaphore permits;
+    // Most recently returned connection will be used first.
+    private final LinkedBlockingDeque<PoolEntry> idle = 
+            new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, PoolEntry> active = 
+            new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed = false;
+    // Pool metrics.
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private volatile double acquisitionRate = 0;
+    private long lastAcquisitions = 0, lastRateTime = System.nanoTime();
+    
+    // maxWait is in milliseconds; idleTimeout and leakThreshold are in 
+    // seconds (0 to disable leak recovery). leakThreshold must be longer than
+    // the longest transaction e.g. the finalization of a study.
+    public ConnectionPool(ConnectionPoolDataSource ds, int minSize, 
+            int maxSize, long maxWait, long idleTimeout, long leakThreshold) {
+        this.ds = ds;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.min(Math.max(0, minSize), this.maxSize);
+        this.maxWait = maxWait;
+        this.idleTimeout = idleTimeout * 1000;
+        this.leakThreshold = leakThreshold * 1000;
+        permits = new Semaphore(this.maxSize, true);
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "TIMS-db-pool-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain, 
+                0, MAINTENANCE_INTERVAL, TimeUnit.SECONDS);
+        logger.info("Connection pool created - min: " + this.minSize + 
+                    ", max: " + this.maxSize);
+    }
+    
+    // Return a connection from the pool; wait up to maxWait milliseconds for
+    // a connection to be available.
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been closed.");
+        }
+        long startTime = System.nanoTime();
+        
+        try {
+            if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timeout waiting for database "
+                        + "connection; pool exhausted at " + maxSize);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for database "
+                    + "connection.");
+        }
+        
+        try {
+            PoolEntry entry = getValidEntry();
+            Connection conn = entry.pc.getConnection();
+            // Do not carry over the state from the previous user.
+            if (!conn.getAutoCommit()) {
+                conn.setAutoCommit(true);
+            }
+            entry.checkOut(leakThreshold > 0);
+            active.put(entry.pc, entry);
+            recordWaitTime(System.nanoTime() - startTime);
+            
+            return conn;
+        }
+        catch (SQLException|RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    // Return an idle connection that is still valid, or create a new one.
+    private PoolEntry getValidEntry() throws SQLException {
+        PoolEntry entry;
+        
+        while ((entry = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - entry.lastUsed < VALIDATION_INTERVAL
+                    || isValid(entry)) {
+                return entry;
+            }
+            logger.debug("Discard invalid database connection.");
+            closePhysical(entry);
+        }
+        
+        return createEntry();
+    }
+    
+    // Open a new physical connection.
+    private PoolEntry createEntry() throws SQLException {
+        PooledConnection pc = ds.getPooledConnection();
+        pc.addConnectionEventListener(this);
+        created.incrementAndGet();
+        
+        return new PoolEntry(pc);
+    }
+    
+    // Return true if the physical connection is still usable.
+    private boolean isValid(PoolEntry entry) {
+        try (Connection conn = entry.pc.getConnection()) {
+            return conn.isValid(2);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    // The logical connection has been closed by the user; return the 
+    // physical connection to the pool.
+    @Override
+    public void connectionClosed(ConnectionEvent event) {
+        PoolEntry entry = active.remove((PooledConnection) event.getSource());
+        
+        if (entry == null) {
+            // Closing of the handle used during validation.
+            return;
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        
+        if (closed) {
+            closePhysical(entry);
+        }
+        else {
+            idle.addFirst(entry);
+        }
+        permits.release();
+    }
+    
+    // Fatal error on the physical connection; remove it from the pool.
+    @Override
+    public void connectionErrorOccurred(ConnectionEvent event) {
+        PoolEntry entry = active.remove((PooledConnection) event.getSource());
+        
+        logger.error("Database connection error; removed from pool.");
+        if (event.getSQLException() != null) {
+            logger.error(event.getSQLException().getMessage());
+        }
+        if (entry != null) {
+            closePhysical(entry);
+            permits.release();
+        }
+    }
+    
+    // Evict the connections that have been idle for too long, top up the 
+    // pool to the minimum size, recover the leaked connections and update 
+    // the acquisition rate.
+    private void maintain() {
+        try {
+            long now = System.currentTimeMillis();
+            // The idle list is ordered from most to least recently used.
+            PoolEntry entry;
+            while (getTotal() > minSize && (entry = idle.peekLast()) != null 
+                    && now - entry.lastUsed > idleTimeout) {
+                if (idle.removeLastOccurrence(entry)) {
+                    closePhysical(entry);
+                }
+            }
+            // Top up the pool.
+            while (!closed && getTotal() < minSize) {
+                idle.addLast(createEntry());
+            }
+            // Close the connections held longer than the leak threshold, 
+            // and release their permits; the holder will get an exception
+            // on its next use of the connection.
+            if (leakThreshold > 0) {
+                for (PoolEntry held : active.values()) {
+                    if (now - held.checkOutTime > leakThreshold && 
+                            active.remove(held.pc, held)) {
+                        leaks.incrementAndGet();
+                        logger.warn("Database connection held by " + 
+                                held.owner + " for more than " + 
+                                (leakThreshold / 1000) + " sec; closed as " + 
+                                "leaked.", held.checkOutTrace);
+                        closePhysical(held);
+                        permits.release();
+                    }
+                }
+            }
+            // Acquisitions per second since the last maintenance.
+            long count = acquisitions.get();
+            long nanoNow = System.nanoTime();
+            acquisitionRate = (count - lastAcquisitions) / 
+                              ((nanoNow - lastRateTime) / 1000000000.0);
+            lastAcquisitions = count;
+            lastRateTime = nanoNow;
+        }
+        catch (SQLException|RuntimeException e) {
+            logger.error("FAIL to maintain connection pool!");
+            logger.error(e.getMessage());
+        }
+    }
+    
+    // Close all the idle connections and stop the maintenance; connections
+    // in use will be closed when they are returned.
+    public void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        PoolEntry entry;
+        
+        while ((entry = idle.pollFirst()) != null) {
+            closePhysical(entry);
+        }
+        logger.info("Connection pool closed.");
+    }
+    
+    // Helper function to close the physical connection.
+    private void closePhysical(PoolEntry entry) {
+        try {
+            entry.pc.removeConnectionEventListener(this);
+            entry.pc.close();
+        }
+        catch (SQLException e) {
+            logger.error("FAIL to close physical database connection!");
+            logger.error(e.getMessage());
+        }
+    }
+    
+    // Helper function to record the time taken to acquire a connection.
+    private void recordWaitTime(long waitTime) {
+        acquisitions.incrementAndGet();
+        totalWaitTime.addAndGet(waitTime);
+        maxWaitTime.accumulateAndGet(waitTime, Math::max);
+    }
+    
+    // Return the number of physical connections in the pool.
+    private int getTotal() {
+        return idle.size() + active.size();
+    }
+    
+    // Return a snapshot of the pool metrics.
+    public ConnectionPoolStatus getStatus() {
+        long count = acquisitions.get();
+        double avgWait = (count == 0) ? 0 : 
+                totalWaitTime.get() / (double) count / 1000000.0;
+        
+        return new ConnectionPoolStatus(minSize, maxSize, active.size(), 
+                idle.size(), permits.getQueueLength(), count, 
+                acquisitionRate, avgWait, maxWaitTime.get() / 1000000.0, 
+                timeouts.get(), created.get(), leaks.get());
+    }
+    
+    // PoolEntry hold one physical connection and its usage information.
+    private static class PoolEntry {
+        private final PooledConnection pc;
+        private volatile long lastUsed, checkOutTime;
+        private volatile String owner;
+        private volatile Throwable checkOutTrace;
+        
+        PoolEntry(PooledConnection pc) {
+            this.pc = pc;
+            lastUsed = System.currentTimeMillis();
+        }
+        
+        // Record who and when the connection is checked out; the stack trace
+        // is only captured when leak detection is enabled.
+        void checkOut(boolean traceCaller) {
+            checkOutTime = System.currentTimeMillis();
+            owner = Thread.currentThread().getName();
+            checkOutTrace = traceCaller ? 
+                    new Throwable("Connection checked out here") : null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// ConnectionPoolStatus hold the snapshot of the connection pool metrics, to 
+// be displayed in the system monitor page.
+public class ConnectionPoolStatus {
+    private final int minSize, maxSize, active, idle, waiting;
+    private final long acquisitions, timeouts, created, leaks;
+    // Acquisitions per second over the last maintenance interval.
+    private final double acquisitionRate;
+    // Time taken (in milliseconds) to acquire a connection.
+    private final double avgWaitTime, maxWaitTime;
+    
+    public ConnectionPoolStatus(int minSize, int maxSize, int active, 
+            int idle, int waiting, long acquisitions, double acquisitionRate, 
+            double avgWaitTime, double maxWaitTime, long timeouts, 
+            long created, long leaks) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.active = active;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.acquisitions = acquisitions;
+        this.acquisitionRate = acquisitionRate;
+        this.avgWaitTime = avgWaitTime;
+        this.maxWaitTime = maxWaitTime;
+        this.timeouts = timeouts;
+        this.created = created;
+        this.leaks = leaks;
+    }
+    
+    // Machine generated getters
+    public int getMinSize() {
+        return minSize;
+    }
+    public int getMaxSize() {
+        return maxSize;
+    }
+    public int getActive() {
+        return active;
+    }
+    public int getIdle() {
+        return idle;
+    }
+    public int getWaiting() {
+        return waiting;
+    }
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+    public double getAcquisitionRate() {
+        return acquisitionRate;
+    }
+    public double getAvgWaitTime() {
+        return avgWaitTime;
+    }
+    public double getMaxWaitTime() {
+        return maxWaitTime;
+    }
+    public long getTimeouts() {
+        return timeouts;
+    }
+    public long getCreated() {
+        return created;
+    }
+    public long getLeaks() {
+        return leaks;
+    }
+}
@@ -25,7 +25,6 @@ package TIMS.Database;
 
 import TIMS.General.Constants;
 import java.sql.*;
-import java.util.concurrent.Semaphore;
 // Libraries for Java Extension
 import javax.faces.bean.ApplicationScoped;
 import javax.faces.context.FacesContext;
@@ -41,18 +40,20 @@ public abstract class DBHelper {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(DBHelper.class.getName());
-    private static PGConnectionPoolDataSource ds;
-    // Token to allow finalization and closure of study to proceed.
-    private final static Semaphore finalizeToken = new Semaphore(1, true);
-    private final static Semaphore closureToken = new Semaphore(1, true);
+    private static ConnectionPool pool;
     
-    // Initialise the data source for TIMS.
+    // Initialise the data source and connection pool for TIMS.
     public static void initDataSource() {
+        initDataSource(getServletContext());
+    }
+    
+    // Initialise the data source and connection pool for TIMS, using the
+    // settings in this servlet context.
+    public static synchronized void initDataSource(ServletContext context) {
         // Only load this once when the application first started.
-        if (ds == null) {
+        if (pool == null) {
             logger.debug("Init data source for TIMS.");
-            ds = new PGConnectionPoolDataSource();
-            ServletContext context = getServletContext();
+            PGConnectionPoolDataSource ds = new PGConnectionPoolDataSource();
             // Loading the DB username and password
             String uname = context.getInitParameter("uname");
             String pword = context.getInitParameter("pword");
@@ -61,14 +62,42 @@ public abstract class DBHelper {
             ds.setDatabaseName(Constants.getDATABASE_NAME());
             ds.setUser(uname);
             ds.setPassword(pword);
+            // Loading the connection pool settings.
+            pool = new ConnectionPool(ds, 
+                    getIntInitParameter(context, "db-pool-min", 2), 
+                    getIntInitParameter(context, "db-pool-max", 20), 
+                    getIntInitParameter(context, "db-pool-max-wait", 30000), 
+                    getIntInitParameter(context, "db-pool-idle-timeout", 600), 
+                    getIntInitParameter(context, "db-pool-leak-threshold", 21600));
+        }
+    }
+    
+    // Close the connection pool when the application is shutting down.
+    public static synchronized void closeDataSource() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
     }
+    
+    // Return the current connection pool metrics, or null if the pool has 
+    // not been created.
+    public static ConnectionPoolStatus getPoolStatus() {
+        ConnectionPool current = pool;
+        
+        return (current == null) ? null : current.getStatus();
+    }
 
     // Return the database connection to be use by the application.
     public static Connection getDSConn() 
             throws SQLException, NamingException 
     {
-        return ds.getConnection();
+        ConnectionPool current = pool;
+        
+        if (current == null) {
+            throw new SQLException("Data source has not been initialised.");
+        }
+        return current.getConnection();
     }
     
     // Close the database connection after use by the individual modules.
@@ -84,6 +113,53 @@ public abstract class DBHelper {
         }
     }
     
+    // Append the string to the buffer as a COPY text format field; null is
+    // written as \N.
+    public static void appendCopyText(StringBuilder buffer, String str) {
+        if (str == null) {
+            buffer.append("\\N");
+            return;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            
+            switch (c) {
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                default:
+                    buffer.append(c);
+            }
+        }
+    }
+    
+    // Return the integer value of the context parameter, or the default
+    // value if it is not setup or invalid.
+    private static int getIntInitParameter(ServletContext context, 
+            String name, int defaultValue) {
+        String value = context.getInitParameter(name);
+        
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException e) {
+                logger.error("Invalid value for context parameter " + name);
+            }
+        }
+        
+        return defaultValue;
+    }
+    
     // getServletContext will return the servlet context
     private static ServletContext getServletContext() {
         return (ServletContext) FacesContext.getCurrentInstance().
@@ -146,27 +222,5 @@ public abstract class DBHelper {
 
         return txIso;
     }
-    
-    // To acquire the token to perform finalization of study.
-    public static void acquireFinalizeToken(String uid) throws InterruptedException {
-        logger.debug(uid + " try to acquire the token for finalization.");
-        finalizeToken.acquire();
-        logger.debug(uid + " acquired the token for finalization.");
-    }
-    // To release the token after finalization.
-    public static void releaseFinalizeToken(String uid) {
-        finalizeToken.release();
-        logger.debug(uid + " released the token for finalization.");
-    }
-    // To acquire the token to perform closure of study.
-    public static void acquireClosureToken(String uid) throws InterruptedException {
-        logger.debug(uid + " try to acquire the token for closure.");
-        closureToken.acquire();
-        logger.debug(uid + " acquired the token for closure.");
-    }
-    // To release the token after closure.
-    public static void releaseClosureToken(String uid) {
-        closureToken.release();
-        logger.debug(uid + " released the token for closure.");
-    }
+
 }
@@ -148,6 +148,8 @@ public class DashboardConfigDB {
             stm.setString(6, dbc.getStudy_id());
             stm.executeUpdate();
             stm.close();
+            // Dashboard statistics of this study need to be rebuilt.
+            DashboardStatsDB.invalidate(dbc.getStudy_id());
             
             logger.info("Updated dashboard config for " + dbc.getStudy_id());
         }
@@ -0,0 +1,104 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+// Library for Trove
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+// DashboardStats hold the pre-aggregated dashboard statistics of one study
+// i.e. the specific fields data points and the data objects of the 
+// configured charts. It is shared by all the users viewing the study, and
+// must not be modified after it has been built.
+public class DashboardStats {
+    private final String study_id;
+    // Specific field category -> List of specific fields.
+    private final LinkedHashMap<String, List<String>> categoryFields;
+    private final TObjectIntHashMap<String> fieldsWithData, fieldsWithoutData;
+    // Chart ID -> Dashboard config / chart data objects.
+    private final Map<String, DashboardConfig> configs;
+    private final Map<String, PieChartDataObject> pieCharts;
+    private final Map<String, LinkedHashMap<String, BarChartDataObject>> barCharts;
+    // The time (in msec) taken to build the statistics.
+    private final long buildTime;
+
+    // Machine generated constructor.
+    public DashboardStats(String study_id, 
+            LinkedHashMap<String, List<String>> categoryFields, 
+            TObjectIntHashMap<String> fieldsWithData, 
+            TObjectIntHashMap<String> fieldsWithoutData, 
+            Map<String, DashboardConfig> configs, 
+            Map<String, PieChartDataObject> pieCharts, 
+            Map<String, LinkedHashMap<String, BarChartDataObject>> barCharts, 
+            long buildTime) 
+    {
+        this.study_id = study_id;
+        this.categoryFields = categoryFields;
+        this.fieldsWithData = fieldsWithData;
+        this.fieldsWithoutData = fieldsWithoutData;
+        this.configs = configs;
+        this.pieCharts = pieCharts;
+        this.barCharts = barCharts;
+        this.buildTime = buildTime;
+    }
+    
+    // Return the list of specific fields under this category.
+    public List<String> getSpecificFields(String category) {
+        return categoryFields.get(category);
+    }
+    // Return the number of subjects with data for this specific field.
+    public int getFieldWithData(String field) {
+        return fieldsWithData.get(field);
+    }
+    // Return the number of subjects without data for this specific field.
+    public int getFieldWithoutData(String field) {
+        return fieldsWithoutData.get(field);
+    }
+    // Return the dashboard config for this chart ID.
+    public DashboardConfig getConfig(String chart_id) {
+        return configs.get(chart_id);
+    }
+    // Return the pie chart data object for this chart ID.
+    public PieChartDataObject getPieChart(String chart_id) {
+        return pieCharts.get(chart_id);
+    }
+    // Return the bar chart data objects for this chart ID.
+    public LinkedHashMap<String, BarChartDataObject> getBarChart(String chart_id) {
+        return barCharts.get(chart_id);
+    }
+    
+    // Machine generated getters
+    public String getStudy_id() {
+        return study_id;
+    }
+    public LinkedHashMap<String, List<String>> getCategoryFields() {
+        return categoryFields;
+    }
+    public long getBuildTime() {
+        return buildTime;
+    }
+}
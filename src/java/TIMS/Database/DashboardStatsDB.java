@@ -0,0 +1,575 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+import TIMS.General.Constants;
+import TIMS.General.FileHelper;
+// Libraries for Java
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+// Library for Trove
+import gnu.trove.iterator.TObjectIntIterator;
+import gnu.trove.map.hash.THashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.set.hash.THashSet;
+
+// DashboardStatsDB build the dashboard statistics of a study from the 
+// subject detail, and cache them until the meta data, specific fields or 
+// dashboard config of the study is updated.
+public class DashboardStatsDB {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(DashboardStatsDB.class.getName());
+    // This string represent the symbol for "Do Not Count' when building the
+    // specific fields data points.
+    private final static String DNC = "--";
+    private final static Map<String, DashboardStats> cache = 
+            new ConcurrentHashMap<>();
+    // Incremented whenever the statistics of the study is invalidated; to 
+    // avoid caching statistics that are built from outdated data.
+    private final static Map<String, AtomicLong> versions = 
+            new ConcurrentHashMap<>();
+    private final String study_id;
+    private final SubjectDB subject_db;
+    private List<SubjectDetail> subjectDetailList;
+    
+    private DashboardStatsDB(String study_id) {
+        this.study_id = study_id;
+        subject_db = new SubjectDB(study_id);
+    }
+    
+    // Return the dashboard statistics of this study; build them if they are
+    // not in the cache.
+    public static DashboardStats getStats(String study_id) {
+        DashboardStats stats = cache.get(study_id);
+        
+        if (stats == null) {
+            long version = getVersion(study_id).get();
+            stats = new DashboardStatsDB(study_id).buildStats();
+            // Only cache the statistics if the study has not been updated 
+            // while they are being built.
+            if (version == getVersion(study_id).get()) {
+                cache.put(study_id, stats);
+            }
+        }
+        
+        return stats;
+    }
+    
+    // The meta data, specific fields or dashboard config of this study has
+    // been updated; the statistics will be rebuilt on the next access.
+    public static void invalidate(String study_id) {
+        getVersion(study_id).incrementAndGet();
+        if (cache.remove(study_id) != null) {
+            logger.debug("Dashboard statistics of " + study_id + " invalidated.");
+        }
+    }
+    
+    // Return the specific field content (i.e. one line per subject) of this
+    // study; for user to download.
+    public static List<String> getSpecificFieldContent(String study_id) {
+        DashboardStatsDB builder = new DashboardStatsDB(study_id);
+        List<String> ssf_content = new ArrayList<>();
+        
+        if (!builder.loadSubjectDetail()) {
+            return ssf_content;
+        }
+        LinkedHashMap<String, List<String>> categoryFields = 
+                getStats(study_id).getCategoryFields();
+        // Only build the specific field content if study specific fields 
+        // have been setup.
+        if (!categoryFields.isEmpty()) {
+            StringBuilder ssf_header = new StringBuilder("Subject ID").
+                    append(SubjectDetail.FIELD_BREAKER);
+            
+            for (List<String> field_list : categoryFields.values()) {
+                for (String field : field_list) {
+                    for (SubjectDetail subject : builder.subjectDetailList) {
+                        subject.appendSpecificField
+                            (subject.retrieveDataFromHashMap(field));
+                    }
+                    ssf_header.append(field).append(SubjectDetail.FIELD_BREAKER);
+                }
+            }
+            ssf_content.add(ssf_header.toString());
+        }
+        for (SubjectDetail subject : builder.subjectDetailList) {
+            ssf_content.add(subject.getSsf_content());
+        }
+        
+        return ssf_content;
+    }
+    
+    // Helper function to return the version counter of this study.
+    private static AtomicLong getVersion(String study_id) {
+        return versions.computeIfAbsent(study_id, k -> new AtomicLong());
+    }
+    
+    // Retrieve the subject detail of this study, and link the column index
+    // of the study to each subject detail object for easy access to the 
+    // meta data.
+    private boolean loadSubjectDetail() {
+        subjectDetailList = subject_db.getSubtDetailList();
+        List<String> colNameL = FileHelper.convertByteArrayToList
+                                    (StudyDB.getColumnNameList(study_id));
+        Map<String, Integer> colIndex = new THashMap<>(colNameL.size());
+        
+        for (int i = 0; i < colNameL.size(); i++) {
+            colIndex.put(colNameL.get(i), i);
+        }
+        for (SubjectDetail subject : subjectDetailList) {
+            if (!subject.linkColumnIndex(colIndex, colNameL)) {
+                logger.error("FAIL to convert subject data to hashmap!");
+                return Constants.NOT_OK;
+            }
+        }
+        
+        return Constants.OK;
+    }
+    
+    // Build the statistics of this study.
+    private DashboardStats buildStats() {
+        long startTime = System.nanoTime();
+        StudySpecificFieldDB ssf_db = new StudySpecificFieldDB(study_id);
+        LinkedHashMap<String, List<String>> categoryFields = new LinkedHashMap<>();
+        TObjectIntHashMap<String> fieldsWithData = new TObjectIntHashMap<>();
+        TObjectIntHashMap<String> fieldsWithoutData = new TObjectIntHashMap<>();
+        Map<String, DashboardConfig> configs = new HashMap<>();
+        Map<String, PieChartDataObject> pieCharts = new HashMap<>();
+        Map<String, LinkedHashMap<String, BarChartDataObject>> barCharts = 
+                new HashMap<>();
+        
+        loadSubjectDetail();
+        
+        for (String category : ssf_db.getSpecificFieldCategory()) {
+            categoryFields.put(category, 
+                    ssf_db.getSpecificFieldListFromCategory(category));
+        }
+        // Build the specific fields data points hashmaps.
+        buildSpecificFieldsDataPoints(categoryFields, fieldsWithData, 
+                                      fieldsWithoutData);
+        // Build the data objects for all the charts configured for this study.
+        for (DashboardConfig config : 
+                new DashboardConfigDB(study_id).getDashboardConfigList()) {
+            configs.put(config.getChart_id(), config);
+            
+            if (config.isBarchart()) {
+                barCharts.put(config.getChart_id(), genBarChartDO(config));
+            }
+            else {
+                pieCharts.put(config.getChart_id(), genPieChartDO(config));
+            }
+        }
+        long buildTime = (System.nanoTime() - startTime) / 1000000;
+        logger.debug("Dashboard statistics of " + study_id + " built in " + 
+                     buildTime + " msec.");
+        // Free up the memory used by the subject detail.
+        subjectDetailList = null;
+        
+        return new DashboardStats(study_id, categoryFields, fieldsWithData, 
+                fieldsWithoutData, configs, pieCharts, barCharts, buildTime);
+    }
+    
+    // Generate the pie chart data object for this dashboard config.
+    private PieChartDataObject genPieChartDO(DashboardConfig bc_config) {
+        if (bc_config.getData_source_x().equals("age")) {
+            // Pie chart for age grouping is being constructed differently.
+            return genPieChartDOForAgeAtBaseline();
+        }
+        else if (bc_config.is_x_from_core_data()) {
+            return genPieChartDOFromCoreData
+                    (bc_config.getData_source_x(), bc_config.getTitle());
+        }
+        else {
+            return genPieChartDOFromSpecificField
+                    (bc_config.getData_source_x(), bc_config.getTitle());
+        }
+    }
+    
+    // Generate the bar chart data objects for this dashboard config.
+    private LinkedHashMap<String, BarChartDataObject> genBarChartDO
+        (DashboardConfig bc_config) 
+    {
+        LinkedHashMap<String, TObjectIntHashMap<String>> data_hashmap;
+        
+        if (bc_config.is_x_from_core_data()) {
+            if (bc_config.is_y_from_core_data()) {
+                // Core data vs core data.
+                return genBarChartDOFromDBColumnsXY
+                    (bc_config.getData_source_x(), bc_config.getData_source_y());
+            }
+            else {
+                // Core data vs specific field.
+                // Core Data -> (Specific Field -> Count)
+                data_hashmap = buildCoreDataVsSpecificFieldDataPoints
+                    (bc_config.getData_source_x(), bc_config.getData_source_y());
+                return genBarChartDOForCoreVsSF(data_hashmap);
+            }
+        }
+        else {
+            if (bc_config.is_y_from_core_data()) {
+                // Specific field vs core data i.e. inverted core data vs specific field.
+                data_hashmap = buildCoreDataVsSpecificFieldDataPoints
+                    (bc_config.getData_source_y(), bc_config.getData_source_x());
+                return genBarChartDOForSFVsCore(data_hashmap);
+            }
+            else {
+                // Specific field vs specific field.
+                data_hashmap = buildSF1VsSF2DataPoints
+                    (bc_config.getData_source_x(), bc_config.getData_source_y());
+                return genBarChartDOForCoreVsSF(data_hashmap);
+            }
+        }
+    }
+    
+    // Build the data points based on specific field vs specific field.
+    private LinkedHashMap<String, TObjectIntHashMap<String>> 
+        buildSF1VsSF2DataPoints(String sf1, String sf2) 
+    {
+        Set<String> dist_sf1_set = new THashSet<>();
+        // Build the list of distinct value of specific field one.
+        for (SubjectDetail sd : subjectDetailList) {
+            if (sd.retrieveDataFromHashMap(sf1) != null &&
+                !sd.retrieveDataFromHashMap(sf1).isEmpty()) {
+                    dist_sf1_set.add(sd.retrieveDataFromHashMap(sf1));
+            }
+        }
+        // Add a default category for empty field.
+        dist_sf1_set.add(Constants.EMPTY_STR);
+        // Remove DNC from specific field 1.
+        dist_sf1_set.remove(DNC);
+        // Specific Field 1 -> (Specific Field 2 -> Count)
+        LinkedHashMap<String, TObjectIntHashMap<String>> data_hashmap = 
+                                                        new LinkedHashMap<>();
+        for (String dist_sf1 : dist_sf1_set) {
+            data_hashmap.put(dist_sf1, new TObjectIntHashMap<>());
+        }
+        // Fill up the data points.
+        for (SubjectDetail sd : subjectDetailList) {
+            // Skip those DNC value in specific field 1.
+            if (!sd.retrieveDataFromHashMap(sf1).equals(DNC)) {
+                // Tally those empty specific field 1 under the tag EMPTY_STR.
+                String SF1 = sd.retrieveDataFromHashMap(sf1).isEmpty()?
+                        Constants.EMPTY_STR:sd.retrieveDataFromHashMap(sf1);
+                if (sd.retrieveDataFromHashMap(sf2) != null &&
+                    !sd.retrieveDataFromHashMap(sf2).isEmpty() ) 
+                {
+                    if (!sd.retrieveDataFromHashMap(sf2).equals(DNC)) {
+                        // Remove DNC from specific field 2.
+                        data_hashmap.get(SF1).adjustOrPutValue
+                            (sd.retrieveDataFromHashMap(sf2), 1, 1);
+                    }
+                }
+                else {
+                    data_hashmap.get(SF1).adjustOrPutValue
+                        (Constants.EMPTY_STR, 1, 1);
+                }
+            }
+        }
+        
+        return data_hashmap;
+    }
+
+    // Build the data points based on core data vs specific field.
+    private LinkedHashMap<String, TObjectIntHashMap<String>> 
+        buildCoreDataVsSpecificFieldDataPoints(String cd_name, String sf_name) 
+    {
+        List<String> core_data_list = subject_db.getDistinctValueInColumn(cd_name);
+        // Core Data -> (Specific Field -> Count)
+        LinkedHashMap<String, TObjectIntHashMap<String>> data_hashmap = new LinkedHashMap<>();;
+        for (String cd : core_data_list) {
+            data_hashmap.put(cd, new TObjectIntHashMap<>());
+        }
+        // Fill up the data points.
+        for (SubjectDetail sd : subjectDetailList) {
+            if (sd.retrieveDataFromHashMap(sf_name) != null &&
+                !sd.retrieveDataFromHashMap(sf_name).isEmpty() ) 
+            {
+                // Remove DNC from specific field.
+                if (!sd.retrieveDataFromHashMap(sf_name).equals(DNC)) {
+                    data_hashmap.get(sd.getCoreData(cd_name)).adjustOrPutValue
+                        (sd.retrieveDataFromHashMap(sf_name), 1, 1);
+                }
+            }
+            else {
+                // Tally those empty specific field under the tag EMPTY_STR.
+                data_hashmap.get(sd.getCoreData(cd_name)).adjustOrPutValue
+                    (Constants.EMPTY_STR, 1, 1);
+            }
+        }
+
+        return data_hashmap;
+    }
+    
+    // Build the data points (i.e. with data, without data) for all the specific
+    // fields in this study.
+    private void buildSpecificFieldsDataPoints
+        (LinkedHashMap<String, List<String>> categoryFields, 
+         TObjectIntHashMap<String> fieldsWithData, 
+         TObjectIntHashMap<String> fieldsWithoutData) 
+    {
+        int with_data, wo_data;
+        // Go through the specific fields of all the categories and tally the 
+        // data points.
+        for (List<String> field_list : categoryFields.values()) {
+            for (String field : field_list) {
+                with_data = wo_data = 0;
+                for (SubjectDetail subject : subjectDetailList) {
+                    if (subject.retrieveDataFromHashMap(field) == null || 
+                        subject.retrieveDataFromHashMap(field).isEmpty()) {
+                        wo_data++;
+                    }
+                    else {
+                        // If the data is DNC, don't count it.
+                        if (!subject.retrieveDataFromHashMap(field).equals(DNC)) {
+                            with_data++;
+                        }
+                    }
+                }
+                // Insert the data points for this specific field into the 
+                // hashmaps.
+                fieldsWithData.put(field, with_data);
+                fieldsWithoutData.put(field, wo_data);
+            }
+        }
+    }
+    
+    // Generate the PieChartDataObject for the age_at_baseline field in the
+    // subject table.
+    private PieChartDataObject genPieChartDOForAgeAtBaseline() {
+        PieChartDataObject pco = new PieChartDataObject("Age Group Breakdown Chart");
+        List<Float> age_baseline_list = subject_db.getAgeAtBaselineList();
+        // Make sure there is data available for further computation, else just
+        // return a default piechart.
+        if (age_baseline_list.isEmpty()) {
+            logger.debug("No data is available for age_at_baseline!");
+            pco.addSeries("INVALID AGE DATA", 1);
+            return pco;
+        }
+        
+        int floor = (int) Math.floor(age_baseline_list.get(0));
+        int ceiling = (int) Math.ceil(age_baseline_list.get
+                                     (age_baseline_list.size()-1));
+        // Only want 8 pie in the piechart.
+        int step = (ceiling - floor) / 7;
+        if (step == 0) {
+            // If the age range is very narrow i.e. less than 7, default the
+            //  step size to 1.
+            step = 1;
+        }
+        int lower_bound = floor;
+        int upper_bound = 0;
+        // Keep creating the age grouping until the upper_bound is greater than
+        // the ceiling.
+        while (upper_bound < ceiling) {
+            upper_bound = lower_bound + step;
+            int count = 0;
+            // index must be less than the list size to avoid index out of
+            // bound exception.
+            for (int index=0; index<age_baseline_list.size(); index++ ) {
+                if (age_baseline_list.get(index) < upper_bound) {
+                    count++;
+                }
+                else {
+                    // Break out of this loop once the current age is equal
+                    // or greater than this age group upper bound.
+                    break;
+                }
+            }
+            // Store this age grouping and it's count.
+            String age_group = lower_bound + "-" + upper_bound;
+            pco.addSeries(age_group, count);
+            // Remove those entries from the list once they have been counted.
+            if (count < age_baseline_list.size()) {
+                age_baseline_list = age_baseline_list.subList
+                                        (count, age_baseline_list.size());
+            }
+            lower_bound = upper_bound;
+        }
+            
+        return pco;
+    }
+    
+    // Generate the PieChartDataObject for this core data. Currently, only
+    // race, gender and case control data are available for plotting.
+    private PieChartDataObject genPieChartDOFromCoreData
+        (String core_data, String title) {
+        TObjectIntHashMap<String> series_tally = 
+                            subject_db.getDistinctValueCountInColumn(core_data);
+        PieChartDataObject pco = new PieChartDataObject(title);
+        // Iterate through the series tally and fill up the pie chart data object.
+        for (TObjectIntIterator it = series_tally.iterator(); it.hasNext();) {
+            it.advance();
+            // Add this series and its tally into piechart data object.
+            pco.addSeries((String) it.key(), it.value());            
+        }
+        
+        return pco;
+    }
+    
+    // Generate the PieChartDataObject for this specific field in the hashmap of
+    // the subject detail. The type of data should be category based e.g. the 
+    // available data value should be limited.
+    private PieChartDataObject genPieChartDOFromSpecificField
+        (String field, String title) 
+    {
+        TObjectIntHashMap<String> series_tally = new TObjectIntHashMap<>();
+        // Tally the count for each unique series name for this field.
+        for (SubjectDetail subject : subjectDetailList) {
+            if (!subject.retrieveDataFromHashMap(field).equals(DNC)) {
+                // Remove DNC.
+                series_tally.adjustOrPutValue(subject.
+                        retrieveDataFromHashMap(field), 1, 1);
+            }
+        }
+        
+        PieChartDataObject pco = new PieChartDataObject(title);
+        // Sort the series name before adding them to the piechart series.
+        Set<String> value_set = series_tally.keySet();
+        TreeSet<String> sorted_set = new TreeSet<>();
+        sorted_set.addAll(value_set);
+        // Loop through the sorted set and add them to the pie chart series.
+        for (String key : sorted_set) {
+            // Add this series and its tally into piechart data object.
+            pco.addSeries(key, series_tally.get(key));
+        }
+
+        return pco;
+    }
+    
+    // Generate the hashmap of BarChartDataObject using the values from database
+    // columns X and Y. Column X values will plot on the x-axis, and Y values
+    // will be plot on the y-axis.
+    private LinkedHashMap<String, BarChartDataObject> genBarChartDOFromDBColumnsXY
+        (String colX, String colY) 
+    {
+        // x_values will store the list of data name for this chart.
+        List<String> x_values = subject_db.getDistinctValueInColumn(colX);
+        // series_set will store the list of series name for this chart.
+        List<String> series_set = subject_db.getDistinctValueInColumn(colY);
+        // Create THashMap<String, List<String>> where the first string will
+        // store the data name and the list of strings will store the series 
+        // values.
+        THashMap<String, List<String>> x2yListValue = new THashMap<>();
+        
+        for (String data_name : x_values) {
+            // data_name - List of series values
+            x2yListValue.put(data_name, subject_db.getColXBasedOnColYValue
+                            (colY, colX, data_name));
+        }
+        // do_hashmap will store the data object(s) for this chart.
+        LinkedHashMap<String, BarChartDataObject> do_hashmap = new LinkedHashMap<>();
+        
+        for (String data_name : x_values) {
+            // Create the data object using the x_values as it's data_name.
+            BarChartDataObject bco = new BarChartDataObject(data_name);
+            // Add in all the unique Y values as the chart series.
+            for (String series : series_set) {
+                bco.addSeries(series);
+            }
+            // Add this data object into the data object hashmap.
+            do_hashmap.put(data_name, bco);
+        }
+        // Tally the series count.
+        for (String data_name : x2yListValue.keySet()) {
+            List<String> series_values = x2yListValue.get(data_name);
+            for (String series : series_values) {
+                do_hashmap.get(data_name).increSeriesCount(series);
+            }
+        }
+
+        return do_hashmap;
+    }
+
+    // Generate the hashmap of BarChartDataObject using the values from core
+    // data and specific field. Core data values will be plot on the x-axis, and 
+    // specific field values will be plot on the y-axis.
+    private LinkedHashMap<String, BarChartDataObject> genBarChartDOForCoreVsSF
+        (LinkedHashMap<String, TObjectIntHashMap<String>> data_hashmap) 
+    {
+        LinkedHashMap<String, BarChartDataObject> do_hashmap = new LinkedHashMap<>();
+        
+        for (String core_data : data_hashmap.keySet()) {
+            BarChartDataObject dat = new BarChartDataObject(core_data);
+            for (TObjectIntIterator it = data_hashmap.get(core_data).iterator(); 
+                    it.hasNext(); ) 
+            {
+                it.advance();
+                dat.addSeries((String) it.key(), it.value());
+            }
+            if (dat.getNumOfSeriesDefined() > 0) {
+                do_hashmap.put(core_data, dat);
+            }
+        }
+
+        return do_hashmap;
+    }
+    
+    // Generate the hashmap of BarChartDataObject using the values from specific
+    // field and core data. Specific field values will be plot on the x-axis,
+    // and core data values will be plot on the y-axis.
+    private LinkedHashMap<String, BarChartDataObject> genBarChartDOForSFVsCore
+        (LinkedHashMap<String, TObjectIntHashMap<String>> data_hashmap) 
+    {
+        LinkedHashMap<String, BarChartDataObject> do_hashmap = new LinkedHashMap<>();
+        // Get all the unique specific fields.
+        Set<String> specific_fields = new THashSet<>();
+        
+        for (String core_data : data_hashmap.keySet()) {
+            for (TObjectIntIterator it = data_hashmap.get(core_data).iterator(); 
+                    it.hasNext(); ) 
+            {
+                it.advance();
+                specific_fields.add((String) it.key());
+            }
+        }
+        // Create the hashmap of BarChartDataObject based on the number of
+        // specific fields.
+        for (String sField : specific_fields) {
+            BarChartDataObject dat = new BarChartDataObject(sField);
+            do_hashmap.put(sField, dat);
+        }
+        // Fill in the BarChartDataObject's series and its value..
+        for (String core_data : data_hashmap.keySet()) {
+            for (TObjectIntIterator it = data_hashmap.get(core_data).iterator(); 
+                    it.hasNext(); ) 
+            {
+                it.advance();
+                do_hashmap.get((String) it.key()).addSeries(core_data, it.value());
+            }
+        }
+        
+        return do_hashmap;
+    }
+}
@@ -0,0 +1,270 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+import TIMS.General.Constants;
+// Libraries for Java
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+// Libraries for Java Extension
+import javax.naming.NamingException;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// DataCompactor rewrite the data arrays of one annotation version densely,
+// i.e. only the slots of the live finalized records are kept, in the order
+// of their current array index. The array index of the finalized records 
+// are remapped, and the voided records (i.e. the free-list) are removed.
+// It runs under the same task key (i.e. finalize|<annot_ver>) as the 
+// finalization, unfinalization, consolidated output export and cBioPortal 
+// import of this annotation version, so none of them will run while the 
+// arrays are being rewritten.
+public class DataCompactor implements Runnable {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(DataCompactor.class.getName());
+    // No of compaction reports to keep for the system monitor page.
+    private final static int MAX_HISTORY = 20;
+    private final static Deque<CompactionReport> history = new LinkedList<>();
+    private Connection conn = null;
+    private final String userName, annot_ver;
+    
+    public DataCompactor(String userName, String annot_ver) {
+        this.userName = userName;
+        this.annot_ver = annot_ver;
+    }
+    
+    // Return the key for this compaction task; it must not run together with
+    // the other tasks reading or writing the data arrays of the same 
+    // annotation version.
+    public String getTaskKey() {
+        return "finalize|" + annot_ver;
+    }
+    
+    @Override
+    public void run() {
+        boolean result = Constants.OK;
+        long startTime = System.nanoTime();
+        List<Integer> liveList = new ArrayList<>();
+        long[] before = {0, 0, 0};
+        long[] after = {0, 0, 0};
+        
+        logger.info(userName + ": start compaction of " + annot_ver);
+        try {
+            conn = DBHelper.getDSConn();
+            // All the SQL statements executed here will be treated as one
+            // big transaction.
+            conn.setAutoCommit(false);
+            before = getArrayUsage();
+            liveList = getLiveIndexes();
+            
+            // The live indexes are compact when they run from 1 to the 
+            // length of the data arrays.
+            int last = liveList.isEmpty() ? 0 : liveList.get(liveList.size()-1);
+            
+            if (liveList.size() < before[1] || last != liveList.size()) {
+                compactDataArrays(liveList);
+                remapFinalizedRecords(liveList);
+                ArrayIndexDB.resetFinalizedIndexes(conn, annot_ver, 
+                                                   liveList.size() + 1);
+                conn.commit();
+                logger.debug("DataCompactor - Commit transaction.");
+            }
+            else {
+                logger.info(annot_ver + " is already compact.");
+                conn.commit();
+            }
+            after = getArrayUsage();
+            conn.setAutoCommit(true);
+            vacuumDataDepository();
+        }
+        catch (SQLException|NamingException e) {
+            result = Constants.NOT_OK;
+            logger.error("FAIL to compact data depository of " + annot_ver + "!");
+            logger.error(e.getMessage());
+            rollback();
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        CompactionReport report = new CompactionReport(annot_ver, 
+                (int) before[1], result ? liveList.size() : (int) before[1], 
+                (int) before[2], before[0], result ? after[0] : before[0], 
+                System.nanoTime() - startTime, result);
+        logger.info(userName + ": compaction " + (result ? "completed - " : 
+                    "failed - ") + report);
+        
+        synchronized (history) {
+            history.addFirst(report);
+            if (history.size() > MAX_HISTORY) {
+                history.removeLast();
+            }
+        }
+    }
+    
+    // Let the database reuse the space of the old row versions. Failure here
+    // will not affect the compaction that has been committed.
+    private void vacuumDataDepository() {
+        try (Statement stm = conn.createStatement()) {
+            stm.execute("VACUUM data_depository");
+        }
+        catch (SQLException e) {
+            logger.error("FAIL to vacuum data depository!");
+            logger.error(e.getMessage());
+        }
+    }
+    
+    // Return the most recent compaction reports, latest first.
+    public static List<CompactionReport> getHistory() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+    
+    // Return the total size (in bytes) of the data arrays, the length of the
+    // longest data array and the number of genes for this annotation version.
+    private long[] getArrayUsage() throws SQLException {
+        long[] usage = {0, 0, 0};
+        String query = "SELECT COALESCE(SUM(pg_column_size(data)),0), "
+                     + "COALESCE(MAX(array_upper(data,1)),0), COUNT(*) "
+                     + "FROM data_depository WHERE annot_ver = ?";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, annot_ver);
+            ResultSet rs = stm.executeQuery();
+            
+            if (rs.next()) {
+                for (int i = 0; i < usage.length; i++) {
+                    usage[i] = rs.getLong(i + 1);
+                }
+            }
+        }
+        
+        return usage;
+    }
+    
+    // Return the array indexes of the live finalized records in ascending 
+    // order; the finalized records are locked until the end of the 
+    // transaction.
+    private List<Integer> getLiveIndexes() throws SQLException {
+        List<Integer> indexList = new ArrayList<>();
+        String query = "SELECT array_index FROM finalized_record WHERE "
+                     + "annot_ver = ? AND job_id <> 0 ORDER BY array_index "
+                     + "FOR UPDATE";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, annot_ver);
+            ResultSet rs = stm.executeQuery();
+            
+            while (rs.next()) {
+                indexList.add(rs.getInt(1));
+            }
+        }
+        logger.debug(indexList.size() + " live array index found for " 
+                   + annot_ver);
+        
+        return indexList;
+    }
+    
+    // Rewrite every data array of this annotation version with only the live
+    // slots, in one pass over the gene rows.
+    private void compactDataArrays(List<Integer> liveList) 
+            throws SQLException 
+    {
+        long startTime = System.nanoTime();
+        String query = "UPDATE data_depository SET data = ARRAY(SELECT "
+                     + "data[m.old] FROM unnest(?::integer[]) WITH ORDINALITY"
+                     + " AS m(old, ord) ORDER BY m.ord) WHERE annot_ver = ?";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setArray(1, toSQLArray(liveList));
+            stm.setString(2, annot_ver);
+            int rows = stm.executeUpdate();
+            logger.debug("Data array compacted for " + rows + " genes in " + 
+                    ((System.nanoTime() - startTime) / 1000000000.0) + " sec.");
+        }
+    }
+    
+    // Remove the voided finalized records, and move the live records to 
+    // their new array index (i.e. the position in the compacted array). The
+    // new indexes are first stored as negative values, to avoid clashing 
+    // with the primary key of the records not moved yet.
+    private void remapFinalizedRecords(List<Integer> liveList) 
+            throws SQLException 
+    {
+        String deleteStr = "DELETE FROM finalized_record WHERE annot_ver = ? "
+                         + "AND job_id = 0";
+        String moveStr = "UPDATE finalized_record f SET array_index = "
+                       + "-m.ord::integer FROM unnest(?::integer[]) WITH "
+                       + "ORDINALITY AS m(old, ord) WHERE f.annot_ver = ? "
+                       + "AND f.array_index = m.old";
+        String flipStr = "UPDATE finalized_record SET array_index = "
+                       + "-array_index WHERE annot_ver = ? AND array_index < 0";
+        
+        try (PreparedStatement deleteStm = conn.prepareStatement(deleteStr);
+             PreparedStatement moveStm = conn.prepareStatement(moveStr);
+             PreparedStatement flipStm = conn.prepareStatement(flipStr)) {
+            deleteStm.setString(1, annot_ver);
+            int voided = deleteStm.executeUpdate();
+            moveStm.setArray(1, toSQLArray(liveList));
+            moveStm.setString(2, annot_ver);
+            moveStm.executeUpdate();
+            flipStm.setString(1, annot_ver);
+            int moved = flipStm.executeUpdate();
+            logger.debug(voided + " voided finalized records removed, " + 
+                         moved + " finalized records remapped.");
+        }
+    }
+    
+    // Convert the list of array indexes into SQL integer array.
+    private Array toSQLArray(List<Integer> indexList) throws SQLException {
+        return conn.createArrayOf("int4", indexList.toArray());
+    }
+    
+    // Rollback the uncommitted compaction.
+    private void rollback() {
+        if (conn != null) {
+            try {
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            }
+            catch (SQLException e) {
+                logger.error("FAIL to rollback compaction!");
+                logger.error(e.getMessage());
+            }
+        }
+    }
+}
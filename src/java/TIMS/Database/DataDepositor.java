@@ -27,18 +27,23 @@ import TIMS.General.Constants;
 import TIMS.General.FileHelper;
 import TIMS.General.Postman;
 import TIMS.General.ResourceRetriever;
+import TIMS.General.TaskExecutor;
+import TIMS.Visualizers.CbioArtifactCache;
 // Libraries for Java
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 // Libraries for Java Extension
 import javax.naming.NamingException;
 // Libraries for Log4j
@@ -53,18 +58,22 @@ import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.pdmodel.graphics.xobject.PDJpeg;
+// Libraries for PostgreSQL
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 
-public class DataDepositor extends Thread {
+public class DataDepositor implements Runnable {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(DataDepositor.class.getName());
     private Connection conn = null;
     private final String study_id, annot_ver, summaryReportPath;
-    private String fileUri;
     private int job_id, numSubjectNotFound, numSubjectFound;
     // Variables to be used during processing of pipeline output.
     private int totalRecord, processedRecord, totalGene, processedGene;
     private int[] arrayIndex;
+    // The genename available in data_depository for this annotation version.
+    private GeneIndex geneIndex;
     // Store the filepath of the Astar and Bii logo.
     private static String astarLogo, biiLogo;
     // Store the y-axis of the PDF content stream cursor.
@@ -72,7 +81,10 @@ public class DataDepositor extends Thread {
     // Categories of subject ID based on whether their meta data is found 
     // in the database or not.
     private StringBuilder subjectNotFound, subjectFound, geneAvailableVsStored, 
-                          subjectAvailableVsStored;
+                          subjectAvailableVsStored, geneIngestionRate;
+    // The unique subject IDs placed into the categories above.
+    private final Set<String> subjectNotFoundSet = new HashSet<>();
+    private final Set<String> subjectFoundSet = new HashSet<>();
     private List<FinalizingJobEntry> jobList = new ArrayList<>();
     // Store the user ID of the current user.
     private final String userName;
@@ -81,19 +93,23 @@ public class DataDepositor extends Thread {
     // Create a pdf document for the summary report.
     private final PDDocument summary_pdf = new PDDocument();
     private PDPage page;
+    // Ingest the gene data through a staging table (batch mode) or row by row.
+    private final boolean batchMode;
+    // No of bytes to buffer before writing them to the COPY stream.
+    private final int COPY_BUFFER_SIZE = 1024 * 1024;
 
     
     public DataDepositor(String userName, String study_id, 
             List<FinalizingJobEntry> jobList) 
-            throws SQLException, NamingException
     {
-        conn = DBHelper.getDSConn();
         page = new PDPage(PDPage.PAGE_SIZE_A4);
         subjectNotFound = new StringBuilder();
         subjectFound = new StringBuilder();
         geneAvailableVsStored = new StringBuilder();
         subjectAvailableVsStored = new StringBuilder();
+        geneIngestionRate = new StringBuilder();
         numSubjectNotFound = numSubjectFound = 0;
+        batchMode = SystemParametersDB.isBatchDepositMode();
         this.userName = userName;
         this.study_id = study_id;
         this.jobList = jobList;
@@ -108,23 +124,36 @@ public class DataDepositor extends Thread {
         logger.debug("DataDepositor created for study: " + study_id);
     }
     
+    // Return the key for this finalization task; only one study per 
+    // annotation version could be finalized at any one time.
+    public String getTaskKey() {
+        return "finalize|" + annot_ver;
+    }
+    
     @Override
     public void run() {
         boolean finalizeStatus = Constants.OK;
         
         try {
-            // Need to acquire the finalization token before proceeding.
-            DBHelper.acquireFinalizeToken(userName);
+            // Only get the data source connection when the task start running.
+            conn = DBHelper.getDSConn();
             // All the SQL statements executed here will be treated as one 
             // big transaction.
             logger.debug("DataDepositor start - Set auto-commit to OFF.");
             conn.setAutoCommit(false);
+            // Load the genename available for this annotation version once.
+            geneIndex = GeneIndexDB.getDepositoryIndex(conn, annot_ver);
+            // Evict the cBioPortal artifacts exported before the 
+            // re-finalization; done here so that it is serialised with the
+            // cBioPortal imports running under the same task key.
+            for (FinalizingJobEntry job : jobList) {
+                CbioArtifactCache.evict(job.getJob_id());
+            }
             
             for (FinalizingJobEntry job : jobList) {
-                // Retrieve the job ID and pipeline output file for this 
-                // selected job.
+                // Retrieve the job ID for this selected job; the pipeline 
+                // output will be read directly from it's zip file.
                 job_id = job.getJob_id();
-                fileUri = SubmittedJobDB.unzipOutputFile(job_id);
                 logger.debug("Data insertion for: " + study_id + " - " + 
                              job.getPipeline_name() + " - Job ID: " + job_id);
                 
@@ -134,11 +163,6 @@ public class DataDepositor extends Thread {
                     logger.error("DataDepositor - Hit error!");
                     break;
                 }
-                // Delete the temporary file here (i.e. fileUri)
-                if (!FileHelper.delete(fileUri)) {
-                    logger.error("FAIL to delete the temporary files generated "
-                               + "during finalization of " + study_id);
-                }
             }
             
             if (finalizeStatus) {
@@ -162,8 +186,6 @@ public class DataDepositor extends Thread {
             
             conn.setAutoCommit(true);
             logger.debug("DataDepositor completed - Set auto-commit to ON.");
-            // Release the finalization token.
-            DBHelper.releaseFinalizeToken(userName);
             
             if (finalizeStatus) {
                 String zipFile = Constants.getSYSTEM_PATH() + 
@@ -182,9 +204,13 @@ public class DataDepositor extends Thread {
                 genPDFSummaryReport();
                 // Update the summary filepath in the study table.
                 StudyDB.updateStudySummaryReport(study_id, summaryReportPath);
-                // Generate the consolidated output for this study.
-                DataRetriever retrieverThread = new DataRetriever(study_id, userName);
-                retrieverThread.start();
+                // Generate the consolidated output for this study; it will
+                // start after this finalization has released the key.
+                DataRetriever exportTask = new DataRetriever(study_id, userName);
+                TaskExecutor.submit(TaskExecutor.Queue.EXPORT, 
+                        "Consolidate output of " + study_id, userName, 
+                        TaskExecutor.PRIORITY_NORMAL, exportTask.getTaskKey(), 
+                        exportTask);
                 // Proceed to zip the detail output files from all the selected
                 // pipeline jobs.
                 try {
@@ -203,12 +229,11 @@ public class DataDepositor extends Thread {
                 revertStudyStatus();
             }
         }
-        catch (SQLException|NamingException|InterruptedException e) {
+        catch (SQLException|NamingException e) {
             logger.error("FAIL to insert finalized data!");
             logger.error(e.getMessage());
-            // Finalization failed, release the token and revert all the
-            // submitted jobs and study status.
-            DBHelper.releaseFinalizeToken(userName);
+            // Finalization failed, revert all the submitted jobs and study 
+            // status.
             revertStudyStatus();
         }
         finally {
@@ -305,6 +330,7 @@ public class DataDepositor extends Thread {
         String[] missingSubjects = subjectNotFound.toString().split("\\$");
         String[] geneInfo = geneAvailableVsStored.toString().split("\\$");
         String[] subjectInfo = subjectAvailableVsStored.toString().split("\\$");
+        String[] rateInfo = geneIngestionRate.toString().split("\\$");
         // x-axis position for each new subheader.
         float subheadX = 40;
         // x-axis position for each new content line.
@@ -371,6 +397,10 @@ public class DataDepositor extends Thread {
                 cs.moveTextPositionByAmount(lineX, getNextLineYaxis());
                 cs.drawString(geneInfo[index-1]);
                 cs.endText();
+                cs.beginText();
+                cs.moveTextPositionByAmount(lineX, getNextLineYaxis());
+                cs.drawString(rateInfo[index-1]);
+                cs.endText();
                 index++;
             }
             // Section B
@@ -483,41 +513,12 @@ public class DataDepositor extends Thread {
         stm.setInt(3, record.getJob_id());
         stm.setString(4, record.getSubject_id());
         stm.setString(5, record.getStudy_id());
-        stm.executeUpdate();
+        stm.addBatch();
             
         logger.debug("Output for " + record.getSubject_id() + 
                      " stored at index: " + record.getArray_index());        
     }
     
-    // Return the next array index to be use in finalized_record table.
-    private int getNextArrayInd() {
-        int count = Constants.DATABASE_INVALID_ID;
-        String query = "SELECT MAX(array_index) FROM finalized_record "
-                     + "WHERE annot_ver = \'" + annot_ver + "\'";
-        
-        try (PreparedStatement stm = conn.prepareStatement(query);
-             ResultSet rs = stm.executeQuery()) {
-            if (rs.next()) {
-                count = rs.getInt(1) + 1;
-            }
-        }
-        catch (SQLException e) {
-            logger.debug("FAIL to retrieve the next array index!");
-            logger.debug(e.getMessage());
-        }
-        
-        return count;
-    }
-    
-    // Check whether genename exists using the PreparedStatement passed in.
-    private boolean checkGeneExistInDB(PreparedStatement stm, 
-            String genename) throws SQLException {
-        stm.setString(1, genename);
-        ResultSet rs = stm.executeQuery();
-        
-        return rs.isBeforeFirst()?Constants.OK:Constants.NOT_OK;
-    }
-    
     // Process the first line (i.e. subject line) of pipeline data file. Return
     // the processing status.
     private boolean procSubjectLine(String[] values) {
@@ -528,12 +529,34 @@ public class DataDepositor extends Thread {
                          + "VALUES(?,?,?,?,?)";
             
         try (PreparedStatement insertStm = conn.prepareStatement(insertStr)) {
+            boolean[] srExist = new boolean[values.length];
+            int noOfIndex = 0;
+            // The subject IDs with meta data are retrieved in one query (or
+            // reused from the finalization pre-check).
+            Set<String> registry = SubjectRegistry.getSubjects(conn, study_id);
             // Ignore the first two strings (i.e. geneID and EntrezID).
+            for (int i = 2; i < values.length; i++) {
+                srExist[i] = registry.contains(values[i]);
+                if (srExist[i]) {
+                    noOfIndex++;
+                }
+            }
+            // Reuse the voided array indexes first, and reserve one 
+            // contiguous block of array indexes for the rest of the subjects
+            // found.
+            List<Integer> reused = (noOfIndex > 0) ? ArrayIndexDB.
+                    claimVoidFinalizedIndexes(conn, annot_ver, noOfIndex) : 
+                    new ArrayList<>();
+            int nextIndex = (noOfIndex > reused.size()) ? ArrayIndexDB.
+                    reserveFinalizedIndexes(conn, annot_ver, 
+                                            noOfIndex - reused.size()) : 0;
+            Iterator<Integer> reusedIter = reused.iterator();
+            
             for (int i = 2; i < values.length; i++) {
                 // Only store the pipeline data if the study record is 
                 // available in the database.
-                if (SubjectRecordDB.isSRExist(values[i], study_id)) {
-                    if (!subjectFound.toString().contains(values[i])) {
+                if (srExist[i]) {
+                    if (subjectFoundSet.add(values[i])) {
                         // Only want to store the unqiue subject ID that
                         // have meta data in database.
                         subjectFound.append(values[i]).append(" ");
@@ -544,14 +567,15 @@ public class DataDepositor extends Thread {
                         }
                     }
                     processedRecord++;
-                    arrayIndex[i] = getNextArrayInd();
+                    arrayIndex[i] = reusedIter.hasNext() ? 
+                                    reusedIter.next() : nextIndex++;
                     FinalizedRecord record = new FinalizedRecord
                         (arrayIndex[i], annot_ver, values[i], job_id, study_id);
                     // Insert the finalized output record.
                     insertToFinalizedOutput(insertStm, record);
                 }
                 else {
-                    if (!subjectNotFound.toString().contains(values[i])) {
+                    if (subjectNotFoundSet.add(values[i])) {
                         // Only want to store the unqiue subject ID that
                         // do not have meta data in database.
                         subjectNotFound.append(values[i]).append(" ");
@@ -564,6 +588,9 @@ public class DataDepositor extends Thread {
                     arrayIndex[i] = Constants.DATABASE_INVALID_ID;
                 }
             }
+            // Insert all the finalized output records.
+            insertStm.executeBatch();
+            clearReusedSlots(reused);
             // Print process status.
             logger.debug("Records processed: " + processedRecord + 
                          " out of " + totalRecord);
@@ -574,7 +601,7 @@ public class DataDepositor extends Thread {
                              subjectNotFound);
             }
         }
-        catch (SQLException|NamingException e) {
+        catch (SQLException e) {
             logger.error("FAIL to create finalized records!");
             logger.error(e.getMessage());
             result = Constants.NOT_OK;
@@ -583,8 +610,31 @@ public class DataDepositor extends Thread {
         return result;
     }
     
+    // Clear the reused slots of every gene row, so that the gene not found
+    // in the pipeline output will be left empty (instead of VOID).
+    private void clearReusedSlots(List<Integer> reused) throws SQLException {
+        if (reused.isEmpty()) {
+            return;
+        }
+        // Rebuild the array subscript by subscript, the same way as the batch
+        // deposit; only the rows long enough to hold a reused slot are 
+        // touched.
+        String clearStr = "UPDATE data_depository SET data = ARRAY("
+                + "SELECT CASE WHEN i = ANY(?) THEN NULL ELSE data[i] END "
+                + "FROM generate_series(1, array_upper(data, 1)) i ORDER BY i) "
+                + "WHERE annot_ver = ? AND array_upper(data, 1) >= ?";
+        
+        try (PreparedStatement clearStm = conn.prepareStatement(clearStr)) {
+            clearStm.setArray(1, conn.createArrayOf("int4", reused.toArray()));
+            clearStm.setString(2, annot_ver);
+            clearStm.setInt(3, Collections.min(reused));
+            clearStm.executeUpdate();
+        }
+        logger.debug(reused.size() + " reused slots cleared for job " + job_id);
+    }
+    
     // Process the gene data of pipeline output. Return the processing status.
-    private boolean procGeneData(BufferedReader br) throws IOException {
+    private boolean procGeneData(PipelineOutputReader reader) throws IOException {
         boolean result = Constants.OK;
         String genename, lineRead;
         String[] values;
@@ -593,24 +643,18 @@ public class DataDepositor extends Thread {
         String updateStr = "UPDATE data_depository SET data[?] = ? WHERE " 
                          + "genename = ? AND annot_ver = \'" 
                          + annot_ver + "\'";
-        // SELECT statement to check the existence of gene in database.
-        String queryGene = "SELECT 1 FROM data_depository "
-                         + "WHERE genename = ? AND annot_ver = \'" 
-                         + annot_ver + "\'";
 
         // This debug message serve as a check point.
         logger.debug("Start gene data processing for job " + job_id);
         
-        try (PreparedStatement updateStm = conn.prepareStatement(updateStr);
-             PreparedStatement queryGeneStm = conn.prepareStatement(queryGene)) 
-        {
-            while ((lineRead = br.readLine()) != null) {
+        try (PreparedStatement updateStm = conn.prepareStatement(updateStr)) {
+            while ((lineRead = reader.readLine()) != null) {
                 totalGene++;
                 values = lineRead.split("\t");
                 // The first string is the gene symbol.
                 genename = values[0];
                 // Check whether genename exist in data_depository.
-                if (checkGeneExistInDB(queryGeneStm,genename)) {
+                if (geneIndex.contains(genename)) {
                     processedGene++;
                     // Gene data start from the 3rd column. 
                     for (int i = 2; i < values.length; i++) {
@@ -632,6 +676,157 @@ public class DataDepositor extends Thread {
         return result;
     }
     
+    // Process the gene data of pipeline output in one pass. All the gene lines
+    // found in data_depository are streamed into a temporary staging table 
+    // using COPY, and every 
+    // subject's array slot for each gene is then updated using one set-based
+    // UPDATE statement. Return the processing status.
+    private boolean procGeneDataBatch(PipelineOutputReader reader)
+            throws IOException {
+        boolean result = Constants.OK;
+        String lineRead;
+        String[] values;
+        totalGene = processedGene = 0;
+        // Only those columns with valid PID will be stored.
+        List<Integer> validCol = new ArrayList<>();
+        
+        for (int i = 2; i < arrayIndex.length; i++) {
+            if (arrayIndex[i] != Constants.DATABASE_INVALID_ID) {
+                validCol.add(i);
+            }
+        }
+        // The staging table will be dropped at the end of the transaction.
+        String createStr = "CREATE TEMP TABLE IF NOT EXISTS gene_staging "
+                         + "(line integer, genename text, vals text[]) "
+                         + "ON COMMIT DROP";
+        String copyStr = "COPY gene_staging (line, genename, vals) FROM STDIN";
+        // The array slot of each staged value.
+        Integer[] slots = new Integer[validCol.size()];
+        int maxSlot = 0;
+        
+        for (int k = 0; k < validCol.size(); k++) {
+            slots[k] = arrayIndex[validCol.get(k)];
+            maxSlot = Math.max(maxSlot, slots[k]);
+        }
+        // UPDATE statement to update all the data array slots of each gene in
+        // one statement; the array is rebuilt subscript by subscript, instead
+        // of chaining one data[i] assignment per subject (which get slower 
+        // with every assignment). Subject with no value on the line (i.e. 
+        // short line) will keep the value currently stored in the slot. If 
+        // the same gene appear more than once, the last line will be used.
+        String updateStr = "UPDATE data_depository d SET data = ARRAY("
+                + "SELECT COALESCE(s.vals[m.k], d.data[i]) FROM "
+                + "generate_series(1, GREATEST(COALESCE(array_upper(d.data, 1), 0), ?)) i "
+                + "LEFT JOIN unnest(?::integer[]) WITH ORDINALITY AS m(ind, k) "
+                + "ON m.ind = i ORDER BY i) "
+                + "FROM (SELECT DISTINCT ON (genename) genename, vals "
+                + "FROM gene_staging ORDER BY genename, line DESC) s "
+                + "WHERE d.genename = s.genename AND d.annot_ver = ?";
+        
+        // This debug message serve as a check point.
+        logger.debug("Start batch gene data processing for job " + job_id);
+        
+        try {
+            try (Statement stm = conn.createStatement()) {
+                stm.execute(createStr);
+                stm.execute("TRUNCATE gene_staging");
+            }
+            // Stream the gene lines into the staging table.
+            CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI().
+                            copyIn(copyStr);
+            StringBuilder buffer = new StringBuilder();
+            
+            try {
+                while ((lineRead = reader.readLine()) != null) {
+                    totalGene++;
+                    values = lineRead.split("\t");
+                    // Only stage those gene that exist in data_depository.
+                    if (!geneIndex.contains(values[0])) {
+                        continue;
+                    }
+                    processedGene++;
+                    buffer.append(totalGene).append('\t');
+                    DBHelper.appendCopyText(buffer, values[0]);
+                    buffer.append("\t{");
+                    
+                    for (int k = 0; k < validCol.size(); k++) {
+                        int col = validCol.get(k);
+                        
+                        if (k > 0) {
+                            buffer.append(',');
+                        }
+                        if (col < values.length) {
+                            appendArrayElement(buffer, values[col]);
+                        }
+                        else {
+                            buffer.append("NULL");
+                        }
+                    }
+                    buffer.append("}\n");
+                    
+                    if (buffer.length() >= COPY_BUFFER_SIZE) {
+                        writeToCopy(copyIn, buffer);
+                    }
+                }
+                writeToCopy(copyIn, buffer);
+                copyIn.endCopy();
+            }
+            finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            logger.debug("Gene lines staged for job " + job_id + ": " + 
+                         processedGene);
+            // Only update the data array if there is any subject to store.
+            if (!validCol.isEmpty()) {
+                try (PreparedStatement updateStm = 
+                        conn.prepareStatement(updateStr)) {
+                    updateStm.setInt(1, maxSlot);
+                    updateStm.setArray(2, conn.createArrayOf("int4", slots));
+                    updateStm.setString(3, annot_ver);
+                    int rows = updateStm.executeUpdate();
+                    logger.debug("Data array updated for " + rows + " genes.");
+                }
+            }
+        }
+        catch (SQLException e) {
+            logger.error("FAIL to insert gene data into data array!");
+            logger.error(e.getMessage());
+            result = Constants.NOT_OK;
+        }
+        
+        return result;
+    }
+    
+    // Write the content of the buffer to the COPY stream, and empty the buffer.
+    private void writeToCopy(CopyIn copyIn, StringBuilder buffer) 
+            throws SQLException {
+        if (buffer.length() > 0) {
+            byte[] data = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(data, 0, data.length);
+            buffer.setLength(0);
+        }
+    }
+    
+    // Append the string to the buffer as a double quoted array element. The
+    // element is escaped for the array literal first, and then for the COPY
+    // text format.
+    private static void appendArrayElement(StringBuilder buffer, String str) {
+        StringBuilder element = new StringBuilder("\"");
+        
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            
+            if (c == '"' || c == '\\') {
+                element.append('\\');
+            }
+            element.append(c);
+        }
+        element.append('"');
+        DBHelper.appendCopyText(buffer, element.toString());
+    }
+    
     // Insert the finalized pipeline output into database.
     private boolean insertFinalizedDataIntoDB() throws SQLException {
         boolean result = Constants.OK;
@@ -642,8 +837,11 @@ public class DataDepositor extends Thread {
         // To record the time taken to insert the processed data
         long startTime, elapsedTime;
 
-        try(BufferedReader br = new BufferedReader(new FileReader(fileUri))) {
-            String lineRead = br.readLine();
+        try (PipelineOutputReader reader = new PipelineOutputReader(job_id)) {
+            String lineRead = reader.getHeader();
+            if (lineRead == null) {
+                throw new IOException("The output file is empty!");
+            }
             values = lineRead.split("\t");
             // Update the size of the integer array.
             arrayIndex = new int[values.length];
@@ -662,14 +860,22 @@ public class DataDepositor extends Thread {
             if (processedRecord > 0) {
                 startTime = System.nanoTime();
                 // Start gene data processing.
-                if (procGeneData(br)) {
+                boolean geneStatus = batchMode ? procGeneDataBatch(reader) : 
+                                                 procGeneData(reader);
+                if (geneStatus) {
                     // Record the time taken for the insertion.
                     elapsedTime = System.nanoTime() - startTime;
+                    long rate = Math.round(totalGene / 
+                                (Math.max(elapsedTime, 1) / 1000000000.0));
                     // Record the gene available versus stored information.
                     geneAvailableVsStored.append("Gene data available: ").append(totalGene);
                     geneAvailableVsStored.append(", Gene data stored: ").append(processedGene).append("$");
+                    // Record the rate of gene data ingestion.
+                    geneIngestionRate.append("Gene rows ingested per sec: ").append(rate);
+                    geneIngestionRate.append(batchMode?" (batch)":" (row)").append("$");
                     logger.debug("Gene record processed: " + processedGene + "/" + totalGene);
                     logger.debug("Time taken: " + (elapsedTime / 1000000000.0) + " sec");
+                    logger.debug("Gene rows ingested per sec: " + rate);
                 }
                 else {
                     // Error occurred, return to caller.
@@ -678,6 +884,7 @@ public class DataDepositor extends Thread {
             }
             else {
                 geneAvailableVsStored.append("Subject ID not found. Gene data will not be stored into database").append("$");
+                geneIngestionRate.append("Gene rows ingested per sec: NA").append("$");
                 logger.debug("None of the subject ID for this pipeline output is found. "
                         + "Gene data will not be stored into database.");
             }
@@ -27,7 +27,9 @@ import TIMS.General.Constants;
 import TIMS.General.FileHelper;
 import TIMS.General.Postman;
 // Libraries for Java
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.sql.Connection;
@@ -42,22 +44,20 @@ import javax.naming.NamingException;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
-public class DataRetriever extends Thread {
+public class DataRetriever implements Runnable {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(DataRetriever.class.getName());
     private Connection conn = null;
     private final String study_id, annot_ver, finalize_file, 
                          finalize_meta, userName;
-    private final List<OutputItems> opItemsList;
-    private final List<String> geneList;
+    private List<OutputItems> opItemsList;
+    private List<String> geneList;
     private StringBuilder opHeader = new StringBuilder();
     
     // Using the study_id received, DataRetriever will retrieve the finalized
     // data from the database.
-    public DataRetriever(String study_id, String userName) 
-            throws SQLException, NamingException
-    {
+    public DataRetriever(String study_id, String userName) {
         this.study_id = study_id;
         this.userName = userName;
         finalize_file = Constants.getSYSTEM_PATH() + 
@@ -69,21 +69,42 @@ public class DataRetriever extends Thread {
                         study_id + File.separator + 
                         "meta" + Constants.getFINALIZE_FILE_EXT();
         annot_ver = StudyDB.getStudyAnnotVer(study_id);
-        // Get a data source connection for this thread.
-        conn = DBHelper.getDSConn();
-        
-        // Subject ID|Pipeline Name|Pipeline output
-        opHeader.append("Subject|Pipeline");
-        geneList = getGeneList();
-        // Retrieve the list of OutputItems (i.e. Subject ID|Pipeline Name|Index)
-        opItemsList = getOpItemsList();
         logger.debug("DataRetriever created for study_id: " + study_id);
     }
     
+    // Return the key for this export task; it must not run together with
+    // the finalization, unfinalization or compaction of the same annotation
+    // version, else the data array could be changed between the reads.
+    public String getTaskKey() {
+        return "finalize|" + annot_ver;
+    }
+    
     @Override
     public void run() {
         logger.debug("DataRetriever start running.");
-        consolidateFinalizedData();
+        try {
+            // Only get the data source connection when the task start running.
+            conn = DBHelper.getDSConn();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to get data source connection for DataRetriever!");
+            logger.error(e.getMessage());
+            Postman.sendFinalizationStatusEmail(study_id, userName, Constants.NOT_OK);
+            return;
+        }
+        // Subject ID|Pipeline Name|Pipeline output
+        opHeader.append("Subject|Pipeline");
+        geneList = getGeneList();
+        // Retrieve the list of OutputItems (i.e. Subject ID|Pipeline Name|Index)
+        opItemsList = getOpItemsList();
+        if (!consolidateFinalizedData()) {
+            // Don't leave a partial output behind.
+            DBHelper.closeDSConn(conn);
+            FileHelper.delete(finalize_file);
+            Postman.sendFinalizationStatusEmail(study_id, userName, 
+                                                Constants.NOT_OK);
+            return;
+        }
         FileHelper.generateMetaDataList(study_id, finalize_meta);
         // Close the data source connection after use.
         DBHelper.closeDSConn(conn);
@@ -111,61 +132,121 @@ public class DataRetriever extends Thread {
         Postman.sendFinalizationStatusEmail(study_id, userName, Constants.OK);
     }
     
-    // To build the subject line for the output file.
-    private String getSubjectData(OutputItems item) {
+    // To build the subject lines for this chunk of output items. The data
+    // of all the output items in the chunk are retrieved in one cursor pass
+    // over the data depository (i.e. one gene row at a time), and transposed
+    // into one line per output item.
+    private List<StringBuilder> getChunkData(List<OutputItems> chunk) 
+            throws SQLException 
+    {
         // For time logging purpose.
         long elapsedTime;
         long startTime = System.nanoTime();
-        StringBuilder data = new StringBuilder();
-        String query = "SELECT data[?] FROM data_depository " 
-                     + "WHERE annot_ver = ? ORDER BY genename";
+        List<StringBuilder> data = new ArrayList<>(chunk.size());
+        StringBuilder query = new StringBuilder("SELECT ARRAY[");
         
-        data.append(item.getSubject_id()).append("|").append(item.getPipeline());
+        for (int k = 0; k < chunk.size(); k++) {
+            OutputItems item = chunk.get(k);
+            data.add(new StringBuilder(item.getSubject_id()).append("|").
+                     append(item.getPipeline()));
+            if (k > 0) {
+                query.append(",");
+            }
+            query.append("data[").append(item.getArray_index()).append("]");
+        }
+        query.append("]::text[] FROM data_depository ").
+              append("WHERE annot_ver = ? ORDER BY genename");
+        // The cursor (i.e. fetch size) is only used when auto-commit is off.
+        conn.setAutoCommit(false);
         
-        try (PreparedStatement stm = conn.prepareStatement(query)) {
-            stm.setInt(1, item.getArray_index());
-            stm.setString(2, annot_ver);
+        try (PreparedStatement stm = conn.prepareStatement(query.toString())) {
+            stm.setFetchSize(SystemParametersDB.getExportFetchSize());
+            stm.setString(1, annot_ver);
             ResultSet rs = stm.executeQuery();
             
             while (rs.next()) {
-                data.append("|").append(rs.getString(1));
+                String[] values = (String[]) rs.getArray(1).getArray();
+                
+                for (int k = 0; k < values.length; k++) {
+                    data.get(k).append("|").append(values[k]);
+                }
             }
-            
-            elapsedTime = System.nanoTime() - startTime;
-            logger.debug(item.getSubject_id() + ": " + 
-                    (elapsedTime / 1000000.0) + " msec");
+            conn.commit();
         }
         catch (SQLException e) {
-            logger.error("FAIL to retrieve subject data!");
-            logger.error(e.getMessage());
+            // Rollback the read, the original exception is thrown to the 
+            // caller.
+            try {
+                conn.rollback();
+            }
+            catch (SQLException re) {
+                logger.error("FAIL to rollback export read!");
+                logger.error(re.getMessage());
+            }
+            throw e;
         }
+        finally {
+            try {
+                conn.setAutoCommit(true);
+            }
+            catch (SQLException ae) {
+                logger.error("FAIL to reset auto-commit!");
+                logger.error(ae.getMessage());
+            }
+        }
+        
+        elapsedTime = System.nanoTime() - startTime;
+        logger.debug("Data for " + chunk.size() + " output rows retrieved in " + 
+                (elapsedTime / 1000000.0) + " msec");
 
-        return data.toString();
+        return data;
     }
     
     // Retrieve the finalized data from the database, consolidate and output
-    // them to a text file.
-    private void consolidateFinalizedData() {
+    // them to a text file. The output items are processed in chunks, to keep
+    // the memory usage bounded by the chunk size. Return NOT_OK if the output
+    // is incomplete.
+    private boolean consolidateFinalizedData() {
+        boolean result = Constants.OK;
         // For time logging purpose.
         long elapsedTime;
         long startTime = System.nanoTime();
+        int chunkSize = SystemParametersDB.getExportChunkSize();
 
-        try (PrintStream ps = new PrintStream(new File(finalize_file))) {
+        try (PrintStream ps = new PrintStream(new BufferedOutputStream
+                (new FileOutputStream(finalize_file)))) {
             // Write the header/subject line first
             ps.println(opHeader);
             // Loop through the output items and write the subject output one
-            // at a time.
-            opItemsList.stream().forEach((item) -> {
-                ps.println(getSubjectData(item));
-            });
+            // chunk at a time.
+            for (int from = 0; from < opItemsList.size(); from += chunkSize) {
+                int to = Math.min(from + chunkSize, opItemsList.size());
+                
+                for (StringBuilder line : 
+                        getChunkData(opItemsList.subList(from, to))) {
+                    ps.println(line);
+                }
+            }
+            // PrintStream doesn't throw on write error.
+            if (ps.checkError()) {
+                throw new IOException("Error writing " + finalize_file);
+            }
             elapsedTime = System.nanoTime() - startTime;
             logger.debug("Total time taken to write output: " + 
                     (elapsedTime / 1000000000.0) + " sec.");
         }
         catch (IOException ioe) {
+            result = Constants.NOT_OK;
             logger.error("FAIl to write output to file!");
             logger.error(ioe.getMessage());
         }
+        catch (SQLException e) {
+            result = Constants.NOT_OK;
+            logger.error("FAIL to retrieve subject data!");
+            logger.error(e.getMessage());
+        }
+        
+        return result;
     }
     
     // Retrieve the list of genename that is relevant to the annotation 
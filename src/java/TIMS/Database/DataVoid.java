@@ -26,6 +26,10 @@ package TIMS.Database;
 import TIMS.General.Constants;
 import TIMS.General.FileHelper;
 import TIMS.General.Postman;
+import TIMS.General.ProgressListener;
+import TIMS.General.TaskExecutor;
+import TIMS.Visualizers.CbioArtifactCache;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -38,7 +42,11 @@ import javax.naming.NamingException;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
-public class DataVoid extends Thread {
+// DataVoid unfinalize a study by voiding all it's slots in the data arrays 
+// of data depository, and all it's finalized records. The slots of all the
+// finalized jobs are voided together, in one pass over the gene rows; the 
+// gene rows are updated in batches so that the progress could be reported.
+public class DataVoid implements Runnable {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(DataVoid.class.getName());
@@ -46,11 +54,15 @@ public class DataVoid extends Thread {
     private List<Integer> jobIDList = new ArrayList<>();
     private List<Integer> arrayIndList = new ArrayList<>();
     private final String userName, study_id, annot_ver;
+    // Receive the progress of the unfinalization; default to the task 
+    // registry (i.e. system monitor page).
+    private ProgressListener listener = (stage, done, total) -> 
+            TaskExecutor.reportProgress(stage + " " + done + "/" + total);
+    // Time taken (in nanoseconds) for each stage of the unfinalization.
+    private long indexTime, dataTime, recordTime, commitTime;
+    private int geneCount, batchCount;
     
-    public DataVoid(String userName, String study_id) 
-            throws SQLException, NamingException
-    {
-        conn = DBHelper.getDSConn();
+    public DataVoid(String userName, String study_id) {
         this.userName = userName;
         this.study_id = study_id;
         annot_ver = StudyDB.getStudyAnnotVer(study_id);
@@ -58,36 +70,61 @@ public class DataVoid extends Thread {
         jobIDList = SubmittedJobDB.getFinalizedJobIDs(study_id);
     }
     
+    // Return the key for this unfinalization task; the voided array indexes
+    // will be reused by the next finalization of this annotation version, 
+    // hence they must not run at the same time.
+    public String getTaskKey() {
+        return "finalize|" + annot_ver;
+    }
+    
+    // Replace the default progress listener.
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+    
     @Override
     public void run() {
         boolean unfinResult = Constants.OK;
         // To record the time taken to unfinalize the study.
-        long startTime, elapsedTime;
+        long startTime, elapsedTime, stageTime;
 
-        for (Integer jobID : jobIDList) {
-            arrayIndList.addAll(getArrayIndexes(jobID));
-        }
-        logger.debug("Job IDs: " + jobIDList.toString());
-        logger.debug("Indexes: " + arrayIndList.toString());
-        
         startTime = System.nanoTime();
         try {
+            // Only get the data source connection when the task start running.
+            conn = DBHelper.getDSConn();
             // All the SQL statements executed here will be treated as one
             // big transaction.
             logger.debug("DataVoid start - Set auto-commit to OFF.");
             conn.setAutoCommit(false);
+            // The cBioPortal artifacts of these jobs will be rebuilt when the
+            // jobs are exported again; done here so that it is serialised 
+            // with the cBioPortal imports running under the same task key.
+            for (Integer jobID : jobIDList) {
+                CbioArtifactCache.evict(jobID);
+            }
             
+            stageTime = System.nanoTime();
+            arrayIndList = getArrayIndexes();
+            indexTime = System.nanoTime() - stageTime;
+            logger.debug("Job IDs: " + jobIDList.toString());
+            logger.debug("Indexes: " + arrayIndList.toString());
+            
+            stageTime = System.nanoTime();
             if (!voidAllData()) {
                 logger.error("DataVoid - Hit error when trying to void the data!");
                 unfinResult = Constants.NOT_OK;
             }
-            else {
+            dataTime = System.nanoTime() - stageTime;
+            
+            if (unfinResult) {
                 // All the data in data depository have been voided, now 
                 // proceed to void all the records in finalized output table.
+                stageTime = System.nanoTime();
                 if (!voidAllFinalizedRecords()) {
                     logger.error("DataVoid - Hit error when trying to void the finalized record!");
                     unfinResult = Constants.NOT_OK;
                 }
+                recordTime = System.nanoTime() - stageTime;
             }
             
             if (unfinResult) {
@@ -95,7 +132,14 @@ public class DataVoid extends Thread {
                 StudyDB.updateStudyFinalizedStatus(study_id, false);
                 // All the SQL statements executed successfully, commit the changes.
                 logger.debug("DataVoid - Commit transaction.");
+                stageTime = System.nanoTime();
                 conn.commit();
+                commitTime = System.nanoTime() - stageTime;
+                // Revert the job status to completed once the records are 
+                // voided.
+                for (Integer jobID : jobIDList) {
+                    SubmittedJobDB.updateJobStatusToCompleted(jobID);
+                }
                 // Delete the consolidated output, detail output, and report 
                 // summary from the application folder.
                 Study tmp = StudyDB.getStudyObject(study_id);
@@ -118,7 +162,8 @@ public class DataVoid extends Thread {
             conn.setAutoCommit(true);
             logger.debug("DataVoid completed - Set auto-commit to ON");
         }
-        catch (SQLException e) {
+        catch (SQLException|NamingException e) {
+            unfinResult = Constants.NOT_OK;
             logger.error("FAIL to unfinalize study!");
             logger.error(e.getMessage());
         }
@@ -127,49 +172,142 @@ public class DataVoid extends Thread {
         }
 
         elapsedTime = System.nanoTime() - startTime;
-        logger.debug("Total time taken to unfinalize " + study_id + 
-                " is " + (elapsedTime / 1000000000.0) + " sec.");
+        String timing = getTimingBreakdown(elapsedTime);
+        logger.debug("Unfinalization of " + study_id + " - " + timing);
         // Send un-finalization status email to the user.
-        Postman.sendUnFinalizationStatusEmail(study_id, userName, unfinResult);
+        Postman.sendUnFinalizationStatusEmail(study_id, userName, unfinResult, 
+                                              timing);
+    }
+    
+    // Return the time taken for each stage of the unfinalization.
+    private String getTimingBreakdown(long elapsedTime) {
+        return "Time taken to unfinalize (sec):"
+             + "\n  Retrieve " + arrayIndList.size() + " array indexes: " 
+             + toSec(indexTime)
+             + "\n  Void " + geneCount + " gene rows in " + batchCount 
+             + " batches: " + toSec(dataTime)
+             + "\n  Void finalized records: " + toSec(recordTime)
+             + "\n  Commit: " + toSec(commitTime)
+             + "\n  Total: " + toSec(elapsedTime);
     }
     
-    // Retrieve all the array indexes that belong to this job ID.
-    private List<Integer> getArrayIndexes(int job_id) {
+    // Convert the time from nanoseconds to seconds.
+    private static double toSec(long nanoTime) {
+        return nanoTime / 1000000000.0;
+    }
+    
+    // Retrieve all the array indexes that belong to the finalized jobs of 
+    // this study, in one query.
+    private List<Integer> getArrayIndexes() throws SQLException {
         List<Integer> indexList = new ArrayList<>();
         String query = "SELECT array_index FROM finalized_record WHERE "
-                     + "annot_ver = \'" + annot_ver + "\' AND job_id = " 
-                     + job_id;
+                     + "annot_ver = ? AND job_id = ANY(?) ORDER BY array_index";
         
-        try (PreparedStatement stm = conn.prepareStatement(query);
-             ResultSet rs = stm.executeQuery()) {
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, annot_ver);
+            stm.setArray(2, toSQLArray(jobIDList));
+            ResultSet rs = stm.executeQuery();
+            
             while (rs.next()) {
                 indexList.add(rs.getInt("array_index"));
             }
-            logger.debug("Array indexes retrieved for job ID " + job_id);
-        }
-        catch (SQLException e) {
-            logger.error("FAIL to retrieve array indexes!");
-            logger.error(e.getMessage());
         }
+        logger.debug(indexList.size() + " array indexes retrieved for " + 
+                     study_id);
 
         return indexList;
     }
     
-    // Set all the related data at data depository table to VOID.
+    // Retrieve the genename of this annotation version, in the order used to
+    // split the gene rows into batches.
+    private List<String> getGeneList() throws SQLException {
+        List<String> geneList = new ArrayList<>();
+        String query = "SELECT genename FROM data_depository WHERE "
+                     + "annot_ver = ? ORDER BY genename";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, annot_ver);
+            ResultSet rs = stm.executeQuery();
+            
+            while (rs.next()) {
+                geneList.add(rs.getString(1));
+            }
+        }
+        
+        return geneList;
+    }
+    
+    // Return the number of data arrays of this annotation version that don't
+    // start at subscript 1.
+    private int countShiftedArrays() throws SQLException {
+        int count = 0;
+        String query = "SELECT COUNT(*) FROM data_depository WHERE "
+                     + "annot_ver = ? AND array_lower(data, 1) > 1";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, annot_ver);
+            ResultSet rs = stm.executeQuery();
+            
+            if (rs.next()) {
+                count = rs.getInt(1);
+            }
+        }
+        
+        return count;
+    }
+    
+    // Set all the related data at data depository table to VOID. Each data
+    // array is rebuilt once with all the study's slots voided, instead of 
+    // being updated once per slot. Slots beyond the end of a data array are
+    // already empty, and are left alone.
     private boolean voidAllData() {
         boolean result = Constants.OK;
-        // To record the time taken to void the data.
+        // To record the time taken to void each batch.
         long startTime, elapsedTime;
-        String query = "UPDATE data_depository SET data[?] = \'VOID\' "
-                     + "WHERE annot_ver = \'" + annot_ver + "\'";
+        // Rebuild the array by subscript, so that the voided slots stay 
+        // aligned with the array index even if the array doesn't start at 1.
+        String query = "UPDATE data_depository d SET data = ARRAY(SELECT "
+                     + "CASE WHEN i = ANY(?) THEN \'VOID\' ELSE d.data[i] END "
+                     + "FROM generate_series(1, array_upper(d.data, 1)) i "
+                     + "ORDER BY i) "
+                     + "WHERE d.annot_ver = ? AND d.genename BETWEEN ? AND ? "
+                     + "AND d.data IS NOT NULL";
+        
+        if (arrayIndList.isEmpty()) {
+            logger.debug("No data to void.");
+            return result;
+        }
         
-        try (PreparedStatement stm = conn.prepareStatement(query)) {            
-            for (Integer index : arrayIndList) {
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            List<String> geneList = getGeneList();
+            int shifted = countShiftedArrays();
+            
+            if (shifted > 0) {
+                // The leading slots of these arrays will be filled with NULL 
+                // after the rebuild, the data stay at the same subscript.
+                logger.warn(shifted + " data array(s) under " + annot_ver + 
+                            " have lower bound above 1.");
+            }
+            int batchSize = Math.max(SystemParametersDB.
+                                     getUnfinalizeBatchSize(), 1);
+            
+            geneCount = geneList.size();
+            stm.setArray(1, toSQLArray(arrayIndList));
+            stm.setString(2, annot_ver);
+            listener.progress("Voiding gene rows", 0, geneCount);
+            
+            for (int from = 0; from < geneCount; from += batchSize) {
+                int to = Math.min(from + batchSize, geneCount);
+                
                 startTime = System.nanoTime();
-                voidData(stm, index);
+                stm.setString(3, geneList.get(from));
+                stm.setString(4, geneList.get(to - 1));
+                stm.executeUpdate();
+                batchCount++;
                 elapsedTime = System.nanoTime() - startTime;
-                logger.debug("Void data for index " + index + " took " + 
-                            (elapsedTime / 1000000000.0) + " sec.");
+                logger.debug("Void data for gene " + (from + 1) + " to " + to 
+                           + " took " + toSec(elapsedTime) + " sec.");
+                listener.progress("Voiding gene rows", to, geneCount);
             }
             logger.debug("All data voided.");
         }
@@ -182,28 +320,20 @@ public class DataVoid extends Thread {
         return result;
     }
     
-    // Set the data at data depository table to VOID.
-    private void voidData(PreparedStatement stm, int index) 
-            throws SQLException {
-        stm.setInt(1, index);
-        stm.executeUpdate();
-    }
-    
     // Void all the related records in finalized output table i.e. by setting
     // job_id to 0 and subject_id to VOID.
     private boolean voidAllFinalizedRecords() {
         boolean result = Constants.OK;
         String query = "UPDATE finalized_record SET job_id = 0, "
-                     + "subject_id = \'VOID\' WHERE annot_ver = \'" 
-                     + annot_ver + "\' AND job_id = ?";
+                     + "subject_id = \'VOID\' WHERE annot_ver = ? AND "
+                     + "job_id = ANY(?)";
         
         try (PreparedStatement stm = conn.prepareStatement(query)) {
-            for (Integer jobID : jobIDList) {
-                stm.setInt(1, jobID);
-                stm.executeUpdate();
-                // Revert job status to completed.
-                SubmittedJobDB.updateJobStatusToCompleted(jobID);
-            }
+            stm.setString(1, annot_ver);
+            stm.setArray(2, toSQLArray(jobIDList));
+            int voided = stm.executeUpdate();
+            listener.progress("Voiding finalized records", voided, voided);
+            logger.debug(voided + " finalized records voided.");
         }
         catch (SQLException e) {
             logger.error("FAIL to void finalized record!");
@@ -213,4 +343,9 @@ public class DataVoid extends Thread {
         
         return result;
     }
+    
+    // Convert the list of integers into SQL integer array.
+    private Array toSQLArray(List<Integer> list) throws SQLException {
+        return conn.createArrayOf("int4", list.toArray());
+    }
 }
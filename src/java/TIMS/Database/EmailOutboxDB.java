@@ -0,0 +1,159 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+import TIMS.General.Constants;
+// Libraries for Java
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+// Libraries for Java Extension
+import javax.naming.NamingException;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// EmailOutboxDB keep the emails waiting to be sent in the email_outbox 
+// table; an email is removed once it has been sent.
+public abstract class EmailOutboxDB {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(EmailOutboxDB.class.getName());
+    
+    // Add the email into the outbox, to be sent as soon as possible.
+    public static boolean enqueue(OutboxMessage msg) {
+        Connection conn = null;
+        boolean result = Constants.OK;
+        String query = "INSERT INTO email_outbox(recipients,bcc,subject,body,"
+                     + "queue_time,next_attempt) VALUES(?,?,?,?,?,?)";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setString(1, msg.getRecipients());
+            stm.setString(2, msg.getBcc());
+            stm.setString(3, msg.getSubject());
+            stm.setString(4, msg.getBody());
+            stm.setTimestamp(5, msg.getQueue_time());
+            stm.setTimestamp(6, msg.getQueue_time());
+            stm.executeUpdate();
+            stm.close();
+            logger.debug("Email queued: " + msg.getSubject());
+        }
+        catch (SQLException|NamingException e) {
+            result = Constants.NOT_OK;
+            logger.error("FAIL to queue email: " + msg.getSubject());
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return result;
+    }
+    
+    // Return the emails that are due to be sent, oldest first; those that
+    // have been tried maxAttempts times will be left in the outbox.
+    public static List<OutboxMessage> getDueMessages(int limit, 
+            int maxAttempts) {
+        Connection conn = null;
+        List<OutboxMessage> msgList = new ArrayList<>();
+        String query = "SELECT * FROM email_outbox WHERE next_attempt <= ? "
+                     + "AND attempts < ? ORDER BY msg_id LIMIT ?";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            stm.setInt(2, maxAttempts);
+            stm.setInt(3, limit);
+            ResultSet rs = stm.executeQuery();
+            
+            while (rs.next()) {
+                msgList.add(new OutboxMessage(rs));
+            }
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to retrieve emails from outbox!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return msgList;
+    }
+    
+    // Remove the email that has been sent from the outbox.
+    public static void removeMessage(int msg_id) {
+        Connection conn = null;
+        String query = "DELETE FROM email_outbox WHERE msg_id = ?";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setInt(1, msg_id);
+            stm.executeUpdate();
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to remove email " + msg_id + " from outbox!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+    }
+    
+    // Record the failed attempt to send the email, and the time to try 
+    // again.
+    public static void deferMessage(int msg_id, Timestamp next_attempt, 
+            String error) {
+        Connection conn = null;
+        String query = "UPDATE email_outbox SET attempts = attempts + 1, "
+                     + "next_attempt = ?, last_error = ? WHERE msg_id = ?";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setTimestamp(1, next_attempt);
+            stm.setString(2, error);
+            stm.setInt(3, msg_id);
+            stm.executeUpdate();
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to defer email " + msg_id + "!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+    }
+}
@@ -133,15 +133,19 @@ public class FeatureDB {
     public void updateFeature(Feature fte) throws SQLException, NamingException 
     {
         String query = "UPDATE feature SET status = ? WHERE fcode = ?";
-        Connection conn = DBHelper.getDSConn();
-        PreparedStatement stm = conn.prepareStatement(query);
-        
-        stm.setString(1, fte.getStatus());
-        stm.setString(2, fte.getFcode());
-        // Execute the update statement.
-        stm.executeUpdate();
-        stm.close();
-        
-        DBHelper.closeDSConn(conn);
+        Connection conn = null;
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            
+            stm.setString(1, fte.getStatus());
+            stm.setString(2, fte.getFcode());
+            // Execute the update statement.
+            stm.executeUpdate();
+            stm.close();
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
     }
 }
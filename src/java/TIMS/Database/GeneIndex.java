@@ -0,0 +1,56 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+import java.util.Arrays;
+
+// GeneIndex hold the sorted list of genename that are available for one 
+// annotation version, to allow gene existence check to be done in memory.
+public class GeneIndex {
+    private final String[] genes;
+    // The annotation date and gene count at the time the index is built; to 
+    // detect changes in the annotation.
+    private final String signature;
+    
+    public GeneIndex(String[] genes, String signature) {
+        this.genes = genes;
+        this.signature = signature;
+        Arrays.sort(this.genes);
+    }
+    
+    // Return true if the genename is found in this index.
+    public boolean contains(String genename) {
+        return Arrays.binarySearch(genes, genename) >= 0;
+    }
+    
+    // Return the number of genename in this index.
+    public int size() {
+        return genes.length;
+    }
+    
+    // Machine generated getters
+    public String getSignature() {
+        return signature;
+    }
+}
@@ -0,0 +1,144 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+public abstract class GeneIndexDB {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(GeneIndexDB.class.getName());
+    // The gene index built so far, keyed by table|annot_ver. The cache live
+    // as long as the application; TIMS doesn't add or remove gene rows (they
+    // come with the annotation), and an index is rebuilt when the annotation
+    // date or gene count no longer match it's signature.
+    private final static Map<String, GeneIndex> indexHash = 
+            new ConcurrentHashMap<>();
+    
+    // Return the gene index of data_depository for this annotation version.
+    public static GeneIndex getDepositoryIndex(Connection conn, 
+            String annot_ver) throws SQLException 
+    {
+        return getGeneIndex(conn, "data_depository", annot_ver);
+    }
+    // Return the gene index of vault_data for this annotation version.
+    public static GeneIndex getVaultIndex(Connection conn, String annot_ver) 
+            throws SQLException 
+    {
+        return getGeneIndex(conn, "vault_data", annot_ver);
+    }
+    
+    // Helper function to return the gene index of the table for this 
+    // annotation version. The cached index will only be used if the 
+    // annotation has not changed since the index is built.
+    private static GeneIndex getGeneIndex(Connection conn, String table, 
+            String annot_ver) throws SQLException 
+    {
+        String key = getKey(table, annot_ver);
+        String signature = getSignature(conn, table, annot_ver);
+        GeneIndex index = indexHash.get(key);
+        
+        if ((index == null) || 
+            (index.getSignature().compareTo(signature) != 0)) {
+            index = buildGeneIndex(conn, table, annot_ver, signature);
+            // Only share the index across runs if it is allowed.
+            if (SystemParametersDB.isGeneIndexShared()) {
+                indexHash.put(key, index);
+            }
+        }
+        else {
+            logger.debug("Reuse gene index for " + key);
+        }
+        
+        return index;
+    }
+    
+    // Build the gene index of the table for this annotation version.
+    private static GeneIndex buildGeneIndex(Connection conn, String table, 
+            String annot_ver, String signature) throws SQLException 
+    {
+        List<String> genes = new ArrayList<>();
+        // For time logging purpose.
+        long elapsedTime;
+        long startTime = System.nanoTime();
+        String query = "SELECT genename FROM " + table 
+                     + " WHERE annot_ver = ?";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, annot_ver);
+            ResultSet rs = stm.executeQuery();
+            
+            while (rs.next()) {
+                genes.add(rs.getString("genename"));
+            }
+        }
+        
+        GeneIndex index = new GeneIndex
+                (genes.toArray(new String[genes.size()]), signature);
+        elapsedTime = System.nanoTime() - startTime;
+        logger.debug("Gene index built for " + getKey(table, annot_ver) + 
+                     " with " + index.size() + " genes in " + 
+                     (elapsedTime / 1000000.0) + " msec.");
+        
+        return index;
+    }
+    
+    // Return the signature (i.e. annotation date and gene count) of the table
+    // for this annotation version.
+    private static String getSignature(Connection conn, String table, 
+            String annot_ver) throws SQLException 
+    {
+        String signature = "";
+        String query = "SELECT (SELECT date FROM annotation WHERE annot_ver = ?), "
+                     + "(SELECT COUNT(*) FROM " + table + " WHERE annot_ver = ?)";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, annot_ver);
+            stm.setString(2, annot_ver);
+            ResultSet rs = stm.executeQuery();
+            
+            if (rs.next()) {
+                signature = rs.getString(1) + "|" + rs.getLong(2);
+            }
+        }
+        
+        return signature;
+    }
+    
+    // Return the key used in the cache.
+    private static String getKey(String table, String annot_ver) {
+        return table + "|" + annot_ver;
+    }
+}
@@ -206,18 +206,22 @@ public class InputDataDB {
         int nextSn = Constants.DATABASE_INVALID_ID;
         String query = "SELECT MAX(sn) FROM input_data WHERE study_id = ?";
         
-        conn = DBHelper.getDSConn();
-        PreparedStatement stm = conn.prepareStatement(query);
-        stm.setString(1, studyID);
-        ResultSet rs = stm.executeQuery();
-        
-        if (rs.next()) {
-            // To get the next sn, add 1 to the largest sn for this study_id.
-            nextSn = rs.getInt(1) + 1;
-        }
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setString(1, studyID);
+            ResultSet rs = stm.executeQuery();
+            
+            if (rs.next()) {
+                // To get the next sn, add 1 to the largest sn for this study_id.
+                nextSn = rs.getInt(1) + 1;
+            }
 
-        stm.close();
-        DBHelper.closeDSConn(conn);
+            stm.close();
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
         
         return nextSn;
     }
@@ -0,0 +1,96 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// JobProcess hold the process detail of one pipeline job i.e. the process
+// ID (together with it's start time, to tell it apart from a later process
+// reusing the same ID) and log file, and the resources used by the process.
+public class JobProcess {
+    private final int job_id, pid;
+    private final long start_ticks;
+    private final String log_file;
+    // CPU time in milliseconds, and peak resident memory in KB.
+    private long cpu_time, peak_rss;
+    
+    public JobProcess(int job_id, int pid, long start_ticks, String log_file) {
+        this.job_id = job_id;
+        this.pid = pid;
+        this.start_ticks = start_ticks;
+        this.log_file = log_file;
+    }
+    
+    // Construct the JobProcess object directly using the result set returned
+    // from the database query.
+    public JobProcess(ResultSet rs) throws SQLException {
+        job_id = rs.getInt("job_id");
+        pid = rs.getInt("pid");
+        start_ticks = rs.getLong("start_ticks");
+        log_file = rs.getString("log_file");
+        cpu_time = rs.getLong("cpu_time");
+        peak_rss = rs.getLong("peak_rss");
+    }
+    
+    // Return the CPU time used in hh:mm:ss format.
+    public String getCpuTimeString() {
+        long sec = cpu_time / 1000;
+        
+        return String.format("%02d:%02d:%02d", 
+                             sec / 3600, (sec % 3600) / 60, sec % 60);
+    }
+    
+    // Return the peak resident memory in MB.
+    public String getPeakRssString() {
+        return String.format("%.1f MB", peak_rss / 1024.0);
+    }
+    
+    // Machine generated getters and setters
+    public int getJob_id() {
+        return job_id;
+    }
+    public int getPid() {
+        return pid;
+    }
+    public long getStart_ticks() {
+        return start_ticks;
+    }
+    public String getLog_file() {
+        return log_file;
+    }
+    public long getCpu_time() {
+        return cpu_time;
+    }
+    public void setCpu_time(long cpu_time) {
+        this.cpu_time = cpu_time;
+    }
+    public long getPeak_rss() {
+        return peak_rss;
+    }
+    public void setPeak_rss(long peak_rss) {
+        this.peak_rss = peak_rss;
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+import TIMS.General.Constants;
+// Libraries for Java
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+// Libraries for Java Extension
+import javax.naming.NamingException;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// JobProcessDB keep the process detail of the pipeline jobs in the 
+// job_process table, so that the running pipelines could be found again 
+// after a restart of the application server.
+public abstract class JobProcessDB {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(JobProcessDB.class.getName());
+    
+    // Record the process started for the pipeline job.
+    public static boolean insertJobProcess(JobProcess jp) {
+        Connection conn = null;
+        boolean result = Constants.OK;
+        String query = "INSERT INTO job_process(job_id,pid,start_ticks,"
+                     + "log_file) VALUES(?,?,?,?)";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setInt(1, jp.getJob_id());
+            stm.setInt(2, jp.getPid());
+            stm.setLong(3, jp.getStart_ticks());
+            stm.setString(4, jp.getLog_file());
+            stm.executeUpdate();
+            stm.close();
+            logger.debug("Process " + jp.getPid() + " recorded for job " 
+                       + jp.getJob_id());
+        }
+        catch (SQLException|NamingException e) {
+            result = Constants.NOT_OK;
+            logger.error("FAIL to record process for job " + jp.getJob_id());
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return result;
+    }
+    
+    // Update the resources used by the pipeline job.
+    public static void updateUsage(JobProcess jp) {
+        Connection conn = null;
+        String query = "UPDATE job_process SET cpu_time = ?, peak_rss = ? "
+                     + "WHERE job_id = ?";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setLong(1, jp.getCpu_time());
+            stm.setLong(2, jp.getPeak_rss());
+            stm.setInt(3, jp.getJob_id());
+            stm.executeUpdate();
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to update resource usage for job " 
+                       + jp.getJob_id());
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+    }
+    
+    // Return the process detail of the pipeline job, or null if it is not 
+    // found.
+    public static JobProcess getJobProcess(int job_id) {
+        Connection conn = null;
+        JobProcess jp = null;
+        String query = "SELECT * FROM job_process WHERE job_id = ?";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setInt(1, job_id);
+            ResultSet rs = stm.executeQuery();
+            
+            if (rs.next()) {
+                jp = new JobProcess(rs);
+            }
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to retrieve process for job " + job_id);
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return jp;
+    }
+}
@@ -0,0 +1,171 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+import TIMS.General.Constants;
+// Libraries for Java
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+// Libraries for Java Extension
+import javax.naming.NamingException;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// JobQueueDB keep the pipeline jobs waiting to be started in the job_queue
+// table, so that they will survive a restart of the application server.
+public abstract class JobQueueDB {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(JobQueueDB.class.getName());
+    
+    // Add the job into the job queue.
+    public static boolean enqueue(QueuedJob job) {
+        Connection conn = null;
+        boolean result = Constants.OK;
+        String query = "INSERT INTO job_queue(job_id,priority,config_file,"
+                     + "log_file,queue_time) VALUES(?,?,?,?,?)";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setInt(1, job.getJob_id());
+            stm.setInt(2, job.getPriority());
+            stm.setString(3, job.getConfig_file());
+            stm.setString(4, job.getLog_file());
+            stm.setTimestamp(5, job.getQueue_time());
+            stm.executeUpdate();
+            stm.close();
+            logger.debug("Job " + job.getJob_id() + " added to job queue.");
+        }
+        catch (SQLException|NamingException e) {
+            result = Constants.NOT_OK;
+            logger.error("FAIL to add job " + job.getJob_id() + " to job queue!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return result;
+    }
+    
+    // Remove the job from the job queue. Return true if the job is found in
+    // the queue i.e. it has not been removed by someone else.
+    public static boolean dequeue(int job_id) {
+        Connection conn = null;
+        boolean result = Constants.NOT_OK;
+        String query = "DELETE FROM job_queue WHERE job_id = ?";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setInt(1, job_id);
+            result = stm.executeUpdate() > 0;
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to remove job " + job_id + " from job queue!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return result;
+    }
+    
+    // Return the jobs in the job queue, in the order they should be started
+    // i.e. highest priority first, and then first come first serve. The 
+    // resources needed are taken from the current pipeline setting.
+    public static List<QueuedJob> getQueuedJobs() {
+        Connection conn = null;
+        List<QueuedJob> jobList = new ArrayList<>();
+        String query = "SELECT q.job_id, q.priority, q.config_file, "
+                     + "q.log_file, q.queue_time, j.study_id, j.user_id, "
+                     + "j.pipeline_name, p.cpu_slots, p.memory_mb "
+                     + "FROM job_queue q JOIN submitted_job j USING (job_id) "
+                     + "JOIN pipeline p ON p.name = j.pipeline_name "
+                     + "ORDER BY q.priority DESC, q.queue_time, q.job_id";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            ResultSet rs = stm.executeQuery();
+            
+            while (rs.next()) {
+                jobList.add(new QueuedJob(rs));
+            }
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to retrieve job queue!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return jobList;
+    }
+    
+    // Return the jobs that are still in-progress when the application server
+    // is started i.e. their pipelines were started before the restart. The
+    // resources needed are taken from the current pipeline setting.
+    public static List<QueuedJob> getOrphanedJobs() {
+        Connection conn = null;
+        List<QueuedJob> jobList = new ArrayList<>();
+        String query = "SELECT j.job_id, p.priority, NULL AS config_file, "
+                     + "jp.log_file, j.submit_time AS queue_time, j.study_id, "
+                     + "j.user_id, j.pipeline_name, p.cpu_slots, p.memory_mb "
+                     + "FROM submitted_job j JOIN pipeline p ON "
+                     + "p.name = j.pipeline_name LEFT JOIN job_process jp "
+                     + "USING (job_id) WHERE j.status_id = ? ORDER BY j.job_id";
+        
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setInt(1, JobStatusDB.inprogress());
+            ResultSet rs = stm.executeQuery();
+            
+            while (rs.next()) {
+                jobList.add(new QueuedJob(rs));
+            }
+            stm.close();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to retrieve orphaned jobs!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return jobList;
+    }
+}
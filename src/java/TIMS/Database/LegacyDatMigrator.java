@@ -0,0 +1,201 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+import TIMS.General.CompactListCodec;
+import TIMS.General.Constants;
+// Libraries for Java
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+// Libraries for Java Extension
+import javax.naming.NamingException;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// LegacyDatMigrator re-encode the list blobs that are still stored using Java
+// serialization into the compact format. The rows are processed in batches 
+// (keyset pagination over the primary key), and each batch is committed 
+// separately so that the migration could be run while the system is in use,
+// and resumed if it is interrupted.
+public class LegacyDatMigrator implements Runnable {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(LegacyDatMigrator.class.getName());
+    private final static int BATCH_SIZE = 500;
+    // Java serialization stream magic.
+    private final static byte[] LEGACY_MAGIC = {(byte) 0xAC, (byte) 0xED};
+    private final String user_name;
+    
+    // The list blob columns to be migrated, together with the primary key
+    // of their table.
+    private enum Target {
+        SUBJECT_RECORD("subject_record", "dat", 
+                "study_id", "subject_id", "record_date"),
+        STUDY_COLUMN_NAME("study", "data_col_name_list", "study_id"),
+        STUDY_SPECIFIC_FIELDS("study_specific_fields", "fields", 
+                "study_id", "category");
+        
+        private final String table, column;
+        private final String[] keys;
+        
+        private Target(String table, String column, String... keys) {
+            this.table = table;
+            this.column = column;
+            this.keys = keys;
+        }
+    }
+    
+    public LegacyDatMigrator(String user_name) {
+        this.user_name = user_name;
+    }
+    
+    @Override
+    public void run() {
+        logger.info(user_name + ": start migration of legacy list blobs.");
+        
+        for (Target target : Target.values()) {
+            if (!migrate(target)) {
+                logger.error("Migration of legacy list blobs stopped at " 
+                           + target.table + "." + target.column);
+                return;
+            }
+        }
+        logger.info(user_name + ": migration of legacy list blobs completed.");
+    }
+    
+    // Re-encode all the legacy blobs in this target column, one batch at a 
+    // time.
+    private boolean migrate(Target target) {
+        boolean result = Constants.OK;
+        Connection conn = null;
+        String keyList = String.join(", ", target.keys);
+        StringBuilder params = new StringBuilder();
+        StringBuilder keyCond = new StringBuilder();
+        
+        for (String key : target.keys) {
+            params.append(params.length() == 0 ? "?" : ", ?");
+            keyCond.append(keyCond.length() == 0 ? "" : " AND ").
+                    append(key).append(" = ?");
+        }
+        String select = "SELECT " + keyList + ", " + target.column + " FROM " 
+                + target.table + " WHERE substring(" + target.column 
+                + " from 1 for 2) = ?";
+        // The batch is locked until it is committed, so that an update made 
+        // by the user in between is not overwritten by the re-encoded blob.
+        String firstBatch = select + " ORDER BY " + keyList 
+                + " LIMIT ? FOR UPDATE";
+        String nextBatch = select + " AND (" + keyList + ") > (" + params 
+                + ") ORDER BY " + keyList + " LIMIT ? FOR UPDATE";
+        String update = "UPDATE " + target.table + " SET " + target.column 
+                + " = ? WHERE " + keyCond;
+        Object[] lastKey = null;
+        int migrated = 0, failed = 0;
+        
+        try {
+            conn = DBHelper.getDSConn();
+            conn.setAutoCommit(false);
+            
+            while (true) {
+                PreparedStatement queryStm = conn.prepareStatement
+                        (lastKey == null ? firstBatch : nextBatch);
+                int index = 1;
+                queryStm.setBytes(index++, LEGACY_MAGIC);
+                if (lastKey != null) {
+                    for (Object key : lastKey) {
+                        queryStm.setObject(index++, key);
+                    }
+                }
+                queryStm.setInt(index, BATCH_SIZE);
+                ResultSet rs = queryStm.executeQuery();
+                PreparedStatement updateStm = conn.prepareStatement(update);
+                List<Object[]> batchKeys = new ArrayList<>();
+                
+                while (rs.next()) {
+                    Object[] key = new Object[target.keys.length];
+                    for (int i = 0; i < key.length; i++) {
+                        key[i] = rs.getObject(i + 1);
+                    }
+                    batchKeys.add(key);
+                    List<String> values = CompactListCodec.decode
+                            (rs.getBytes(key.length + 1));
+                    
+                    if (values == null) {
+                        // Leave this blob untouched; it will be skipped by 
+                        // the keyset condition in the next batch.
+                        failed++;
+                        continue;
+                    }
+                    updateStm.setBytes(1, CompactListCodec.encode(values));
+                    for (int i = 0; i < key.length; i++) {
+                        updateStm.setObject(i + 2, key[i]);
+                    }
+                    updateStm.addBatch();
+                    migrated++;
+                }
+                rs.close();
+                queryStm.close();
+                updateStm.executeBatch();
+                updateStm.close();
+                conn.commit();
+                
+                if (batchKeys.size() < BATCH_SIZE) {
+                    break;
+                }
+                lastKey = batchKeys.get(batchKeys.size() - 1);
+            }
+            logger.info(target.table + "." + target.column + ": " + migrated 
+                      + " blob(s) migrated, " + failed + " blob(s) failed.");
+        }
+        catch (SQLException|NamingException e) {
+            result = Constants.NOT_OK;
+            logger.error("FAIL to migrate legacy blobs in " + target.table 
+                       + "." + target.column + "!");
+            logger.error(e.getMessage());
+            rollback(conn);
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        
+        return result;
+    }
+    
+    // Rollback the uncommitted batch.
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            }
+            catch (SQLException e) {
+                logger.error("FAIL to rollback migration batch!");
+                logger.error(e.getMessage());
+            }
+        }
+    }
+}
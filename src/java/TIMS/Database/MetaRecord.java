@@ -51,17 +51,31 @@ public class MetaRecord {
     private int index;
     private List<String> dat;
     private RecordStatusEnum record_status_enum;
+    // The records could be created in parallel during upload; DecimalFormat 
+    // and SimpleDateFormat are not thread-safe, hence each thread will reuse
+    // its own copy.
     // Round off all the height and weight to 2 decimal places.
-    public static final DecimalFormat heightWeightDF = new DecimalFormat("#.##");
+    private static final ThreadLocal<DecimalFormat> heightWeightDF = 
+        ThreadLocal.withInitial(() -> new DecimalFormat("#.##"));
     // Round off all the age to 1 decimal place.
-    public static DecimalFormat ageDF = new DecimalFormat("#.#");
-    // Read in the date in dd/MM/yy format.
-    public static final SimpleDateFormat datef = new SimpleDateFormat("dd/MM/yyyy");
-    public static final SimpleDateFormat dateTimef = new SimpleDateFormat("dd/MM/yyyy hh:mm a");
-    public final DateTimeFormatter dtf_ddMMyyyy = DateTimeFormatter.ofPattern
-        ("dd/MM/yyyy", Locale.ENGLISH);
-    public final DateTimeFormatter dtf_yyyyMMdd = DateTimeFormatter.ofPattern
-        ("yyyy-MM-dd", Locale.ENGLISH);
+    private static final ThreadLocal<DecimalFormat> ageDF = 
+        ThreadLocal.withInitial(() -> {
+            DecimalFormat df = new DecimalFormat("#.#");
+            df.setRoundingMode(RoundingMode.UP);
+            df.setMinimumFractionDigits(1);
+            return df;
+        });
+    // Read in the date in dd/MM/yyyy format.
+    private static final ThreadLocal<SimpleDateFormat> datef = 
+        ThreadLocal.withInitial(() -> {
+            SimpleDateFormat df = new SimpleDateFormat("dd/MM/yyyy");
+            df.setLenient(false);
+            return df;
+        });
+    private static final DateTimeFormatter dtf_ddMMyyyy = 
+        DateTimeFormatter.ofPattern("dd/MM/yyyy", Locale.ENGLISH);
+    private static final DateTimeFormatter dtf_yyyyMMdd = 
+        DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.ENGLISH);
     private static final Pattern DATE_PATTERN = 
         Pattern.compile("^\\d{1,2}/\\d{1,2}/\\d{4}$");
     private static final Pattern HEIGHT_PATTERN = 
@@ -85,9 +99,6 @@ public class MetaRecord {
         this.index = index;
         this.record_status_enum = RecordStatusEnum.START;
         this.msg = "Record #" + index + " start.";
-        datef.setLenient(false);
-        ageDF.setRoundingMode(RoundingMode.UP);
-        ageDF.setMinimumFractionDigits(1);
         
         if (!checkRecordDateValidity(record_date)) {
             this.record_status_enum = RecordStatusEnum.INVALID_DATE;
@@ -123,13 +134,13 @@ public class MetaRecord {
         // Round off height and weight to 2 decimal places.
         if (this.record_status_enum == RecordStatusEnum.START) {
             if (!height.isEmpty()) {
-                this.height = heightWeightDF.format(Double.parseDouble(height));
+                this.height = heightWeightDF.get().format(Double.parseDouble(height));
             }
             if (!weight.isEmpty()) {
-                this.weight = heightWeightDF.format(Double.parseDouble(weight));
+                this.weight = heightWeightDF.get().format(Double.parseDouble(weight));
             }
             if (!age_at_baseline.isEmpty()) {
-                this.age_at_baseline = ageDF.format(Double.parseDouble(age_at_baseline));
+                this.age_at_baseline = ageDF.get().format(Double.parseDouble(age_at_baseline));
             }
         }
     }
@@ -256,7 +267,7 @@ public class MetaRecord {
     // Test the validity of the record date string.
     private boolean checkRecordDateValidity(String date_str) {
         try {
-            Date date = datef.parse(date_str);
+            Date date = datef.get().parse(date_str);
             record_date = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
             // Further check to make sure the year is 4 digits.
             return DATE_PATTERN.matcher(date_str).matches();
@@ -268,7 +279,7 @@ public class MetaRecord {
     // Test the validity of the date of birth string.
     private boolean checkDOBValidity(String date_str) {
         try {
-            Date date = datef.parse(date_str);
+            Date date = datef.get().parse(date_str);
             dob = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
             // Further check to make sure the year is 4 digits.
             return DATE_PATTERN.matcher(date_str).matches();
@@ -283,20 +294,6 @@ public class MetaRecord {
                (subject_id.isEmpty() || casecontrol.isEmpty());
     }
     
-    // Return the Prolog query that will be used to validate the meta record.
-    public String getPrologQuery() {
-        // partial_validate(Race,Gender)
-        if (!height.isEmpty() && !weight.isEmpty()) {
-            return "full_validate(" + race.toLowerCase() + "," + 
-                   gender.toLowerCase() + "," + casecontrol.toLowerCase() + 
-                   "," + height + "," + weight + ")";
-        }
-        else {
-            return "partial_validate(" + race.toLowerCase() + "," + 
-                    gender.toLowerCase() + "," + casecontrol.toLowerCase() + ")";
-        }
-    }
-    
     // Return the consolidation core data as a string.
     public String getCoreData() {
         return index + ": " + race + " - " + gender + " - " + 
@@ -0,0 +1,82 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+// OutboxMessage hold one email waiting in the email outbox to be sent.
+public class OutboxMessage {
+    private int msg_id, attempts;
+    // The recipients and bcc are comma separated email addresses.
+    private final String recipients, bcc, subject, body;
+    private final Timestamp queue_time;
+    
+    // Create the email to be added into the email outbox.
+    public OutboxMessage(String recipients, String bcc, String subject, 
+            String body) {
+        this.recipients = recipients;
+        this.bcc = bcc;
+        this.subject = subject;
+        this.body = body;
+        queue_time = new Timestamp(System.currentTimeMillis());
+    }
+    
+    // Construct the OutboxMessage object directly using the result set 
+    // returned from the database query.
+    public OutboxMessage(ResultSet rs) throws SQLException {
+        msg_id = rs.getInt("msg_id");
+        attempts = rs.getInt("attempts");
+        recipients = rs.getString("recipients");
+        bcc = rs.getString("bcc");
+        subject = rs.getString("subject");
+        body = rs.getString("body");
+        queue_time = rs.getTimestamp("queue_time");
+    }
+    
+    // Machine generated getters
+    public int getMsg_id() {
+        return msg_id;
+    }
+    public int getAttempts() {
+        return attempts;
+    }
+    public String getRecipients() {
+        return recipients;
+    }
+    public String getBcc() {
+        return bcc;
+    }
+    public String getSubject() {
+        return subject;
+    }
+    public String getBody() {
+        return body;
+    }
+    public Timestamp getQueue_time() {
+        return queue_time;
+    }
+}
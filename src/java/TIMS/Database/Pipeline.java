@@ -30,6 +30,9 @@ import java.sql.SQLException;
 public class Pipeline implements Serializable {
     private String name, description, tid, command, parameter;
     private boolean editable;
+    // The CPU slots and memory (in MB) needed to run this pipeline, and the
+    // priority of it's jobs in the job queue.
+    private int cpu_slots, memory_mb, priority;
 
     // Machine generated constructor
     public Pipeline(String name, String description, String tid, String command, 
@@ -40,6 +43,9 @@ public class Pipeline implements Serializable {
         this.command = command;
         this.parameter = parameter;
         this.editable = editable;
+        cpu_slots = 1;
+        memory_mb = 0;
+        priority = 5;
     }
     
     // Construct the Pipeline object directly using the result set returned
@@ -51,6 +57,9 @@ public class Pipeline implements Serializable {
         this.command = rs.getString("command");
         this.parameter = rs.getString("parameter");
         this.editable = rs.getBoolean("editable");
+        this.cpu_slots = rs.getInt("cpu_slots");
+        this.memory_mb = rs.getInt("memory_mb");
+        this.priority = rs.getInt("priority");
     }
 
     // Return the String representation of the pipeline command 
@@ -97,4 +106,22 @@ public class Pipeline implements Serializable {
     public void setEditable(boolean editable) {
         this.editable = editable;
     }
+    public int getCpu_slots() {
+        return cpu_slots;
+    }
+    public void setCpu_slots(int cpu_slots) {
+        this.cpu_slots = cpu_slots;
+    }
+    public int getMemory_mb() {
+        return memory_mb;
+    }
+    public void setMemory_mb(int memory_mb) {
+        this.memory_mb = memory_mb;
+    }
+    public int getPriority() {
+        return priority;
+    }
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
 }
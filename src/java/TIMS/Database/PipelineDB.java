@@ -148,18 +148,22 @@ public class PipelineDB {
         Pipeline command = null;
         String query = "SELECT * FROM pipeline WHERE name = ?";
         
-        conn = DBHelper.getDSConn();
-        PreparedStatement stm = conn.prepareStatement(query);
-        
-        stm.setString(1, plName);
-        ResultSet rs = stm.executeQuery();
-        
-        if (rs.next()) {
-            command = new Pipeline(rs);
-        }
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            
+            stm.setString(1, plName);
+            ResultSet rs = stm.executeQuery();
+            
+            if (rs.next()) {
+                command = new Pipeline(rs);
+            }
 
-        stm.close();
-        DBHelper.closeDSConn(conn);
+            stm.close();
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
         
         return command;
     }
@@ -196,7 +200,8 @@ public class PipelineDB {
         Connection conn = null;
         boolean result = Constants.OK;
         String query = "UPDATE pipeline SET description = ?, command = ?, "
-                     + "parameter = ?, tid = ?, editable = ? WHERE name = ?";
+                     + "parameter = ?, tid = ?, editable = ?, cpu_slots = ?, "
+                     + "memory_mb = ?, priority = ? WHERE name = ?";
         
         try {
             conn = DBHelper.getDSConn();
@@ -206,7 +211,10 @@ public class PipelineDB {
             stm.setString(3, cmd.getParameter());
             stm.setString(4, cmd.getTid());
             stm.setBoolean(5, cmd.isEditable());
-            stm.setString(6, cmd.getName());
+            stm.setInt(6, cmd.getCpu_slots());
+            stm.setInt(7, cmd.getMemory_mb());
+            stm.setInt(8, cmd.getPriority());
+            stm.setString(9, cmd.getName());
             stm.executeUpdate();
             stm.close();
         }
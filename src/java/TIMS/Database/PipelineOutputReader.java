@@ -0,0 +1,256 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// PipelineOutputReader stream the pipeline output of a job directly out of 
+// it's zip file (created by ExitListener); no temporary copy of the output 
+// is written to disk. The first line of the output is the header, and the
+// subject IDs start from the 3rd column of the header. The header of the 
+// recently read outputs are cached per job, so that the subject list could
+// be retrieved without opening the zip file again.
+public class PipelineOutputReader implements AutoCloseable, Iterable<String> {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(PipelineOutputReader.class.getName());
+    private final static int BUFFER_SIZE = 256 * 1024;
+    private final static int MAX_HEADERS = 200;
+    // Subject IDs start from the 3rd column (i.e. after geneID and EntrezID).
+    public final static int SUBJECT_OFFSET = 2;
+    // Recently read headers, in access order.
+    private final static Map<Integer, CachedHeader> headers = 
+        new LinkedHashMap<Integer, CachedHeader>(32, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry
+                (Map.Entry<Integer, CachedHeader> eldest) {
+                return size() > MAX_HEADERS;
+            }
+        };
+    private final int job_id;
+    private final File zip;
+    private final ZipFile zipFile;
+    private final ZipEntry entry;
+    private BufferedReader br;
+    private String header;
+    private boolean headerRead;
+    
+    // Open the pipeline output of this job for reading.
+    public PipelineOutputReader(int job_id) throws IOException {
+        this.job_id = job_id;
+        zip = new File(SubmittedJobDB.getOutputPath(job_id));
+        zipFile = new ZipFile(zip);
+        entry = firstEntry(zipFile);
+        
+        if (entry == null) {
+            zipFile.close();
+            throw new IOException("No output found in " + zip.getName() + 
+                                  " for job ID " + job_id);
+        }
+    }
+    
+    // Return the first file entry in the zip file; the output zip of a job 
+    // only contain the pipeline output.
+    private static ZipEntry firstEntry(ZipFile zf) {
+        Enumeration<? extends ZipEntry> entries = zf.entries();
+        
+        while (entries.hasMoreElements()) {
+            ZipEntry ze = entries.nextElement();
+            if (!ze.isDirectory()) {
+                return ze;
+            }
+        }
+        
+        return null;
+    }
+    
+    // Open the reader on the output entry only when it is first needed.
+    private BufferedReader reader() throws IOException {
+        if (br == null) {
+            br = new BufferedReader(new InputStreamReader(
+                    zipFile.getInputStream(entry), StandardCharsets.UTF_8), 
+                    BUFFER_SIZE);
+        }
+        
+        return br;
+    }
+    
+    // Return the header (i.e. first line) of the output; null if the output
+    // is empty. The header will be cached for this job.
+    public String getHeader() throws IOException {
+        if (!headerRead) {
+            header = reader().readLine();
+            headerRead = true;
+            if (header != null) {
+                cacheHeader(job_id, zip.lastModified(), header);
+            }
+        }
+        
+        return header;
+    }
+    
+    // Return the next record (i.e. line after the header) of the output; 
+    // null when the end of the output is reached.
+    public String readLine() throws IOException {
+        getHeader();
+        return reader().readLine();
+    }
+
+    // Return an iterator over the remaining records of the output.
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private String next;
+            private boolean done;
+            
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done) {
+                    try {
+                        next = readLine();
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    done = (next == null);
+                }
+                return next != null;
+            }
+            
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String line = next;
+                next = null;
+                return line;
+            }
+        };
+    }
+    
+    // Copy the output as it is to the target file; for external tools that 
+    // can only work on a file i.e. cBioPortal importer.
+    public void copyTo(Path target) throws IOException {
+        try (InputStream is = zipFile.getInputStream(entry)) {
+            Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    // Return the name of the output file stored in the zip.
+    public String getEntryName() {
+        return new File(entry.getName()).getName();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            if (br != null) {
+                br.close();
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+    }
+    
+    // Return the list of subject IDs found in the header of the output of
+    // this job; from the cache if the output has not changed since.
+    public static List<String> getSubjectList(int job_id) throws IOException {
+        String path = SubmittedJobDB.getOutputPath(job_id);
+        long lastModified = new File(path).lastModified();
+        CachedHeader cached;
+        
+        synchronized (headers) {
+            cached = headers.get(job_id);
+        }
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.subjects;
+        }
+        
+        try (PipelineOutputReader reader = new PipelineOutputReader(job_id)) {
+            if (reader.getHeader() == null) {
+                throw new IOException("The output file is empty!");
+            }
+        }
+        synchronized (headers) {
+            cached = headers.get(job_id);
+        }
+        
+        return cached.subjects;
+    }
+    
+    // Store the header of the output of this job into the cache.
+    private static void cacheHeader(int job_id, long lastModified, 
+            String header) {
+        CachedHeader cached = new CachedHeader(lastModified, header);
+        
+        synchronized (headers) {
+            headers.put(job_id, cached);
+        }
+        logger.debug("Header cached for job ID " + job_id + " - " + 
+                     cached.subjects.size() + " subjects.");
+    }
+    
+    // Header of an output together with the subject IDs found in it.
+    private static class CachedHeader {
+        private final long lastModified;
+        private final List<String> subjects;
+        
+        CachedHeader(long lastModified, String header) {
+            this.lastModified = lastModified;
+            String[] columns = header.split("\t");
+            List<String> list = new ArrayList<>();
+            if (columns.length > SUBJECT_OFFSET) {
+                list.addAll(Arrays.asList(columns).
+                            subList(SUBJECT_OFFSET, columns.length));
+            }
+            subjects = Collections.unmodifiableList(list);
+        }
+    }
+}
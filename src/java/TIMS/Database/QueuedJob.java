@@ -0,0 +1,113 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+
+// QueuedJob hold one pipeline job in the job queue, together with the 
+// resources (i.e. CPU slots and memory) it need to run.
+public class QueuedJob {
+    private final int job_id, priority;
+    private final String study_id, user_id, pipeline_name, config_file, 
+                         log_file;
+    private final Timestamp queue_time;
+    private int cpu_slots, memory_mb;
+    
+    // Create the job to be added into the job queue.
+    public QueuedJob(int job_id, String study_id, String user_id, 
+            String pipeline_name, int priority, String config_file, 
+            String log_file) {
+        this.job_id = job_id;
+        this.study_id = study_id;
+        this.user_id = user_id;
+        this.pipeline_name = pipeline_name;
+        this.priority = priority;
+        this.config_file = config_file;
+        this.log_file = log_file;
+        queue_time = new Timestamp(System.currentTimeMillis());
+    }
+    
+    // Construct the QueuedJob object directly using the result set returned
+    // from the database query.
+    public QueuedJob(ResultSet rs) throws SQLException {
+        job_id = rs.getInt("job_id");
+        study_id = rs.getString("study_id");
+        user_id = rs.getString("user_id");
+        pipeline_name = rs.getString("pipeline_name");
+        priority = rs.getInt("priority");
+        config_file = rs.getString("config_file");
+        log_file = rs.getString("log_file");
+        queue_time = rs.getTimestamp("queue_time");
+        cpu_slots = rs.getInt("cpu_slots");
+        memory_mb = rs.getInt("memory_mb");
+    }
+    
+    // Return the time the job is queued in string format.
+    public String getQueueTimeString() {
+        return new SimpleDateFormat("dd-MMM-yyyy hh:mm:ss a").
+                format(queue_time);
+    }
+    
+    @Override
+    public String toString() {
+        return "Job ID " + job_id + " (" + pipeline_name + ", " + cpu_slots 
+             + " CPU slots, " + memory_mb + " MB)";
+    }
+    
+    // Machine generated getters
+    public int getJob_id() {
+        return job_id;
+    }
+    public int getPriority() {
+        return priority;
+    }
+    public String getStudy_id() {
+        return study_id;
+    }
+    public String getUser_id() {
+        return user_id;
+    }
+    public String getPipeline_name() {
+        return pipeline_name;
+    }
+    public String getConfig_file() {
+        return config_file;
+    }
+    public String getLog_file() {
+        return log_file;
+    }
+    public Timestamp getQueue_time() {
+        return queue_time;
+    }
+    public int getCpu_slots() {
+        return cpu_slots;
+    }
+    public int getMemory_mb() {
+        return memory_mb;
+    }
+}
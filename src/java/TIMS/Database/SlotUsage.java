@@ -0,0 +1,60 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// SlotUsage record the array index (i.e. slot in the data array) usage of 
+// the finalized records of one annotation version; to be displayed in the 
+// system monitor page.
+public class SlotUsage {
+    private final String annot_ver;
+    private final int liveSlots, voidSlots, maxIndex;
+    
+    public SlotUsage(String annot_ver, int liveSlots, int voidSlots, 
+            int maxIndex) {
+        this.annot_ver = annot_ver;
+        this.liveSlots = liveSlots;
+        this.voidSlots = voidSlots;
+        this.maxIndex = maxIndex;
+    }
+    
+    // Return the percentage of the data array occupied by voided or unused
+    // slots.
+    public double getWastedPercent() {
+        return maxIndex == 0 ? 0 : 100.0 * (maxIndex - liveSlots) / maxIndex;
+    }
+    
+    // Machine generated getters
+    public String getAnnot_ver() {
+        return annot_ver;
+    }
+    public int getLiveSlots() {
+        return liveSlots;
+    }
+    public int getVoidSlots() {
+        return voidSlots;
+    }
+    public int getMaxIndex() {
+        return maxIndex;
+    }
+}
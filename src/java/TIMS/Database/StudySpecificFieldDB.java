@@ -83,6 +83,8 @@ public class StudySpecificFieldDB {
             }
             stm.executeUpdate();
             stm.close();
+            // Dashboard statistics of this study need to be rebuilt.
+            DashboardStatsDB.invalidate(study_id);
             
             logger.info(oper);
         }
@@ -203,6 +205,8 @@ public class StudySpecificFieldDB {
             stm.setString(1, study_id);
             stm.executeUpdate();
             stm.close();
+            // Dashboard statistics of this study need to be rebuilt.
+            DashboardStatsDB.invalidate(study_id);
         }
         catch (SQLException|NamingException e) {
             logger.error(err);
@@ -61,6 +61,8 @@ public class SubjectDB {
             stm.setString(1, study_id);
             stm.executeUpdate();
             stm.close();
+            // Dashboard statistics of this study need to be rebuilt.
+            DashboardStatsDB.invalidate(study_id);
         }
         catch (SQLException|NamingException e) {
             logger.error("FAIL to delete subjects belonging to " + study_id);
@@ -23,6 +23,7 @@
 //
 package TIMS.Database;
 
+import TIMS.General.CompactListCodec;
 import TIMS.General.Constants;
 import TIMS.General.FileHelper;
 // Libraries for Java
@@ -42,6 +43,8 @@ public class SubjectDetail {
     private LocalDate record_date, dob;
     private byte[] dat;
     private Map<String, String> data_hashmap;
+    // Column name to position in dat; used when dat is in compact format.
+    private Map<String, Integer> col_index;
     // Store the specific field content of this subject detail.
     private StringBuilder ssf_content;
     public final static String FIELD_BREAKER = "|";
@@ -119,8 +122,35 @@ public class SubjectDetail {
         return result;
     }
     
-    // Retrieve the data value of this column from the hashmap.
+    // Link the column name to position map (shared across all the subject 
+    // details of the study) to this subject detail. If dat is in compact 
+    // format, the column value will be read directly from dat when needed;
+    // else dat will be converted to hashmap.
+    public boolean linkColumnIndex(Map<String, Integer> colIndex, 
+            List<String> colNameL) 
+    {
+        if (CompactListCodec.isCompact(dat)) {
+            if (CompactListCodec.getCount(dat) < colNameL.size()) {
+                // Something is wrong if the column name list is longer than
+                // the data list.
+                return Constants.NOT_OK;
+            }
+            col_index = colIndex;
+            return Constants.OK;
+        }
+        
+        return convertDataToHashMap(colNameL);
+    }
+    
+    // Retrieve the data value of this column from the hashmap (or directly
+    // from dat if the column index has been linked).
     public String retrieveDataFromHashMap(String column) {
+        if (col_index != null) {
+            Integer index = col_index.get(column);
+            
+            return (index == null) ? null : 
+                    CompactListCodec.readColumn(dat, index);
+        }
         if (data_hashmap.isEmpty()) {
             return null;
         }
@@ -71,7 +71,7 @@ public abstract class SubjectRecordDB {
             stm.setObject(3, sr.getRecord_date(), Types.DATE);
             stm.setString(4, sr.getHeight());
             stm.setString(5, sr.getWeight());
-            stm.setBytes(6, FileHelper.convertObjectToByteArray(sr.getDataValueList()));
+            stm.setBytes(6, FileHelper.convertListToByteArray(sr.getDataValueList()));
             stm.executeUpdate();
             stm.close();
             // Operation is successful, release the savepoint.
@@ -101,6 +101,7 @@ public abstract class SubjectRecordDB {
             stm.setString(1, study_id);
             stm.executeUpdate();
             stm.close();
+            SubjectRegistry.invalidate(study_id);
         }
         catch (SQLException|NamingException e) {
             logger.error("FAIL to delete subject records!");
@@ -261,7 +262,7 @@ public abstract class SubjectRecordDB {
             stm.setString(1, sr.getHeight());
             stm.setString(2, sr.getWeight());
             stm.setString(3, sr.getSample_id());
-            stm.setBytes(4, FileHelper.convertObjectToByteArray(sr.getDataValueList()));            
+            stm.setBytes(4, FileHelper.convertListToByteArray(sr.getDataValueList()));            
             stm.setString(5, sr.getSubject_id());
             stm.setObject(6, sr.getRecord_date(), Types.DATE);
             stm.setString(7, sr.getStudy_id());
@@ -323,47 +324,30 @@ public abstract class SubjectRecordDB {
     }
     */
     
-    // Check whether any subject record exists in the database for this subject. 
-    // Exception thrown here need to be handle by the caller.
-    public static boolean isSRExist(String subject_id, String study_id) 
-            throws SQLException, NamingException
-    {
-        Connection conn = null;
-        String query = "SELECT * FROM subject_record WHERE subject_id = ? AND "
-                     + "study_id = ?";
-        
-        conn = DBHelper.getDSConn();
-        PreparedStatement stm = conn.prepareStatement(query);
-        stm.setString(1, subject_id);
-        stm.setString(2, study_id);
-        ResultSet rs = stm.executeQuery();
-        boolean srExist = rs.isBeforeFirst()?Constants.OK:Constants.NOT_OK;
-        
-        stm.close();
-        DBHelper.closeDSConn(conn);
-        
-        return srExist;
-    }
-    
     // Check whether the specific subject record (with record date) exists in 
     // the database. Exception thrown here need to be handle by the caller.
     public static boolean isSRExist(String subject_id, String study_id, LocalDate rec_date) 
             throws SQLException, NamingException
     {
         Connection conn = null;
+        boolean srExist;
         String query = "SELECT * FROM subject_record WHERE subject_id = ? AND "
                      + "study_id = ? AND record_date = ?";
         
-        conn = DBHelper.getDSConn();
-        PreparedStatement stm = conn.prepareStatement(query);
-        stm.setString(1, subject_id);
-        stm.setString(2, study_id);
-        stm.setObject(3, rec_date, Types.DATE);
-        ResultSet rs = stm.executeQuery();
-        boolean srExist = rs.isBeforeFirst()?Constants.OK:Constants.NOT_OK;
-        
-        stm.close();
-        DBHelper.closeDSConn(conn);
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setString(1, subject_id);
+            stm.setString(2, study_id);
+            stm.setObject(3, rec_date, Types.DATE);
+            ResultSet rs = stm.executeQuery();
+            srExist = rs.isBeforeFirst()?Constants.OK:Constants.NOT_OK;
+            
+            stm.close();
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
         
         return srExist;
     }
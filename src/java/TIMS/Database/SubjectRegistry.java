@@ -0,0 +1,143 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Libraries for Java
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+// Libraries for Java Extension
+import javax.naming.NamingException;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// SubjectRegistry keep the set of subject IDs having subject record in each
+// study, so that the subject existence check during finalization (and 
+// closure) could be done in memory. The set is retrieved in one query, and
+// cached until the subject records of the study are updated.
+public abstract class SubjectRegistry {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(SubjectRegistry.class.getName());
+    private final static Map<String, Set<String>> cache = 
+            new ConcurrentHashMap<>();
+    // Incremented whenever the subject records of the study is updated; to
+    // avoid caching a set that is built from outdated records.
+    private final static Map<String, AtomicLong> versions = 
+            new ConcurrentHashMap<>();
+    
+    // Return the subject IDs having subject record in this study, using a 
+    // connection from the pool.
+    public static Set<String> getSubjects(String study_id) 
+            throws SQLException, NamingException 
+    {
+        Set<String> subjects = cache.get(study_id);
+        
+        if (subjects == null) {
+            Connection conn = null;
+            
+            try {
+                conn = DBHelper.getDSConn();
+                subjects = getSubjects(conn, study_id);
+            }
+            finally {
+                DBHelper.closeDSConn(conn);
+            }
+        }
+        
+        return subjects;
+    }
+    
+    // Return the subject IDs having subject record in this study, using the
+    // connection passed in.
+    public static Set<String> getSubjects(Connection conn, String study_id) 
+            throws SQLException 
+    {
+        Set<String> subjects = cache.get(study_id);
+        
+        if (subjects == null) {
+            long version = getVersion(study_id).get();
+            subjects = buildSubjectSet(conn, study_id);
+            // Only cache the set if the subject records have not been 
+            // updated while it is being built.
+            if (version == getVersion(study_id).get()) {
+                cache.put(study_id, subjects);
+            }
+        }
+        else {
+            logger.debug("Reuse subject registry for " + study_id);
+        }
+        
+        return subjects;
+    }
+    
+    // The subject records of this study have been updated; the set will be
+    // rebuilt on the next request.
+    public static void invalidate(String study_id) {
+        getVersion(study_id).incrementAndGet();
+        if (cache.remove(study_id) != null) {
+            logger.debug("Subject registry of " + study_id + " invalidated.");
+        }
+    }
+    
+    // Retrieve the subject IDs having subject record in this study.
+    private static Set<String> buildSubjectSet(Connection conn, 
+            String study_id) throws SQLException 
+    {
+        Set<String> subjects = new HashSet<>();
+        // For time logging purpose.
+        long elapsedTime;
+        long startTime = System.nanoTime();
+        String query = "SELECT DISTINCT subject_id FROM subject_record "
+                     + "WHERE study_id = ?";
+        
+        try (PreparedStatement stm = conn.prepareStatement(query)) {
+            stm.setString(1, study_id);
+            ResultSet rs = stm.executeQuery();
+            
+            while (rs.next()) {
+                subjects.add(rs.getString(1));
+            }
+        }
+        elapsedTime = System.nanoTime() - startTime;
+        logger.debug("Subject registry built for " + study_id + " with " + 
+                     subjects.size() + " subjects in " + 
+                     (elapsedTime / 1000000.0) + " msec.");
+        
+        return Collections.unmodifiableSet(subjects);
+    }
+    
+    // Return the version counter of this study.
+    private static AtomicLong getVersion(String study_id) {
+        return versions.computeIfAbsent(study_id, k -> new AtomicLong());
+    }
+}
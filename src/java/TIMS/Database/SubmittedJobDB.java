@@ -24,10 +24,7 @@
 package TIMS.Database;
 
 import TIMS.General.Constants;
-import TIMS.General.FileHelper;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import TIMS.General.ParallelZipper;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -37,8 +34,6 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 // Libraries for Java Extension
 import javax.naming.NamingException;
 // Libraries for Log4j
@@ -65,35 +60,39 @@ public abstract class SubmittedJobDB {
                      + "parameters, output_file, detail_output, report) "
                      + "VALUES(?,?,?,?,?,?,?,?,?,?,?)";
         
-        conn = DBHelper.getDSConn();
-        // To request for the return of generated key upon successful insertion.
-        PreparedStatement stm = conn.prepareStatement(query, 
-                                Statement.RETURN_GENERATED_KEYS);
-        // Build the INSERT statement using the variables retrieved from the
-        // SubmittedJob object (i.e. job) passed in.
-        stm.setString(1, job.getStudy_id());
-        stm.setString(2, job.getUser_id());
-        stm.setString(3, job.getPipeline_name());
-        stm.setInt(4, job.getStatus_id());
-        stm.setTimestamp(5, job.getSubmit_time());
-        stm.setInt(6, job.getInput_sn());
-        stm.setString(7, job.getInput_desc());
-        stm.setString(8, job.getParameters());
-        stm.setString(9, job.getOutput_file());
-        stm.setString(10, job.getDetail_output());
-        stm.setString(11, job.getReport());
-        // Execute the INSERT statement
-        stm.executeUpdate();
-        // Retrieve and store the last inserted Job ID
-        ResultSet rs = stm.getGeneratedKeys();
-        
-        if (rs.next()) {
-            job_id = rs.getInt(1);
-        }
-        logger.debug("New job request inserted into database. ID: " + job_id);
+        try {
+            conn = DBHelper.getDSConn();
+            // To request for the return of generated key upon successful insertion.
+            PreparedStatement stm = conn.prepareStatement(query, 
+                                    Statement.RETURN_GENERATED_KEYS);
+            // Build the INSERT statement using the variables retrieved from the
+            // SubmittedJob object (i.e. job) passed in.
+            stm.setString(1, job.getStudy_id());
+            stm.setString(2, job.getUser_id());
+            stm.setString(3, job.getPipeline_name());
+            stm.setInt(4, job.getStatus_id());
+            stm.setTimestamp(5, job.getSubmit_time());
+            stm.setInt(6, job.getInput_sn());
+            stm.setString(7, job.getInput_desc());
+            stm.setString(8, job.getParameters());
+            stm.setString(9, job.getOutput_file());
+            stm.setString(10, job.getDetail_output());
+            stm.setString(11, job.getReport());
+            // Execute the INSERT statement
+            stm.executeUpdate();
+            // Retrieve and store the last inserted Job ID
+            ResultSet rs = stm.getGeneratedKeys();
+            
+            if (rs.next()) {
+                job_id = rs.getInt(1);
+            }
+            logger.debug("New job request inserted into database. ID: " + job_id);
 
-        stm.close();
-        DBHelper.closeDSConn(conn);
+            stm.close();
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
         // Return the job_id of the inserted job request
         return job_id;
     }
@@ -246,11 +245,16 @@ public abstract class SubmittedJobDB {
     private static void updateSJField(String query) 
             throws SQLException, NamingException 
     {
-        Connection conn = DBHelper.getDSConn();
-        try (PreparedStatement stm = conn.prepareStatement(query)) {
-            stm.executeUpdate();
+        Connection conn = null;
+        try {
+            conn = DBHelper.getDSConn();
+            try (PreparedStatement stm = conn.prepareStatement(query)) {
+                stm.executeUpdate();
+            }
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
         }
-        DBHelper.closeDSConn(conn);
     }
     
     // Return the list of pipeline technologies used in this study.
@@ -418,6 +422,15 @@ public abstract class SubmittedJobDB {
         return getJobsFullDetail(query);
     }
     
+    // Return the job (full detail) that has this job ID, or null if it is not
+    // found.
+    public static SubmittedJob getJob(int job_id) {
+        String query = "SELECT * FROM submitted_job WHERE job_id = " + job_id;
+        List<SubmittedJob> jobList = getJobsFullDetail(query);
+        
+        return jobList.isEmpty() ? null : jobList.get(0);
+    }
+    
     // Return the list of jobs (full detail) based on the query.
     public static List<SubmittedJob> getJobsFullDetail(String query) {
         Connection conn = null;
@@ -566,7 +579,7 @@ public abstract class SubmittedJobDB {
     // be returned.
     public static String zipDetailOutput(int job_id) {
         String doPath = getDetailOutputPath(job_id);
-        String zipPath = zipTextFile(doPath);
+        String zipPath = zipTextFile(job_id, doPath, "detail output");
         
         if (zipPath != null) {
             // Update the detail output filepath to the zipped version.
@@ -583,7 +596,7 @@ public abstract class SubmittedJobDB {
     // path to the zipped filepath. The original filepath will be returned.
     public static String zipOutputFile(int job_id) {
         String opPath = getOutputPath(job_id);
-        String zipPath = zipTextFile(opPath);
+        String zipPath = zipTextFile(job_id, opPath, "output");
         
         if (zipPath != null) {
             // Update the output filepath to the zipped version.
@@ -598,23 +611,21 @@ public abstract class SubmittedJobDB {
     }
     
     // Helper function to zip the text file (i.e. .txt), and return the 
-    // filepath of the zipped text file.
-    private static String zipTextFile(String filepath) {
+    // filepath of the zipped text file. The file is deflated in parallel by
+    // ParallelZipper.
+    private static String zipTextFile(int job_id, String filepath, 
+            String fileType) {
         String result = null;
-        String[] srcFile = {filepath};
         // Remove the .txt extension from the filename, and replace it with .zip
         String zipPath = filepath.substring
                          (0, filepath.indexOf(Constants.getOUTPUTFILE_EXT()));
         zipPath += Constants.getZIPFILE_EXT();
 
         try {
-            FileHelper.zipFiles(zipPath, srcFile);
+            ParallelZipper.zipFile(filepath, zipPath, job_id, fileType);
             // Return the zipped output filepath.
             result = zipPath;
             logger.debug(filepath + " zipped.");
-            // Added the below statement due to a bug in Java that prevent the
-            // original output file for being deleted.
-            System.gc();
         }
         catch (IOException e) {
             logger.error("FAIL to zip " + filepath);
@@ -623,51 +634,4 @@ public abstract class SubmittedJobDB {
         
         return result;        
     }
-    
-    // Unzip the output file of this submitted job; to be called during 
-    // finalization of Study and exporting of data to visualizer. The unzipped 
-    // output filepath will be returned.
-    public static String unzipOutputFile(int job_id) {
-        String result = null;
-        byte[] buffer = new byte[2048];
-        String zipPath = getOutputPath(job_id);
-        // The unzipped output file will be stored in the tmp folder.
-        String opPath = Constants.getSYSTEM_PATH() + Constants.getTMP_PATH();
-
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipPath))) {
-            ZipEntry ze = zis.getNextEntry();
-            
-            if (ze != null) {
-                String filename = ze.getName();
-                opPath += filename;
-                File opFile = new File(opPath);
-                
-                if (!opFile.exists()) {
-                    // Only perform the unzip once.
-                    try ( FileOutputStream fos = new FileOutputStream(opFile)) {
-                        int len;
-                        
-                        while ((len = zis.read(buffer)) > 0) {
-                            fos.write(buffer, 0, len);
-                        }
-                    }
-                    logger.debug("Output file for Job ID " + job_id +
-                                 " unzipped to " + opFile.getAbsolutePath());
-                }
-            }
-            
-            zis.closeEntry();
-            // Return the unzipped output filepath.
-            result = opPath;
-            // Added the below statement due to a bug in Java that prevent the
-            // temporary output file for being deleted.
-            System.gc();
-        }
-        catch (IOException e) {
-            logger.error("FAIL to unzip output file!");
-            logger.error(e.getMessage());
-        }
-        
-        return result;
-    }
 }
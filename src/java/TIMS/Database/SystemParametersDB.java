@@ -79,6 +79,37 @@ public abstract class SystemParametersDB {
         return spHash.get("CBIOPORTAL_URL");
     }
     
+    // Return the base URL of the Tomcat manager (text interface) hosting 
+    // cBioPortal. Default to http://localhost:8080/manager/text
+    public static String getCbioManagerUrl() {
+        return getStringParameter("CBIO_MANAGER_URL", 
+                                  "http://localhost:8080/manager/text");
+    }
+    
+    // Return the context path of cBioPortal in Tomcat. Default to /cbioportal
+    public static String getCbioAppPath() {
+        return getStringParameter("CBIO_APP_PATH", "/cbioportal");
+    }
+    
+    // Return the URL to be polled for cBioPortal readiness after a restart.
+    // Default to the cBioPortal context at localhost.
+    public static String getCbioReadyUrl() {
+        return getStringParameter("CBIO_READY_URL", 
+                                  "http://localhost:8080" + getCbioAppPath() + "/");
+    }
+    
+    // Return the time (in seconds) to wait for more imports to join before
+    // restarting cBioPortal. Default to 15.
+    public static int getCbioReloadWindow() {
+        return getIntParameter("CBIO_RELOAD_WINDOW", 15);
+    }
+    
+    // Return the time (in seconds) to wait for cBioPortal to be ready after
+    // a restart. Default to 300.
+    public static int getCbioReadyTimeout() {
+        return getIntParameter("CBIO_READY_TIMEOUT", 300);
+    }
+    
     // Return the Tomcat user id setup in the system.
     public static String getTomcatUID() {
         return spHash.get("TOMCAT_UID");
@@ -88,4 +119,138 @@ public abstract class SystemParametersDB {
     public static String getTomcatPWD() {
         return spHash.get("TOMCAT_PWD");
     }
+    
+    // Return true if the finalized gene data is to be ingested in batch (i.e.
+    // through a staging table) instead of row by row. Default to batch mode
+    // if DEPOSIT_MODE is not setup in the system.
+    public static boolean isBatchDepositMode() {
+        String mode = spHash.get("DEPOSIT_MODE");
+        
+        return (mode == null) || (mode.compareToIgnoreCase("ROW") != 0);
+    }
+    
+    // Return true if the gene index could be shared across finalization and
+    // closure runs. Default to true if GENE_INDEX_SHARED is not setup.
+    public static boolean isGeneIndexShared() {
+        String shared = spHash.get("GENE_INDEX_SHARED");
+        
+        return (shared == null) || Boolean.parseBoolean(shared);
+    }
+    
+    // Return the number of subjects to be consolidated in each pass over the 
+    // data depository during export. Default to 200.
+    public static int getExportChunkSize() {
+        return getIntParameter("EXPORT_CHUNK_SIZE", 200);
+    }
+    // Return the number of gene rows to be voided in each statement during
+    // unfinalization. Default to 2000.
+    public static int getUnfinalizeBatchSize() {
+        return getIntParameter("UNFIN_BATCH_SIZE", 2000);
+    }
+    // Return the number of gene rows to be fetched from the database in each
+    // round trip during export. Default to 1000.
+    public static int getExportFetchSize() {
+        return getIntParameter("EXPORT_FETCH_SIZE", 1000);
+    }
+    // Return the number of excel rows to be converted and validated in 
+    // parallel during meta data upload. Default to 1000.
+    public static int getMetaUploadChunkSize() {
+        return getIntParameter("META_UPLOAD_CHUNK_SIZE", 1000);
+    }
+    // Return the size (in bytes) of the blocks to be deflated in parallel 
+    // when compressing job outputs. Default to 1MB (COMPRESS_BLOCK_KB=1024).
+    public static int getCompressBlockSize() {
+        return getIntParameter("COMPRESS_BLOCK_KB", 1024) * 1024;
+    }
+    // Return the number of threads used to compress job outputs. Default to
+    // the number of processors (at least 2).
+    public static int getCompressThreads() {
+        return getIntParameter("COMPRESS_THREADS", 
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+    // Return the number of CPU slots available to the pipeline jobs. Default
+    // to the number of processors.
+    public static int getPipelineCpuSlots() {
+        return getIntParameter("PIPELINE_CPU_SLOTS", 
+                Runtime.getRuntime().availableProcessors());
+    }
+    // Return the memory (in MB) available to the pipeline jobs. Default to 0
+    // i.e. no limit.
+    public static int getPipelineMemory() {
+        return getIntParameter("PIPELINE_MEMORY_MB", 0);
+    }
+    // Return the host of the SMTP server. Default to localhost.
+    public static String getMailHost() {
+        return getStringParameter("MAIL_SMTP_HOST", "localhost");
+    }
+    // Return the port of the SMTP server. Default to 25.
+    public static int getMailPort() {
+        return getIntParameter("MAIL_SMTP_PORT", 25);
+    }
+    // Return the number of emails to be sent through each SMTP connection.
+    // Default to 20.
+    public static int getMailBatchSize() {
+        return getIntParameter("MAIL_BATCH_SIZE", 20);
+    }
+    // Return the maximum number of emails to be sent per minute. Default to
+    // 60.
+    public static int getMailRateLimit() {
+        return getIntParameter("MAIL_RATE_PER_MIN", 60);
+    }
+    // Return the number of user activities that could be buffered before 
+    // they are written into the database. Default to 10000.
+    public static int getActivityLogCapacity() {
+        return getIntParameter("ACTIVITY_LOG_CAPACITY", 10000);
+    }
+    // Return the number of buffered user activities that will trigger a 
+    // write. Default to 100.
+    public static int getActivityLogFlushEvents() {
+        return getIntParameter("ACTIVITY_LOG_FLUSH_EVENTS", 100);
+    }
+    // Return the interval (in msec) between the writes of the buffered user
+    // activities. Default to 1000.
+    public static int getActivityLogFlushInterval() {
+        return getIntParameter("ACTIVITY_LOG_FLUSH_MS", 1000);
+    }
+    // Return what to do with the user activity when the buffer is full; 
+    // DROP_NEWEST, DROP_OLDEST or SYNC. Default to DROP_NEWEST.
+    public static ActivityLogWriter.Overflow getActivityLogOverflow() {
+        String value = getStringParameter("ACTIVITY_LOG_OVERFLOW", "DROP_NEWEST");
+        
+        try {
+            return ActivityLogWriter.Overflow.valueOf(value.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            logger.error("Invalid ACTIVITY_LOG_OVERFLOW: " + value);
+            return ActivityLogWriter.Overflow.DROP_NEWEST;
+        }
+    }
+    
+    // Return the value of the system parameter, or the default value if it 
+    // is not setup.
+    public static String getStringParameter(String name, String defaultValue) {
+        String value = spHash.get(name);
+        
+        return (value == null) ? defaultValue : value;
+    }
+    
+    // Return the positive integer value of the system 
+    // parameter, or the default value if it is not setup or invalid.
+    public static int getIntParameter(String name, int defaultValue) {
+        String value = spHash.get(name);
+        
+        if (value != null) {
+            try {
+                int result = Integer.parseInt(value.trim());
+                if (result > 0) {
+                    return result;
+                }
+            }
+            catch (NumberFormatException e) {
+                logger.error("Invalid value for system parameter " + name);
+            }
+        }
+        
+        return defaultValue;
+    }
 }
@@ -414,25 +414,29 @@ public abstract class UserAccountDB {
         String query = "INSERT INTO user_account"
                 + "(user_id, role_id, first_name, last_name, photo, email, pwd, "
                 + "active, unit_id) VALUES (?,?,?,?,?,?,?,?,?)";
-        conn = DBHelper.getDSConn();
-        PreparedStatement stm = conn.prepareStatement(query);
-        
-        // Build the INSERT statement using the values from the current
-        // UserAccount object.
-        stm.setString(1, newAcct.getUser_id());
-        stm.setInt(2, newAcct.getRole_id());
-        stm.setString(3, newAcct.getFirst_name());
-        stm.setString(4, newAcct.getLast_name());
-        stm.setString(5, newAcct.getPhoto());
-        stm.setString(6, newAcct.getEmail());
-        stm.setString(7, pwd_hash);
-        stm.setBoolean(8, newAcct.getActive());
-        stm.setString(9, newAcct.getUnit_id());
-        // Execute the INSERT statement
-        stm.executeUpdate();
-        stm.close();
-        
-        DBHelper.closeDSConn(conn);
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            
+            // Build the INSERT statement using the values from the current
+            // UserAccount object.
+            stm.setString(1, newAcct.getUser_id());
+            stm.setInt(2, newAcct.getRole_id());
+            stm.setString(3, newAcct.getFirst_name());
+            stm.setString(4, newAcct.getLast_name());
+            stm.setString(5, newAcct.getPhoto());
+            stm.setString(6, newAcct.getEmail());
+            stm.setString(7, pwd_hash);
+            stm.setBoolean(8, newAcct.getActive());
+            stm.setString(9, newAcct.getUnit_id());
+            // Execute the INSERT statement
+            stm.executeUpdate();
+            stm.close();
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        UserIdentityCache.invalidate(newAcct.getUser_id());
     }
     
     // Update the last login of this user.
@@ -469,16 +473,18 @@ public abstract class UserAccountDB {
         String pwd_hash = BCrypt.hashpw(new_pwd, BCrypt.gensalt());
         String query = "UPDATE user_account SET pwd = ? WHERE "
                      + "user_id = ?";
-        conn = DBHelper.getDSConn();
-        
-        PreparedStatement stm = conn.prepareStatement(query);
-        stm.setString(1, pwd_hash);
-        stm.setString(2, user_id);
-        // Execute the UPDATE statement
-        stm.executeUpdate();
-        stm.close();
-        
-        DBHelper.closeDSConn(conn);
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setString(1, pwd_hash);
+            stm.setString(2, user_id);
+            // Execute the UPDATE statement
+            stm.executeUpdate();
+            stm.close();
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
     }
     
     // Update the account detail of this user. Any exception encountered here
@@ -491,22 +497,26 @@ public abstract class UserAccountDB {
                      + "first_name = ?, last_name = ?, photo = ?, "
                      + "email = ?, active = ?, role_id = ? WHERE "
                      + "user_id = ?";
-        conn = DBHelper.getDSConn();
-        
-        PreparedStatement stm = conn.prepareStatement(query);
-        stm.setString(1, user.getUnit_id());
-        stm.setString(2, user.getFirst_name());
-        stm.setString(3, user.getLast_name());
-        stm.setString(4, user.getPhoto());
-        stm.setString(5, user.getEmail());
-        stm.setBoolean(6, user.getActive());
-        stm.setInt(7, user.getRole_id());
-        stm.setString(8, user.getUser_id());
-        // Excute the UPDATE statement
-        stm.executeUpdate();
-        stm.close();
-        
-        DBHelper.closeDSConn(conn);
+        try {
+            conn = DBHelper.getDSConn();
+            PreparedStatement stm = conn.prepareStatement(query);
+            stm.setString(1, user.getUnit_id());
+            stm.setString(2, user.getFirst_name());
+            stm.setString(3, user.getLast_name());
+            stm.setString(4, user.getPhoto());
+            stm.setString(5, user.getEmail());
+            stm.setBoolean(6, user.getActive());
+            stm.setInt(7, user.getRole_id());
+            stm.setString(8, user.getUser_id());
+            // Excute the UPDATE statement
+            stm.executeUpdate();
+            stm.close();
+        }
+        finally {
+            DBHelper.closeDSConn(conn);
+        }
+        // The role or unit of this user might have changed.
+        UserIdentityCache.invalidate(user.getUser_id());
     }
     
     // Retrieve the user account info for this user ID.
@@ -546,26 +556,14 @@ public abstract class UserAccountDB {
         return userAct;
     }
     
-    // Return the unit ID for this user.
+    // Return the unit ID for this user (resolved through the identity cache).
     public static String getUnitID(String userID) {
-        UserAccount tmp = getUserAct(userID);
-        
-        if (tmp != null) {
-            return tmp.getUnit_id();
-        }
-
-        return Constants.DATABASE_INVALID_STR;
+        return UserIdentityCache.get(userID).getUnit_id();
     }
     
-    // Return the role ID for this user.
+    // Return the role ID for this user (resolved through the identity cache).
     public static int getRoleID(String userID) {
-        UserAccount tmp = getUserAct(userID);
-        
-        if (tmp != null) {
-            return tmp.getRole_id();
-        }
-        
-        return Constants.DATABASE_INVALID_ID;
+        return UserIdentityCache.get(userID).getRole_id();
     }
     
     // Return the full name of this user.
@@ -0,0 +1,63 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// Library for Java
+import java.io.Serializable;
+
+// UserIdentity hold the role and unit of the user, as resolved by the 
+// UserIdentityCache. It is immutable and stored in the user's session.
+public class UserIdentity implements Serializable {
+    private final String user_id, unit_id;
+    private final int role_id;
+    // The version of the user's account when this identity was loaded, and
+    // the time (in milliseconds) when it was loaded.
+    private final long version, loadTime;
+    
+    public UserIdentity(String user_id, int role_id, String unit_id, 
+            long version) {
+        this.user_id = user_id;
+        this.role_id = role_id;
+        this.unit_id = unit_id;
+        this.version = version;
+        this.loadTime = System.currentTimeMillis();
+    }
+    
+    // Machine generated getters
+    public String getUser_id() {
+        return user_id;
+    }
+    public int getRole_id() {
+        return role_id;
+    }
+    public String getUnit_id() {
+        return unit_id;
+    }
+    public long getVersion() {
+        return version;
+    }
+    public long getLoadTime() {
+        return loadTime;
+    }
+}
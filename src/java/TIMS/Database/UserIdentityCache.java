@@ -0,0 +1,164 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+import TIMS.General.Constants;
+// Libraries for Java
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+// Libraries for Java Extension
+import javax.servlet.http.HttpSession;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// UserIdentityCache resolve the role and unit of the user, without querying 
+// the database on every request. The identity is kept in two levels:
+// 1. In the user's session (checked first by NoCacheFilter).
+// 2. In an application-level map of the recently used accounts.
+// Every account update bump the version of the account; an identity loaded 
+// before that is discarded on the next lookup. Identities are also reloaded 
+// after MAX_AGE, to pick up changes made outside the application.
+public abstract class UserIdentityCache {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(UserIdentityCache.class.getName());
+    private final static String SESSION_KEY = "UserIdentity";
+    private final static int MAX_ACCOUNTS = 1000;
+    private final static long MAX_AGE = 10 * 60 * 1000L;
+    // Account not found (or failed to be read) is only remembered briefly.
+    private final static long NOT_FOUND_MAX_AGE = 30 * 1000L;
+    // Recently used accounts, in access order.
+    private final static Map<String, UserIdentity> accounts = 
+        new LinkedHashMap<String, UserIdentity>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry
+                (Map.Entry<String, UserIdentity> eldest) {
+                return size() > MAX_ACCOUNTS;
+            }
+        };
+    private final static Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final static AtomicLong versionSeq = new AtomicLong();
+    private final static AtomicLong sessionHits = new AtomicLong();
+    private final static AtomicLong accountHits = new AtomicLong();
+    private final static AtomicLong misses = new AtomicLong();
+    private final static AtomicLong invalidations = new AtomicLong();
+    
+    // Return the identity of the user stored in this session; the identity 
+    // will be resolved (and stored in the session) if it is not available
+    // or no longer current.
+    public static UserIdentity get(HttpSession session, String userID) {
+        Object attr = session.getAttribute(SESSION_KEY);
+        
+        if (attr instanceof UserIdentity) {
+            UserIdentity identity = (UserIdentity) attr;
+            if (identity.getUser_id().equals(userID) && isCurrent(identity)) {
+                sessionHits.incrementAndGet();
+                return identity;
+            }
+        }
+        UserIdentity identity = get(userID);
+        session.setAttribute(SESSION_KEY, identity);
+        
+        return identity;
+    }
+    
+    // Return the identity of the user, from the recently used accounts if 
+    // available, else from the database.
+    public static UserIdentity get(String userID) {
+        UserIdentity identity;
+        
+        synchronized (accounts) {
+            identity = accounts.get(userID);
+        }
+        if (identity != null && isCurrent(identity)) {
+            accountHits.incrementAndGet();
+            return identity;
+        }
+        
+        misses.incrementAndGet();
+        // Read the version before the account, so that an update in between
+        // will cause this identity to be reloaded on the next lookup.
+        long version = getVersion(userID);
+        UserAccount acct = UserAccountDB.getUserAct(userID);
+        
+        if (acct != null) {
+            identity = new UserIdentity(userID, acct.getRole_id(), 
+                                        acct.getUnit_id(), version);
+        }
+        else {
+            // Remember the account is not found, so that the database will 
+            // not be queried again for it until the account is created.
+            identity = new UserIdentity(userID, Constants.DATABASE_INVALID_ID, 
+                                        Constants.DATABASE_INVALID_STR, version);
+        }
+        synchronized (accounts) {
+            accounts.put(userID, identity);
+        }
+        
+        return identity;
+    }
+    
+    // Discard the cached identity of this user; to be called after the
+    // account of the user has been created or updated.
+    public static void invalidate(String userID) {
+        versions.put(userID, versionSeq.incrementAndGet());
+        synchronized (accounts) {
+            accounts.remove(userID);
+        }
+        invalidations.incrementAndGet();
+        logger.debug("Identity cache invalidated for " + userID);
+    }
+    
+    // Return the snapshot of the cache metrics.
+    public static UserIdentityCacheStatus getStatus() {
+        int size;
+        
+        synchronized (accounts) {
+            size = accounts.size();
+        }
+        
+        return new UserIdentityCacheStatus(size, sessionHits.get(), 
+                accountHits.get(), misses.get(), invalidations.get());
+    }
+    
+    // Helper function to check whether the identity is still current i.e.
+    // the account has not been updated since, and it has not expired.
+    private static boolean isCurrent(UserIdentity identity) {
+        long maxAge = (identity.getRole_id() == Constants.DATABASE_INVALID_ID) ?
+                      NOT_FOUND_MAX_AGE : MAX_AGE;
+        
+        return identity.getVersion() == getVersion(identity.getUser_id()) &&
+               System.currentTimeMillis() - identity.getLoadTime() < maxAge;
+    }
+    
+    // Helper function to return the current version of the user's account.
+    private static long getVersion(String userID) {
+        Long version = versions.get(userID);
+        
+        return (version == null) ? 0 : version;
+    }
+}
@@ -0,0 +1,64 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Database;
+
+// UserIdentityCacheStatus hold the snapshot of the user identity cache 
+// metrics, to be displayed in the system monitor page.
+public class UserIdentityCacheStatus {
+    private final int size;
+    private final long sessionHits, accountHits, misses, invalidations;
+    
+    public UserIdentityCacheStatus(int size, long sessionHits, 
+            long accountHits, long misses, long invalidations) {
+        this.size = size;
+        this.sessionHits = sessionHits;
+        this.accountHits = accountHits;
+        this.misses = misses;
+        this.invalidations = invalidations;
+    }
+    
+    // Return the percentage of lookups served without querying the database.
+    public double getHitRatio() {
+        long total = sessionHits + accountHits + misses;
+        
+        return (total == 0) ? 0 : (sessionHits + accountHits) * 100.0 / total;
+    }
+    
+    // Machine generated getters
+    public int getSize() {
+        return size;
+    }
+    public long getSessionHits() {
+        return sessionHits;
+    }
+    public long getAccountHits() {
+        return accountHits;
+    }
+    public long getMisses() {
+        return misses;
+    }
+    public long getInvalidations() {
+        return invalidations;
+    }
+}
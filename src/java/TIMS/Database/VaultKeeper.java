@@ -24,39 +24,34 @@
 package TIMS.Database;
 
 import TIMS.General.Constants;
-import TIMS.General.FileHelper;
 import TIMS.General.Postman;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 // Libraries for Java Extension
 import javax.naming.NamingException;
 // Libraries for Log4j
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
-public class VaultKeeper extends Thread {
+public class VaultKeeper implements Runnable {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(VaultKeeper.class.getName());
     private Connection conn = null;
     private List<Integer> jobList = new ArrayList<>();
-    private String fileUri;
     private final String study_id, annot_ver, userName;
     // Variables to be used during processing of pipeline output.
     private int totalRecord, processedRecord, totalGene, processedGene;
     private int[] vaultIndex;
+    // The genename available in vault_data for this annotation version.
+    private GeneIndex geneIndex;
 
-    public VaultKeeper(String userName, String study_id) 
-            throws SQLException, NamingException 
-    {
-        conn = DBHelper.getDSConn();
+    public VaultKeeper(String userName, String study_id) {
         this.userName = userName;
         this.study_id = study_id;
         jobList = SubmittedJobDB.getFinalizedJobIDs(study_id);
@@ -67,20 +62,27 @@ public class VaultKeeper extends Thread {
         logger.debug("VaultKeeper created for study " + study_id);
     }
     
+    // Return the key for this closure task; only one study per annotation
+    // version could be closed at any one time.
+    public String getTaskKey() {
+        return "closure|" + annot_ver;
+    }
+    
     @Override
     public void run() {
         boolean closureStatus = Constants.OK;
         
         try {
-            // Need to acquire the closure token before proceeding.
-            DBHelper.acquireClosureToken(userName);
+            // Only get the data source connection when the task start running.
+            conn = DBHelper.getDSConn();
             // All the SQL statements executed here will be treated as one
             // big transaction.
             logger.debug("VaultKeeper start - Set auto-commit to OFF.");
             conn.setAutoCommit(false);
+            // Load the genename available for this annotation version once.
+            geneIndex = GeneIndexDB.getVaultIndex(conn, annot_ver);
             
             for (Integer job_id : jobList) {
-                fileUri = SubmittedJobDB.unzipOutputFile(job_id);
                 logger.debug("Storing data for: " + study_id + " - job ID " + job_id);
                 
                 if (!storePlDataIntoVault(job_id)) {
@@ -90,11 +92,6 @@ public class VaultKeeper extends Thread {
                     logger.error("VaultKeeper - Hit error!");
                     break;
                 }
-                // Delete the temporary file here (i.e. fileUri)
-                if (!FileHelper.delete(fileUri)) {
-                    logger.error("FAIL to delete the temporary files generated "
-                               + "during closing of " + study_id);
-                }
             }
                 
             if (closureStatus) {
@@ -112,16 +109,12 @@ public class VaultKeeper extends Thread {
             
             conn.setAutoCommit(true);
             logger.debug("VaultKeeper - Set auto-commit to ON.");
-            // Release the closure token.
-            DBHelper.releaseClosureToken(userName);
             // Send closure status email to the user.
             Postman.sendStudyClosureStatusEmail(study_id, userName, closureStatus);
         }
-        catch (SQLException|InterruptedException e) {
+        catch (SQLException|NamingException e) {
             logger.error("FAIL to store data into the vault!");
             logger.error(e.getMessage());
-            // Closure failed, release the token.
-            DBHelper.releaseClosureToken(userName);
         }
         finally {
             DBHelper.closeDSConn(conn);
@@ -139,13 +132,28 @@ public class VaultKeeper extends Thread {
                          + "VALUES(?,?,?,?,?)";
 
         try (PreparedStatement insertStm = conn.prepareStatement(insertStr)) {
+            boolean[] srExist = new boolean[values.length];
+            int noOfIndex = 0;
+            // The subject IDs with meta data are retrieved in one query.
+            Set<String> registry = SubjectRegistry.getSubjects(conn, study_id);
             // Ignore the first two strings (i.e. geneID and EntrezID).
+            for (int i = 2; i < values.length; i++) {
+                srExist[i] = registry.contains(values[i]);
+                if (srExist[i]) {
+                    noOfIndex++;
+                }
+            }
+            // Reserve one contiguous block of vault indexes for all the 
+            // subjects found.
+            int nextIndex = (noOfIndex > 0) ? ArrayIndexDB.
+                    reserveVaultIndexes(conn, annot_ver, noOfIndex) : 0;
+            
             for (int i = 2; i < values.length; i++) {
                 // Only store the pipeline data if the subject record is 
                 // available in the database.
-                if (SubjectRecordDB.isSRExist(values[i], study_id)) {
+                if (srExist[i]) {
                     processedRecord++;
-                    vaultIndex[i] = getNextVaultInd();
+                    vaultIndex[i] = nextIndex++;
                     FinalizedRecord record = new FinalizedRecord
                         (vaultIndex[i], annot_ver, values[i], job_id, study_id);
                     // Create an vault record.
@@ -156,6 +164,8 @@ public class VaultKeeper extends Thread {
                     vaultIndex[i] = Constants.DATABASE_INVALID_ID;
                 }
             }
+            // Create all the vault records.
+            insertStm.executeBatch();
             logger.debug("Records processed: " + processedRecord + 
                          " out of " + totalRecord);
             // Some of the subject IDs are not found for this pipeline.
@@ -165,7 +175,7 @@ public class VaultKeeper extends Thread {
                              subjectNotFound);
             }
         }
-        catch (SQLException|NamingException e) {
+        catch (SQLException e) {
             logger.error("FAIL to create vault records!");
             logger.error(e.getMessage());
             // Error occurred, return to caller.
@@ -177,7 +187,7 @@ public class VaultKeeper extends Thread {
     
     // Helper function to process the gene data of pipeline output. Return the 
     // processing status.
-    private boolean procGeneData(BufferedReader br, int job_id) throws IOException {
+    private boolean procGeneData(PipelineOutputReader reader, int job_id) throws IOException {
         boolean result = Constants.OK;
         String genename, lineRead;
         String[] values;
@@ -186,23 +196,17 @@ public class VaultKeeper extends Thread {
         String updateStr = "UPDATE vault_data SET data[?] = ? WHERE " 
                          + "genename = ? AND annot_ver = \'" 
                          + annot_ver + "\'";
-        // SELECT statement to check the existence of gene in database.
-        String queryGene = "SELECT 1 FROM vault_data WHERE "
-                         + "genename = ? AND annot_ver = \'" 
-                         + annot_ver + "\'";
         // This debug message serve as a check point.
         logger.debug("Start gene data processing for job " + job_id);
         
-        try (PreparedStatement updateStm = conn.prepareStatement(updateStr);
-             PreparedStatement queryGeneStm = conn.prepareStatement(queryGene)) 
-        {
-            while ((lineRead = br.readLine()) != null) {
+        try (PreparedStatement updateStm = conn.prepareStatement(updateStr)) {
+            while ((lineRead = reader.readLine()) != null) {
                 totalGene++;
                 values = lineRead.split("\t");
                 // The first string is the gene symbol.
                 genename = values[0];
                 // Only store the data if the genename exist in vault_data.
-                if (isGeneExistInVault(queryGeneStm,genename)) {
+                if (geneIndex.contains(genename)) {
                     processedGene++;
                     // Gene data start from the 3rd column. 
                     for (int i = 2; i < values.length; i++) {
@@ -234,8 +238,11 @@ public class VaultKeeper extends Thread {
         // To record the time taken to store the finalized data.
         long startTime, elapsedTime;
 
-        try (BufferedReader br = new BufferedReader(new FileReader(fileUri))) {
-            String lineRead = br.readLine();
+        try (PipelineOutputReader reader = new PipelineOutputReader(job_id)) {
+            String lineRead = reader.getHeader();
+            if (lineRead == null) {
+                throw new IOException("The output file is empty!");
+            }
             values = lineRead.split("\t");
             // Update the size of the integer array.
             vaultIndex = new int[values.length];
@@ -251,7 +258,7 @@ public class VaultKeeper extends Thread {
             // the database.
             if (processedRecord > 0) {
                 startTime = System.nanoTime();
-                if (procGeneData(br, job_id)) {
+                if (procGeneData(reader, job_id)) {
                     // Record the time taken for storing the data into vault.
                     elapsedTime = System.nanoTime() - startTime;
                     logger.debug("Gene record processed: " + processedGene + "/" + totalGene);
@@ -277,26 +284,6 @@ public class VaultKeeper extends Thread {
         return result;
     }
     
-    // Return the next vault index to be use for this record.
-    private int getNextVaultInd() {
-        int count = Constants.DATABASE_INVALID_ID;
-        String query = "SELECT MAX(array_index) FROM vault_record "
-                     + "WHERE annot_ver = \'" + annot_ver + "\'";
-        
-        try (PreparedStatement stm = conn.prepareStatement(query);
-             ResultSet rs = stm.executeQuery()) {
-            if (rs.next()) {
-                count = rs.getInt(1) + 1;
-            }
-        }
-        catch (SQLException e) {
-            logger.debug("FAIL to retrieve the next vault index!");
-            logger.debug(e.getMessage());
-        }
-        
-        return count;
-    }
-    
     // Create an vault record which serve as a key to link the subject with
     // the gene data stored in the vault.
     private void createVaultRecord(PreparedStatement stm, FinalizedRecord record) 
@@ -306,21 +293,12 @@ public class VaultKeeper extends Thread {
         stm.setInt(3, record.getJob_id());
         stm.setString(4, record.getSubject_id());
         stm.setString(5, record.getStudy_id());
-        stm.executeUpdate();
+        stm.addBatch();
 
         logger.debug("Vault record for " + record.getSubject_id() + 
                      " created with index " + record.getArray_index());        
     }
 
-    // Check whether genename exists.
-    private Boolean isGeneExistInVault(PreparedStatement stm, 
-            String genename) throws SQLException {
-        stm.setString(1, genename);
-        ResultSet rs = stm.executeQuery();
-        
-        return rs.isBeforeFirst()?Constants.OK:Constants.NOT_OK;
-    }
-    
     // Store the gene data into the vault.
     private void storeGeneDataIntoVault(PreparedStatement stm, int array_index, 
             String value, String genename) throws SQLException {
@@ -0,0 +1,242 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+// Libraries for Java
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// CompactListCodec encode a list of string (e.g. the meta data values of a
+// subject record) into a compact binary format, and decode it back. Repeated
+// values are only stored once in a dictionary, and each value is referenced
+// using a fixed width index, so that one column could be read without 
+// decoding the whole list.
+//
+// Format (version 1, big-endian):
+// magic 'T' 'L' | version | ref width | offset width | count (int) | 
+// dictionary size (int) | refs (count x ref width; 0 for null, else 
+// dictionary index + 1) | dictionary offsets ((dictionary size + 1) x offset
+// width) | UTF-8 values
+//
+// Blobs written using Java serialization (the previous format) are still 
+// decoded.
+public abstract class CompactListCodec {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(CompactListCodec.class.getName());
+    private final static byte MAGIC_1 = 'T';
+    private final static byte MAGIC_2 = 'L';
+    private final static byte VERSION = 1;
+    private final static int HEADER_SIZE = 13;
+    
+    // Encode the list of string into the compact format.
+    public static byte[] encode(List<String> values) {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<byte[]> entries = new ArrayList<>();
+        int[] refs = new int[values.size()];
+        int dataSize = 0;
+        
+        for (int i = 0; i < refs.length; i++) {
+            String value = values.get(i);
+            
+            if (value == null) {
+                refs[i] = 0;
+                continue;
+            }
+            Integer ref = dictionary.get(value);
+            
+            if (ref == null) {
+                byte[] entry = value.getBytes(StandardCharsets.UTF_8);
+                entries.add(entry);
+                dataSize += entry.length;
+                ref = entries.size();
+                dictionary.put(value, ref);
+            }
+            refs[i] = ref;
+        }
+        
+        int width = getWidth(entries.size());
+        int offWidth = getWidth(dataSize);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + refs.length * width 
+                       + (entries.size() + 1) * offWidth + dataSize);
+        buf.put(MAGIC_1).put(MAGIC_2).put(VERSION);
+        buf.put((byte) width).put((byte) offWidth);
+        buf.putInt(refs.length).putInt(entries.size());
+        
+        for (int ref : refs) {
+            putValue(buf, ref, width);
+        }
+        int offset = 0;
+        putValue(buf, offset, offWidth);
+        for (byte[] entry : entries) {
+            offset += entry.length;
+            putValue(buf, offset, offWidth);
+        }
+        for (byte[] entry : entries) {
+            buf.put(entry);
+        }
+        
+        return buf.array();
+    }
+    
+    // Decode the blob (compact or Java serialized) back into list of string.
+    // Return null if the blob cannot be decoded.
+    public static List<String> decode(byte[] data) {
+        if (isLegacy(data)) {
+            return decodeLegacy(data);
+        }
+        if (!isCompact(data)) {
+            logger.error("FAIL to decode blob; unknown format!");
+            return null;
+        }
+        
+        int count = getCount(data);
+        List<String> values = new ArrayList<>(count);
+        
+        for (int i = 0; i < count; i++) {
+            values.add(readCompactColumn(data, i));
+        }
+        
+        return values;
+    }
+    
+    // Read the value at this index without decoding the rest of the list.
+    public static String readColumn(byte[] data, int index) {
+        if (isCompact(data)) {
+            if (index < 0 || index >= getCount(data)) {
+                throw new IndexOutOfBoundsException("Column " + index + 
+                        " is not available.");
+            }
+            return readCompactColumn(data, index);
+        }
+        // The whole list need to be decoded for the previous format.
+        List<String> values = decode(data);
+        
+        return (values == null) ? null : values.get(index);
+    }
+    
+    // Return the number of values in the compact blob.
+    public static int getCount(byte[] data) {
+        return ByteBuffer.wrap(data).getInt(5);
+    }
+    
+    // Return true if the blob is written in the compact format.
+    public static boolean isCompact(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && 
+               data[0] == MAGIC_1 && data[1] == MAGIC_2 && data[2] == VERSION;
+    }
+    
+    // Return true if the blob is written using Java serialization.
+    public static boolean isLegacy(byte[] data) {
+        return data != null && data.length >= 2 && 
+               data[0] == (byte) 0xAC && data[1] == (byte) 0xED;
+    }
+    
+    // Helper function to read the value at this index from the compact blob.
+    private static String readCompactColumn(byte[] data, int index) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        int width = data[3];
+        int offWidth = data[4];
+        int count = buf.getInt(5);
+        int dictSize = buf.getInt(9);
+        int ref = getValue(buf, HEADER_SIZE + index * width, width);
+        
+        if (ref == 0) {
+            return null;
+        }
+        int offsetTable = HEADER_SIZE + count * width;
+        int dataStart = offsetTable + (dictSize + 1) * offWidth;
+        int start = getValue(buf, offsetTable + (ref - 1) * offWidth, offWidth);
+        int end = getValue(buf, offsetTable + ref * offWidth, offWidth);
+        
+        return new String(data, dataStart + start, end - start, 
+                          StandardCharsets.UTF_8);
+    }
+    
+    // Helper function to decode the blob written using Java serialization.
+    private static List<String> decodeLegacy(byte[] data) {
+        try (ObjectInputStream ois = new ObjectInputStream
+                (new ByteArrayInputStream(data))) {
+            @SuppressWarnings("unchecked")
+            List<String> list = (List<String>) ois.readObject();
+            
+            return list;
+        }
+        catch (IOException|ClassNotFoundException ex) {
+            logger.error("FAIL to convert byte array to list!");
+            logger.error(ex.getMessage());
+        }
+        
+        return null;
+    }
+    
+    // Helper function to return the number of bytes needed to store values
+    // up to this maximum.
+    private static int getWidth(int max) {
+        if (max <= 0xFF) {
+            return 1;
+        }
+        else if (max <= 0xFFFF) {
+            return 2;
+        }
+        
+        return 4;
+    }
+    
+    // Helper function to write the value using this number of bytes.
+    private static void putValue(ByteBuffer buf, int value, int width) {
+        switch (width) {
+            case 1:
+                buf.put((byte) value);
+                break;
+            case 2:
+                buf.putShort((short) value);
+                break;
+            default:
+                buf.putInt(value);
+        }
+    }
+    
+    // Helper function to read the value stored using this number of bytes.
+    private static int getValue(ByteBuffer buf, int pos, int width) {
+        switch (width) {
+            case 1:
+                return buf.get(pos) & 0xFF;
+            case 2:
+                return buf.getShort(pos) & 0xFFFF;
+            default:
+                return buf.getInt(pos);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+// Libraries for Java
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+// CompressionStats record the outcome of compressing one job output; to be
+// logged and displayed in the system monitor page.
+public class CompressionStats {
+    private final int job_id;
+    private final String fileType;
+    private final long originalSize, compressedSize, elapsedTime, doneTime;
+    private final int blocks, threads;
+    
+    public CompressionStats(int job_id, String fileType, long originalSize, 
+            long compressedSize, long elapsedTime, int blocks, int threads) {
+        this.job_id = job_id;
+        this.fileType = fileType;
+        this.originalSize = originalSize;
+        this.compressedSize = compressedSize;
+        this.elapsedTime = elapsedTime;
+        this.blocks = blocks;
+        this.threads = threads;
+        doneTime = System.currentTimeMillis();
+    }
+    
+    // Return the compression ratio i.e. original size over compressed size.
+    public double getRatio() {
+        return compressedSize == 0 ? 0 : (double) originalSize / compressedSize;
+    }
+    
+    // Return the compression throughput in MB (of original data) per second.
+    public double getThroughput() {
+        double sec = Math.max(elapsedTime, 1) / 1000000000.0;
+        return originalSize / (1024.0 * 1024.0) / sec;
+    }
+    
+    // Return the time taken (in seconds) to compress the output.
+    public double getElapsedSec() {
+        return elapsedTime / 1000000000.0;
+    }
+    
+    // Return the time at which the compression completed.
+    public String getDoneTimeString() {
+        return new SimpleDateFormat("dd-MMM-yyyy hh:mm:ss a").
+                format(new Date(doneTime));
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("Job ID %d %s: %d -> %d bytes, ratio %.2f, "
+                + "%.1f MB/s (%d blocks, %d threads)", job_id, fileType, 
+                originalSize, compressedSize, getRatio(), getThroughput(), 
+                blocks, threads);
+    }
+    
+    // Machine generated getters
+    public int getJob_id() {
+        return job_id;
+    }
+    public String getFileType() {
+        return fileType;
+    }
+    public long getOriginalSize() {
+        return originalSize;
+    }
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+    public int getBlocks() {
+        return blocks;
+    }
+    public int getThreads() {
+        return threads;
+    }
+}
@@ -0,0 +1,369 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+import TIMS.Database.ActivityLogDB;
+import TIMS.Database.JobStatusDB;
+import TIMS.Database.Study;
+import TIMS.Database.StudyDB;
+import TIMS.Database.SubmittedJob;
+import TIMS.Database.SubmittedJobDB;
+import TIMS.Database.UserAccount;
+import TIMS.Database.UserAccountDB;
+import TIMS.Database.UserRoleDB;
+// Libraries for Java
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+// Libraries for Java Extension
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// DownloadServlet serve the job outputs (output, detail output and report) 
+// and the finalized study outputs (consolidated output, detail output and 
+// summary) outside of JSF. The file to download is looked up from the 
+// database using the job/study ID; the same access rules as the Job Status 
+// and Completed Study Output pages are applied.
+//
+// Usage: /restricted/download?job=<job_id>&file=output|detail|report
+//        /restricted/download?study=<study_id>&file=output|detail|summary
+//        /restricted/download?study=<study_id>&file=quality
+//
+// The meta data quality report could only be downloaded for the study the
+// user is managing (i.e. the study_id in the session).
+//
+// The file is handed over to Tomcat to be sent using sendfile when the 
+// connector support it. Else it is sent using FileChannel.transferTo; as the
+// target is the servlet output stream, the data will still be copied 
+// through the heap. Single byte range requests (i.e. resumable downloads) 
+// and conditional requests using ETag/Last-Modified are supported.
+@WebServlet("/restricted/download")
+public class DownloadServlet extends HttpServlet {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(DownloadServlet.class.getName());
+    // Maximum number of bytes to transfer per transferTo call.
+    private final static long TRANSFER_SIZE = 8 * 1024 * 1024;
+    // Request attributes used by Tomcat for sendfile.
+    private final static String SENDFILE_SUPPORT = 
+            "org.apache.tomcat.sendfile.support";
+    private final static String SENDFILE_FILENAME = 
+            "org.apache.tomcat.sendfile.filename";
+    private final static String SENDFILE_START = 
+            "org.apache.tomcat.sendfile.start";
+    private final static String SENDFILE_END = 
+            "org.apache.tomcat.sendfile.end";
+    
+    @Override
+    protected void doGet(HttpServletRequest request, 
+            HttpServletResponse response) throws ServletException, IOException 
+    {
+        serve(request, response, true);
+    }
+    
+    @Override
+    protected void doHead(HttpServletRequest request, 
+            HttpServletResponse response) throws ServletException, IOException 
+    {
+        serve(request, response, false);
+    }
+    
+    // Check the access right, then send the requested file (or range of the
+    // file) to the user.
+    private void serve(HttpServletRequest request, HttpServletResponse response,
+            boolean content) throws IOException 
+    {
+        String userName = (String) request.getSession().getAttribute("User");
+        String filepath;
+        
+        try {
+            filepath = request.getParameter("job") != null ?
+                    getJobFile(userName, Integer.parseInt(request.getParameter("job")), 
+                               request.getParameter("file")) :
+                    getStudyFile(userName, request.getParameter("study"), 
+                                 request.getParameter("file"), 
+                                 (String) request.getSession().getAttribute("study_id"));
+        }
+        catch (NumberFormatException e) {
+            filepath = null;
+        }
+        
+        if (filepath == null) {
+            logger.info(userName + ": download request rejected - " 
+                      + request.getQueryString());
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        File file = new File(filepath);
+        
+        if (!file.isFile()) {
+            logger.error("File not found for download: " + filepath);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        long length = file.length();
+        long lastModified = file.lastModified() / 1000 * 1000;
+        String etag = "\"" + Long.toHexString(length) + "-" 
+                    + Long.toHexString(lastModified) + "\"";
+        // Replace the no-store set by NoCacheFilter, so that the browser could
+        // revalidate the file instead of downloading it again.
+        response.setHeader("Cache-Control", "private, no-cache");
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+        
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        long[] range = getRange(request, etag, lastModified, length);
+        if (range == null) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        long start = range[0], count = range[1] - range[0] + 1;
+        
+        if (count != length) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + range[0] + "-" 
+                             + range[1] + "/" + length);
+        }
+        String contentType = getServletContext().getMimeType(file.getName());
+        response.setContentType(contentType != null ? 
+                                contentType : "application/octet-stream");
+        response.setHeader("Content-Length", String.valueOf(count));
+        response.setHeader("Content-Disposition", "attachment; filename=\""
+                         + file.getName() + "\"");
+        
+        if (!content) {
+            return;
+        }
+        if (start == 0) {
+            // Only record the start of the download, not every resumed range.
+            ActivityLogDB.recordUserActivity(userName, Constants.DWL_FIL, 
+                    request.getParameter("file") + " " + filepath);
+        }
+        if (count > 0 && 
+                Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Let Tomcat send the file directly from the file system.
+            request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+        }
+        else {
+            transfer(file, start, count, response.getOutputStream());
+        }
+        logger.info(userName + ": " + file.getName() + " downloaded (" 
+                  + count + " bytes from " + start + ").");
+    }
+    
+    // Transfer count bytes of the file from position start to the output 
+    // stream.
+    private void transfer(File file, long start, long count, OutputStream os) 
+            throws IOException 
+    {
+        WritableByteChannel target = Channels.newChannel(os);
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), 
+                StandardOpenOption.READ)) 
+        {
+            long position = start, end = start + count;
+            
+            while (position < end) {
+                long sent = channel.transferTo(position, 
+                        Math.min(TRANSFER_SIZE, end - position), target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+        catch (IOException ioe) {
+            // Most likely the user has cancelled the download.
+            logger.debug("Download of " + file.getName() + " stopped: " 
+                       + ioe.getMessage());
+        }
+    }
+    
+    // Return true if the file the browser has is still current.
+    private boolean isNotModified(HttpServletRequest request, String etag, 
+            long lastModified) 
+    {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.equals("*") || ifNoneMatch.contains(etag);
+        }
+        long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        
+        return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+    }
+    
+    // Return the first and last byte position to send. The whole file will 
+    // be sent if there is no Range header, the If-Range condition fails, the
+    // range is invalid (e.g. bytes=5-3), or more than one range is requested.
+    // Return null if the range cannot be satisfied.
+    private long[] getRange(HttpServletRequest request, String etag, 
+            long lastModified, long length) 
+    {
+        long[] full = {0, length - 1};
+        String range = request.getHeader("Range");
+        
+        if (range == null || !range.startsWith("bytes=") || range.contains(",")) {
+            return full;
+        }
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange != null && !ifRange.equals(etag)) {
+            try {
+                if (request.getDateHeader("If-Range") != lastModified) {
+                    return full;
+                }
+            }
+            catch (IllegalArgumentException e) {
+                // Not a date i.e. an ETag that does not match.
+                return full;
+            }
+        }
+        
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return full;
+        }
+        try {
+            long start, end;
+            
+            if (dash == 0) {
+                // Suffix range i.e. the last N bytes.
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            }
+            else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = (dash == spec.length() - 1) ? length - 1 : 
+                      Long.parseLong(spec.substring(dash + 1));
+                if (end < start) {
+                    // Invalid range, ignore the Range header.
+                    return full;
+                }
+                end = Math.min(end, length - 1);
+            }
+            
+            return (start >= length) ? null : new long[]{start, end};
+        }
+        catch (NumberFormatException e) {
+            return full;
+        }
+    }
+    
+    // Return the path of the job file if the user is allowed to download it,
+    // else return null. Users could download the files of their own jobs 
+    // (except those being finalized); administrator could download the files
+    // of all the jobs.
+    private String getJobFile(String userName, int jobID, String type) {
+        SubmittedJob job = SubmittedJobDB.getJob(jobID);
+        
+        if (job == null || type == null) {
+            return null;
+        }
+        if (!UserAccountDB.isAdministrator(userName) && 
+            (!job.getUser_id().equals(userName) || 
+             job.getStatus_id() == JobStatusDB.finalizing())) {
+            return null;
+        }
+        
+        switch (type) {
+            case "output":
+                return job.getOutputReady().equals(Constants.FALSE) ? 
+                       job.getOutput_file() : null;
+            case "detail":
+                return job.getOutputReady().equals(Constants.FALSE) ? 
+                       job.getDetail_output() : null;
+            case "report":
+                return job.getReportReady().equals(Constants.FALSE) ? 
+                       job.getReport() : null;
+            default:
+                return null;
+        }
+    }
+    
+    // Return the path of the finalized study file if the user is allowed to
+    // download it, else return null. Director/HOD/PI could download the 
+    // studies of the groups under them; other users could download the 
+    // studies of their own group. The quality report is only available for 
+    // the study the user is managing.
+    private String getStudyFile(String userName, String studyID, String type,
+            String managedStudy) {
+        if (studyID == null || type == null) {
+            return null;
+        }
+        if (type.equals("quality")) {
+            return studyID.equals(managedStudy) ? 
+                   StudyDB.getMetaQualityReportPath(studyID) : null;
+        }
+        UserAccount user = UserAccountDB.getUserAct(userName);
+        
+        if (user == null) {
+            return null;
+        }
+        List<Study> studies = UserRoleDB.isLead(user.getRole_id()) ?
+                StudyDB.queryFinalizedStudiesByGrps(userName) :
+                StudyDB.queryFinalizedStudiesByGrp(user.getUnit_id());
+        
+        for (Study study : studies) {
+            if (study.getStudy_id().equals(studyID)) {
+                switch (type) {
+                    case "output":
+                        return study.getFinalized_output();
+                    case "detail":
+                        return study.getDetail_files();
+                    case "summary":
+                        return study.getSummary();
+                    default:
+                        return null;
+                }
+            }
+        }
+        
+        return null;
+    }
+}
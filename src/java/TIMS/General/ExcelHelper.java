@@ -23,11 +23,12 @@
 //
 package TIMS.General;
 
-import TIMS.Database.MetaRecord;
 // Libraries for Java
 import java.io.File;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 // Libraries for Log4j
 import org.apache.logging.log4j.Logger;
@@ -42,11 +43,21 @@ import org.apache.poi.ss.usermodel.DataFormatter;
 // Library for stream reader
 import com.monitorjbl.xlsx.StreamingReader;
 
-public class ExcelHelper {
+// ExcelHelper stream through the rows of the excel sheet. The workbook is 
+// opened once (on the first read), and each call to readNextRow will return 
+// the next row; the caller need to close the helper after use.
+public class ExcelHelper implements AutoCloseable {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(ExcelHelper.class.getName());
     private final String filename, datasheet;
+    // The formatters are reused for all the cells read by this helper.
+    private final SimpleDateFormat datef = new SimpleDateFormat("dd/MM/yyyy");
+    private final SimpleDateFormat dateTimef = 
+            new SimpleDateFormat("dd/MM/yyyy hh:mm a");
+    private final DataFormatter dataFormatter = new DataFormatter();
+    private Workbook wb;
+    private Iterator<Row> rowItr;
     private int readInd;
 
     public ExcelHelper(String filename, String datasheet) {
@@ -56,8 +67,8 @@ public class ExcelHelper {
     }
     
     // Read in the data from the row and return them as a list of string.
-    public static List<String> convertRowToStrList(Row values) {
-        List<String> colDataL = new ArrayList<>();
+    public List<String> convertRowToStrList(Row values) {
+        List<String> colDataL = new ArrayList<>(Math.max(values.getLastCellNum(), 0));
         
         for (int i = 0; i < values.getLastCellNum(); i++) {
             Cell c = values.getCell(i, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
@@ -68,19 +79,19 @@ public class ExcelHelper {
                     // Date, Time and Date&Time cell will be detected as Date
                     // Formatted.
                     // Read in format: dd/MM/yyyy hh:mm a
-                    String tmp = MetaRecord.dateTimef.format(c.getDateCellValue());
+                    String tmp = dateTimef.format(c.getDateCellValue());
                     if (!tmp.isEmpty()) {
                         String[] dateTimeAmPm = tmp.split(" ");
                         // For time cell, the default date is 31/12/1899.
                         if (dateTimeAmPm[0].equals("31/12/1899")) {
                             // This cell contains time value.
-                            tmp = new DataFormatter().formatCellValue(c);
+                            tmp = dataFormatter.formatCellValue(c);
                         }
                         // For date cell, the default time is 12:00 or 12:20 AM
                         else if ( (dateTimeAmPm[1].equals("12:00") && dateTimeAmPm[2].equals("AM")) ||
                                   (dateTimeAmPm[1].equals("12:20") && dateTimeAmPm[2].equals("AM"))) {
                             // This cell contains date value.
-                            tmp = MetaRecord.datef.format(c.getDateCellValue());
+                            tmp = datef.format(c.getDateCellValue());
                         }
                     }
                     colDataL.add(tmp);
@@ -98,35 +109,58 @@ public class ExcelHelper {
     }
     
     // Read the next row of the excel sheet and return the column data as a list
-    // of string. Only work for excel sheet that has less than 100 rows.
+    // of string. Return null when there is no more row.
     public List<String> readNextRow() {
-        List<String> colDataL = null;
-        try (Workbook wb = StreamingReader.builder()
-                .rowCacheSize(100)
-                .bufferSize(4096)
-                .open(new File(filename))) 
-        {
-            Sheet dataSheet = wb.getSheet(datasheet);
-            int row = 0;
-            // Retrieve the data from the readInd row of Excel sheet.
-            for (Row values : dataSheet) {
-                if (row != readInd) {
-                    // Keep skipping until we reach the row number that we last
-                    // read.
-                    row++;
-                    continue;
-                }
-                colDataL = convertRowToStrList(values);
-                readInd++;
-                // Only read in one row per call.
-                break;
-            }
-        } catch (IOException ioe) {
-            logger.error(ioe.getMessage());
+        if (rowItr == null) {
+            open();
+        }
+        if (!rowItr.hasNext()) {
+            return null;
+        }
+        readInd++;
+        
+        return convertRowToStrList(rowItr.next());
+    }
+    
+    // Return the row number (starting from 1) of the row last read.
+    public int getRowNumber() {
+        return readInd;
+    }
+    
+    // Open the workbook and position the reader at the first row of the 
+    // data sheet.
+    private void open() {
+        try {
+            wb = StreamingReader.builder()
+                    .rowCacheSize(100)
+                    .bufferSize(4096)
+                    .open(new File(filename));
+        } catch (RuntimeException re) {
+            logger.error(re.getMessage());
             // Fail to process Excel file.
             throw new java.lang.RuntimeException("Fail to fetch row from Excel File!");
         }
-
-        return colDataL;
+        Sheet dataSheet = wb.getSheet(datasheet);
+        
+        if (dataSheet == null) {
+            throw new java.lang.RuntimeException("Sheet " + datasheet 
+                    + " not found in Excel File!");
+        }
+        rowItr = dataSheet.iterator();
+    }
+    
+    // Close the workbook after use.
+    @Override
+    public void close() {
+        if (wb != null) {
+            try {
+                wb.close();
+            } catch (IOException ioe) {
+                logger.error("FAIL to close Excel File!");
+                logger.error(ioe.getMessage());
+            }
+            wb = null;
+            rowItr = null;
+        }
     }
 }
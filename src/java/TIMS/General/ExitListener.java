@@ -27,6 +27,11 @@ import TIMS.Database.SubmittedJobDB;
 import java.sql.Timestamp;
 import java.util.Date;
 import java.util.EventListener;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 // Libraries for Log4j
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -35,14 +40,52 @@ public class ExitListener implements EventListener {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(ExitListener.class.getName());    
+    private final static AtomicInteger count = new AtomicInteger();
+    // Threads to zip the detail output; kept apart from the common pool, 
+    // and from the ParallelZipper workers that the zipping itself wait on.
+    private static ExecutorService zippers;
 
     public ExitListener() {}
     
+    // Return the zipper threads; created when they are first needed.
+    private static synchronized ExecutorService getZippers() {
+        if (zippers == null) {
+            zippers = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "exit-zip-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        
+        return zippers;
+    }
+    
+    // Stop the zipper threads.
+    public static synchronized void shutdown() {
+        if (zippers != null) {
+            zippers.shutdown();
+            try {
+                if (!zippers.awaitTermination(30, TimeUnit.SECONDS)) {
+                    logger.error("ExitListener zippers did not stop in time!");
+                    zippers.shutdownNow();
+                }
+            }
+            catch (InterruptedException e) {
+                zippers.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            zippers = null;
+        }
+    }
+    
     // The pipeline has completed execution, update the job status according
     // to the process return status.
     public void processFinished(int job_id, String study_id, int result) {
         if (result == 0) {
-            // Zip the output file.
+            // Zip the detail output file and the output file concurrently.
+            CompletableFuture<String> detail = CompletableFuture.supplyAsync
+                    (() -> SubmittedJobDB.zipDetailOutput(job_id), 
+                     getZippers());
             String opPath = SubmittedJobDB.zipOutputFile(job_id);
             
             if (opPath != null) {
@@ -54,8 +97,7 @@ public class ExitListener implements EventListener {
                     logger.error("FAIL to delete original output file!");
                 }
             }
-            // Zip the detail output file.
-            String doPath = SubmittedJobDB.zipDetailOutput(job_id);
+            String doPath = detail.join();
             
             if (doPath != null) {
                 // Delete the original detail output to free up memory space.
@@ -27,16 +27,12 @@ import TIMS.Database.StudyDB;
 import TIMS.Database.SubjectDB;
 import TIMS.Database.SubjectDetail;
 // Libraries for Java
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.file.FileSystems;
@@ -91,12 +87,12 @@ public abstract class FileHelper {
         }
     }
     
-    // Download the file from the filepath.
+    // Download the file from the filepath. Job and finalized study outputs 
+    // are served by DownloadServlet instead.
     public static void download(String filepath) {
        // Get ready the file for user to download
         File file = new File(filepath);
         String filename = file.getName();
-        int contentLength = (int) file.length();
         ExternalContext ec = FacesContext.getCurrentInstance().getExternalContext();
         // Some JSF component library or some filter might have set some headers
         // in the buffer beforehand. We want to clear them, else they may collide.
@@ -104,19 +100,14 @@ public abstract class FileHelper {
         // Auto-detect the media-types based on filename
         ec.setResponseContentType(ec.getMimeType(filename));
         // Set the file size, so that the download progress will be known.
-        ec.setResponseContentLength(contentLength);
+        // Content length is set as header to support file larger than 2GB.
+        ec.setResponseHeader("Content-Length", String.valueOf(file.length()));
         // Create the Sava As popup
         ec.setResponseHeader("Content-Disposition", "attachment; filename=\""
                             + filename + "\"");
         
-        try (FileInputStream fis = new FileInputStream(file)){
-            OutputStream os = ec.getResponseOutputStream();
-            byte[] buffer = new byte[2048]; // 2K byte-buffer
-            int bytesRead;
-            
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                os.write(buffer,0,bytesRead);
-            }
+        try {
+            Files.copy(file.toPath(), ec.getResponseOutputStream());
         } catch (IOException ex) {
             logger.error("FAIL to download " + filename);
             logger.error(ex.getMessage());
@@ -220,35 +211,21 @@ public abstract class FileHelper {
     }
     
     // Convert byte array to List<String> (after reading bytea from database).
+    // Both the compact format and the previous Java serialized format are 
+    // supported.
     public static List<String> convertByteArrayToList(byte[] data) {
-        ByteArrayInputStream byteIn = new ByteArrayInputStream(data);
+        List<String> list = CompactListCodec.decode(data);
         
-        try (ObjectInputStream ois = new ObjectInputStream(byteIn))
-        {
-            @SuppressWarnings("unchecked")
-            List<String>list = (List<String>) ois.readObject();
-            
-            return list;
-        } catch (IOException|ClassNotFoundException ex) {
+        if (list == null) {
             logger.error("FAIL to convert byte array to list!");
-            logger.error(ex.getMessage());
         }
-        return null;
+        return list;
     }
     
-    // Convert the object to byte array (for writting to database).
-    public static byte[] convertObjectToByteArray(Object obj) {
-        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-        
-        try (ObjectOutputStream oos = new ObjectOutputStream(byteOut))
-        {
-            oos.writeObject(obj);
-        } catch (IOException ioe) {
-            logger.error("FAIL to convert object to byte array!");
-            logger.error(ioe.getMessage());
-        }
-
-        return byteOut.toByteArray();
+    // Convert the list of string to byte array (for writting to database)
+    // using the compact format.
+    public static byte[] convertListToByteArray(List<String> list) {
+        return CompactListCodec.encode(list);
     }
     
     // Convert the list of string to a string whereby each individual string
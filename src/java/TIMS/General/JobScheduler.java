@@ -0,0 +1,290 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+import TIMS.Database.JobQueueDB;
+import TIMS.Database.Pipeline;
+import TIMS.Database.PipelineDB;
+import TIMS.Database.QueuedJob;
+import TIMS.Database.SubmittedJobDB;
+import TIMS.Database.SystemParametersDB;
+// Libraries for Java
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+// Libraries for Java Extension
+import javax.naming.NamingException;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// JobScheduler start the pipeline jobs kept in the job queue, within the 
+// CPU slots (PIPELINE_CPU_SLOTS) and memory (PIPELINE_MEMORY_MB, 0 for no 
+// limit) budgets of the server. The resources needed by each job are set 
+// per pipeline. Jobs are started strictly in priority, and then first come 
+// first serve order; a job that doesn't fit will hold back the jobs behind
+// it, so that large jobs will not be starved by the smaller ones. A job 
+// needing more than the whole budget is started when nothing else is running.
+// The queue is kept in the database, and will be picked up again after a
+// restart; the pipelines that are still running will be watched again.
+public abstract class JobScheduler {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(JobScheduler.class.getName());
+    // The queue will be rescanned at least once every minute.
+    private final static long RESCAN_INTERVAL = 60000;
+    private final static Object lock = new Object();
+    // The jobs started by the scheduler that are still running.
+    private final static Map<Integer, QueuedJob> running = new LinkedHashMap<>();
+    // The jobs waiting in the queue, as of the last scan.
+    private static List<QueuedJob> waiting = new ArrayList<>();
+    private static Thread worker;
+    private static volatile boolean stopped;
+    private static boolean rescan;
+    // The orphaned jobs are adopted once.
+    private static boolean adopted;
+    
+    // Start the scheduler if it is not running; the jobs left in the queue 
+    // will be picked up in the first scan.
+    public static void start() {
+        synchronized (lock) {
+            if (worker == null || !worker.isAlive()) {
+                stopped = false;
+                worker = new Thread(JobScheduler::runLoop, "job-scheduler");
+                worker.setDaemon(true);
+                worker.start();
+                logger.info("Job scheduler started.");
+            }
+        }
+    }
+    
+    // Add the job into the job queue, and let the scheduler decide when to 
+    // start it; the job is already inserted with status waiting. Return the 
+    // status of the operation.
+    public static boolean submit(QueuedJob job) {
+        if (!JobQueueDB.enqueue(job)) {
+            return Constants.NOT_OK;
+        }
+        start();
+        wakeUp();
+        
+        return Constants.OK;
+    }
+    
+    // Return the jobs waiting in the queue, as of the last scan.
+    public static List<QueuedJob> getWaitingJobs() {
+        synchronized (lock) {
+            return new ArrayList<>(waiting);
+        }
+    }
+    
+    // Return the jobs started by the scheduler that are still running.
+    public static List<QueuedJob> getRunningJobs() {
+        synchronized (lock) {
+            return new ArrayList<>(running.values());
+        }
+    }
+    
+    // Stop the scheduler; the jobs in the queue will be started after the 
+    // restart.
+    public static void shutdown() {
+        synchronized (lock) {
+            stopped = true;
+            if (worker != null) {
+                worker.interrupt();
+                worker = null;
+            }
+        }
+    }
+    
+    // Ask the scheduler to scan the queue again.
+    private static void wakeUp() {
+        synchronized (lock) {
+            rescan = true;
+            lock.notifyAll();
+        }
+    }
+    
+    // The job has ended; release it's resources and start the next jobs.
+    private static void jobEnded(int job_id) {
+        synchronized (lock) {
+            running.remove(job_id);
+        }
+        logger.debug("Job " + job_id + " ended; resources released.");
+        wakeUp();
+    }
+    
+    // The jobs still in-progress when the scheduler is first started were 
+    // started before the restart; watch their pipelines again and count their 
+    // resources. The job might still be in the queue if the restart happened
+    // right after it was started.
+    private static void adoptOrphans() {
+        for (QueuedJob job : JobQueueDB.getOrphanedJobs()) {
+            synchronized (lock) {
+                running.put(job.getJob_id(), job);
+            }
+            JobQueueDB.dequeue(job.getJob_id());
+            ProcessSupervisor.adopt(job, () -> jobEnded(job.getJob_id()));
+        }
+    }
+    
+    private static void runLoop() {
+        if (!adopted) {
+            adopted = true;
+            adoptOrphans();
+        }
+        while (!stopped) {
+            try {
+                schedule();
+                synchronized (lock) {
+                    if (!rescan) {
+                        lock.wait(RESCAN_INTERVAL);
+                    }
+                    rescan = false;
+                }
+            }
+            catch (InterruptedException e) {
+                logger.debug("Job scheduler interrupted.");
+                break;
+            }
+            catch (RuntimeException e) {
+                logger.error("FAIL to schedule pipeline jobs!");
+                logger.error(e.getMessage());
+            }
+        }
+    }
+    
+    // Start the jobs at the front of the queue, as long as they fit into the
+    // remaining budgets.
+    private static void schedule() {
+        List<QueuedJob> queue = JobQueueDB.getQueuedJobs();
+        int cpuBudget = SystemParametersDB.getPipelineCpuSlots();
+        int memBudget = SystemParametersDB.getPipelineMemory();
+        int started = 0;
+        
+        for (QueuedJob job : queue) {
+            synchronized (lock) {
+                // Skip the job that has been started i.e. it's removal from
+                // the queue failed earlier.
+                if (running.containsKey(job.getJob_id())) {
+                    continue;
+                }
+                if (!fits(job, cpuBudget, memBudget)) {
+                    logger.debug(job + " waiting for resources.");
+                    break;
+                }
+                running.put(job.getJob_id(), job);
+            }
+            if (startJob(job)) {
+                started++;
+            }
+            else {
+                jobEnded(job.getJob_id());
+            }
+        }
+        
+        synchronized (lock) {
+            waiting = new ArrayList<>(queue.subList(started, queue.size()));
+            waiting.removeIf(job -> running.containsKey(job.getJob_id()));
+        }
+    }
+    
+    // Return true if the job fit into the remaining budgets. Must be called
+    // while holding the lock.
+    private static boolean fits(QueuedJob job, int cpuBudget, int memBudget) {
+        int cpuUsed = 0, memUsed = 0;
+        
+        if (running.isEmpty()) {
+            return true;
+        }
+        for (QueuedJob r : running.values()) {
+            cpuUsed += r.getCpu_slots();
+            memUsed += r.getMemory_mb();
+        }
+        
+        return (cpuUsed + job.getCpu_slots() <= cpuBudget) && 
+               (memBudget <= 0 || memUsed + job.getMemory_mb() <= memBudget);
+    }
+    
+    // Start the pipeline process and remove the job from the queue. Return 
+    // true if the process has been started. The job is only removed from the
+    // queue after it has been set to in-progress and it's process recorded, 
+    // so that it is either restarted or adopted after a crash.
+    private static boolean startJob(QueuedJob job) {
+        int job_id = job.getJob_id();
+        Pipeline cmd;
+        
+        try {
+            // Retrieve the pipeline command and it's parameter from database.
+            cmd = new PipelineDB(job.getPipeline_name()).getPipeline();
+        }
+        catch (SQLException|NamingException e) {
+            logger.error("FAIL to retrieve pipeline command " + 
+                         job.getPipeline_name());
+            logger.error(e.getMessage());
+            JobQueueDB.dequeue(job_id);
+            new ExitListener().processFinished(job_id, job.getStudy_id(), -1);
+            return Constants.NOT_OK;
+        }
+        
+        List<String> command = new ArrayList<>();
+        command.add(cmd.getCommand());
+        command.add(cmd.getParameter());
+        command.add(job.getConfig_file());
+        logger.info("Full pipeline command: " + command.toString());
+        
+        ProcessBuilder pb = new ProcessBuilder(command);
+        // Merge the standard error and output stream, and write the 
+        // execution log from the pipeline to the log file.
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(ProcessBuilder.Redirect.to(new File(job.getLog_file())));
+        Process process;
+        
+        try {
+            process = pb.start();
+        } 
+        catch (IOException ioe) {
+            logger.error("FAIL to start pipeline process for job " + job_id);
+            logger.error(ioe.getMessage());
+            JobQueueDB.dequeue(job_id);
+            new ExitListener().processFinished(job_id, job.getStudy_id(), -1);
+            return Constants.NOT_OK;
+        }
+        SubmittedJobDB.updateJobStatusToInprogress(job_id);
+        logger.debug("Pipeline run and job status updated to in-progress. ID: " 
+                    + job_id);
+        // Release the resources once the pipeline has completed.
+        ProcessSupervisor.supervise(job, process, () -> jobEnded(job_id));
+        
+        if (!JobQueueDB.dequeue(job_id)) {
+            logger.warn("Job " + job_id + " no longer in job queue.");
+        }
+        
+        return Constants.OK;
+    }
+}
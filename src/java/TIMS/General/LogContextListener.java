@@ -23,6 +23,13 @@
 //
 package TIMS.General;
 
+import TIMS.Database.ActivityLogWriter;
+import TIMS.Database.DBHelper;
+import TIMS.Database.JobStatusDB;
+import TIMS.Database.SystemParametersDB;
+import TIMS.Visualizers.CbioReloadScheduler;
+import java.io.File;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import org.apache.logging.log4j.core.config.Configurator;
 import org.apache.logging.log4j.web.Log4jServletContextListener;
@@ -51,5 +58,40 @@ public class LogContextListener extends Log4jServletContextListener{
                 getRealPath(pathToConfigFile);
         Configurator.initialize(null, realPathToConfigFile);
         super.contextInitialized(event);
+        startServices(event.getServletContext(), 
+                      OS.startsWith("Windows") ? "C:" : File.separator + "var");
+    }
+    
+    // Start the background services that shouldn't wait for the first login
+    // i.e. the job scheduler will pick up the jobs left in the job queue, and
+    // the mail dispatcher will send the emails left in the outbox.
+    private void startServices(ServletContext context, String root) {
+        String setupFile = context.getRealPath(context.getInitParameter("setup"));
+        
+        if (Constants.setup(setupFile, root)) {
+            DBHelper.initDataSource(context);
+            SystemParametersDB.loadSystemParameters();
+            JobStatusDB.buildJobStatusDef();
+            JobScheduler.start();
+            MailDispatcher.start();
+        }
+    }
+    
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        // Let the running background tasks end before stopping the logger.
+        JobScheduler.shutdown();
+        ProcessSupervisor.shutdown();
+        ExitListener.shutdown();
+        TaskExecutor.shutdown();
+        // The tasks ending above might still post emails.
+        MailDispatcher.shutdown();
+        ParallelZipper.shutdown();
+        CbioReloadScheduler.shutdown();
+        ZScoreConverter.shutdown();
+        // Write the buffered user activities before closing the data source.
+        ActivityLogWriter.shutdown();
+        DBHelper.closeDataSource();
+        super.contextDestroyed(event);
     }
 }
@@ -0,0 +1,249 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+import TIMS.Database.EmailOutboxDB;
+import TIMS.Database.OutboxMessage;
+import TIMS.Database.SystemParametersDB;
+// Libraries for Java
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Properties;
+// Libraries for Java Extension
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// MailDispatcher send out the emails in the email outbox at the background,
+// a batch of emails per SMTP connection. The emails are sent no faster than
+// MAIL_RATE_PER_MIN; an email that failed to be sent will be tried again 
+// after 1 minute, and the wait is doubled after each failure (up to 1 hour).
+// The SMTP server is set using MAIL_SMTP_HOST and MAIL_SMTP_PORT.
+public abstract class MailDispatcher {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(MailDispatcher.class.getName());
+    private static final String from = "TIMS@bii.a-star.edu.sg";
+    // The outbox will be checked at least once every minute.
+    private final static long RESCAN_INTERVAL = 60000;
+    private final static long MIN_BACKOFF = 60000;
+    private final static long MAX_BACKOFF = 3600000;
+    // The email will be left in the outbox after 10 failed attempts.
+    private final static int MAX_ATTEMPTS = 10;
+    // The SMTP server will be dropped if it doesn't response in 30 seconds.
+    private final static String SMTP_TIMEOUT = "30000";
+    private final static Object lock = new Object();
+    private static Thread worker;
+    private static volatile boolean stopped;
+    private static boolean rescan;
+    // System.nanoTime() of the last email sent (0 if none has been sent); 
+    // the rate limit is kept across the batches.
+    private static long lastSent;
+    
+    // Start the dispatcher if it is not running; the emails left in the 
+    // outbox will be sent in the first round. The dispatcher will not be 
+    // started again once it has been shutdown.
+    public static void start() {
+        synchronized (lock) {
+            if (!stopped && (worker == null || !worker.isAlive())) {
+                worker = new Thread(MailDispatcher::runLoop, "mail-dispatcher");
+                worker.setDaemon(true);
+                worker.start();
+                logger.info("Mail dispatcher started.");
+            }
+        }
+    }
+    
+    // Add the email into the outbox and return immediately; the email will
+    // be sent by the dispatcher (after the restart if it has been shutdown).
+    public static void post(String recipients, String bcc, String subject, 
+            String body) {
+        if (EmailOutboxDB.enqueue(new OutboxMessage(recipients, bcc, subject, 
+                                                    body))) {
+            start();
+            synchronized (lock) {
+                rescan = true;
+                lock.notifyAll();
+            }
+        }
+    }
+    
+    // Stop the dispatcher for good; the emails in the outbox, and those 
+    // posted from now on, will be sent after the restart.
+    public static void shutdown() {
+        synchronized (lock) {
+            stopped = true;
+            if (worker != null) {
+                worker.interrupt();
+                worker = null;
+            }
+        }
+    }
+    
+    private static void runLoop() {
+        while (!stopped) {
+            try {
+                // Continue with the next batch if this batch is full.
+                if (!dispatch()) {
+                    synchronized (lock) {
+                        if (!rescan) {
+                            lock.wait(RESCAN_INTERVAL);
+                        }
+                        rescan = false;
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                logger.debug("Mail dispatcher interrupted.");
+                break;
+            }
+            catch (RuntimeException e) {
+                logger.error("FAIL to dispatch emails!");
+                logger.error(e.getMessage());
+            }
+        }
+    }
+    
+    // Send a batch of due emails through one SMTP connection. Return true if
+    // the whole batch has been sent i.e. there could be more emails waiting.
+    private static boolean dispatch() throws InterruptedException {
+        int batchSize = SystemParametersDB.getMailBatchSize();
+        List<OutboxMessage> batch = EmailOutboxDB.getDueMessages(batchSize, 
+                                                                 MAX_ATTEMPTS);
+        if (batch.isEmpty()) {
+            return false;
+        }
+        long gap = 60000 / SystemParametersDB.getMailRateLimit();
+        Session session = getSession();
+        Transport transport = null;
+        int sent = 0;
+        
+        try {
+            transport = session.getTransport("smtp");
+            transport.connect();
+            
+            for (OutboxMessage om : batch) {
+                waitForGap(gap);
+                try {
+                    MimeMessage msg = buildMessage(session, om);
+                    transport.sendMessage(msg, msg.getAllRecipients());
+                    EmailOutboxDB.removeMessage(om.getMsg_id());
+                    logger.debug("Email sent to: " + om.getRecipients());
+                }
+                catch (SendFailedException|AddressException e) {
+                    // The recipients are invalid or rejected by the SMTP 
+                    // server, the connection could still be used.
+                    defer(om, e);
+                }
+                lastSent = System.nanoTime();
+                sent++;
+            }
+        }
+        catch (MessagingException e) {
+            // The connection is lost; the email being sent and the rest of
+            // the batch will be tried again later.
+            logger.error("FAIL to send emails through " + 
+                         session.getProperty("mail.smtp.host"));
+            logger.error(e.getMessage());
+            for (OutboxMessage om : batch.subList(sent, batch.size())) {
+                defer(om, e);
+            }
+        }
+        finally {
+            if (transport != null) {
+                try {
+                    transport.close();
+                }
+                catch (MessagingException e) {
+                    logger.debug("FAIL to close SMTP connection.");
+                }
+            }
+        }
+        
+        return sent == batchSize;
+    }
+    
+    // Wait until gap (in ms) has passed since the last email was sent.
+    private static void waitForGap(long gap) throws InterruptedException {
+        if (lastSent != 0) {
+            long wait = gap - (System.nanoTime() - lastSent) / 1000000;
+            
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+        }
+    }
+    
+    // Build the email to be sent.
+    private static MimeMessage buildMessage(Session session, OutboxMessage om) 
+            throws MessagingException {
+        MimeMessage msg = new MimeMessage(session);
+        msg.setFrom(new InternetAddress(from));
+        msg.addRecipients(Message.RecipientType.TO, om.getRecipients());
+        if (om.getBcc() != null) {
+            msg.addRecipients(Message.RecipientType.BCC, om.getBcc());
+        }
+        msg.setSubject(om.getSubject());
+        msg.setText(om.getBody());
+        msg.saveChanges();
+        
+        return msg;
+    }
+    
+    // Try to send the email again later; the wait is doubled after each 
+    // failed attempt.
+    private static void defer(OutboxMessage om, MessagingException e) {
+        long backoff = Math.min(MAX_BACKOFF, 
+                MIN_BACKOFF << Math.min(om.getAttempts(), 10));
+        
+        EmailOutboxDB.deferMessage(om.getMsg_id(), 
+                new Timestamp(System.currentTimeMillis() + backoff), 
+                e.getMessage());
+        if (om.getAttempts() + 1 >= MAX_ATTEMPTS) {
+            logger.error("Giving up email " + om.getMsg_id() + " to " + 
+                         om.getRecipients() + ": " + om.getSubject());
+        }
+    }
+    
+    // Create the mail session for the SMTP server.
+    private static Session getSession() {
+        Properties props = new Properties();
+        
+        props.setProperty("mail.smtp.host", SystemParametersDB.getMailHost());
+        props.setProperty("mail.smtp.port", 
+                String.valueOf(SystemParametersDB.getMailPort()));
+        props.setProperty("mail.smtp.connectiontimeout", SMTP_TIMEOUT);
+        props.setProperty("mail.smtp.timeout", SMTP_TIMEOUT);
+        
+        return Session.getInstance(props);
+    }
+}
@@ -130,36 +130,21 @@ public class MetaRecordTester {
         }
     }
     
-    // Validate the Meta record's core fields using Prolog engine.
+    // Validate the Meta record's core fields in parallel.
     public void validateMetaRecords() {
-        // Create the Prolog database for core data validation.
-        if (PrologHelper.createMetaRecordValidationDatabase()) {
-            logger.info("Prolog database created.");
-        }
-        else {
-            throw new java.lang.RuntimeException("FAIL to create Prolog database!");
-        }
+        MetaRecordValidator validator = MetaRecordValidator.fromSystemParameters();
         
-        for (MetaRecord rec : recordsSet) {
-            // All records (i.e. START and NEW_SUBJECT) need to be tested.
-            if (!rec.isInvalidOrMissingData()) {
-                if (PrologHelper.queryPrologDatabase(rec.getPrologQuery())) {
-                    rec.setRecordStatusAsValid();
-                }
-                else {
-                    logger.info("Invalid record #" + rec.getCoreData());
-                    rec.setRecordStatusAsInvalid();
-                }
+        // All records (i.e. START and NEW_SUBJECT) need to be tested.
+        recordsSet.parallelStream().filter(rec -> !rec.isInvalidOrMissingData()).
+                forEach(rec -> {
+            if (validator.isValid(rec)) {
+                rec.setRecordStatusAsValid();
             }
-        }
-        
-        // Delete the Prolog database for core data validation.
-        if (PrologHelper.deleteMetaRecordValidationDatabase()) {
-            logger.info("Prolog database deleted.");
-        }
-        else {
-            throw new java.lang.RuntimeException("FAIL to delete Prolog database!");
-        }        
+            else {
+                logger.info("Invalid record #" + rec.getCoreData());
+                rec.setRecordStatusAsInvalid();
+            }
+        });
     }
     
     // Machine generated code.
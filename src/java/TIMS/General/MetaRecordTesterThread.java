@@ -24,6 +24,8 @@
 package TIMS.General;
 
 import TIMS.Database.DBHelper;
+import TIMS.Database.DashboardStatsDB;
+import TIMS.Database.SubjectRegistry;
 import TIMS.Database.MetaRecord;
 import TIMS.Database.StudyDB;
 import TIMS.Database.Subject;
@@ -44,7 +46,7 @@ import javax.naming.NamingException;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
-public class MetaRecordTesterThread extends Thread {
+public class MetaRecordTesterThread implements Runnable {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(MetaRecordTesterThread.class.getName());
@@ -82,7 +84,7 @@ public class MetaRecordTesterThread extends Thread {
             if (sortedColNameL != null) {
                 // Update the column name list for this study.
                 StudyDB.updateStudyColumnNameList(study_id,
-                        FileHelper.convertObjectToByteArray(sortedColNameL));
+                        FileHelper.convertListToByteArray(sortedColNameL));
                 logger.info("Column name list updated for study " + study_id);
             }
             // The following updates need to be group as a transaction.
@@ -92,6 +94,10 @@ public class MetaRecordTesterThread extends Thread {
             // Only commit the transaction if all the update|insertion passed.
             conn.commit();
             conn.setAutoCommit(true);
+            // Dashboard statistics and subject registry of this study need to
+            // be rebuilt.
+            DashboardStatsDB.invalidate(study_id);
+            SubjectRegistry.invalidate(study_id);
         } catch (SQLException|NamingException e) {
             logger.error("FAIL to update meta records in database!");
             logger.error(e.getMessage());
@@ -222,7 +228,7 @@ public class MetaRecordTesterThread extends Thread {
                     SubjectRecord newSubjtRec = new SubjectRecord
                         (study_id, rec.getSubject_id(), rec.getRecord_date(), 
                          rec.getHeight(), rec.getWeight(), 
-                         FileHelper.convertObjectToByteArray(rec.getDat()));
+                         FileHelper.convertListToByteArray(rec.getDat()));
                     if (!SubjectRecordDB.insertSR(newSubjtRec, conn)) {
                         // Failed to insert record into database; mark this 
                         // record as error (most likely a duplicated record.)
@@ -248,7 +254,7 @@ public class MetaRecordTesterThread extends Thread {
                         SubjectRecord exSubjtRec = new SubjectRecord
                             (study_id, rec.getSubject_id(), rec.getRecord_date(), 
                             rec.getHeight(), rec.getWeight(), 
-                            FileHelper.convertObjectToByteArray(rec.getDat()));
+                            FileHelper.convertListToByteArray(rec.getDat()));
                         SubjectRecordDB.updatePartialSubjectRecord(exSubjtRec, conn);
                     }
                     break;
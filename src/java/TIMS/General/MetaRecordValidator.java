@@ -0,0 +1,156 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+import TIMS.Database.MetaRecord;
+import TIMS.Database.SystemParametersDB;
+// Libraries for Java
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// MetaRecordValidator validate the core data of the meta records. The rules
+// are loaded once from the system parameters (with the defaults below), and
+// the validator is immutable after that, hence it could be shared by 
+// concurrent uploads and used to validate the records in parallel.
+//
+// Rules (same as the previous Prolog rules):
+// partial_validate :- sex(Gender), race(Race), casecontrol(CaseControl).
+// full_validate :- partial_validate, Height in [0.54, 2.51], 
+//                  Weight in [2, 635].
+// Full validation is only applied when both height and weight are available.
+public class MetaRecordValidator {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(MetaRecordValidator.class.getName());
+    private final static String DEFAULT_SEX = "f,m";
+    private final static String DEFAULT_RACE = 
+            "chinese,malay,indian,eurasian,others";
+    private final static String DEFAULT_CASECONTROL = "case,control";
+    private final static double[] DEFAULT_HEIGHT_RANGE = {0.54, 2.51};
+    private final static double[] DEFAULT_WEIGHT_RANGE = {2, 635};
+    private final Set<String> sexS, raceS, casecontrolS;
+    private final double[] heightRange, weightRange;
+    
+    public MetaRecordValidator(Set<String> sexS, Set<String> raceS, 
+            Set<String> casecontrolS, double[] heightRange, 
+            double[] weightRange) 
+    {
+        this.sexS = Collections.unmodifiableSet(new HashSet<>(sexS));
+        this.raceS = Collections.unmodifiableSet(new HashSet<>(raceS));
+        this.casecontrolS = Collections.unmodifiableSet
+                                (new HashSet<>(casecontrolS));
+        this.heightRange = heightRange.clone();
+        this.weightRange = weightRange.clone();
+    }
+    
+    // Create the validator using the rules setup in the system parameters
+    // (i.e. META_VALID_SEX, META_VALID_RACE, META_VALID_CASECONTROL, 
+    // META_HEIGHT_RANGE and META_WEIGHT_RANGE).
+    public static MetaRecordValidator fromSystemParameters() {
+        return new MetaRecordValidator(
+            parseValues(SystemParametersDB.getStringParameter
+                    ("META_VALID_SEX", DEFAULT_SEX)),
+            parseValues(SystemParametersDB.getStringParameter
+                    ("META_VALID_RACE", DEFAULT_RACE)),
+            parseValues(SystemParametersDB.getStringParameter
+                    ("META_VALID_CASECONTROL", DEFAULT_CASECONTROL)),
+            parseRange("META_HEIGHT_RANGE", DEFAULT_HEIGHT_RANGE),
+            parseRange("META_WEIGHT_RANGE", DEFAULT_WEIGHT_RANGE));
+    }
+    
+    // Return true if the core data of this record is valid.
+    public boolean isValid(MetaRecord rec) {
+        if (!sexS.contains(normalize(rec.getGender())) || 
+            !raceS.contains(normalize(rec.getRace())) || 
+            !casecontrolS.contains(normalize(rec.getCasecontrol()))) {
+            return Constants.NOT_OK;
+        }
+        // Only partial validation if height or weight is not available.
+        if (rec.getHeight().isEmpty() || rec.getWeight().isEmpty()) {
+            return Constants.OK;
+        }
+        
+        try {
+            return inRange(Double.parseDouble(rec.getHeight()), heightRange) &&
+                   inRange(Double.parseDouble(rec.getWeight()), weightRange);
+        }
+        catch (NumberFormatException e) {
+            return Constants.NOT_OK;
+        }
+    }
+    
+    // Helper function to check whether the value is within the range 
+    // (inclusive).
+    private static boolean inRange(double value, double[] range) {
+        return value >= range[0] && value <= range[1];
+    }
+    
+    // Helper function to normalize the value before lookup; the values were
+    // lowercased (and the surrounding spaces ignored) in the Prolog query.
+    private static String normalize(String value) {
+        return (value == null) ? null : value.toLowerCase().trim();
+    }
+    
+    // Helper function to convert the comma separated values into a set.
+    private static Set<String> parseValues(String values) {
+        Set<String> valueS = new HashSet<>();
+        
+        for (String value : values.split(",")) {
+            if (!value.trim().isEmpty()) {
+                valueS.add(normalize(value));
+            }
+        }
+        
+        return valueS;
+    }
+    
+    // Helper function to convert the system parameter (i.e. min,max) into
+    // a range; return the default range if it is not setup or invalid.
+    private static double[] parseRange(String name, double[] defaultRange) {
+        String value = SystemParametersDB.getStringParameter(name, null);
+        
+        if (value != null) {
+            String[] minMax = value.split(",");
+            try {
+                if (minMax.length == 2) {
+                    double[] range = {Double.parseDouble(minMax[0].trim()), 
+                                      Double.parseDouble(minMax[1].trim())};
+                    if (range[0] <= range[1]) {
+                        return range;
+                    }
+                }
+            }
+            catch (NumberFormatException e) {
+                // Fall through to the error below.
+            }
+            logger.error("Invalid value for system parameter " + name);
+        }
+        
+        return defaultRange;
+    }
+}
@@ -23,7 +23,8 @@
 //
 package TIMS.General;
 
-import TIMS.Database.UserAccountDB;
+import TIMS.Database.UserIdentity;
+import TIMS.Database.UserIdentityCache;
 import TIMS.Database.UserRoleDB;
 // Library for Java
 import java.io.IOException;
@@ -75,8 +76,11 @@ public class NoCacheFilter implements Filter {
             response.sendRedirect(loginURL);
         }
         else {
+            // The role of the user is resolved once and kept in the session.
+            UserIdentity identity = UserIdentityCache.get(session, 
+                    (String) session.getAttribute("User"));
             // For guest, only allow them to view the dashboard.
-            if ( (UserAccountDB.getRoleID((String) session.getAttribute("User")) == UserRoleDB.guest()) &&
+            if ( (identity.getRole_id() == UserRoleDB.guest()) &&
                  (!request.getRequestURI().contains("/restricted/dashboard.xhtml")) ){
                 System.out.println("Redirect to dashboard.");
                 response.sendRedirect(request.getContextPath() + "/restricted/dashboard.xhtml");
@@ -0,0 +1,441 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+import TIMS.Database.SystemParametersDB;
+// Libraries for Java
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// ParallelZipper compress a file into a standard zip file, using several 
+// cores (same approach as pigz). The input is cut into blocks that are 
+// deflated independently by the worker threads; each block is primed with 
+// the last 32KB of the block before it and ended with a sync flush, so that 
+// the blocks (written in order) form one valid deflate stream. The result 
+// could be read by ZipFile, unzip, 7-Zip, etc.
+public abstract class ParallelZipper {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(ParallelZipper.class.getName());
+    // Size of the deflate window i.e. the dictionary carried across blocks.
+    private final static int DICT_SIZE = 32 * 1024;
+    private final static int MAX_HISTORY = 50;
+    private final static long ZIP64_MAGICVAL = 0xFFFFFFFFL;
+    private final static AtomicInteger count = new AtomicInteger();
+    private static ExecutorService workers;
+    private static int threads;
+    // The most recent compressions, latest first.
+    private final static Deque<CompressionStats> history = new LinkedList<>();
+    
+    // Return the worker threads; created when they are first needed.
+    private static synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            threads = SystemParametersDB.getCompressThreads();
+            workers = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "zip-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            logger.debug("ParallelZipper started with " + threads + " threads.");
+        }
+        
+        return workers;
+    }
+    
+    // Stop the worker threads.
+    public static synchronized void shutdown() {
+        if (workers != null) {
+            workers.shutdown();
+            try {
+                if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                    logger.error("ParallelZipper did not stop in time!");
+                    workers.shutdownNow();
+                }
+            }
+            catch (InterruptedException e) {
+                workers.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            workers = null;
+        }
+    }
+    
+    // Compress srcFile into zipFile (as the only entry). The outcome of the
+    // compression will be recorded and returned.
+    public static CompressionStats zipFile(String srcFile, String zipFile,
+            int job_id, String fileType) throws IOException {
+        File src = new File(srcFile);
+        ExecutorService pool = getWorkers();
+        int blockSize = SystemParametersDB.getCompressBlockSize();
+        // Keep a few blocks ahead of the writer, without holding the whole 
+        // file in memory.
+        int maxInFlight = threads * 2;
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        CRC32 crc = new CRC32();
+        long size = 0, csize = 0, startTime = System.nanoTime();
+        int blocks = 0;
+        
+        try (InputStream is = new FileInputStream(src);
+             CountingOutputStream os = new CountingOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(zipFile), 
+                                              1024 * 1024))) {
+            byte[] name = src.getName().getBytes(StandardCharsets.UTF_8);
+            int[] dos = dosDateTime(LocalDateTime.now());
+            writeLocalHeader(os, name, dos);
+            long dataStart = os.getCount();
+            
+            byte[] dict = null;
+            byte[] block = readBlock(is, blockSize);
+            
+            while (true) {
+                // Read ahead; the last block needs to finish the stream.
+                byte[] next = (block.length == 0) ? block : 
+                              readBlock(is, blockSize);
+                boolean last = (next.length == 0);
+                crc.update(block, 0, block.length);
+                size += block.length;
+                blocks++;
+                
+                final byte[] input = block;
+                final byte[] preset = dict;
+                inFlight.add(pool.submit(() -> deflate(input, preset, last)));
+                if (inFlight.size() >= maxInFlight) {
+                    os.write(waitFor(inFlight.poll()));
+                }
+                
+                if (last) {
+                    break;
+                }
+                dict = lastBytes(dict, block);
+                block = next;
+            }
+            while (!inFlight.isEmpty()) {
+                os.write(waitFor(inFlight.poll()));
+            }
+            
+            csize = os.getCount() - dataStart;
+            writeTrailer(os, name, dos, crc.getValue(), csize, size);
+        }
+        catch (IOException e) {
+            // Stop the remaining blocks; the partial zip file is useless.
+            for (Future<byte[]> f : inFlight) {
+                f.cancel(true);
+            }
+            new File(zipFile).delete();
+            throw e;
+        }
+        
+        CompressionStats stats = new CompressionStats(job_id, fileType, 
+                size, csize, System.nanoTime() - startTime, blocks, threads);
+        synchronized (history) {
+            history.addFirst(stats);
+            if (history.size() > MAX_HISTORY) {
+                history.removeLast();
+            }
+        }
+        logger.info(stats);
+        
+        return stats;
+    }
+    
+    // Return the most recent compressions, latest first.
+    public static List<CompressionStats> getHistory() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+    
+    // Deflate one block. Except for the last block, the output is ended with 
+    // a sync flush (i.e. at a byte boundary) so that the next block could be 
+    // appended to it.
+    private static byte[] deflate(byte[] input, byte[] dict, boolean last) {
+        Deflater def = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutput out = new ByteArrayOutput(input.length / 3 + 64);
+        byte[] buf = new byte[64 * 1024];
+        
+        try {
+            if (dict != null) {
+                def.setDictionary(dict);
+            }
+            def.setInput(input);
+            if (last) {
+                def.finish();
+                while (!def.finished()) {
+                    out.write(buf, 0, def.deflate(buf));
+                }
+            }
+            else {
+                int len;
+                do {
+                    len = def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    out.write(buf, 0, len);
+                } while (len == buf.length);
+            }
+        }
+        finally {
+            def.end();
+        }
+        
+        return out.toByteArray();
+    }
+    
+    // Wait for the compressed block.
+    private static byte[] waitFor(Future<byte[]> block) throws IOException {
+        try {
+            return block.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compression interrupted!", e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("FAIL to compress block!", e.getCause());
+        }
+    }
+    
+    // Read up to blockSize bytes; an empty array is returned at end of input.
+    private static byte[] readBlock(InputStream is, int blockSize) 
+            throws IOException {
+        byte[] block = new byte[blockSize];
+        int len = 0, n;
+        
+        while (len < blockSize && (n = is.read(block, len, blockSize - len)) > 0) {
+            len += n;
+        }
+        
+        return (len == blockSize) ? block : Arrays.copyOf(block, len);
+    }
+    
+    // Return the dictionary for the next block i.e. the last 32KB of input
+    // (combined with the previous dictionary if the block is smaller).
+    private static byte[] lastBytes(byte[] dict, byte[] block) {
+        if (block.length >= DICT_SIZE || dict == null) {
+            return Arrays.copyOfRange(block, 
+                    Math.max(0, block.length - DICT_SIZE), block.length);
+        }
+        int keep = Math.min(dict.length, DICT_SIZE - block.length);
+        byte[] result = new byte[keep + block.length];
+        System.arraycopy(dict, dict.length - keep, result, 0, keep);
+        System.arraycopy(block, 0, result, keep, block.length);
+        
+        return result;
+    }
+    
+    // Write the local file header. The sizes and CRC are not known yet, they
+    // will follow the data in the data descriptor (general purpose flag bit 3).
+    private static void writeLocalHeader(OutputStream os, byte[] name, 
+            int[] dos) throws IOException {
+        writeInt(os, 0x04034b50);
+        writeShort(os, 20);             // Version needed to extract
+        writeShort(os, 0x0808);         // Data descriptor, UTF-8 name
+        writeShort(os, Deflater.DEFLATED);
+        writeShort(os, dos[0]);         // Last mod file time
+        writeShort(os, dos[1]);         // Last mod file date
+        writeInt(os, 0);                // CRC-32
+        writeInt(os, 0);                // Compressed size
+        writeInt(os, 0);                // Uncompressed size
+        writeShort(os, name.length);
+        writeShort(os, 0);              // Extra field length
+        os.write(name);
+    }
+    
+    // Write the data descriptor, central directory and end of central 
+    // directory record. ZIP64 records are used for outputs above 4GB.
+    private static void writeTrailer(CountingOutputStream os, byte[] name, 
+            int[] dos, long crc, long csize, long size) throws IOException {
+        boolean zip64 = (csize >= ZIP64_MAGICVAL || size >= ZIP64_MAGICVAL);
+        // Data descriptor
+        writeInt(os, 0x08074b50);
+        writeInt(os, (int) crc);
+        if (zip64) {
+            writeLong(os, csize);
+            writeLong(os, size);
+        }
+        else {
+            writeInt(os, (int) csize);
+            writeInt(os, (int) size);
+        }
+        // Central directory (single entry, local header at offset 0)
+        long cdStart = os.getCount();
+        int version = zip64 ? 45 : 20;
+        writeInt(os, 0x02014b50);
+        writeShort(os, version);        // Version made by
+        writeShort(os, version);        // Version needed to extract
+        writeShort(os, 0x0808);
+        writeShort(os, Deflater.DEFLATED);
+        writeShort(os, dos[0]);         // Last mod file time
+        writeShort(os, dos[1]);         // Last mod file date
+        writeInt(os, (int) crc);
+        writeInt(os, zip64 ? (int) ZIP64_MAGICVAL : (int) csize);
+        writeInt(os, zip64 ? (int) ZIP64_MAGICVAL : (int) size);
+        writeShort(os, name.length);
+        writeShort(os, zip64 ? 20 : 0); // Extra field length
+        writeShort(os, 0);              // Comment length
+        writeShort(os, 0);              // Disk number start
+        writeShort(os, 0);              // Internal attributes
+        writeInt(os, 0);                // External attributes
+        writeInt(os, 0);                // Offset of local header
+        os.write(name);
+        if (zip64) {
+            writeShort(os, 0x0001);
+            writeShort(os, 16);
+            writeLong(os, size);
+            writeLong(os, csize);
+        }
+        long cdEnd = os.getCount();
+        long cdSize = cdEnd - cdStart;
+        boolean zip64End = zip64 || cdStart >= ZIP64_MAGICVAL;
+        
+        if (zip64End) {
+            // ZIP64 end of central directory record and locator.
+            writeInt(os, 0x06064b50);
+            writeLong(os, 44);
+            writeShort(os, 45);
+            writeShort(os, 45);
+            writeInt(os, 0);
+            writeInt(os, 0);
+            writeLong(os, 1);
+            writeLong(os, 1);
+            writeLong(os, cdSize);
+            writeLong(os, cdStart);
+            writeInt(os, 0x07064b50);
+            writeInt(os, 0);
+            writeLong(os, cdEnd);
+            writeInt(os, 1);
+        }
+        // End of central directory record
+        writeInt(os, 0x06054b50);
+        writeShort(os, 0);
+        writeShort(os, 0);
+        writeShort(os, 1);
+        writeShort(os, 1);
+        writeInt(os, (int) cdSize);
+        writeInt(os, zip64End ? (int) ZIP64_MAGICVAL : (int) cdStart);
+        writeShort(os, 0);
+    }
+    
+    // Return the MS-DOS time and date (in that order) of this time.
+    private static int[] dosDateTime(LocalDateTime t) {
+        if (t.getYear() < 1980) {
+            return new int[] {0, (1 << 5) | 1};
+        }
+        int time = (t.getHour() << 11) | (t.getMinute() << 5) | 
+                   (t.getSecond() >> 1);
+        int date = ((t.getYear() - 1980) << 9) | (t.getMonthValue() << 5) | 
+                   t.getDayOfMonth();
+        
+        return new int[] {time, date};
+    }
+    
+    // Helper functions to write little-endian values.
+    private static void writeShort(OutputStream os, int v) throws IOException {
+        os.write(v & 0xff);
+        os.write((v >>> 8) & 0xff);
+    }
+    private static void writeInt(OutputStream os, int v) throws IOException {
+        writeShort(os, v & 0xffff);
+        writeShort(os, (v >>> 16) & 0xffff);
+    }
+    private static void writeLong(OutputStream os, long v) throws IOException {
+        writeInt(os, (int) v);
+        writeInt(os, (int) (v >>> 32));
+    }
+    
+    // OutputStream that keep track of the number of bytes written.
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+        
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+        long getCount() {
+            return count;
+        }
+    }
+    
+    // ByteArrayOutputStream without the synchronization.
+    private static class ByteArrayOutput {
+        private byte[] buf;
+        private int len;
+        
+        ByteArrayOutput(int size) {
+            buf = new byte[Math.max(size, 64)];
+        }
+        
+        void write(byte[] b, int off, int n) {
+            if (len + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+            }
+            System.arraycopy(b, off, buf, len, n);
+            len += n;
+        }
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+import TIMS.Database.JobProcess;
+import TIMS.Database.JobProcessDB;
+import TIMS.Database.QueuedJob;
+import TIMS.Database.SubmittedJobDB;
+// Libraries for Java
+import java.io.File;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// ProcessSupervisor watch all the running pipeline processes from a single
+// thread, and sample the CPU time and peak resident memory used by each 
+// pipeline (including the processes it started) from /proc. Once a pipeline
+// has ended, the ExitListener will be run in the PIPELINE task queue.
+// The process ID and start time are kept in the job_process table, so that 
+// the pipelines started before a restart could be watched again; the exit 
+// status of these pipelines is not known, they are treated as successful if
+// their output file has been created once their process has ended. A 
+// pipeline without a known process ID could not be watched, it will be 
+// treated as failed.
+public abstract class ProcessSupervisor {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(ProcessSupervisor.class.getName());
+    // Check the processes every 5 seconds, and save the resource usage to 
+    // database every minute.
+    private final static long POLL_INTERVAL = 5000;
+    private final static int SAVE_EVERY = 12;
+    // The clock ticks per second and page size (in KB) used in /proc.
+    private final static long TICKS_PER_SEC = getconf("CLK_TCK", 100);
+    private final static long PAGE_KB = getconf("PAGESIZE", 4096) / 1024;
+    private final static Path PROC = Paths.get("/proc");
+    private final static Map<Integer, Supervised> jobs = new ConcurrentHashMap<>();
+    private final static Object lock = new Object();
+    private static Thread worker;
+    private static volatile boolean stopped;
+    
+    // A pipeline process being watched.
+    private static class Supervised {
+        private final QueuedJob job;
+        private final JobProcess jp;
+        // Null for the pipeline started before the restart.
+        private final Process process;
+        // To be run once the pipeline has ended.
+        private final Runnable onEnd;
+        private int polls;
+        
+        private Supervised(QueuedJob job, JobProcess jp, Process process, 
+                Runnable onEnd) {
+            this.job = job;
+            this.jp = jp;
+            this.process = process;
+            this.onEnd = onEnd;
+        }
+    }
+    
+    // Watch the pipeline process started for this job; onEnd will be run 
+    // once the process has ended.
+    public static void supervise(QueuedJob job, Process process, 
+            Runnable onEnd) {
+        int pid = getPid(process);
+        long[] stat = (pid > 0) ? readStat(PROC.resolve(String.valueOf(pid))) 
+                                : null;
+        JobProcess jp = new JobProcess(job.getJob_id(), pid, 
+                (stat == null) ? 0 : stat[2], job.getLog_file());
+        
+        JobProcessDB.insertJobProcess(jp);
+        add(new Supervised(job, jp, process, onEnd));
+    }
+    
+    // Watch the pipeline process started for this job before the restart; 
+    // onEnd will be run once the process has ended.
+    public static void adopt(QueuedJob job, Runnable onEnd) {
+        JobProcess jp = JobProcessDB.getJobProcess(job.getJob_id());
+        
+        if (jp == null || jp.getPid() <= 0) {
+            // Nothing to watch, and the exit status could not be known; fail 
+            // the job instead of guessing from it's output.
+            logger.error("No process recorded for job " + job.getJob_id() + 
+                         ", the job will be marked as failed.");
+            onEnd.run();
+            complete(job, -1);
+            return;
+        }
+        logger.info("Watching process " + jp.getPid() + " started before "
+                  + "restart for job " + job.getJob_id());
+        add(new Supervised(job, jp, null, onEnd));
+    }
+    
+    // Return the resource usage of the running pipeline for this job, or the
+    // last saved value if it is not watched by this supervisor.
+    public static JobProcess getUsage(int job_id) {
+        Supervised s = jobs.get(job_id);
+        
+        return (s == null) ? JobProcessDB.getJobProcess(job_id) : s.jp;
+    }
+    
+    // Stop watching the processes; the pipelines will continue to run, and
+    // will be adopted after the restart.
+    public static void shutdown() {
+        synchronized (lock) {
+            stopped = true;
+            if (worker != null) {
+                worker.interrupt();
+                worker = null;
+            }
+        }
+    }
+    
+    private static void add(Supervised s) {
+        jobs.put(s.job.getJob_id(), s);
+        synchronized (lock) {
+            if (worker == null || !worker.isAlive()) {
+                stopped = false;
+                worker = new Thread(ProcessSupervisor::runLoop, 
+                                    "process-supervisor");
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+    }
+    
+    private static void runLoop() {
+        while (!stopped) {
+            try {
+                poll();
+                Thread.sleep(POLL_INTERVAL);
+            }
+            catch (InterruptedException e) {
+                logger.debug("Process supervisor interrupted.");
+                break;
+            }
+            catch (RuntimeException e) {
+                logger.error("FAIL to check pipeline processes!");
+                logger.error(e.getMessage());
+            }
+        }
+    }
+    
+    // Check whether the pipelines have ended, and sample the resources used
+    // by those still running.
+    private static void poll() {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        Map<Integer, long[]> stats = readAllStats();
+        Map<Integer, List<Integer>> children = new HashMap<>();
+        
+        for (Map.Entry<Integer, long[]> entry : stats.entrySet()) {
+            children.computeIfAbsent((int) entry.getValue()[0], 
+                    k -> new ArrayList<>()).add(entry.getKey());
+        }
+        
+        for (Supervised s : new ArrayList<>(jobs.values())) {
+            long[] stat = stats.get(s.jp.getPid());
+            boolean alive;
+            
+            if (s.process != null) {
+                alive = s.process.isAlive();
+            }
+            else {
+                // The process ID could have been reused by another process.
+                alive = stat != null && stat[2] == s.jp.getStart_ticks();
+            }
+            
+            if (alive) {
+                sample(s, stats, children);
+                if (++s.polls % SAVE_EVERY == 0) {
+                    JobProcessDB.updateUsage(s.jp);
+                }
+            }
+            else {
+                ended(s);
+            }
+        }
+    }
+    
+    // Add up the CPU time and resident memory used by the pipeline and all
+    // the processes it started.
+    private static void sample(Supervised s, Map<Integer, long[]> stats, 
+            Map<Integer, List<Integer>> children) {
+        long ticks = 0, rss = 0;
+        Deque<Integer> pending = new ArrayDeque<>();
+        
+        if (stats.containsKey(s.jp.getPid())) {
+            pending.add(s.jp.getPid());
+        }
+        while (!pending.isEmpty()) {
+            int pid = pending.poll();
+            long[] stat = stats.get(pid);
+            
+            ticks += stat[1];
+            rss += stat[3];
+            pending.addAll(children.getOrDefault(pid, new ArrayList<>()));
+        }
+        // The CPU time of the ended child processes is added to the parent
+        // only when they are waited for, take the highest value seen.
+        s.jp.setCpu_time(Math.max(s.jp.getCpu_time(), 
+                                  ticks * 1000 / TICKS_PER_SEC));
+        s.jp.setPeak_rss(Math.max(s.jp.getPeak_rss(), rss * PAGE_KB));
+    }
+    
+    // The pipeline has ended; release it's resources and update the job 
+    // status in the PIPELINE task queue.
+    private static void ended(Supervised s) {
+        int job_id = s.job.getJob_id();
+        int result;
+        
+        jobs.remove(job_id);
+        JobProcessDB.updateUsage(s.jp);
+        s.onEnd.run();
+        
+        if (s.process != null) {
+            result = s.process.exitValue();
+        }
+        else {
+            // The exit status of the pipeline started before the restart is
+            // not known; it's process has been seen ending, check for it's 
+            // output.
+            result = new File(SubmittedJobDB.getOutputPath(job_id)).exists() 
+                   ? 0 : 1;
+        }
+        logger.debug("Pipeline for job ID " + job_id + 
+                " has completed with exit status: " + result);
+        complete(s.job, result);
+    }
+    
+    // Update the job status according to the exit status of the pipeline, 
+    // in the PIPELINE task queue.
+    private static void complete(QueuedJob job, int result) {
+        int job_id = job.getJob_id();
+        
+        TaskExecutor.submit(TaskExecutor.Queue.PIPELINE, 
+                "Complete pipeline of job " + job_id, job.getUser_id(), 
+                TaskExecutor.PRIORITY_HIGH, null, () -> new ExitListener().
+                        processFinished(job_id, job.getStudy_id(), result));
+    }
+    
+    // Return the value of this system configuration variable, or the default
+    // value if it is not available.
+    private static long getconf(String name, long def) {
+        try {
+            Process p = new ProcessBuilder("getconf", name).
+                    redirectErrorStream(true).start();
+            String line;
+            
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(p.getInputStream(), 
+                                          StandardCharsets.US_ASCII))) {
+                line = br.readLine();
+            }
+            if (p.waitFor() == 0 && line != null) {
+                return Long.parseLong(line.trim());
+            }
+        }
+        catch (IOException|RuntimeException e) {
+            logger.debug("FAIL to run getconf " + name + ": " + e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.warn("Using default " + name + " of " + def);
+        
+        return def;
+    }
+    
+    // Return the process ID of the process, or -1 if it is not available.
+    private static int getPid(Process process) {
+        try {
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            
+            return field.getInt(process);
+        }
+        catch (ReflectiveOperationException|RuntimeException e) {
+            logger.warn("Pipeline process ID not available: " + e.getMessage());
+            return -1;
+        }
+    }
+    
+    // Read the stat of all the processes; the map returned is keyed by 
+    // process ID.
+    private static Map<Integer, long[]> readAllStats() {
+        Map<Integer, long[]> stats = new HashMap<>();
+        
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(PROC, "[0-9]*")) {
+            for (Path dir : dirs) {
+                long[] stat = readStat(dir);
+                
+                if (stat != null) {
+                    stats.put(Integer.parseInt(dir.getFileName().toString()), 
+                              stat);
+                }
+            }
+        }
+        catch (IOException e) {
+            // /proc is not available e.g. on Windows; the exit of the 
+            // processes could still be detected.
+            logger.debug("FAIL to read /proc: " + e.getMessage());
+        }
+        
+        return stats;
+    }
+    
+    // Return the parent process ID, CPU time used (in clock ticks, including
+    // the ended child processes), start time (in clock ticks since boot) and
+    // resident memory (in pages) of the process; or null if the process has
+    // ended.
+    private static long[] readStat(Path dir) {
+        try {
+            String stat = new String(Files.readAllBytes(dir.resolve("stat")), 
+                                     StandardCharsets.US_ASCII);
+            // The command name could contain space, the fields start after it.
+            String[] f = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            // ppid, utime + stime + cutime + cstime, starttime, rss
+            return new long[] {Long.parseLong(f[1]), 
+                    Long.parseLong(f[11]) + Long.parseLong(f[12]) + 
+                    Long.parseLong(f[13]) + Long.parseLong(f[14]), 
+                    Long.parseLong(f[19]), Long.parseLong(f[21])};
+        }
+        catch (IOException|RuntimeException e) {
+            return null;
+        }
+    }
+}
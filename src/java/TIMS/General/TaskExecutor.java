@@ -0,0 +1,274 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+import TIMS.Database.SystemParametersDB;
+// Libraries for Java
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// TaskExecutor runs all the background tasks (i.e. finalization, export, 
+// meta data update and pipeline monitoring) through named queues, each with 
+// a bounded pool of workers. Tasks sharing the same key (e.g. finalization
+// of studies under the same annotation version) are run one at a time.
+public abstract class TaskExecutor {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(TaskExecutor.class.getName());
+    // The named queues available for the background tasks; the default
+    // number of workers could be overridden using the system parameter
+    // TASK_WORKERS_<QUEUE>.
+    public enum Queue {
+        FINALIZATION(2), EXPORT(2), METADATA(2), PIPELINE(2);
+        
+        private final int defaultWorkers;
+        
+        private Queue(int defaultWorkers) {
+            this.defaultWorkers = defaultWorkers;
+        }
+    }
+    public final static int PRIORITY_LOW = 1;
+    public final static int PRIORITY_NORMAL = 5;
+    public final static int PRIORITY_HIGH = 10;
+    // No of ended tasks to keep in the registry.
+    private final static int MAX_ENDED_TASKS = 200;
+    private final static AtomicLong taskSeq = new AtomicLong();
+    private final static Map<Queue, ThreadPoolExecutor> executors = 
+            new EnumMap<>(Queue.class);
+    private final static Map<Queue, Long> startTimes = 
+            new EnumMap<>(Queue.class);
+    // Registry of all the waiting, running and recently ended tasks.
+    private final static Map<Long, TaskInfo> registry = 
+            new ConcurrentSkipListMap<>();
+    private final static Deque<Long> endedTasks = new ArrayDeque<>();
+    // The keys currently held by the running tasks, with the tasks waiting
+    // for the key to be released.
+    private final static Map<String, Deque<TaskInfo>> heldKeys = 
+            new HashMap<>();
+    // Statistics of the ended tasks per queue.
+    private final static AtomicLong[] completed = newCounters();
+    private final static AtomicLong[] failed = newCounters();
+    private final static AtomicLong[] totalRunningTime = newCounters();
+    
+    // Submit the task to the queue with normal priority.
+    public static long submit(Queue queue, String name, String owner, 
+            Runnable task) {
+        return submit(queue, name, owner, PRIORITY_NORMAL, null, task);
+    }
+    
+    // Submit the task to the queue. Tasks with the same (non-null) key will 
+    // be run one at a time, in the order they are submitted. Return the task
+    // ID.
+    public static long submit(Queue queue, String name, String owner, 
+            int priority, String key, Runnable task) {
+        TaskInfo info = new TaskInfo(taskSeq.incrementAndGet(), queue, name, 
+                                     owner, priority, key, task);
+        registry.put(info.getId(), info);
+        logger.info(owner + " submitted task " + info.getId() + " (" + name 
+                  + ") to " + queue + " queue.");
+        
+        if (key != null) {
+            synchronized (heldKeys) {
+                Deque<TaskInfo> waiting = heldKeys.get(key);
+                
+                if (waiting != null) {
+                    // Another task is holding the key, wait for it to end.
+                    waiting.add(info);
+                    logger.debug("Task " + info.getId() + " waiting for " + key);
+                    return info.getId();
+                }
+                heldKeys.put(key, new ArrayDeque<>());
+            }
+        }
+        getExecutor(queue).execute(info);
+        
+        return info.getId();
+    }
+    
+    // Called by the task once it has ended; update the statistics and pass 
+    // the key (if any) to the next task waiting for it.
+    static void taskEnded(TaskInfo info) {
+        int q = info.getQueue().ordinal();
+        
+        if (TaskInfo.COMPLETED.equals(info.getStatus())) {
+            completed[q].incrementAndGet();
+        }
+        else {
+            failed[q].incrementAndGet();
+        }
+        totalRunningTime[q].addAndGet(info.getRunningTime());
+        
+        synchronized (endedTasks) {
+            endedTasks.add(info.getId());
+            while (endedTasks.size() > MAX_ENDED_TASKS) {
+                registry.remove(endedTasks.poll());
+            }
+        }
+        
+        if (info.getKey() != null) {
+            TaskInfo next;
+            
+            synchronized (heldKeys) {
+                next = heldKeys.get(info.getKey()).poll();
+                if (next == null) {
+                    heldKeys.remove(info.getKey());
+                }
+            }
+            if (next != null) {
+                getExecutor(next.getQueue()).execute(next);
+            }
+        }
+    }
+    
+    // Return the executor for this queue; create it on first use so that 
+    // the worker limit will be read from the loaded system parameters.
+    private static ThreadPoolExecutor getExecutor(Queue queue) {
+        synchronized (executors) {
+            ThreadPoolExecutor executor = executors.get(queue);
+            
+            if (executor == null) {
+                int workers = SystemParametersDB.getIntParameter
+                        ("TASK_WORKERS_" + queue.name(), queue.defaultWorkers);
+                String prefix = "TIMS-" + queue.name().toLowerCase() + "-";
+                AtomicInteger count = new AtomicInteger();
+                
+                executor = new ThreadPoolExecutor(workers, workers, 
+                        60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), 
+                        r -> new Thread(r, prefix + count.incrementAndGet()));
+                // Release the idle workers.
+                executor.allowCoreThreadTimeOut(true);
+                executors.put(queue, executor);
+                startTimes.put(queue, System.currentTimeMillis());
+                logger.info(queue + " queue started with " + workers + " workers.");
+            }
+            
+            return executor;
+        }
+    }
+    
+    // Return the status of all the queues.
+    public static List<TaskQueueStatus> getQueueStatus() {
+        List<TaskQueueStatus> statusList = new ArrayList<>();
+        int[] waiting = new int[Queue.values().length];
+        int[] running = new int[Queue.values().length];
+        
+        for (TaskInfo info : registry.values()) {
+            if (TaskInfo.WAITING.equals(info.getStatus())) {
+                waiting[info.getQueue().ordinal()]++;
+            }
+            else if (TaskInfo.RUNNING.equals(info.getStatus())) {
+                running[info.getQueue().ordinal()]++;
+            }
+        }
+        
+        synchronized (executors) {
+            for (Queue queue : Queue.values()) {
+                int q = queue.ordinal();
+                ThreadPoolExecutor executor = executors.get(queue);
+                long ended = completed[q].get() + failed[q].get();
+                double avgRunningTime = (ended == 0) ? 0 : 
+                        (double) totalRunningTime[q].get() / ended;
+                double throughput = 0;
+                
+                if (executor != null) {
+                    double hours = (System.currentTimeMillis() - 
+                            startTimes.get(queue)) / 3600000.0;
+                    throughput = (hours > 0) ? ended / hours : 0;
+                }
+                statusList.add(new TaskQueueStatus(queue.name(), 
+                        (executor == null) ? 0 : executor.getMaximumPoolSize(), 
+                        waiting[q], running[q], completed[q].get(), 
+                        failed[q].get(), avgRunningTime, throughput));
+            }
+        }
+        
+        return statusList;
+    }
+    
+    // Return the list of waiting, running and recently ended tasks; latest 
+    // task first.
+    public static List<TaskInfo> getTaskList() {
+        List<TaskInfo> taskList = new ArrayList<>(registry.values());
+        Collections.reverse(taskList);
+        
+        return taskList;
+    }
+    
+    // Record the progress of the task running in the current thread; to be
+    // displayed in the system monitor page. Do nothing if the caller is not
+    // run through the TaskExecutor.
+    public static void reportProgress(String progress) {
+        TaskInfo info = TaskInfo.current();
+        
+        if (info != null) {
+            info.setProgress(progress);
+        }
+    }
+    
+    // Stop accepting new tasks, and wait for the running tasks to end.
+    public static void shutdown() {
+        synchronized (executors) {
+            for (Map.Entry<Queue, ThreadPoolExecutor> entry : executors.entrySet()) {
+                entry.getValue().shutdown();
+                try {
+                    if (!entry.getValue().awaitTermination(30, TimeUnit.SECONDS)) {
+                        logger.error(entry.getKey() + " queue did not stop in time!");
+                    }
+                }
+                catch (InterruptedException e) {
+                    logger.error("Interrupted while stopping " + entry.getKey() + " queue!");
+                    Thread.currentThread().interrupt();
+                }
+            }
+            executors.clear();
+        }
+        logger.info("TaskExecutor stopped.");
+    }
+    
+    // Helper function to create one counter per queue.
+    private static AtomicLong[] newCounters() {
+        AtomicLong[] counters = new AtomicLong[Queue.values().length];
+        
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new AtomicLong();
+        }
+        
+        return counters;
+    }
+}
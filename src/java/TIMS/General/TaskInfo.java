@@ -0,0 +1,192 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// TaskInfo wraps one background task submitted to the TaskExecutor, and 
+// record its status and timing for the task registry.
+public class TaskInfo implements Runnable, Comparable<TaskInfo> {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(TaskInfo.class.getName());
+    public final static String WAITING = "Waiting";
+    public final static String RUNNING = "Running";
+    public final static String COMPLETED = "Completed";
+    public final static String FAILED = "Failed";
+    private final long id;
+    private final String name, owner, key;
+    private final TaskExecutor.Queue queue;
+    private final int priority;
+    private final Date submitTime;
+    private volatile Date startTime, endTime;
+    private volatile String status;
+    // Progress reported by the task itself while it is running.
+    private volatile String progress = "-";
+    // The task running in the current thread.
+    private final static ThreadLocal<TaskInfo> current = new ThreadLocal<>();
+    // Release the task once it has ended, the registry only need the info.
+    private Runnable task;
+    
+    public TaskInfo(long id, TaskExecutor.Queue queue, String name, 
+            String owner, int priority, String key, Runnable task) {
+        this.id = id;
+        this.queue = queue;
+        this.name = name;
+        this.owner = owner;
+        this.priority = priority;
+        this.key = key;
+        this.task = task;
+        submitTime = new Date();
+        status = WAITING;
+    }
+    
+    @Override
+    public void run() {
+        startTime = new Date();
+        status = RUNNING;
+        current.set(this);
+        logger.debug("Task " + id + " (" + name + ") started.");
+        
+        try {
+            task.run();
+            status = COMPLETED;
+        }
+        catch (RuntimeException e) {
+            status = FAILED;
+            logger.error("Task " + id + " (" + name + ") FAILED!");
+            logger.error(e.getMessage());
+        }
+        finally {
+            if (status.equals(RUNNING)) {
+                status = FAILED;
+            }
+            endTime = new Date();
+            task = null;
+            current.remove();
+            logger.debug("Task " + id + " (" + name + ") ended in " + 
+                         getRunningTime() + " sec.");
+            TaskExecutor.taskEnded(this);
+        }
+    }
+    
+    // Higher priority tasks will be run first; tasks of the same priority
+    // are run in the order they are submitted.
+    @Override
+    public int compareTo(TaskInfo other) {
+        if (priority != other.priority) {
+            return Integer.compare(other.priority, priority);
+        }
+        return Long.compare(id, other.id);
+    }
+    
+    // Return the task running in the current thread, or null if the current
+    // thread is not running any task.
+    static TaskInfo current() {
+        return current.get();
+    }
+    
+    // Record the progress reported by the task.
+    void setProgress(String progress) {
+        this.progress = progress;
+    }
+    
+    // Return true if this task has ended.
+    public boolean isEnded() {
+        return endTime != null;
+    }
+    
+    // Return the running time (in seconds) of this task so far.
+    public long getRunningTime() {
+        if (startTime == null) {
+            return 0;
+        }
+        Date end = (endTime == null) ? new Date() : endTime;
+        
+        return (end.getTime() - startTime.getTime()) / 1000;
+    }
+    
+    // Return the time this task has been waiting (in seconds) before it start.
+    public long getWaitingTime() {
+        Date start = (startTime == null) ? new Date() : startTime;
+        
+        return (start.getTime() - submitTime.getTime()) / 1000;
+    }
+    
+    // Return the submission time in string format.
+    public String getSubmitTimeString() {
+        return formatTime(submitTime);
+    }
+    // Return the start time in string format.
+    public String getStartTimeString() {
+        return formatTime(startTime);
+    }
+    
+    // Helper function to format the time for display.
+    private static String formatTime(Date time) {
+        DateFormat df = new SimpleDateFormat("dd-MMM-yyyy hh:mm:ss a");
+        
+        return (time == null) ? "-" : df.format(time);
+    }
+    
+    // Machine generated getters
+    public long getId() {
+        return id;
+    }
+    public String getName() {
+        return name;
+    }
+    public String getOwner() {
+        return owner;
+    }
+    public String getKey() {
+        return key;
+    }
+    public TaskExecutor.Queue getQueue() {
+        return queue;
+    }
+    public int getPriority() {
+        return priority;
+    }
+    public Date getSubmitTime() {
+        return submitTime;
+    }
+    public Date getStartTime() {
+        return startTime;
+    }
+    public Date getEndTime() {
+        return endTime;
+    }
+    public String getStatus() {
+        return status;
+    }
+    public String getProgress() {
+        return progress;
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+// TaskQueueStatus hold the snapshot of one task queue's status, to be 
+// displayed in the task monitor page.
+public class TaskQueueStatus {
+    private final String queue;
+    private final int workers, waiting, running;
+    private final long completed, failed;
+    // Average running time (in seconds) of the ended tasks.
+    private final double avgRunningTime;
+    // No of tasks ended per hour since the queue is started.
+    private final double throughput;
+    
+    public TaskQueueStatus(String queue, int workers, int waiting, 
+            int running, long completed, long failed, double avgRunningTime, 
+            double throughput) {
+        this.queue = queue;
+        this.workers = workers;
+        this.waiting = waiting;
+        this.running = running;
+        this.completed = completed;
+        this.failed = failed;
+        this.avgRunningTime = avgRunningTime;
+        this.throughput = throughput;
+    }
+    
+    // Machine generated getters
+    public String getQueue() {
+        return queue;
+    }
+    public int getWorkers() {
+        return workers;
+    }
+    public int getWaiting() {
+        return waiting;
+    }
+    public int getRunning() {
+        return running;
+    }
+    public long getCompleted() {
+        return completed;
+    }
+    public long getFailed() {
+        return failed;
+    }
+    public double getAvgRunningTime() {
+        return avgRunningTime;
+    }
+    public double getThroughput() {
+        return throughput;
+    }
+}
@@ -0,0 +1,347 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.General;
+
+// Libraries for Java
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+// Libraries for Apache Common Math
+import org.apache.commons.math3.stat.descriptive.moment.Mean;
+import org.apache.commons.math3.stat.descriptive.moment.Variance;
+
+// ZScoreConverter convert the gene rows of a pipeline output into z-score 
+// values (per gene, across the subjects) for cBioPortal. Each row is parsed 
+// into a reusable double buffer, the mean and sample standard deviation are
+// computed over the buffer using commons-math Mean and Variance (same as 
+// DescriptiveStatistics), and the z-scores are written with 2 decimals, rounded towards positive infinity (same as the DecimalFormat 
+// "0.00" with RoundingMode.CEILING used previously). Blocks of rows are 
+// converted in parallel on a fork-join pool, and written in their original 
+// order. The first 2 columns (geneID and EntrezID) are copied as they are.
+// Statistics.createStatsInstance and Statistics.zScore remain as the 
+// reference implementation.
+public abstract class ZScoreConverter {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(ZScoreConverter.class.getName());
+    private final static int ROWS_PER_BLOCK = 1024;
+    // Data start from the 3rd column.
+    private final static int DATA_OFFSET = 2;
+    // Value written for data that is not a number.
+    private final static String NA = "NA";
+    private final static double[] POW10 = new double[23];
+    private static ForkJoinPool pool;
+    // Parse buffer for each worker thread; grow as needed.
+    private final static ThreadLocal<double[]> buffer = 
+            ThreadLocal.withInitial(() -> new double[256]);
+    // Buffer for the numbers of the row, when some of the data is not a 
+    // number.
+    private final static ThreadLocal<double[]> statsBuffer = 
+            ThreadLocal.withInitial(() -> new double[256]);
+    
+    static {
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+    
+    // Return the fork-join pool; created when it is first needed.
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        
+        return pool;
+    }
+    
+    // Stop the fork-join pool.
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+                    logger.error("ZScoreConverter did not stop in time!");
+                    pool.shutdownNow();
+                }
+            }
+            catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+            pool = null;
+        }
+    }
+    
+    // Convert the gene rows into z-score values, and write them to out (one
+    // row per line). Return the number of rows converted.
+    public static int convert(Iterator<String> rows, Writer out) 
+            throws IOException {
+        ForkJoinPool fjp = getPool();
+        int maxInFlight = fjp.getParallelism() * 2;
+        Deque<Future<String>> inFlight = new ArrayDeque<>();
+        int total = 0;
+        
+        try {
+            while (rows.hasNext()) {
+                List<String> block = new ArrayList<>(ROWS_PER_BLOCK);
+                while (block.size() < ROWS_PER_BLOCK && rows.hasNext()) {
+                    block.add(rows.next());
+                }
+                total += block.size();
+                inFlight.add(fjp.submit(() -> convertBlock(block)));
+                if (inFlight.size() >= maxInFlight) {
+                    out.write(waitFor(inFlight.poll()));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                out.write(waitFor(inFlight.poll()));
+            }
+        }
+        catch (UncheckedIOException e) {
+            // Failed to read the rows.
+            throw e.getCause();
+        }
+        finally {
+            for (Future<String> f : inFlight) {
+                f.cancel(true);
+            }
+        }
+        
+        return total;
+    }
+    
+    // Wait for the converted block.
+    private static String waitFor(Future<String> block) throws IOException {
+        try {
+            return block.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("z-score conversion interrupted!", e);
+        }
+        catch (ExecutionException e) {
+            throw new IOException("FAIL to convert block to z-score!", 
+                                  e.getCause());
+        }
+    }
+    
+    // Convert a block of rows; return the converted lines.
+    private static String convertBlock(List<String> block) {
+        StringBuilder sb = new StringBuilder(block.get(0).length() * 
+                                             block.size());
+        
+        for (String row : block) {
+            convertRow(row, sb);
+            sb.append('\n');
+        }
+        
+        return sb.toString();
+    }
+    
+    // Convert one row, and append the result to sb.
+    private static void convertRow(String row, StringBuilder sb) {
+        int len = row.length();
+        // Skip the first 2 columns.
+        int start = 0;
+        for (int col = 0; col < DATA_OFFSET && start <= len; col++) {
+            int tab = row.indexOf('\t', start);
+            start = (tab < 0) ? len + 1 : tab + 1;
+        }
+        if (start > len) {
+            // No data in this row.
+            sb.append(row);
+            return;
+        }
+        // Ignore the empty trailing columns (as String.split would).
+        int end = len;
+        while (end > start && row.charAt(end - 1) == '\t') {
+            end--;
+        }
+        // Parse the data.
+        double[] values = buffer.get();
+        int n = 0, count = 0;
+        
+        for (int from = start; from < end; ) {
+            int tab = row.indexOf('\t', from);
+            int to = (tab < 0 || tab > end) ? end : tab;
+            if (n == values.length) {
+                values = Arrays.copyOf(values, n * 2);
+                buffer.set(values);
+            }
+            double x = parse(row, from, to);
+            values[n++] = x;
+            if (!Double.isNaN(x)) {
+                count++;
+            }
+            from = to + 1;
+        }
+        // Compute the statistics over the numbers only, the same way as 
+        // DescriptiveStatistics (i.e. corrected two-pass mean and variance),
+        // so that the ceiling rounding give the same result.
+        double[] numbers = values;
+        if (count < n) {
+            numbers = statsBuffer.get();
+            if (numbers.length < count) {
+                numbers = new double[values.length];
+                statsBuffer.set(numbers);
+            }
+            for (int i = 0, j = 0; i < n; i++) {
+                if (!Double.isNaN(values[i])) {
+                    numbers[j++] = values[i];
+                }
+            }
+        }
+        double mean = (count > 0) ? 
+                      new Mean().evaluate(numbers, 0, count) : Double.NaN;
+        double sd = (count > 1) ? 
+                Math.sqrt(new Variance().evaluate(numbers, mean, 0, count)) : 
+                (count == 1 ? 0.0 : Double.NaN);
+        
+        sb.append(row, 0, start - 1);
+        for (int i = 0; i < n; i++) {
+            sb.append('\t');
+            if (Double.isNaN(values[i])) {
+                sb.append(NA);
+            }
+            else if (sd == 0.0) {
+                // If standard deviation is zero, z-score is undefined; will 
+                // store as 0.00 here.
+                sb.append("0.00");
+            }
+            else {
+                appendCeiling2(sb, Statistics.zScore(values[i], mean, sd));
+            }
+        }
+    }
+    
+    // Parse the number in row[from, to). Plain decimal numbers with up to 15
+    // significant digits are parsed directly (exact, as the digits and the 
+    // power of ten are both exactly representable); anything else goes 
+    // through Double.parseDouble. Return NaN if it is not a number.
+    private static double parse(String row, int from, int to) {
+        int i = from;
+        boolean neg = false;
+        
+        if (i < to && (row.charAt(i) == '-' || row.charAt(i) == '+')) {
+            neg = (row.charAt(i) == '-');
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean dot = false, any = false;
+        
+        for (; i < to; i++) {
+            char c = row.charAt(i);
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (mantissa != 0 || c != '0') {
+                    if (++digits > 15) {
+                        return parseSlow(row, from, to);
+                    }
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (dot) {
+                    scale++;
+                }
+            }
+            else if (c == '.' && !dot) {
+                dot = true;
+            }
+            else {
+                return parseSlow(row, from, to);
+            }
+        }
+        if (!any || scale >= POW10.length) {
+            return parseSlow(row, from, to);
+        }
+        double v = mantissa / POW10[scale];
+        
+        return neg ? -v : v;
+    }
+    
+    private static double parseSlow(String row, int from, int to) {
+        try {
+            return Double.parseDouble(row.substring(from, to));
+        }
+        catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+    
+    // Append v with 2 decimals, rounded towards positive infinity; the output
+    // is the same as DecimalFormat("0.00") with RoundingMode.CEILING i.e. 
+    // values smaller than 0.001 are written as (-)0.00, and values that are 
+    // (nearly) on a 2 decimals boundary are rounded using their shortest 
+    // decimal representation.
+    private static void appendCeiling2(StringBuilder sb, double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            sb.append(NA);
+            return;
+        }
+        if (Math.abs(v) < 0.001) {
+            sb.append((v < 0 || (v == 0 && 1 / v < 0)) ? "-0.00" : "0.00");
+            return;
+        }
+        double scaled = v * 100;
+        
+        if (Math.abs(scaled) >= 1e15 || 
+            Math.abs(scaled - Math.rint(scaled)) < 1e-6) {
+            BigDecimal bd = BigDecimal.valueOf(v).
+                            setScale(2, RoundingMode.CEILING);
+            if (bd.signum() == 0 && v < 0) {
+                sb.append('-');
+            }
+            sb.append(bd.toPlainString());
+            return;
+        }
+        long c = (long) Math.ceil(scaled);
+        if (v < 0) {
+            // Negative values that round to zero are written as -0.00.
+            sb.append('-');
+            c = -c;
+        }
+        sb.append(c / 100).append('.');
+        int frac = (int) (c % 100);
+        if (frac < 10) {
+            sb.append('0');
+        }
+        sb.append(frac);
+    }
+}
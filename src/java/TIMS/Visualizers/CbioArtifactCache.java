@@ -0,0 +1,206 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Visualizers;
+
+import TIMS.Database.SubmittedJobDB;
+import TIMS.General.Constants;
+// Libraries for Java
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// CbioArtifactCache keep the cBioPortal data file (i.e. the extracted or 
+// converted pipeline output) and the subject set of each exported job under 
+// CBIO_PATH/cache/<job_id>/, so that later exports of the same job could
+// reuse them. An artifact is identified by the conversion applied to the 
+// output, and is only valid for the output it was built from (size and 
+// last modified time of the output zip). The artifacts of a job are evicted
+// when the job is re-finalized or unfinalized.
+public abstract class CbioArtifactCache {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(CbioArtifactCache.class.getName());
+    // Bump this whenever the content of the artifacts changes.
+    private final static int VERSION = 1;
+    private final static String CACHE_DIR = "cache";
+    // Only one thread could build the artifacts of a job at any one time.
+    private final static ConcurrentHashMap<Integer, Object> locks = 
+            new ConcurrentHashMap<>();
+    
+    // Build the data file of the artifact, and return the subject set.
+    @FunctionalInterface
+    public interface Builder {
+        Set<String> build(Path dataFile) throws IOException;
+    }
+    
+    // Return the artifact of this job for this conversion; the artifact will
+    // be built (and stored) if it is not in the cache or no longer valid.
+    public static Artifact getOrBuild(int job_id, String conversion, 
+            Builder builder) throws IOException {
+        String key = createKey(job_id, conversion);
+        Path dir = getJobDir(job_id);
+        Path manifest = dir.resolve(conversion + ".properties");
+        Path dataFile = dir.resolve(conversion + ".txt");
+        
+        synchronized (locks.computeIfAbsent(job_id, k -> new Object())) {
+            Artifact artifact = load(manifest, dataFile, key);
+            if (artifact != null) {
+                logger.debug("Reusing " + conversion + " artifact of job ID " 
+                             + job_id);
+                return artifact;
+            }
+            // Build into a temporary file first; the manifest is only written
+            // (last) when the data file is complete.
+            Files.createDirectories(dir);
+            Files.deleteIfExists(manifest);
+            Path tmpFile = dir.resolve(conversion + ".tmp");
+            long startTime = System.nanoTime();
+            Set<String> subjects;
+            
+            try {
+                subjects = builder.build(tmpFile);
+                Files.move(tmpFile, dataFile, 
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally {
+                Files.deleteIfExists(tmpFile);
+            }
+            Properties props = new Properties();
+            props.setProperty("key", key);
+            props.setProperty("subjects", String.join("\t", subjects));
+            try (OutputStream os = Files.newOutputStream(manifest)) {
+                props.store(os, "cBioPortal artifact of job ID " + job_id);
+            }
+            logger.debug("Built " + conversion + " artifact of job ID " + 
+                    job_id + " in " + 
+                    (System.nanoTime() - startTime) / 1000000 + " ms.");
+            
+            return new Artifact(dataFile.toString(), key, subjects, false);
+        }
+    }
+    
+    // Load the artifact from the cache; return null if it is not available
+    // or not built from the current output.
+    private static Artifact load(Path manifest, Path dataFile, String key) {
+        if (!Files.isRegularFile(manifest) || !Files.isRegularFile(dataFile)) {
+            return null;
+        }
+        Properties props = new Properties();
+        
+        try (InputStream is = Files.newInputStream(manifest)) {
+            props.load(is);
+        }
+        catch (IOException e) {
+            logger.error("FAIL to read cBioPortal artifact " + manifest);
+            logger.error(e.getMessage());
+            return null;
+        }
+        if (!key.equals(props.getProperty("key"))) {
+            return null;
+        }
+        String list = props.getProperty("subjects", "");
+        Set<String> subjects = list.isEmpty() ? new LinkedHashSet<>() : 
+                new LinkedHashSet<>(Arrays.asList(list.split("\t")));
+        
+        return new Artifact(dataFile.toString(), key, subjects, true);
+    }
+    
+    // Delete all the artifacts of this job.
+    public static void evict(int job_id) {
+        Path dir = getJobDir(job_id);
+        
+        synchronized (locks.computeIfAbsent(job_id, k -> new Object())) {
+            File[] files = dir.toFile().listFiles();
+            if (files == null) {
+                return;
+            }
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.error("FAIL to delete cBioPortal artifact " + file);
+                }
+            }
+            if (dir.toFile().delete()) {
+                logger.debug("cBioPortal artifacts of job ID " + job_id + 
+                             " evicted.");
+            }
+        }
+    }
+    
+    // The key identify the conversion and the output it is built from.
+    private static String createKey(int job_id, String conversion) {
+        File zip = new File(SubmittedJobDB.getOutputPath(job_id));
+        
+        return VERSION + "|" + conversion + "|" + zip.length() + "|" + 
+               zip.lastModified();
+    }
+    
+    private static Path getJobDir(int job_id) {
+        return Paths.get(Constants.getSYSTEM_PATH() + Constants.getCBIO_PATH() 
+                         + CACHE_DIR, String.valueOf(job_id));
+    }
+    
+    // Artifact hold the path of the data file, and the subject set of one
+    // exported job.
+    public static class Artifact {
+        private final String dataFile, key;
+        private final Set<String> subjects;
+        private final boolean reused;
+        
+        Artifact(String dataFile, String key, Set<String> subjects, 
+                boolean reused) {
+            this.dataFile = dataFile;
+            this.key = key;
+            this.subjects = Collections.unmodifiableSet(subjects);
+            this.reused = reused;
+        }
+        
+        // Machine generated getters
+        public String getDataFile() {
+            return dataFile;
+        }
+        public String getKey() {
+            return key;
+        }
+        public Set<String> getSubjects() {
+            return subjects;
+        }
+        public boolean isReused() {
+            return reused;
+        }
+    }
+}
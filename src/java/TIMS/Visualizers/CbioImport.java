@@ -0,0 +1,41 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Visualizers;
+
+// CbioImport is a study waiting to be imported into cBioPortal by the 
+// CbioReloadScheduler.
+public interface CbioImport {
+    // Return the ID of the study to be imported.
+    String getStudyID();
+    // Return the user who requested the import.
+    String getUserName();
+    // Return the task key the import is to be run under.
+    String getTaskKey();
+    // Import the study into cBioPortal; return true if successful. Failures
+    // are to be handled (and notified) by the import itself.
+    boolean importStudy();
+    // Called after cBioPortal has been restarted for the imported study; 
+    // ready is false if cBioPortal is not ready within the timeout.
+    void reloaded(boolean ready);
+}
@@ -0,0 +1,277 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Visualizers;
+
+import TIMS.Database.SystemParametersDB;
+import TIMS.General.TaskExecutor;
+// Libraries for Java
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// CbioReloadScheduler import the studies exported to cBioPortal, and restart
+// cBioPortal (so that the imported studies show up) once for all the 
+// studies imported together. When an import is submitted, the scheduler 
+// wait for CBIO_RELOAD_WINDOW seconds for more imports to join, run 
+// metaImport.py for all of them back to back (including those submitted 
+// while importing, up to MAX_BATCH), then restart cBioPortal and poll it 
+// until it is ready (instead of waiting for a fixed time). Each import is 
+// run as a task under the study's task key, so that it doesn't run together
+// with the finalization, unfinalization or compaction of the same annotation
+// version.
+public abstract class CbioReloadScheduler {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(CbioReloadScheduler.class.getName());
+    private final static int MAX_BATCH = 20;
+    private final static long POLL_INTERVAL = 5000;
+    private final static Object lock = new Object();
+    // Imports waiting to be picked up, in submission order.
+    private final static LinkedList<CbioImport> pending = new LinkedList<>();
+    // Phase of the studies picked up by the current batch.
+    private final static Map<String, String> phases = new ConcurrentHashMap<>();
+    private static PortalManager manager = new TomcatPortalManager();
+    private static Thread worker;
+    private static volatile boolean stopped;
+    
+    // Queue the import; return it's position in the queue (starting from 1).
+    public static int submit(CbioImport imp) {
+        synchronized (lock) {
+            pending.add(imp);
+            if (worker == null || !worker.isAlive()) {
+                stopped = false;
+                worker = new Thread(CbioReloadScheduler::runLoop, "cbio-reload");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            lock.notifyAll();
+            logger.debug(imp.getStudyID() + " queued for import at position " 
+                         + pending.size());
+            
+            return pending.size();
+        }
+    }
+    
+    // Return the import status of this study to be shown to the users; null 
+    // if the study is not being imported.
+    public static String getStatus(String studyID) {
+        synchronized (lock) {
+            int pos = 1;
+            for (CbioImport imp : pending) {
+                if (imp.getStudyID().equals(studyID)) {
+                    return "Queued for import (" + pos + " of " + 
+                           pending.size() + ")";
+                }
+                pos++;
+            }
+        }
+        
+        return phases.get(studyID);
+    }
+    
+    // Replace the portal manager i.e. to use a stub for testing.
+    public static void setPortalManager(PortalManager portalManager) {
+        manager = portalManager;
+    }
+    
+    // Stop the scheduler; imports not yet started will be dropped.
+    public static void shutdown() {
+        synchronized (lock) {
+            stopped = true;
+            if (worker != null) {
+                worker.interrupt();
+                worker = null;
+            }
+            if (!pending.isEmpty()) {
+                logger.error(pending.size() + " cBioPortal import(s) dropped.");
+                for (CbioImport imp : pending) {
+                    logger.error("Import of " + imp.getStudyID() + " requested"
+                               + " by " + imp.getUserName() + " dropped.");
+                }
+                pending.clear();
+            }
+        }
+    }
+    
+    private static void runLoop() {
+        while (!stopped) {
+            List<CbioImport> imported = new ArrayList<>();
+            
+            try {
+                waitForImports();
+                List<CbioImport> batch;
+                // Keep importing the studies that join while the batch is 
+                // being imported; they will share the same restart.
+                while (imported.size() < MAX_BATCH && 
+                       !(batch = drain(MAX_BATCH - imported.size())).isEmpty()) {
+                    for (CbioImport imp : batch) {
+                        if (importStudy(imp)) {
+                            imported.add(imp);
+                        }
+                    }
+                }
+                if (!imported.isEmpty()) {
+                    boolean ready = reload(imported);
+                    for (CbioImport imp : imported) {
+                        try {
+                            imp.reloaded(ready);
+                        }
+                        catch (RuntimeException e) {
+                            logger.error("FAIL to complete import of " 
+                                         + imp.getStudyID());
+                            logger.error(e.getMessage());
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                logger.debug("cBioPortal reload scheduler interrupted.");
+                Thread.currentThread().interrupt();
+                return;
+            }
+            finally {
+                for (CbioImport imp : imported) {
+                    phases.remove(imp.getStudyID());
+                }
+            }
+        }
+    }
+    
+    // Wait for an import to be submitted, then wait for the reload window to
+    // let more imports join.
+    private static void waitForImports() throws InterruptedException {
+        synchronized (lock) {
+            while (pending.isEmpty()) {
+                lock.wait();
+            }
+        }
+        long window = SystemParametersDB.getCbioReloadWindow();
+        logger.debug("Waiting " + window + " sec for more imports to join.");
+        TimeUnit.SECONDS.sleep(window);
+    }
+    
+    // Remove and return up to max imports from the queue.
+    private static List<CbioImport> drain(int max) {
+        List<CbioImport> batch = new ArrayList<>();
+        
+        synchronized (lock) {
+            while (!pending.isEmpty() && batch.size() < max) {
+                CbioImport imp = pending.poll();
+                phases.put(imp.getStudyID(), "Importing");
+                batch.add(imp);
+            }
+        }
+        
+        return batch;
+    }
+    
+    // Import this study under it's task key, and wait for the import to 
+    // end; return true if successful.
+    private static boolean importStudy(CbioImport imp) 
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean result = new AtomicBoolean();
+        
+        try {
+            TaskExecutor.submit(TaskExecutor.Queue.EXPORT, 
+                    "Import " + imp.getStudyID() + " into cBioPortal", 
+                    imp.getUserName(), TaskExecutor.PRIORITY_NORMAL, 
+                    imp.getTaskKey(), () -> {
+                        try {
+                            result.set(runImport(imp));
+                        }
+                        finally {
+                            done.countDown();
+                        }
+                    });
+        }
+        catch (RuntimeException e) {
+            logger.error("FAIL to submit import of " + imp.getStudyID());
+            logger.error(e.getMessage());
+            phases.remove(imp.getStudyID());
+            return false;
+        }
+        done.await();
+        
+        return result.get();
+    }
+    
+    // Run the import of this study; return true if successful.
+    private static boolean runImport(CbioImport imp) {
+        try {
+            if (imp.importStudy()) {
+                phases.put(imp.getStudyID(), "Imported; waiting for "
+                                           + "cBioPortal restart");
+                return true;
+            }
+        }
+        catch (RuntimeException e) {
+            logger.error("FAIL to import " + imp.getStudyID());
+            logger.error(e.getMessage());
+        }
+        phases.remove(imp.getStudyID());
+        
+        return false;
+    }
+    
+    // Restart cBioPortal and wait for it to be ready; return false if it is
+    // not ready within CBIO_READY_TIMEOUT.
+    private static boolean reload(List<CbioImport> imported) 
+            throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        long timeout = startTime + 
+                TimeUnit.SECONDS.toMillis(SystemParametersDB.getCbioReadyTimeout());
+        for (CbioImport imp : imported) {
+            phases.put(imp.getStudyID(), "Restarting cBioPortal");
+        }
+        logger.debug("Restarting cBioPortal for " + imported.size() + " studies.");
+        
+        if (!manager.stop()) {
+            logger.error("FAIL to stop cBioPortal; trying to start it anyway.");
+        }
+        if (!manager.start()) {
+            logger.error("FAIL to start cBioPortal!");
+        }
+        while (!manager.isReady()) {
+            if (System.currentTimeMillis() > timeout) {
+                logger.error("cBioPortal is not ready after " + 
+                             SystemParametersDB.getCbioReadyTimeout() + " sec!");
+                return false;
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+        logger.debug("cBioPortal ready after " + 
+                (System.currentTimeMillis() - startTime) / 1000 + " sec.");
+        
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Visualizers;
+
+// PortalManager control the application hosting cBioPortal; used by 
+// CbioReloadScheduler to restart cBioPortal after the studies are imported.
+// The default implementation is TomcatPortalManager; a stub could be set
+// through CbioReloadScheduler.setPortalManager for testing.
+public interface PortalManager {
+    // Stop cBioPortal; return true if successful.
+    boolean stop();
+    // Start cBioPortal; return true if successful.
+    boolean start();
+    // Return true if cBioPortal is up and serving requests.
+    boolean isReady();
+}
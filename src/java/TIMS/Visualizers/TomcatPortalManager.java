@@ -0,0 +1,126 @@
+// Copyright (C) 2019 A*STAR
+//
+// TIMS (Translation Informatics Management System) is an software effort 
+// by the ABSD (Analytics of Biological Sequence Data) team in the 
+// Bioinformatics Institute (BII), Agency of Science, Technology and Research 
+// (A*STAR), Singapore.
+//
+
+// This file is part of TIMS.
+// 
+// TIMS is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as 
+// published by the Free Software Foundation, either version 3 of the 
+// License, or (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+//
+package TIMS.Visualizers;
+
+import TIMS.Database.SystemParametersDB;
+// Libraries for Java
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+// Libraries for Log4j
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.LogManager;
+
+// TomcatPortalManager stop and start cBioPortal through the text interface 
+// of the Tomcat manager (CBIO_MANAGER_URL), and check it's readiness by 
+// polling CBIO_READY_URL. Pointing CBIO_MANAGER_URL and CBIO_READY_URL to a 
+// local stub allow the reload to be tested without Tomcat.
+public class TomcatPortalManager implements PortalManager {
+    // Get the logger for Log4j
+    private final static Logger logger = LogManager.
+            getLogger(TomcatPortalManager.class.getName());
+    private final static int CONNECT_TIMEOUT = 10000;
+    private final static int READ_TIMEOUT = 120000;
+    
+    @Override
+    public boolean stop() {
+        return managerCommand("stop");
+    }
+    
+    @Override
+    public boolean start() {
+        return managerCommand("start");
+    }
+    
+    @Override
+    public boolean isReady() {
+        HttpURLConnection conn = null;
+        
+        try {
+            conn = open(SystemParametersDB.getCbioReadyUrl());
+            conn.setInstanceFollowRedirects(false);
+            int status = conn.getResponseCode();
+            // A redirect (e.g. to the login page) also mean it is serving.
+            return status >= 200 && status < 400;
+        }
+        catch (IOException e) {
+            // Not ready yet.
+            return false;
+        }
+        finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+    
+    // Send the command to the Tomcat manager; the text interface reply with
+    // a line starting with "OK" if successful.
+    private boolean managerCommand(String command) {
+        String url = SystemParametersDB.getCbioManagerUrl() + "/" + command 
+                   + "?path=" + SystemParametersDB.getCbioAppPath();
+        HttpURLConnection conn = null;
+        
+        try {
+            conn = open(url);
+            String uid = SystemParametersDB.getTomcatUID();
+            if (uid != null) {
+                String auth = uid + ":" + SystemParametersDB.getTomcatPWD();
+                conn.setRequestProperty("Authorization", "Basic " + 
+                        Base64.getEncoder().encodeToString
+                            (auth.getBytes(StandardCharsets.UTF_8)));
+            }
+            String reply;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader
+                    (conn.getInputStream(), StandardCharsets.UTF_8))) {
+                reply = br.readLine();
+            }
+            logger.debug("Tomcat manager " + command + ": " + reply);
+            
+            return reply != null && reply.startsWith("OK");
+        }
+        catch (IOException e) {
+            logger.error("FAIL to " + command + " cBioPortal!");
+            logger.error(e.getMessage());
+            return false;
+        }
+        finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+    
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout(READ_TIMEOUT);
+        
+        return conn;
+    }
+}
@@ -26,49 +26,44 @@ package TIMS.Visualizers;
 import TIMS.Bean.FileUploadBean;
 import TIMS.Database.FinalizingJobEntry;
 import TIMS.Database.PipelineDB;
+import TIMS.Database.PipelineOutputReader;
 import TIMS.Database.Study;
 import TIMS.Database.StudyDB;
-import TIMS.Database.SubmittedJobDB;
-import TIMS.Database.SystemParametersDB;
 import TIMS.General.Constants;
-import TIMS.General.FileHelper;
 import TIMS.General.Postman;
 import TIMS.General.ResourceRetriever;
-import TIMS.General.Statistics;
+import TIMS.General.ZScoreConverter;
 // Libraries for Java
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.math.RoundingMode;
+import java.io.Writer;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Timestamp;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 // Libraries for Log4j
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 // Library for password hashing
 import org.mindrot.jbcrypt.BCrypt;
 
-public class cBioVisualizer extends Thread {
+public class cBioVisualizer implements Runnable, CbioImport {
     // Get the logger for Log4j
     private final static Logger logger = LogManager.
             getLogger(cBioVisualizer.class.getName());
-    // Only one thread can restart the tomcat application server at one time.
-    private static Semaphore tcCtrl = new Semaphore(1);
-    // Use for formating the z-score to 2 decimals.
-    private static DecimalFormat df = new DecimalFormat("0.00");
     // These strings are used to store the meta data parameters.
     private String alteration_type, datatype, profile_desc, profile_name;
     private final List<FinalizingJobEntry> selectedJobs;
@@ -77,6 +72,12 @@ public class cBioVisualizer extends Thread {
     private String folder_name, dir, case_dir, meta_study_txt, 
                    meta_clinical_samples, meta_cancer_type, 
                    data_clinical_samples, cancer_type;
+    // Conversions applied to the pipeline output for cBioPortal.
+    private final static String CONV_MAF = "maf";
+    private final static String CONV_ZSCORE = "zscore";
+    private final static String CONV_RAW = "raw";
+    // Signature of the last successful import, stored in the study folder.
+    private final static String LAST_IMPORT_SIG = "last_import.sig";
     // Color code for the different cancer type in cBioPortal.
     public final String[] color_code = new String[] 
         {"White","PeachPuff","Red","Gray","Green","LightSkyBlue","HotPink",
@@ -88,14 +89,12 @@ public class cBioVisualizer extends Thread {
     private List<String> CMD = new ArrayList<>();
     // To store the subjects ID from all the pipeline output.
     Set<String> casesAllList = new HashSet<String>();
-    // Commands to stop and start the cBioPortal application.
-    private List<String> TCSTOP = new ArrayList<>();
-    private List<String> TCSTART = new ArrayList<>();
+    // Signature of the content of this export.
+    private String signature;
 
     public cBioVisualizer(String userName, String study_id, 
             List<FinalizingJobEntry> selectedJobs) 
     {
-        df.setRoundingMode(RoundingMode.CEILING);
         this.studyID = study_id;
         this.userName = userName;
         this.selectedJobs = selectedJobs;
@@ -120,26 +119,18 @@ public class cBioVisualizer extends Thread {
         CMD.add(System.getenv("PORTAL_HOME") + File.separator + "metaImport.py");
         CMD.add("-s");
         logger.debug("cBioPortal Meta Import command: " + CMD.toString());
-        
-        // Create tomcat commands to stop and start the cBioPortal application.
-        TCSTOP.add("curl");
-        TCSTOP.add("--user");
-        // Retrieve the Tomcat user id and password.
-        String tomcat = SystemParametersDB.getTomcatUID() + ":" 
-                      + SystemParametersDB.getTomcatPWD();
-        TCSTOP.add(tomcat);
-        TCSTART.add("curl");
-        TCSTART.add("--user");
-        TCSTART.add(tomcat);
-        createTomcatCommands();
+
         logger.debug("cBioVisualizer created for study: " + study_id);
     }
     
     @Override
     public void run() {
-        // To store the list of pipeline data files; files to be deleted after 
-        // export.
-        StringBuilder datafiles = new StringBuilder();
+        // Identify the content of this export; the import will be skipped if
+        // it is the same as the last successful import of this study.
+        StringBuilder exportSig = new StringBuilder();
+        exportSig.append(studyID).append('|').append(study.getTitle()).
+                append('|').append(study.getIcd_code()).append('|').
+                append(study.getICDName()).append('\n');
         // Create the directory and sub-directory for storing the meta files
         // and the case files.
         if (!(FileUploadBean.createSystemDirectory(dir) && 
@@ -158,15 +149,14 @@ public class cBioVisualizer extends Thread {
         createMetaStudyFile();
         createMetaCancerTypeFile();
         createMetaClinicalSamplesFile();
-        // For each job, need to create the meta and case list files, unzip the
-        // pipeline data to the tmp directory, and store it's absolute path in
-        // the meta file.
+        // For each job, need to create the meta and case list files, get 
+        // the pipeline data file for cBioPortal (from the artifact cache, or
+        // built from the pipeline output zip), and store it's absolute path 
+        // in the meta file.
         for (FinalizingJobEntry job : selectedJobs) {
-            // Unzip the pipeline data file to the tmp directory; this file 
-            // will be deleted after use.
-            String data_file = SubmittedJobDB.unzipOutputFile(job.getJob_id());
-            // Store the list of subject IDs; to be use in the case_list.
-            Set<String> case_list_ids = new HashSet<String>();
+            int job_id = job.getJob_id();
+            // The conversion needed to create the data file for cBioPortal.
+            String conversion = null;
             // To store the stable ID.
             String stable_id = null;
             
@@ -182,9 +172,7 @@ public class cBioVisualizer extends Thread {
                     alteration_type = "MUTATION_EXTENDED";
                     datatype = "MAF";
                     profile_name = "Mutations";
-                    // The subject ID is at the 10th columns for mutation 
-                    // pipeline output.
-                    case_list_ids = createSubjectsListForMAF(data_file, 9);
+                    conversion = CONV_MAF;
                     stable_id = "mutations";
                     if (job.getPipeline_name().equals(PipelineDB.GATK_TAR_GERM)) {
                         profile_desc = "Mutation data from GATK Targeted Germline Sequencing";
@@ -205,9 +193,8 @@ public class cBioVisualizer extends Thread {
                     profile_desc = "RNA-seq data";
                     profile_name = "mRNA expression z-Scores (RNA Seq)";
                     stable_id = "rna_seq_mrna_median_Zscores";
-                    case_list_ids = createSubjectsList(data_file, 2);
                     // Convert pipeline output to z-score format.
-                    data_file = convert2zScoreFile(data_file, "seq_rna");
+                    conversion = CONV_ZSCORE;
                     break;
                 case PipelineDB.GEX_AFFYMETRIX:
                     alteration_type = "MRNA_EXPRESSION";
@@ -215,9 +202,8 @@ public class cBioVisualizer extends Thread {
                     profile_desc = "mRNA data";
                     profile_name = "mRNA expression (Affymetrix microarray)";
                     stable_id = "mrna_median_Zscores";
-                    case_list_ids = createSubjectsList(data_file, 2);
                     // Convert pipeline output to z-score format.
-                    data_file = convert2zScoreFile(data_file, "affymetrix");
+                    conversion = CONV_ZSCORE;
                     break;
                 case PipelineDB.GEX_ILLUMINA:
                     alteration_type = "MRNA_EXPRESSION";
@@ -225,9 +211,8 @@ public class cBioVisualizer extends Thread {
                     profile_desc = "mRNA data";
                     profile_name = "mRNA expression (Illumina microarray)";
                     stable_id = "mrna_median_Zscores";
-                    case_list_ids = createSubjectsList(data_file, 2);
                     // Convert pipeline output to z-score format.
-                    data_file = convert2zScoreFile(data_file, "illumina");
+                    conversion = CONV_ZSCORE;
                     break;
                 case PipelineDB.METHYLATION:
                     alteration_type = "METHYLATION";
@@ -235,7 +220,7 @@ public class cBioVisualizer extends Thread {
                     profile_desc = "Methylation beta-values";
                     profile_name = "Methylation (HM450)";
                     stable_id = "methylation_hm450";
-                    case_list_ids = createSubjectsList(data_file, 2);
+                    conversion = CONV_RAW;
                     break;
                 case PipelineDB.CNV_ILLUMINA:
                 case PipelineDB.CNV_AFFYMETRIX:
@@ -253,7 +238,7 @@ public class cBioVisualizer extends Thread {
                     else {
                         profile_name = "Putative copy-number (Affymetrix) alterations from GISTIC";
                     }
-                    case_list_ids = createSubjectsList(data_file, 2);
+                    conversion = CONV_RAW;
                     break;
                 default:
                     // Unlikely for control to reach here.
@@ -261,34 +246,92 @@ public class cBioVisualizer extends Thread {
                             + job.getPipeline_name());
                     break;
             }
+            if (conversion == null) {
+                continue;
+            }
+            CbioArtifactCache.Artifact artifact;
+            try {
+                artifact = getArtifact(job_id, conversion);
+            }
+            catch (IOException ioe) {
+                logger.error("FAIL to create " + conversion + " data file for"
+                           + " job ID " + job_id + "; profile skipped.");
+                logger.error(ioe.getMessage());
+                continue;
+            }
+            // Store the list of subject IDs; to be use in the case_list.
+            Set<String> case_list_ids = artifact.getSubjects();
+            casesAllList.addAll(case_list_ids);
+            exportSig.append(job_id).append('|').append(job.getPipeline_name()).
+                    append('|').append(job.getInput_desc()).append('|').
+                    append(artifact.getKey()).append('\n');
             // Create the meta file and case list file for each pipeline.
             logger.debug("Meta file created: " + createMetaPLFile
-                        (job.getPipeline_name(), stable_id, data_file));
+                        (job.getPipeline_name(), stable_id, 
+                         artifact.getDataFile()));
             logger.debug("Case list file created: " + createCaseListFile
                         (job.getPipeline_name(), job.getInput_desc(), 
                         case_list_ids, stable_id));
-            // Store the path of this pipeline data file; to be deleted after
-            // export.
-            datafiles.append(data_file).append("\t");            
         }
         
         createDataCancerType();
         createDataClinicalSamplesFile();
-        // Import the study into cBioPortal.
+        String signature = createSignature(exportSig.toString());
+        
+        if (signature.equals(readLastImportSignature())) {
+            // Nothing has changed since the last import; the study in 
+            // cBioPortal is already up to date.
+            logger.debug(studyID + " unchanged since last import; import skipped.");
+            StudyDB.updateStudyCbioUrl(studyID, createCbioUrl());
+            StudyDB.updateStudyVisualTime(studyID, visual_time);
+            Postman.sendExportDataStatusEmail(studyID, userName, Constants.OK);
+            return;
+        }
+        this.signature = signature;
+        // Queue the import; cBioPortal will be restarted once for all the 
+        // studies imported together.
+        int position = CbioReloadScheduler.submit(this);
+        logger.debug(studyID + " queued for import at position " + position);
+    }
+    
+    @Override
+    public String getStudyID() {
+        return studyID;
+    }
+    
+    @Override
+    public String getUserName() {
+        return userName;
+    }
+    
+    // Return the key for this export task; it must not run together with
+    // the finalization, unfinalization or compaction of the same annotation
+    // version.
+    @Override
+    public String getTaskKey() {
+        return "finalize|" + study.getAnnot_ver();
+    }
+    
+    // Called by CbioReloadScheduler to import the study into cBioPortal.
+    @Override
+    public boolean importStudy() {
         List<String> importStudyCMD = importStudyCommand();
         // Prepare log file.
         String logFileName = createLogFile(dir, "import_" + studyID);
         // Import the study.
         if (executeImportScript(importStudyCMD, logFileName)) {
             logger.debug("Study exported.");
+            writeLastImportSignature(signature);
         }
         else {
             // Failed to import the study, no point to continue.
             logger.error("FAIL to export study!");
             logger.error("Aborting data export for study " + studyID);
+            // The state of the study in cBioPortal is unknown now.
+            writeLastImportSignature(null);
             // Send the failed notification email to user.
             Postman.sendExportDataStatusEmail(studyID, userName, Constants.NOT_OK);
-            return;
+            return Constants.NOT_OK;
         }
         
         // Create and save the cBioPortal URL into database.
@@ -297,108 +340,144 @@ public class cBioVisualizer extends Thread {
         StudyDB.updateStudyVisualTime(studyID, visual_time);
         // Export completed!
         logger.debug(studyID + " exported to cBioPortal.");
-        // Delete all the temporary pipeline data files.
-        for (String tmp_file : datafiles.toString().split("\t")) {
-            if (!FileHelper.delete(tmp_file)) {
-                logger.error("FAIL to delete temporary data file: " + tmp_file);
+        
+        return Constants.OK;
+    }
+    
+    // Called by CbioReloadScheduler after cBioPortal has been restarted.
+    @Override
+    public void reloaded(boolean ready) {
+        if (!ready) {
+            logger.error("cBioPortal not ready after import of " + studyID);
+        }
+        // Send notification email to user; the study could only be viewed
+        // once cBioPortal is ready.
+        Postman.sendExportDataStatusEmail(studyID, userName, ready);
+    }
+    
+    // Return the cBioPortal data file and subject set of this job, from 
+    // the artifact cache; they will be built (and cached) if needed.
+    private CbioArtifactCache.Artifact getArtifact(int job_id, 
+            String conversion) throws IOException {
+        switch (conversion) {
+            case CONV_MAF:
+                return CbioArtifactCache.getOrBuild(job_id, conversion, 
+                    data_file -> {
+                        extractDataFile(job_id, data_file);
+                        // The subject ID is at the 10th columns for mutation 
+                        // pipeline output.
+                        return createSubjectsListForMAF(job_id, 9);
+                    });
+            case CONV_ZSCORE:
+                return CbioArtifactCache.getOrBuild(job_id, conversion, 
+                    data_file -> {
+                        convert2zScoreFile(job_id, data_file);
+                        return new LinkedHashSet<>
+                            (PipelineOutputReader.getSubjectList(job_id));
+                    });
+            default:
+                return CbioArtifactCache.getOrBuild(job_id, conversion, 
+                    data_file -> {
+                        extractDataFile(job_id, data_file);
+                        return new LinkedHashSet<>
+                            (PipelineOutputReader.getSubjectList(job_id));
+                    });
+        }
+    }
+    
+    // Convert the content of the pipeline output of this job to z-score 
+    // value; the output is read directly from it's zip file.
+    private void convert2zScoreFile(int job_id, Path zScoreFile) 
+            throws IOException {
+        try (Writer writer = Files.newBufferedWriter(zScoreFile, 
+                                                     StandardCharsets.UTF_8);
+             PipelineOutputReader reader = new PipelineOutputReader(job_id))
+        {
+            String header = reader.getHeader();
+            if (header == null) {
+                throw new IOException("The output file is empty!");
             }
+            // No processing needed for file header; just read and write.
+            writer.write(header);
+            writer.write('\n');
+            // Convert the remaining gene data in parallel.
+            int rows = ZScoreConverter.convert(reader.iterator(), writer);
+            logger.debug("z-score file created for job ID " + job_id + 
+                         " (" + rows + " genes)");
         }
-        // Used the executeImportScript to run the commands to restart the 
-        // cBioPortal application.
-        try {
-            logger.debug(userName + ": trying to acquire tomcat control.");
-            tcCtrl.acquire();
-            logger.debug(userName + ": restarting cBioPortal.");
-            executeImportScript(TCSTOP, createLogFile(dir, "stop_cBioPortal"));
-            executeImportScript(TCSTART, createLogFile(dir, "start_cBioPortal"));
-            logger.debug(userName + ": cBioPortal restarted.");
-            // Wait a minute before releasing the control key i.e. giving
-            // the application time to complete it's reset cycle.
-            sleep(60000);
+    }
+    
+    // Copy the pipeline output of this job out of it's zip file; cBioPortal
+    // importer can only work on the data file.
+    private void extractDataFile(int job_id, Path data_file) 
+            throws IOException {
+        try (PipelineOutputReader reader = new PipelineOutputReader(job_id)) {
+            reader.copyTo(data_file);
+            logger.debug("Output of job ID " + job_id + " copied.");
         }
-        catch (InterruptedException ie) {
-            logger.error("FAIL to acquire tomcat control!");
-            logger.error(ie.getMessage());
+    }
+    
+    // Return the signature (SHA-256) of the content of this export.
+    private String createSignature(String content) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
         }
-        finally {
-            tcCtrl.release();
+        catch (NoSuchAlgorithmException e) {
+            // Unlikely to happen; every JVM support SHA-256. Without a 
+            // signature the study will always be imported.
+            logger.error("FAIL to create export signature!");
+            logger.error(e.getMessage());
+            return Constants.FAILED;
         }
-        // Send notification email to user.
-        Postman.sendExportDataStatusEmail(studyID, userName, Constants.OK);
     }
     
-    // Convert the content of the datafile to z-score value.
-    private String convert2zScoreFile(String datafile, String plName) {
-        String zScoreFile = dir + plName + "_zscore.txt";
+    // Return the signature of the last successful import of this study; 
+    // null if not available.
+    private String readLastImportSignature() {
+        Path sigFile = getLastImportSignatureFile();
         
-        try (PrintStream ps = new PrintStream(new File(zScoreFile));
-             BufferedReader br = new BufferedReader(new FileReader(datafile)))
-        {
-            // No processing needed for file header; just read and write.
-            String lineRead = br.readLine();
-            ps.println(lineRead);
-            // Process the remaining gene data.
-            while ((lineRead = br.readLine()) != null) {
-                String[] values = lineRead.split("\t");
-                // Create the DescriptiveStatistics object using the values 
-                // found in the datafile; ignoring the first 2 columns.
-                DescriptiveStatistics stats = Statistics.createStatsInstance(values, 2);
-                double mean = stats.getMean();
-                double sd = stats.getStandardDeviation();
-                // Process the converted data line by line.
-                StringBuilder zsLine = new StringBuilder();
-                zsLine.append(values[0]).append("\t").append(values[1]).append("\t");
-                // Convert the data (one at a time) into it's z-score value.
-                for (int i = 2; i < values.length; i++) {
-                    // If standard deviation is zero, z-score is undefined; 
-                    // will store as 0.0 here.
-                    if (sd == 0.0) {
-                        zsLine.append("0.00").append("\t");
-                    }
-                    else {
-                        Double zs = Statistics.zScore(Double.parseDouble(values[i]), mean, sd);
-                        zsLine.append(df.format(zs)).append("\t");                        
-                    }
-                }
-                // Remove the last tab.
-                zsLine.setLength(zsLine.length() - 1);
-                // Write the converted data into the z-score file.
-                ps.println(zsLine);
+        try {
+            if (Files.isRegularFile(sigFile)) {
+                return new String(Files.readAllBytes(sigFile), 
+                                  StandardCharsets.UTF_8).trim();
             }
-            logger.debug("z-score file created at: " + zScoreFile);
         }
         catch (IOException ioe) {
-            logger.error("FAIl to convert " + plName + " data file to z-score format!");
+            logger.error("FAIL to read last import signature of " + studyID);
             logger.error(ioe.getMessage());
         }
-
-        /* Instead of replacing the original datafile with the converted z-score
-        // file, we will update the datafile with the path of the converted
-        // z-score file.
-        // Move and replace the datafile with the converted z-score file.
+        
+        return null;
+    }
+    
+    // Store the signature of the last successful import of this study; null
+    // to remove it.
+    private void writeLastImportSignature(String signature) {
+        Path sigFile = getLastImportSignatureFile();
+        
         try {
-            Path from = FileSystems.getDefault().getPath(zScoreFile);
-            Path to = FileSystems.getDefault().getPath(datafile);
-            Files.move(from, to, REPLACE_EXISTING);
-            logger.debug("z-score file moved to temp directory.");
+            if (signature == null || signature.equals(Constants.FAILED)) {
+                Files.deleteIfExists(sigFile);
+            }
+            else {
+                Files.write(sigFile, signature.getBytes(StandardCharsets.UTF_8));
+            }
         }
         catch (IOException ioe) {
-            logger.error("FAIl to copy z-score file to temp directory!");
+            logger.error("FAIL to store last import signature of " + studyID);
             logger.error(ioe.getMessage());
         }
-        */
-        // Return the path to the converted z-score file.
-        return zScoreFile;
     }
     
-    // Create the commands to stop and start tomcat server.
-    private void createTomcatCommands() {
-        TCSTOP.add("http://localhost:8080/manager/text/stop?path=/cbioportal");
-        TCSTART.add("http://localhost:8080/manager/text/start?path=/cbioportal");
-//        TCSTOP.add("http://192.168.142.20:8080/manager/text/stop?path=/cbioportal");
-//        TCSTART.add("http://192.168.142.20:8080/manager/text/start?path=/cbioportal");
-        logger.debug("Tomcat START command: " + TCSTART.toString());
-        logger.debug("Tomcat STOP command: " + TCSTOP.toString());
+    private Path getLastImportSignatureFile() {
+        return Paths.get(Constants.getSYSTEM_PATH() + Constants.getCBIO_PATH()
+                         + studyID, LAST_IMPORT_SIG);
     }
     
     // Construct and return the import study command for cBioPortal.
@@ -683,42 +762,21 @@ public class cBioVisualizer extends Thread {
         }
     }
     
-    // Create the list of subject IDs from the first line of pipeline output; 
-    // to be use in the case_list. Parameter offset will tell how many columns
-    // to ignore.
-    private Set<String> createSubjectsList(String filename, int offset) {
-        Set<String> subjectsList = new HashSet<String>();
-        
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            String header = br.readLine();
-            String[] subjectID = header.split("\t");
-            for (int i = offset; i < subjectID.length; i++) {
-                subjectsList.add(subjectID[i]);
-                casesAllList.add(subjectID[i]);
-            }
-        }
-        catch (IOException e) {
-            logger.error("FAIL to create subject list!");
-            logger.error(e.getMessage());
-        }
-        
-        return subjectsList;
-    }
-    
     // Create the list of subject IDs from the xth column of the pipeline
     // output; to be use in the case_list. Parameter offset will tell us which
     // column contains the subject ID.
-    private Set<String> createSubjectsListForMAF(String filename, int offset) {
-        Set<String> subjectsList = new HashSet<String>();
+    private Set<String> createSubjectsListForMAF(int job_id, int offset) 
+            throws IOException {
+        Set<String> subjectsList = new LinkedHashSet<String>();
         String lineRead;
         String[] columns;
         
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            // Skip the first 2 lines.
-            for (int i = 0; i <= 1; i++)
-                br.readLine();
+        try (PipelineOutputReader reader = new PipelineOutputReader(job_id)) {
+            // Skip the first 2 lines (i.e. header and the line after it).
+            reader.getHeader();
+            reader.readLine();
             
-            while ((lineRead = br.readLine()) != null) {
+            while ((lineRead = reader.readLine()) != null) {
                 columns = lineRead.split("\t");
                 if (columns.length <= offset) {
                     // Invalid data file has been passed in, break out of the 
@@ -727,14 +785,9 @@ public class cBioVisualizer extends Thread {
                     break;
                 } else {
                     subjectsList.add(columns[offset]);
-                    casesAllList.add(columns[offset]);
                 }
             }
         }
-        catch (IOException e) {
-            logger.error("FAIL to create subject list for MAF!");
-            logger.error(e.getMessage());
-        }
         
         return subjectsList;
     }